@@ -7,7 +7,9 @@ import com.wjduquette.joe.tools.ToolLauncher;
 import pen.tools.annals.AnnalsTool;
 import pen.tools.draw.DrawTool;
 import pen.tools.history.HistoryTool;
+import pen.tools.poster.PosterTool;
 import pen.tools.run.RunTool;
+import pen.tools.serve.ServeTool;
 import pen.tools.test.TestTool;
 import pen.tools.view.ViewTool;
 
@@ -34,7 +36,9 @@ public class App {
             AnnalsTool.INFO,
             DrawTool.INFO,
             HistoryTool.INFO,
+            PosterTool.INFO,
             RunTool.INFO,
+            ServeTool.INFO,
             TestTool.INFO,
             ViewTool.INFO
         ));
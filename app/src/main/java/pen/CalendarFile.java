@@ -3,21 +3,25 @@ package pen;
 import pen.calendars.Calendar;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.*;
 
 /**
- * Data loaded from a .cal file
+ * Data loaded from a .cal file.  A CalendarFile is immutable, and may be
+ * shared between threads and between histories.
  * @param path The file's path
- * @param calendars The loaded calendars
+ * @param calendars The loaded calendars, in definition order
  * @param today The date to show by default
  */
 public record CalendarFile(
     Path path,
-    LinkedHashMap<String,Calendar> calendars,
+    SequencedMap<String,Calendar> calendars,
     int today
-) {
+) implements DataFile {
+    public CalendarFile {
+        calendars = Collections.unmodifiableSequencedMap(
+            new LinkedHashMap<>(calendars));
+    }
+
     /**
      * Gets a list of the names of the calendars defined in the file.
      * @return The names
@@ -0,0 +1,14 @@
+package pen;
+
+import java.nio.file.Path;
+
+/**
+ * Data loaded from a file by {@link DataFiles}.
+ */
+public sealed interface DataFile permits CalendarFile, HistoryFile {
+    /**
+     * Gets the path of the file the data was loaded from.
+     * @return The path
+     */
+    Path path();
+}
@@ -4,20 +4,126 @@ import pen.apis.CalendarExtension;
 import pen.apis.HistoryExtension;
 import pen.tcl.TclEngine;
 import pen.tcl.TclEngineException;
+import pen.tcl.TclEnginePool;
+import pen.tcl.TclProfiler;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Static class for loading data formats.
+ *
+ * <p>Loaded calendar files are cached process-wide by canonical path, so
+ * that histories sharing a calendar, and repeated reloads of unchanged
+ * files, don't re-evaluate the calendar script.  A cached entry is reused
+ * while the file and the files it sources are unchanged, as shown by their
+ * modification times and sizes or, failing that, their content hashes;
+ * otherwise it is replaced.  CalendarFiles and their Calendars are
+ * immutable, and so may be shared freely.</p>
+ *
+ * <p>If snapshots are enabled, each calendar or history file loaded from
+ * its script is also saved as a binary snapshot next to the file (see
+ * {@link DataSnapshots}), and later loads use the snapshot instead of
+ * evaluating the script for as long as the file and everything it depends
+ * on are unchanged.</p>
+ *
+ * <p>Scripts are evaluated by TclEngines drawn from a
+ * {@link TclEnginePool} for each kind of file, so that loading many files
+ * doesn't pay to create and initialize an engine for each.</p>
+ *
+ * <p>Files may be loaded from any number of threads at once, and
+ * {@link #loadAll(List)} loads a list of files concurrently.  Concurrent
+ * loads of the same calendar file, e.g., by histories that share it,
+ * evaluate it only once.</p>
  */
 public class DataFiles {
     private DataFiles() {} // Not instantiable
 
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The calendar file cache, by canonical path.
+    private static final Map<Path, CachedCalendar> calendarCache =
+        new ConcurrentHashMap<>();
+
+    // Locks that serialize loads of each calendar file, by canonical path.
+    private static final Map<Path, Lock> calendarLocks =
+        new ConcurrentHashMap<>();
+
+    // The stamps of the files each history file was last loaded from, by
+    // absolute path.
+    private static final Map<Path, HistorySource> historySources =
+        new ConcurrentHashMap<>();
+
+    // Whether to read and write snapshots.
+    private static volatile boolean snapshotsEnabled = false;
+
+    // The profiler for the TclEngines used to load files, if any.
+    private static volatile TclProfiler profiler = null;
+
+    // Pools of initialized TclEngines for loading each kind of file.
+    private static final TclEnginePool calendarEngines =
+        new TclEnginePool(engine -> {
+            engine.trackSourcedFiles();
+            engine.install(new CalendarExtension());
+        });
+
+    private static final TclEnginePool historyEngines =
+        new TclEnginePool(engine -> {
+            engine.trackSourcedFiles();
+            engine.install(new HistoryExtension());
+        });
+
+    //-------------------------------------------------------------------------
+    // Configuration
+
+    /**
+     * Enables or disables the use of binary snapshots when loading files.
+     * @param flag true or false
+     */
+    public static void setSnapshotsEnabled(boolean flag) {
+        snapshotsEnabled = flag;
+    }
+
+    /**
+     * Whether the use of binary snapshots is enabled.
+     * @return true or false
+     */
+    public static boolean isSnapshotsEnabled() {
+        return snapshotsEnabled;
+    }
+
+    /**
+     * Sets the profiler used to profile the Tcl commands executed while
+     * loading files, or null to disable profiling.
+     * @param newProfiler The profiler, or null
+     */
+    public static void setProfiler(TclProfiler newProfiler) {
+        profiler = newProfiler;
+    }
+
+    //-------------------------------------------------------------------------
+    // Calendar Files
+
     /**
      * Loads a calendar file, and returns a map containing the loaded
-     * calendars.
+     * calendars.  If the file is unchanged since it was last loaded, the
+     * cached CalendarFile is returned.
      * @param path The path to the file
      * @return The map
      * @throws DataFileException on error
@@ -25,15 +131,134 @@ public class DataFiles {
     public static CalendarFile loadCalendar(Path path)
         throws DataFileException
     {
-        var engine = new TclEngine();
+        Path key = null;
+        Lock lock = null;
+
+        try {
+            key = path.toRealPath();
+
+            // Concurrent loads of the same file wait for the first to
+            // finish, and then find its result in the cache.
+            lock = calendarLocks.computeIfAbsent(key,
+                k -> new ReentrantLock());
+            lock.lock();
+
+            var cached = calendarCache.get(key);
+
+            if (cached != null) {
+                var current = cached.refresh();
+                if (current != null) {
+                    calendarCache.put(key, current);
+                    return current.calendarFile();
+                }
+            }
+
+            var attrs = Files.readAttributes(key, BasicFileAttributes.class);
+            var bytes = Files.readAllBytes(key);
+            var stamp = FileStamp.of(key, attrs, bytes);
+
+            if (snapshotsEnabled) {
+                var snapshot = DataSnapshots.readCalendar(path);
+                if (snapshot != null) {
+                    // Cache the stamps of the sourced files as well, as
+                    // saved with the snapshot.
+                    calendarCache.put(key, new CachedCalendar(
+                        snapshot.stamps(), snapshot.calendarFile()));
+                    return snapshot.calendarFile();
+                }
+            }
+
+            var engine = calendarEngines.acquire();
+            var stamps = new ArrayList<FileStamp>();
+            stamps.add(stamp);
+            CalendarFile calendarFile;
+
+            try {
+                engine.setProfiler(profiler);
+                engine.setSourceListener(stampInto(stamps));
+                calendarFile = evalCalendar(engine, path,
+                    new String(bytes, StandardCharsets.UTF_8));
+            } finally {
+                engine.setSourceListener(null);
+
+                // Calendars with Tcl month length functions keep using
+                // the engine until they are unreachable.
+                var extension = engine.getExtension(CalendarExtension.class);
+                if (extension.isEngineDependent()) {
+                    calendarEngines.discard(engine,
+                        extension.getEngineToken());
+                } else {
+                    calendarEngines.release(engine);
+                }
+            }
+
+            calendarCache.put(key,
+                new CachedCalendar(List.copyOf(stamps), calendarFile));
+
+            if (snapshotsEnabled && DataSnapshots.canSnapshot(calendarFile)) {
+                saveSnapshot(() ->
+                    DataSnapshots.writeCalendar(calendarFile, stamps));
+            }
+
+            return calendarFile;
+        } catch (Exception ex) {
+            // Any cached entry for the file is stale.
+            if (key != null) {
+                calendarCache.remove(key);
+            }
+            throw ex instanceof DataFileException dfe
+                ? dfe : error("calendar", ex);
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Whether the loaded file is current, i.e., whether neither it nor any
+     * file it depends on has changed since it was read during the load.
+     * Each file is judged by the stamp taken as it was read, so a file
+     * saved while the load was running is stale.  A history is also stale
+     * if its calendar file is; a file whose stamps are unknown, e.g., a
+     * calendar file no longer cached, is always stale.
+     * @param file The loaded file
+     * @return true or false
+     */
+    public static boolean isCurrent(DataFile file) {
+        return switch (file) {
+            case CalendarFile calendarFile -> isCalendarCurrent(calendarFile);
+            case HistoryFile historyFile -> isHistoryCurrent(historyFile);
+        };
+    }
+
+    /**
+     * Removes cache entries for calendar files that have changed or no
+     * longer exist.
+     */
+    public static void evictStaleCalendars() {
+        calendarCache.entrySet().removeIf(e -> e.getValue().refresh() == null);
+    }
+
+    /**
+     * Empties the calendar file cache.
+     */
+    public static void clearCalendarCache() {
+        calendarCache.clear();
+    }
+
+    // Evaluates the calendar script, returning the loaded calendar file.
+    private static CalendarFile evalCalendar(
+        TclEngine engine,
+        Path path,
+        String script
+    ) throws DataFileException {
         // Set the working directory so that all paths in the engine are
         // relative to the file being loaded.
         engine.setWorkingDirectory(path.toAbsolutePath().getParent());
-        var calendarExtension = new CalendarExtension();
-        engine.install(calendarExtension);
+        var calendarExtension = engine.getExtension(CalendarExtension.class);
 
         try {
-            var script = Files.readString(path);
             engine.eval(script);
         } catch (Exception ex) {
             throw error("calendar", ex);
@@ -45,6 +270,42 @@ public class DataFiles {
             calendarExtension.getToday());
     }
 
+    // Whether the calendar file is cached and its files are unchanged,
+    // keeping the refreshed stamps of files that were merely touched.
+    private static boolean isCalendarCurrent(CalendarFile calendarFile) {
+        try {
+            var key = calendarFile.path().toRealPath();
+            var cached = calendarCache.get(key);
+
+            if (cached == null || cached.calendarFile() != calendarFile) {
+                return false;
+            }
+
+            var current = cached.refresh();
+            if (current != null && current != cached) {
+                calendarCache.replace(key, cached, current);
+            }
+            return current != null;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    // Gets the stamps of the files the cached calendar file was loaded
+    // from, or null if it is no longer cached.
+    private static List<FileStamp> calendarStamps(CalendarFile calendarFile) {
+        try {
+            var cached = calendarCache.get(calendarFile.path().toRealPath());
+            return cached != null && cached.calendarFile() == calendarFile
+                ? cached.stamps() : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // History Files
+
     /**
      * Loads a history file, and returns the loaded history.
      * @param path The path to the file
@@ -54,26 +315,241 @@ public class DataFiles {
     public static HistoryFile loadHistory(Path path)
         throws DataFileException
     {
-        var engine = new TclEngine();
-        // Set the working directory so that all paths in the engine are
-        // relative to the file being loaded.
-        engine.setWorkingDirectory(path.toAbsolutePath().getParent());
-        var historyExtension = new HistoryExtension();
-        engine.install(historyExtension);
+        if (snapshotsEnabled) {
+            var snapshot = DataSnapshots.readHistory(path);
+            if (snapshot != null) {
+                historySources.put(path.toAbsolutePath(), new HistorySource(
+                    snapshot.stamps(), snapshot.historyFile()));
+                return snapshot.historyFile();
+            }
+        }
+
+        var engine = historyEngines.acquire();
+        var stamps = new ArrayList<FileStamp>();
+        HistoryFile historyFile;
+        String outputFormat;
 
         try {
-            var script = Files.readString(path);
-            engine.eval(script);
-        } catch (Exception ex) {
-            throw error("history", ex);
+            engine.setProfiler(profiler);
+            // Set the working directory so that all paths in the engine are
+            // relative to the file being loaded.
+            engine.setWorkingDirectory(path.toAbsolutePath().getParent());
+            var historyExtension = engine.getExtension(HistoryExtension.class);
+
+            try {
+                var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                var bytes = Files.readAllBytes(path);
+                stamps.add(FileStamp.of(path.toAbsolutePath(), attrs, bytes));
+                engine.setSourceListener(stampInto(stamps));
+                engine.eval(new String(bytes, StandardCharsets.UTF_8));
+            } catch (Exception ex) {
+                throw error("history", ex);
+            }
+
+            historyFile = new HistoryFile(
+                path,
+                historyExtension.getHistory(),
+                historyExtension.getCalendarFile().orElse(null),
+                historyExtension.getPrimaryCalendar().orElse(null)
+            );
+            outputFormat = historyExtension.getOutputFormat().orElse(null);
+            historySources.put(path.toAbsolutePath(),
+                new HistorySource(List.copyOf(stamps), historyFile));
+        } finally {
+            historyEngines.release(engine);
+        }
+
+        if (snapshotsEnabled) {
+            saveSnapshot(() -> {
+                var snapshotStamps = new ArrayList<>(stamps);
+                var calendarFile = historyFile.calendarFile();
+                if (calendarFile != null) {
+                    var calendarStamps = calendarStamps(calendarFile);
+                    if (calendarStamps == null ||
+                        !DataSnapshots.canSnapshot(calendarFile)
+                    ) {
+                        return;
+                    }
+                    snapshotStamps.addAll(calendarStamps);
+                }
+
+                DataSnapshots.writeHistory(
+                    historyFile, outputFormat, snapshotStamps);
+            });
+        }
+
+        return historyFile;
+    }
+
+    // Whether the history file was the last loaded from its path, and
+    // its files and its calendar file's files are unchanged.
+    private static boolean isHistoryCurrent(HistoryFile historyFile) {
+        var key = historyFile.path().toAbsolutePath();
+        var source = historySources.get(key);
+
+        if (source == null || source.historyFile() != historyFile) {
+            return false;
+        }
+
+        var current = source.refresh();
+        if (current == null) {
+            return false;
+        } else if (current != source) {
+            historySources.replace(key, source, current);
+        }
+
+        return historyFile.calendarFile() == null ||
+            isCalendarCurrent(historyFile.calendarFile());
+    }
+
+    // Returns a source listener that stamps each file as it is about to be
+    // read.  A file read more than once keeps its first stamp; a file that
+    // can't be read is left to the command reading it to report.
+    private static Consumer<Path> stampInto(List<FileStamp> stamps) {
+        return file -> {
+            if (stamps.stream().anyMatch(s -> s.path().equals(file))) {
+                return;
+            }
+            try {
+                stamps.add(FileStamp.of(file));
+            } catch (IOException ex) {
+                // Nothing to do
+            }
+        };
+    }
+
+    //-------------------------------------------------------------------------
+    // Dependencies
+
+    /**
+     * Gets the files that the loaded data depends on: the file itself,
+     * the files it sourced, and for a history, its calendar file and the
+     * files that sourced.  The files are known only while the loaded data
+     * is the latest loaded from its file.
+     * @param file The loaded file
+     * @return The absolute paths of the files, starting with the file
+     */
+    public static List<Path> getDependencies(DataFile file) {
+        var result = new LinkedHashSet<Path>();
+        result.add(file.path().toAbsolutePath());
+
+        switch (file) {
+            case CalendarFile calendarFile ->
+                addCalendarDependencies(calendarFile, result);
+            case HistoryFile historyFile -> {
+                var source = historySources.get(
+                    historyFile.path().toAbsolutePath());
+                if (source != null && source.historyFile() == historyFile) {
+                    for (var stamp : source.stamps()) {
+                        result.add(stamp.path().toAbsolutePath());
+                    }
+                }
+                if (historyFile.calendarFile() != null) {
+                    result.add(historyFile.calendarFile().path());
+                    addCalendarDependencies(
+                        historyFile.calendarFile(), result);
+                }
+            }
+        }
+
+        return List.copyOf(result);
+    }
+
+    // Adds the files the calendar file was loaded from, if known.
+    private static void addCalendarDependencies(
+        CalendarFile calendarFile,
+        Set<Path> result
+    ) {
+        var stamps = calendarStamps(calendarFile);
+        if (stamps != null) {
+            for (var stamp : stamps) {
+                result.add(stamp.path().toAbsolutePath());
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Multiple Files
+
+    /**
+     * Loads a list of ".cal" and ".hist" files concurrently, each on its
+     * own virtual thread, and returns the loaded files in the same order.
+     * Calendar files shared by several histories are loaded only once.
+     * If any file cannot be loaded, the others are still loaded, and the
+     * exception describes every failure; the first failure is its cause,
+     * and the rest are suppressed exceptions.
+     * @param paths The paths to the files
+     * @return The loaded files
+     * @throws DataFileException if any file could not be loaded
+     */
+    public static List<DataFile> loadAll(List<Path> paths)
+        throws DataFileException
+    {
+        var futures = new ArrayList<Future<DataFile>>();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var path : paths) {
+                futures.add(executor.submit(() -> load(path)));
+            }
+        }
+
+        var result = new ArrayList<DataFile>();
+        var failures = new ArrayList<DataFileException>();
+        var message = new StringBuilder();
+
+        for (int i = 0; i < paths.size(); i++) {
+            try {
+                result.add(futures.get(i).get());
+            } catch (ExecutionException ex) {
+                var failure = switch (ex.getCause()) {
+                    case DataFileException dfe -> dfe;
+                    case Exception other -> error("file", other);
+                    default -> throw (Error)ex.getCause();
+                };
+                failures.add(failure);
+                message.append("\n").append(paths.get(i)).append(": ")
+                    .append(failure.getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw error("files", ex);
+            }
         }
 
-        return new HistoryFile(
-            path,
-            historyExtension.getHistory(),
-            historyExtension.getCalendarFile().orElse(null),
-            historyExtension.getPrimaryCalendar().orElse(null)
-        );
+        if (!failures.isEmpty()) {
+            var ex = new DataFileException("Could not load " +
+                failures.size() + " of " + paths.size() + " files:" +
+                message, failures.getFirst());
+            failures.stream().skip(1).forEach(ex::addSuppressed);
+            throw ex;
+        }
+
+        return result;
+    }
+
+    // Loads a calendar or history file, depending on its file type.
+    private static DataFile load(Path path) throws DataFileException {
+        var name = path.getFileName().toString();
+
+        if (name.endsWith(".cal")) {
+            return loadCalendar(path);
+        } else if (name.endsWith(".hist")) {
+            return loadHistory(path);
+        } else {
+            throw new DataFileException("Unknown file type: " + path, null);
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Saves a snapshot.  Snapshots are an optimization, so a snapshot that
+    // cannot be written is simply skipped.
+    private static void saveSnapshot(SnapshotWriter writer) {
+        try {
+            writer.write();
+        } catch (IOException | RuntimeException ex) {
+            // Nothing to do
+        }
     }
 
     private static DataFileException error(String what, Exception ex) {
@@ -90,4 +566,60 @@ public class DataFiles {
                     ex.getMessage(), ex);
         };
     }
+
+    //-------------------------------------------------------------------------
+    // Helper Types
+
+    // A cached calendar file, with the stamps of the calendar file and of
+    // the files it sources.
+    private record CachedCalendar(
+        List<FileStamp> stamps,
+        CalendarFile calendarFile
+    ) {
+        // Returns this entry, or an entry with updated stamps if some files
+        // were touched but not changed, or null if any file has changed.
+        CachedCalendar refresh() {
+            var current = new ArrayList<FileStamp>();
+
+            for (var stamp : stamps) {
+                var refreshed = stamp.refresh();
+                if (refreshed == null) {
+                    return null;
+                }
+                current.add(refreshed);
+            }
+
+            return current.equals(stamps)
+                ? this : new CachedCalendar(current, calendarFile);
+        }
+    }
+
+    // A loaded history file, with the stamps of the history file and of
+    // the files it sourced, or for a snapshot, of everything it depends on.
+    private record HistorySource(
+        List<FileStamp> stamps,
+        HistoryFile historyFile
+    ) {
+        // Returns this entry, or an entry with updated stamps if some files
+        // were touched but not changed, or null if any file has changed.
+        HistorySource refresh() {
+            var current = new ArrayList<FileStamp>();
+
+            for (var stamp : stamps) {
+                var refreshed = stamp.refresh();
+                if (refreshed == null) {
+                    return null;
+                }
+                current.add(refreshed);
+            }
+
+            return current.equals(stamps)
+                ? this : new HistorySource(current, historyFile);
+        }
+    }
+
+    // Writes a snapshot.
+    private interface SnapshotWriter {
+        void write() throws IOException;
+    }
 }
@@ -0,0 +1,589 @@
+package pen;
+
+import pen.calendars.*;
+import pen.calendars.Calendar;
+import pen.calendars.formatter.DateFormat;
+import pen.history.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Reads and writes binary snapshots of loaded calendar and history files.
+ * A snapshot is stored next to its source file, with the suffix ".snap",
+ * and records the stamps of the source file and of every file its loading
+ * depended on; it is used only while all of them are unchanged.
+ *
+ * <p>A snapshot consists of a header (magic number, format version, and
+ * kind), the dependency stamps, a table of interned strings, and the
+ * data, which refers to strings by index.  History moments are stored as
+ * primitive arrays.</p>
+ *
+ * <p>Calendars whose month lengths are computed by arbitrary Tcl commands
+ * cannot be snapshotted, nor can histories that use them; such files are
+ * always loaded from their scripts.</p>
+ */
+final class DataSnapshots {
+    private DataSnapshots() {} // Not instantiable
+
+    //-------------------------------------------------------------------------
+    // Constants
+
+    // The magic number: "PENS"
+    private static final int MAGIC = 0x50454E53;
+
+    // The format version; increment on any change to the format.
+    private static final int VERSION = 1;
+
+    // The snapshot kinds
+    private static final byte CALENDAR = 'C';
+    private static final byte HISTORY = 'H';
+
+    // Month length kinds
+    private static final byte CONSTANT_LENGTH = 0;
+    private static final byte FEBRUARY_LENGTH = 1;
+
+    // Incident kinds
+    private static final byte START = 0;
+    private static final byte END = 1;
+    private static final byte NORMAL = 2;
+    private static final byte BIRTHDAY = 3;
+    private static final byte MEMORIAL = 4;
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Gets the path of the snapshot for the given source file.
+     * @param source The source file
+     * @return The snapshot path
+     */
+    static Path snapshotPath(Path source) {
+        return source.resolveSibling(source.getFileName() + ".snap");
+    }
+
+    /**
+     * Whether the calendar file can be snapshotted.
+     * @param calendarFile The calendar file
+     * @return true or false
+     */
+    static boolean canSnapshot(CalendarFile calendarFile) {
+        for (var cal : calendarFile.calendars().values()) {
+            if (!(cal instanceof BasicCalendar)) {
+                return false;
+            }
+            for (var month : cal.months()) {
+                var length = ((BoundedMonth)month).daysInMonth();
+                if (!(length instanceof YearDelta.Constant) &&
+                    length != Gregorian.FEBRUARY_DAYS
+                ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a snapshot of the calendar file.
+     * @param calendarFile The calendar file
+     * @param stamps The stamps of the files it was loaded from
+     * @throws IOException on write error
+     * @throws IllegalArgumentException if !canSnapshot(calendarFile)
+     */
+    static void writeCalendar(CalendarFile calendarFile, List<FileStamp> stamps)
+        throws IOException
+    {
+        if (!canSnapshot(calendarFile)) {
+            throw new IllegalArgumentException(
+                "Calendar file cannot be snapshotted: " + calendarFile.path());
+        }
+
+        var out = new SnapshotOutput();
+        out.writeInt(calendarFile.today());
+        out.writeInt(calendarFile.calendars().size());
+
+        for (var entry : calendarFile.calendars().entrySet()) {
+            var cal = (BasicCalendar)entry.getValue();
+            out.writeString(entry.getKey());
+            out.writeInt(cal.epochOffset());
+            out.writeEra(cal.era());
+            out.writeEra(cal.priorEra());
+
+            var week = cal.week();
+            out.writeBoolean(week != null);
+            if (week != null) {
+                out.writeInt(week.epochOffset());
+                out.writeInt(week.weekdays().size());
+                for (var day : week.weekdays()) {
+                    out.writeNames(day.fullForm(), day.shortForm(),
+                        day.unambiguousForm(), day.tinyForm());
+                }
+            }
+
+            out.writeInt(cal.months().size());
+            for (var month : cal.months()) {
+                var bounded = (BoundedMonth)month;
+                out.writeNames(bounded.fullForm(), bounded.shortForm(),
+                    bounded.unambiguousForm(), bounded.tinyForm());
+
+                if (bounded.daysInMonth() instanceof YearDelta.Constant c) {
+                    out.writeByte(CONSTANT_LENGTH);
+                    out.writeInt(c.value());
+                } else {
+                    out.writeByte(FEBRUARY_LENGTH);
+                }
+            }
+        }
+
+        out.save(CALENDAR, calendarFile.path(), stamps);
+    }
+
+    /**
+     * Reads the snapshot of the calendar file, if it exists and is fresh.
+     * @param source The calendar file's path
+     * @return The calendar file and the stamps of the files it was loaded
+     * from, or null if there is no usable snapshot.
+     */
+    static CalendarSnapshot readCalendar(Path source) {
+        var in = SnapshotInput.open(CALENDAR, source);
+
+        if (in == null) {
+            return null;
+        }
+
+        try {
+            var today = in.readInt();
+            var count = in.readInt();
+            var calendars = new LinkedHashMap<String, Calendar>();
+
+            for (int i = 0; i < count; i++) {
+                var name = in.readString();
+                var builder = new BasicCalendar.Builder()
+                    .epochOffset(in.readInt())
+                    .era(in.readEra())
+                    .priorEra(in.readEra());
+
+                if (in.readBoolean()) {
+                    var offset = in.readInt();
+                    var days = new ArrayList<Weekday>();
+                    var numDays = in.readInt();
+                    for (int j = 0; j < numDays; j++) {
+                        days.add(new Weekday(in.readString(), in.readString(),
+                            in.readString(), in.readString()));
+                    }
+                    builder.week(new Week(days, offset));
+                }
+
+                var numMonths = in.readInt();
+                for (int j = 0; j < numMonths; j++) {
+                    var month = new SimpleMonth(in.readString(),
+                        in.readString(), in.readString(), in.readString());
+
+                    if (in.readByte() == CONSTANT_LENGTH) {
+                        builder.month(month, in.readInt());
+                    } else {
+                        builder.month(month, Gregorian.FEBRUARY_DAYS);
+                    }
+                }
+
+                calendars.put(name, builder.build());
+            }
+
+            return new CalendarSnapshot(
+                new CalendarFile(source.toAbsolutePath(), calendars, today),
+                in.getStamps());
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the history file.  The history's calendar file,
+     * if any, must be snapshotted separately.
+     * @param historyFile The history file
+     * @param outputFormat The output date format string, or null
+     * @param stamps The stamps of the files it depends on
+     * @throws IOException on write error
+     * @throws IllegalArgumentException if the history cannot be snapshotted
+     */
+    static void writeHistory(
+        HistoryFile historyFile,
+        String outputFormat,
+        List<FileStamp> stamps
+    ) throws IOException {
+        var out = new SnapshotOutput();
+        var calendarFile = historyFile.calendarFile();
+
+        out.writeBoolean(calendarFile != null);
+        if (calendarFile != null) {
+            out.writeString(calendarFile.path().toString());
+            out.writeString(historyFile.primaryCalendar());
+            out.writeBoolean(outputFormat != null);
+            if (outputFormat != null) {
+                out.writeString(outputFormat);
+            }
+        }
+
+        var history = historyFile.history();
+
+        out.writeInt(history.getTypeMap().size());
+        for (var type : history.getTypeMap().values()) {
+            out.writeString(type.id());
+            out.writeString(type.name());
+            out.writeBoolean(type.prime());
+        }
+
+        out.writeInt(history.getEntityMap().size());
+        for (var entity : history.getEntityMap().values()) {
+            out.writeString(entity.id());
+            out.writeString(entity.name());
+            out.writeString(entity.type());
+            out.writeBoolean(entity.prime());
+        }
+
+        // Incidents are written column-wise: kinds, then moments, then
+        // labels and entity IDs.
+        var incidents = history.getIncidents();
+        out.writeInt(incidents.size());
+
+        for (var incident : incidents) {
+            out.writeByte(switch (incident) {
+                case Incident.Start ignored -> START;
+                case Incident.End ignored -> END;
+                case Incident.Normal ignored -> NORMAL;
+                case Incident.Birthday ignored -> BIRTHDAY;
+                case Incident.Memorial ignored -> MEMORIAL;
+                case Incident.Anniversary ignored ->
+                    throw new IllegalArgumentException(
+                        "Anniversaries cannot be snapshotted");
+            });
+        }
+
+        for (var incident : incidents) {
+            out.writeInt(incident.moment());
+        }
+
+        for (var incident : incidents) {
+            out.writeString(incident.label());
+            out.writeInt(incident.entityIds().size());
+            for (var id : incident.entityIds()) {
+                out.writeString(id);
+            }
+        }
+
+        out.save(HISTORY, historyFile.path(), stamps);
+    }
+
+    /**
+     * Reads the snapshot of the history file, if it exists and is fresh.
+     * The history's calendar file is loaded by DataFiles.loadCalendar().
+     * @param source The history file's path
+     * @return The history file and the stamps of the files it depends on,
+     * or null if there is no usable snapshot.
+     */
+    static HistorySnapshot readHistory(Path source) {
+        var in = SnapshotInput.open(HISTORY, source);
+
+        if (in == null) {
+            return null;
+        }
+
+        try {
+            var bank = new HistoryBank();
+            CalendarFile calendarFile = null;
+            String primaryCalendar = null;
+
+            if (in.readBoolean()) {
+                calendarFile = DataFiles.loadCalendar(Path.of(in.readString()));
+                primaryCalendar = in.readString();
+                var calendar = calendarFile.calendars().get(primaryCalendar);
+
+                if (calendar == null) {
+                    return null;
+                }
+
+                if (in.readBoolean()) {
+                    var dateFormat = new DateFormat(in.readString());
+                    bank.setMomentFormatter(m -> calendar.format(dateFormat, m));
+                } else {
+                    bank.setMomentFormatter(calendar::format);
+                }
+            }
+
+            var numTypes = in.readInt();
+            for (int i = 0; i < numTypes; i++) {
+                bank.addEntityType(new EntityType(
+                    in.readString(), in.readString(), in.readBoolean()));
+            }
+
+            var numEntities = in.readInt();
+            for (int i = 0; i < numEntities; i++) {
+                bank.addEntity(new Entity(in.readString(), in.readString(),
+                    in.readString(), in.readBoolean()));
+            }
+
+            var count = in.readInt();
+            var kinds = new byte[count];
+            var moments = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                kinds[i] = in.readByte();
+            }
+
+            for (int i = 0; i < count; i++) {
+                moments[i] = in.readInt();
+            }
+
+            var incidents = bank.getIncidents();
+
+            for (int i = 0; i < count; i++) {
+                var label = in.readString();
+                var ids = new TreeSet<String>();
+                var numIds = in.readInt();
+                for (int j = 0; j < numIds; j++) {
+                    ids.add(in.readString());
+                }
+
+                incidents.add(switch (kinds[i]) {
+                    case START -> new Incident.Start(moments[i], label, ids.first());
+                    case END -> new Incident.End(moments[i], label, ids.first());
+                    case NORMAL -> new Incident.Normal(moments[i], label, ids);
+                    case BIRTHDAY -> new Incident.Birthday(moments[i], label, ids);
+                    case MEMORIAL -> new Incident.Memorial(moments[i], label, ids);
+                    default -> throw new IOException(
+                        "Unknown incident kind: " + kinds[i]);
+                });
+            }
+
+            return new HistorySnapshot(
+                new HistoryFile(source, bank, calendarFile, primaryCalendar),
+                in.getStamps());
+        } catch (IOException | RuntimeException | DataFileException ex) {
+            return null;
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Helper Classes
+
+    // Accumulates the snapshot body, interning strings as it goes.
+    private static class SnapshotOutput {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream body = new DataOutputStream(bytes);
+        private final Map<String,Integer> strings = new LinkedHashMap<>();
+
+        void writeInt(int value) throws IOException {
+            body.writeInt(value);
+        }
+
+        void writeByte(byte value) throws IOException {
+            body.writeByte(value);
+        }
+
+        void writeBoolean(boolean flag) throws IOException {
+            body.writeBoolean(flag);
+        }
+
+        // Writes the string's index in the string table, or -1 for null.
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                body.writeInt(-1);
+            } else {
+                body.writeInt(
+                    strings.computeIfAbsent(value, k -> strings.size()));
+            }
+        }
+
+        void writeNames(String... names) throws IOException {
+            for (var name : names) {
+                writeString(name);
+            }
+        }
+
+        void writeEra(Era era) throws IOException {
+            writeString(era.shortForm());
+            writeString(era.fullForm());
+        }
+
+        // Writes the complete snapshot for the source file, replacing any
+        // existing snapshot atomically where the file system allows.
+        void save(byte kind, Path source, List<FileStamp> stamps)
+            throws IOException
+        {
+            var target = snapshotPath(source.toAbsolutePath());
+            var temp = Files.createTempFile(target.getParent(),
+                target.getFileName().toString(), ".tmp");
+
+            try {
+                try (var out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temp))))
+                {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeByte(kind);
+
+                    out.writeInt(stamps.size());
+                    for (var stamp : stamps) {
+                        writeUtf8(out, stamp.path().toString());
+                        var instant = stamp.modTime().toInstant();
+                        out.writeLong(instant.getEpochSecond());
+                        out.writeInt(instant.getNano());
+                        out.writeLong(stamp.size());
+                        writeUtf8(out, stamp.hash());
+                    }
+
+                    out.writeInt(strings.size());
+                    for (var string : strings.keySet()) {
+                        writeUtf8(out, string);
+                    }
+
+                    body.flush();
+                    bytes.writeTo(out);
+                }
+
+                try {
+                    Files.move(temp, target,
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(temp, target,
+                        StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private static void writeUtf8(DataOutputStream out, String value)
+            throws IOException
+        {
+            var utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+    }
+
+    /**
+     * A calendar file read from a snapshot, with the stamps of the files
+     * it was loaded from, as saved with the snapshot.
+     * @param calendarFile The calendar file
+     * @param stamps The stamps, current as of the read
+     */
+    record CalendarSnapshot(
+        CalendarFile calendarFile,
+        List<FileStamp> stamps
+    ) {}
+
+    /**
+     * A history file read from a snapshot, with the stamps of the files it
+     * depends on, as saved with the snapshot.
+     * @param historyFile The history file
+     * @param stamps The stamps, current as of the read
+     */
+    record HistorySnapshot(
+        HistoryFile historyFile,
+        List<FileStamp> stamps
+    ) {}
+
+    // Reads a snapshot body, resolving interned strings.
+    private static class SnapshotInput {
+        private final DataInputStream in;
+        private final String[] strings;
+        private final List<FileStamp> stamps;
+
+        private SnapshotInput(
+            DataInputStream in,
+            String[] strings,
+            List<FileStamp> stamps
+        ) {
+            this.in = in;
+            this.strings = strings;
+            this.stamps = stamps;
+        }
+
+        // Opens the snapshot for the source file, returning null if it
+        // doesn't exist, is of the wrong kind or version, or is stale.
+        static SnapshotInput open(byte kind, Path source) {
+            var path = snapshotPath(source.toAbsolutePath());
+
+            if (!Files.isRegularFile(path)) {
+                return null;
+            }
+
+            try {
+                var in = new DataInputStream(new ByteArrayInputStream(
+                    Files.readAllBytes(path)));
+
+                if (in.readInt() != MAGIC ||
+                    in.readInt() != VERSION ||
+                    in.readByte() != kind
+                ) {
+                    return null;
+                }
+
+                var numStamps = in.readInt();
+                var stamps = new ArrayList<FileStamp>();
+                for (int i = 0; i < numStamps; i++) {
+                    var stamp = new FileStamp(
+                        Path.of(readUtf8(in)),
+                        FileTime.from(Instant.ofEpochSecond(
+                            in.readLong(), in.readInt())),
+                        in.readLong(),
+                        readUtf8(in));
+
+                    var refreshed = stamp.refresh();
+                    if (refreshed == null) {
+                        return null;
+                    }
+                    stamps.add(refreshed);
+                }
+
+                var strings = new String[in.readInt()];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = readUtf8(in);
+                }
+
+                return new SnapshotInput(in, strings, List.copyOf(stamps));
+            } catch (IOException | RuntimeException ex) {
+                return null;
+            }
+        }
+
+        // Gets the stamps of the files the snapshot depends on.
+        List<FileStamp> getStamps() {
+            return stamps;
+        }
+
+        int readInt() throws IOException {
+            return in.readInt();
+        }
+
+        byte readByte() throws IOException {
+            return in.readByte();
+        }
+
+        boolean readBoolean() throws IOException {
+            return in.readBoolean();
+        }
+
+        String readString() throws IOException {
+            var index = in.readInt();
+            return index >= 0 ? strings[index] : null;
+        }
+
+        Era readEra() throws IOException {
+            return new Era(readString(), readString());
+        }
+
+        private static String readUtf8(DataInputStream in) throws IOException {
+            var utf8 = new byte[in.readInt()];
+            in.readFully(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package pen;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The state of a data file when it was read: its modification time, size,
+ * and content hash.  Used to decide whether cached or snapshotted data
+ * loaded from the file is still current.
+ * @param path The file's path
+ * @param modTime The file's modification time
+ * @param size The file's size in bytes
+ * @param hash The hex SHA-256 hash of the file's content
+ */
+record FileStamp(Path path, FileTime modTime, long size, String hash) {
+    /**
+     * Stamps the file given its content, which the caller has already read.
+     * @param path The path
+     * @param attrs The file's attributes, read before the content
+     * @param bytes The file's content
+     * @return The stamp
+     */
+    static FileStamp of(Path path, BasicFileAttributes attrs, byte[] bytes) {
+        return new FileStamp(path, attrs.lastModifiedTime(), attrs.size(),
+            contentHash(bytes));
+    }
+
+    /**
+     * Stamps the file, reading its content.
+     * @param path The path
+     * @return The stamp
+     * @throws IOException if the file cannot be read.
+     */
+    static FileStamp of(Path path) throws IOException {
+        var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        return of(path, attrs, Files.readAllBytes(path));
+    }
+
+    /**
+     * Whether the file's attributes still match the stamp.
+     * @param attrs The file's current attributes
+     * @return true or false
+     */
+    boolean matches(BasicFileAttributes attrs) {
+        return modTime.equals(attrs.lastModifiedTime()) && size == attrs.size();
+    }
+
+    /**
+     * Checks the file against the stamp.  If the file's attributes are
+     * unchanged, returns this stamp; if they have changed but the content
+     * has not, returns a new stamp with the current attributes.  Otherwise,
+     * including when the file no longer exists, returns null.
+     * @return The current stamp, or null if the file has changed.
+     */
+    FileStamp refresh() {
+        try {
+            var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+
+            if (matches(attrs)) {
+                return this;
+            }
+
+            // Touched, but perhaps not changed.
+            var current = of(path, attrs, Files.readAllBytes(path));
+            return current.hash.equals(hash) ? current : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    // Computes a hex SHA-256 hash of the file content.
+    static String contentHash(byte[] bytes) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(bytes));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is unavailable", ex);
+        }
+    }
+}
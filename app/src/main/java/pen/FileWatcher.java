@@ -0,0 +1,231 @@
+package pen;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches a set of files for changes, e.g., a data file and the files
+ * it depends on (see {@link DataFiles#getDependencies(DataFile)}), and
+ * calls a handler when any of them changes.
+ *
+ * <p>Change events are debounced: the files are checked only once they
+ * have been quiet for the given delay, so that an editor's burst of writes
+ * results in a single check.  A file is deemed changed only if its content
+ * hash has changed, so writes that leave the content as it was are
+ * ignored.</p>
+ *
+ * <p>The handler is called on the watcher's own thread, never on the
+ * JavaFX application thread; a GUI should do its reloading there and hand
+ * the result to the GUI with {@code Platform.runLater()}.</p>
+ */
+public class FileWatcher implements AutoCloseable {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The quiet period before checking for changes
+    private final Duration delay;
+
+    // The handler to call on change
+    private final Runnable onChange;
+
+    // The watch service, and the thread that waits on it
+    private final WatchService service;
+    private final Thread thread;
+
+    // The thread that checks for changes and calls the handler
+    private final ScheduledExecutorService checker;
+
+    // The watched files, by absolute path, with their stamps as of the last
+    // check.  The stamp is null if the file couldn't be read.
+    private final Map<Path, FileStamp> stamps = new HashMap<>();
+
+    // The registered directories
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+
+    // The pending check, if any.
+    private ScheduledFuture<?> pending = null;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a watcher that watches no files.
+     * @param delay The quiet period before checking for changes
+     * @param onChange The handler to call when a file changes
+     * @throws IOException if the file system cannot be watched
+     */
+    public FileWatcher(Duration delay, Runnable onChange) throws IOException {
+        this.delay = delay;
+        this.onChange = onChange;
+        this.service = FileSystems.getDefault().newWatchService();
+        this.checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            var checkerThread = new Thread(r, "pen-file-checker");
+            checkerThread.setDaemon(true);
+            return checkerThread;
+        });
+        this.thread = new Thread(this::run, "pen-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Replaces the set of watched files, taking their current content as
+     * unchanged.
+     * @param files The files
+     */
+    public synchronized void watch(Collection<Path> files) {
+        stamps.clear();
+        for (var file : files) {
+            var path = file.toAbsolutePath().normalize();
+            stamps.put(path, stamp(path));
+        }
+
+        // Watch each file's directory, and only those.
+        var dirs = new HashSet<Path>();
+        for (var path : stamps.keySet()) {
+            dirs.add(path.getParent());
+        }
+
+        keys.entrySet().removeIf(e -> {
+            if (!dirs.contains(e.getKey())) {
+                e.getValue().cancel();
+                return true;
+            }
+            return false;
+        });
+
+        for (var dir : dirs) {
+            if (!keys.containsKey(dir)) {
+                try {
+                    keys.put(dir, dir.register(service,
+                        ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE));
+                } catch (IOException ex) {
+                    // The directory can't be watched, e.g., it doesn't
+                    // exist; nothing to do.
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the watched files.
+     * @return The absolute paths of the files
+     */
+    public synchronized Set<Path> getFiles() {
+        return Set.copyOf(stamps.keySet());
+    }
+
+    /**
+     * Stops watching.
+     */
+    @Override
+    public void close() {
+        checker.shutdownNow();
+        try {
+            service.close();
+        } catch (IOException ex) {
+            // Nothing to do
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Watching
+
+    // Waits for events on the watched directories, scheduling a check
+    // when a watched file may have changed.
+    private void run() {
+        try {
+            while (true) {
+                var key = service.take();
+                var dir = (Path)key.watchable();
+                var relevant = false;
+
+                for (var event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW ||
+                        isWatched(dir.resolve((Path)event.context()))
+                    ) {
+                        relevant = true;
+                    }
+                }
+                key.reset();
+
+                if (relevant) {
+                    schedule();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Done watching
+        }
+    }
+
+    // Whether the file is being watched.
+    private synchronized boolean isWatched(Path path) {
+        return stamps.containsKey(path);
+    }
+
+    // Schedules a check after the delay, replacing any pending check
+    // that hasn't yet begun.
+    private synchronized void schedule() {
+        if (pending != null) {
+            pending.cancel(false);
+        }
+
+        try {
+            pending = checker.schedule(this::check,
+                delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException ex) {
+            // Closed; nothing to do.
+        }
+    }
+
+    // Calls the handler if any watched file has changed.
+    private void check() {
+        if (hasChanged()) {
+            onChange.run();
+        }
+    }
+
+    // Updates the stamps, returning true if any file's content has changed
+    // or it has appeared or disappeared.
+    private synchronized boolean hasChanged() {
+        var changed = false;
+
+        for (var entry : stamps.entrySet()) {
+            var old = entry.getValue();
+            var current = old != null ? old.refresh() : null;
+
+            if (current == null) {
+                current = stamp(entry.getKey());
+                if (!Objects.equals(
+                    old != null ? old.hash() : null,
+                    current != null ? current.hash() : null)
+                ) {
+                    changed = true;
+                }
+            }
+            entry.setValue(current);
+        }
+
+        return changed;
+    }
+
+    // Stamps the file, or returns null if it cannot be read.
+    private static FileStamp stamp(Path path) {
+        try {
+            return FileStamp.of(path);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+}
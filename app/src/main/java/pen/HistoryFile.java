@@ -17,8 +17,14 @@ public record HistoryFile(
     HistoryBank history,
     CalendarFile calendarFile,
     String primaryCalendar
-) {
+) implements DataFile {
+    /**
+     * Gets the primary calendar, or null if the history has no calendar.
+     * @return The calendar
+     */
     public Calendar getPrimaryCalendar() {
-        return calendarFile.calendars().get(primaryCalendar);
+        return calendarFile != null
+            ? calendarFile.calendars().get(primaryCalendar)
+            : null;
     }
 }
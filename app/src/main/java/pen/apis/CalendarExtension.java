@@ -5,6 +5,8 @@ import pen.calendars.Calendar;
 import pen.tcl.Argq;
 import pen.tcl.TclEngine;
 import pen.tcl.TclExtension;
+import pen.tcl.TclOptions;
+import tcl.lang.Command;
 import tcl.lang.TclException;
 import tcl.lang.TclObject;
 
@@ -20,6 +22,9 @@ public class CalendarExtension implements TclExtension {
     // The TclEngine in use.  Set by initialize().
     private TclEngine tcl;
 
+    // The built-in februaryDays command.  Set by initialize().
+    private Command februaryDaysCommand;
+
     // Data stores
     private final Map<String, Era> eras = new TreeMap<>();
     private final LinkedHashMap<String, Weekday> weekdays = new LinkedHashMap<>();
@@ -28,6 +33,56 @@ public class CalendarExtension implements TclExtension {
     private final LinkedHashMap<String, Calendar> calendars = new LinkedHashMap<>();
     private int today = 0;
 
+    // An object referenced by each month length function that calls a
+    // Tcl command, or null if there are none.  It is reachable as long as
+    // any calendar that depends on the engine, but not from the engine
+    // once the extension is reset.
+    private Object engineToken = null;
+
+    //-------------------------------------------------------------------------
+    // Option Specs
+
+    // calendar basic options
+    private final TclOptions<BasicOptions> basicOptions =
+        new TclOptions<BasicOptions>()
+            .option("-offset", TclEngine::toInteger,
+                (o, v) -> o.builder.epochOffset(v))
+            .option("-era", (t, arg) -> t.toMapEntry("era", eras, arg),
+                (o, v) -> o.builder.era(v))
+            .option("-prior", (t, arg) -> t.toMapEntry("era", eras, arg),
+                (o, v) -> o.builder.priorEra(v))
+            .option("-week", (t, arg) -> t.toMapEntry("week", weeks, arg),
+                (o, v) -> o.builder.week(v))
+            .option("-months", TclEngine::toArgq, (o, v) -> o.monq = v);
+
+    // era define options
+    private static final TclOptions<NameOptions> ERA_OPTIONS =
+        new TclOptions<NameOptions>()
+            .option("-short", TclOptions::string, (o, v) -> o.shortName = v)
+            .option("-full", TclOptions::string, (o, v) -> o.fullName = v);
+
+    // weekday define options
+    private static final TclOptions<NameOptions> WEEKDAY_OPTIONS =
+        new TclOptions<NameOptions>()
+            .option("-full", TclOptions::string, (o, v) -> o.fullName = v)
+            .option("-short", TclOptions::string, (o, v) -> o.shortName = v)
+            .option("-unambiguous", TclOptions::string,
+                (o, v) -> o.unambiguousName = v)
+            .option("-tiny", TclOptions::string, (o, v) -> o.tinyName = v);
+
+    // month define options
+    private final TclOptions<NameOptions> monthOptions =
+        new TclOptions<NameOptions>()
+            .include(WEEKDAY_OPTIONS)
+            .option("-days", (t, arg) -> toMonthLength(arg),
+                (o, v) -> o.lengthFunc = v);
+
+    // week define options
+    private static final TclOptions<WeekOptions> WEEK_OPTIONS =
+        new TclOptions<WeekOptions>()
+            .option("-offset", TclEngine::toInteger, (o, v) -> o.offset = v)
+            .option("-days", TclEngine::toArgq, (o, v) -> o.dayq = v);
+
     //-------------------------------------------------------------------------
     // Constructor
 
@@ -44,6 +99,7 @@ public class CalendarExtension implements TclExtension {
         // Individual Commands
         tcl.add("isLeapYear", this::cmd_isLeapYear);
         tcl.add("februaryDays", this::cmd_februaryDays);
+        februaryDaysCommand = tcl.interp().getCommand("februaryDays");
 
         // calendar *
         var cal = tcl.ensemble("calendar");
@@ -81,13 +137,14 @@ public class CalendarExtension implements TclExtension {
 
     }
 
-    @SuppressWarnings("unused")
     public void reset() {
         eras.clear();
         weekdays.clear();
         months.clear();
         weeks.clear();
         calendars.clear();
+        today = 0;
+        engineToken = null;
     }
 
     public Map<String,Era>                 getEras()       { return eras; }
@@ -97,6 +154,27 @@ public class CalendarExtension implements TclExtension {
     public LinkedHashMap<String,Calendar>  getCalendars()  { return calendars; }
     public int                             getToday()      { return today; }
 
+    /**
+     * Whether any month defined since the last reset computes its length
+     * by calling a Tcl command, so that calendars using it depend on this
+     * extension's TclEngine.
+     * @return true or false
+     */
+    public boolean isEngineDependent() {
+        return engineToken != null;
+    }
+
+    /**
+     * Gets an object that is reachable as long as any month length
+     * function that calls a Tcl command, and so any calendar that depends
+     * on this extension's TclEngine, is reachable.  Once the extension is
+     * reset, the object is not reachable from the engine.
+     * @return The object, or null if !isEngineDependent()
+     */
+    public Object getEngineToken() {
+        return engineToken;
+    }
+
     //-------------------------------------------------------------------------
     // Individual Commands
 
@@ -136,37 +214,10 @@ public class CalendarExtension implements TclExtension {
         tcl.checkMinArgs(argq, 1, "?option value...?");
         var symbol = argq.next().toString();
 
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
         // NEXT, get the details.
-        var basic = new BasicCalendar.Builder();
-        Argq monq = null;
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-
-            switch (opt) {
-                case "-offset":
-                    basic.epochOffset(tcl.toInteger(opt, argq));
-                    break;
-                case "-era":
-                    basic.era(tcl.toMapEntry("era", eras, opt, argq));
-                    break;
-                case "-prior":
-                    basic.priorEra(tcl.toMapEntry("era", eras, opt, argq));
-                    break;
-                case "-week":
-                    basic.week(tcl.toMapEntry("week", weeks, opt, argq));
-                    break;
-                case "-months":
-                    monq = tcl.toArgq(opt, argq);
-                    break;
-                default:
-                    throw tcl.unknownOption(opt);
-            }
-        }
+        var options = basicOptions.parse(tcl, new BasicOptions(), argq);
+        var basic = options.builder;
+        var monq = options.monq;
 
         // TODO: Check required fields
 
@@ -203,30 +254,13 @@ public class CalendarExtension implements TclExtension {
         tcl.checkMinArgs(argq, 1, "?option value...?");
         var symbol = argq.next().toString();
 
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
         // NEXT, get the names
-        var shortName = symbol.toUpperCase();
-        var fullName = shortName;
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-
-            switch (opt) {
-                case "-short":
-                    shortName = tcl.toString(opt, argq);
-                    break;
-                case "-full":
-                    fullName = tcl.toString(opt, argq);
-                    break;
-                default:
-                    throw tcl.unknownOption(opt);
-            }
-        }
+        var names = new NameOptions();
+        names.shortName = symbol.toUpperCase();
+        names.fullName = names.shortName;
+        ERA_OPTIONS.parse(tcl, names, argq);
 
-        var era = new Era(shortName, fullName);
+        var era = new Era(names.shortName, names.fullName);
         eras.put(symbol, era);
 
         tcl.setResult(symbol);
@@ -252,40 +286,13 @@ public class CalendarExtension implements TclExtension {
         tcl.checkMinArgs(argq, 1, "?option value...?");
         var symbol = argq.next().toString();
 
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
         // NEXT, get the names
-        var fullName = "";
-        var shortName = "";
-        var unambiguousName = "";
-        var tinyName = "";
-        YearDelta lengthFunc = null;
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-
-            switch (opt) {
-                case "-full":
-                    fullName = tcl.toString(opt, argq);
-                    break;
-                case "-short":
-                    shortName = tcl.toString(opt, argq);
-                    break;
-                case "-unambiguous":
-                    unambiguousName = tcl.toString(opt, argq);
-                    break;
-                case "-tiny":
-                    tinyName = tcl.toString(opt, argq);
-                    break;
-                case "-days":
-                    lengthFunc = toMonthLength(opt, argq);
-                    break;
-                default:
-                    throw tcl.unknownOption(opt);
-            }
-        }
+        var names = monthOptions.parse(tcl, new NameOptions(), argq);
+        var fullName = names.fullName;
+        var shortName = names.shortName;
+        var unambiguousName = names.unambiguousName;
+        var tinyName = names.tinyName;
+        var lengthFunc = names.lengthFunc;
 
         if (fullName.isEmpty()) { fullName = capitalize(symbol); }
         if (shortName.isEmpty()) { shortName = first(fullName, 3); }
@@ -322,36 +329,12 @@ public class CalendarExtension implements TclExtension {
         tcl.checkMinArgs(argq, 1, "?option value...?");
         var symbol = argq.next().toString();
 
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
         // NEXT, get the names
-        var fullName = "";
-        var shortName = "";
-        var unambiguousName = "";
-        var tinyName = "";
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-
-            switch (opt) {
-                case "-full":
-                    fullName = tcl.toString(opt, argq);
-                    break;
-                case "-short":
-                    shortName = tcl.toString(opt, argq);
-                    break;
-                case "-unambiguous":
-                    unambiguousName = tcl.toString(opt, argq);
-                    break;
-                case "-tiny":
-                    tinyName = tcl.toString(opt, argq);
-                    break;
-                default:
-                    throw tcl.unknownOption(opt);
-            }
-        }
+        var names = WEEKDAY_OPTIONS.parse(tcl, new NameOptions(), argq);
+        var fullName = names.fullName;
+        var shortName = names.shortName;
+        var unambiguousName = names.unambiguousName;
+        var tinyName = names.tinyName;
 
         if (fullName.isEmpty()) { fullName = capitalize(symbol); }
         if (shortName.isEmpty()) { shortName = first(fullName, 3); }
@@ -384,28 +367,10 @@ public class CalendarExtension implements TclExtension {
         tcl.checkMinArgs(argq, 1, "?option value...?");
         var symbol = argq.next().toString();
 
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
         // NEXT, get the names
-        var offset = 0;
-        Argq dayq = null;
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-
-            switch (opt) {
-                case "-offset":
-                    offset = tcl.toInteger(opt, argq);
-                    break;
-                case "-days":
-                    dayq = tcl.toArgq(opt, argq);
-                    break;
-                default:
-                    throw tcl.unknownOption(opt);
-            }
-        }
+        var options = WEEK_OPTIONS.parse(tcl, new WeekOptions(), argq);
+        var offset = options.offset;
+        var dayq = options.dayq;
 
         if (dayq == null || !dayq.hasNext()) {
             throw tcl.error("expected -days, but no days defined.");
@@ -463,28 +428,38 @@ public class CalendarExtension implements TclExtension {
             if (days < 1) {
                 throw tcl.expected("Month length", arg);
             }
-            return year -> days;
+            return new YearDelta.Constant(days);
         } catch (IllegalArgumentException ex)  {
             // Nothing to do
         }
-        var prefix = arg.toString();
-
-        return year -> tclIntegerFunc(prefix, year);
-    }
+        var prefix = arg.toString().trim();
+
+        // Use the Java function directly for the built-in februaryDays
+        // command, unless the script has redefined it.  The resulting
+        // calendar doesn't depend on the TclEngine at all.
+        if (prefix.equals("februaryDays") &&
+            tcl.interp().getCommand(prefix) == februaryDaysCommand
+        ) {
+            return Gregorian.FEBRUARY_DAYS;
+        }
 
-    private YearDelta toMonthLength(String opt, Argq argq)
-        throws TclException
-    {
-        return toMonthLength(tcl.toOptArg(opt, argq));
+        if (engineToken == null) {
+            engineToken = new Object();
+        }
+        return new TclMonthLength(this, prefix, engineToken);
     }
 
+    // Calls the Tcl command prefix with the input.  The calendar may be
+    // shared between threads, but the TclEngine may not.
     private int tclIntegerFunc(String prefix, int input) {
-        try {
-            var command = prefix + " " + input;
-            return tcl.toInteger(tcl.eval(command));
-        } catch (TclException ex) {
-            throw new CalendarException("Invalid Tcl command prefix: \"" +
-                prefix + "\"", ex);
+        synchronized (tcl) {
+            try {
+                var command = prefix + " " + input;
+                return tcl.toInteger(tcl.eval(command));
+            } catch (TclException ex) {
+                throw new CalendarException("Invalid Tcl command prefix: \"" +
+                    prefix + "\"", ex);
+            }
         }
     }
 
@@ -511,4 +486,39 @@ public class CalendarExtension implements TclExtension {
      * @param length The month's length-in-days function
      */
     public record MonthInfo(Month month, YearDelta length) { }
+
+    // The options of "calendar basic"
+    private static class BasicOptions {
+        final BasicCalendar.Builder builder = new BasicCalendar.Builder();
+        Argq monq = null;
+    }
+
+    // The names of an era, weekday, or month, and a month's length
+    private static class NameOptions {
+        String fullName = "";
+        String shortName = "";
+        String unambiguousName = "";
+        String tinyName = "";
+        YearDelta lengthFunc = null;
+    }
+
+    // The options of "week define"
+    private static class WeekOptions {
+        int offset = 0;
+        Argq dayq = null;
+    }
+
+    // A month length computed by a Tcl command prefix.  It holds the
+    // extension's engine token, so that the token is reachable as long as
+    // the function is.
+    private record TclMonthLength(
+        CalendarExtension extension,
+        String prefix,
+        Object engineToken
+    ) implements YearDelta {
+        @Override
+        public Integer apply(Integer year) {
+            return extension.tclIntegerFunc(prefix, year);
+        }
+    }
 }
@@ -11,9 +11,14 @@ import pen.tcl.Argq;
 import pen.tcl.TclEngine;
 import pen.tcl.TclExtension;
 import tcl.lang.TclException;
+import tcl.lang.TclList;
 import tcl.lang.TclObject;
+import tcl.lang.TclString;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 /**
@@ -33,7 +38,7 @@ public class HistoryExtension implements TclExtension {
     //
 
     // The history
-    private final HistoryBank bank = new HistoryBank();
+    private HistoryBank bank;
 
     // The calendar file in use for dates, if any.
     private CalendarFile calendarFile;
@@ -44,6 +49,9 @@ public class HistoryExtension implements TclExtension {
     // The calendar actively used for parsing moments.
     private Calendar calendar;
 
+    // The date format string used for output, if any.
+    private String outputFormat;
+
     //
     // Transient Data
     //
@@ -51,6 +59,10 @@ public class HistoryExtension implements TclExtension {
     // A map of known time limits for each entity.
     private final Map<String,Limits> entityLimits = new TreeMap<>();
 
+    // Moments parsed from date strings using the current calendar.
+    // Histories use the same dates many times over.
+    private final Map<String,Integer> momentCache = new HashMap<>();
+
     //-------------------------------------------------------------------------
     // Constructor
 
@@ -72,11 +84,22 @@ public class HistoryExtension implements TclExtension {
         tcl.add("birthday", this::cmd_birthday);
         tcl.add("memorial", this::cmd_memorial);
         tcl.add("incident", this::cmd_incident);
+        tcl.add("incidents", this::cmd_incidents);
+        tcl.add("incident-table", this::cmd_incidentTable);
     }
 
-    @SuppressWarnings("unused")
+    /**
+     * Resets the extension to define a new history.  The previous history
+     * is not modified.
+     */
     public void reset() {
-        bank.clear();
+        bank = new HistoryBank();
+        calendarFile = null;
+        primaryCalendar = null;
+        calendar = null;
+        outputFormat = null;
+        entityLimits.clear();
+        momentCache.clear();
     }
 
     //-------------------------------------------------------------------------
@@ -107,6 +130,15 @@ public class HistoryExtension implements TclExtension {
         return Optional.ofNullable(primaryCalendar);
     }
 
+    /**
+     * Gets the date format string used to format moments for output, if
+     * one was given.
+     * @return The format string
+     */
+    public Optional<String> getOutputFormat() {
+        return Optional.ofNullable(outputFormat);
+    }
+
     //-------------------------------------------------------------------------
     // History commands
 
@@ -135,10 +167,13 @@ public class HistoryExtension implements TclExtension {
         }
 
         calendar = calendarFile.calendars().get(primaryCalendar);
+        momentCache.clear();
         bank.setMomentFormatter(m -> calendar.format(m));
 
         if (argq.hasNext()) {
-            var dateFormat = toDateFormat(argq.next());
+            var formatArg = argq.next();
+            var dateFormat = toDateFormat(formatArg);
+            outputFormat = formatArg.toString();
             bank.setMomentFormatter(m -> calendar.format(dateFormat, m));
         }
     }
@@ -340,39 +375,203 @@ public class HistoryExtension implements TclExtension {
         }
 
         while (argq.hasNext()) {
-            var limits = toLimits(argq.next());
-            var id = limits.entity.id();
-            if (debug) {
-                System.out.println("Before event at " + moment + ": " + limits);
+            set.add(checkLimits(moment, momentArg, toLimits(argq.next())));
+        }
+
+        var incident = new Incident.Normal(moment, label, set);
+        bank.getIncidents().add(incident);
+    }
+
+    // incidents records
+    //
+    // Adds many normal incidents at once.  Each record is a list
+    // {moment label ?entityId...?}, as for "incident".  The records are
+    // added to the history only if all are valid.
+    private void cmd_incidents(TclEngine tcl, Argq argq)
+        throws TclException
+    {
+        tcl.checkArgs(argq, 1, 1, "records");
+
+        var interp = tcl.interp();
+        var records = argq.next();
+        var count = TclList.getLength(interp, records);
+        var batch = new ArrayList<Incident>(count);
+        var pending = new IdentityHashMap<Limits, Limits>();
+
+        for (int i = 0; i < count; i++) {
+            var record = TclList.index(interp, records, i);
+            var length = TclList.getLength(interp, record);
+
+            if (length < 2) {
+                throw tcl.expected("incident record", record);
             }
 
-            if (moment < limits.earliest) {
-                if (limits.gotStart) {
-                    throw tcl.expected(
-                        "Moment no earlier than \"" + id + "\"'s starting event", momentArg);
-                } else {
-                    limits.earliest = moment;
-                }
+            var momentArg = TclList.index(interp, record, 0);
+            var moment = toMoment(momentArg);
+            var label = TclList.index(interp, record, 1).toString().trim();
+            var set = new TreeSet<String>();
+
+            // Expand the last element if it's a list.
+            var ids = record;
+            var first = 2;
+            if (length == 3) {
+                ids = TclList.index(interp, record, 2);
+                length = TclList.getLength(interp, ids);
+                first = 0;
             }
 
-            if (moment > limits.latest) {
-                if (limits.gotEnd) {
-                    throw tcl.expected(
-                        "Moment no later than \"" + id + "\"'s ending event", momentArg);
+            for (int j = first; j < length; j++) {
+                var limits = toLimits(TclList.index(interp, ids, j));
+                set.add(checkLimits(moment, momentArg,
+                    pendingLimits(pending, limits)));
+            }
+
+            batch.add(new Incident.Normal(moment, label, set));
+        }
+
+        commitLimits(pending);
+        bank.getIncidents().addAll(batch);
+    }
+
+    // incident-table file
+    //
+    // Adds normal incidents read from a data file, one per row: the
+    // moment, the label, and zero or more fields of whitespace-separated
+    // entity IDs.  A file whose name ends in ".csv" has comma-separated
+    // fields, which may be double-quoted; any other file has tab-separated
+    // fields.  Blank lines and lines beginning with "#" are skipped.  The
+    // rows are added to the history only if all are valid.
+    private void cmd_incidentTable(TclEngine tcl, Argq argq)
+        throws TclException
+    {
+        tcl.checkArgs(argq, 1, 1, "file");
+
+        var fileArg = argq.next().toString();
+        var path = tcl.getWorkingDirectory()
+            .resolve(new File(fileArg).toPath());
+        List<String> lines;
+
+        tcl.addSourcedFile(path);
+        try {
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw tcl.error("Could not read incident table " + fileArg +
+                ", " + ex.getMessage(), ex);
+        }
+
+        var csv = fileArg.toLowerCase().endsWith(".csv");
+        var batch = new ArrayList<Incident>(lines.size());
+        var pending = new IdentityHashMap<Limits, Limits>();
+        var fields = new ArrayList<String>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            var line = lines.get(i);
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+
+            try {
+                fields.clear();
+                if (csv) {
+                    splitCsv(line, fields);
                 } else {
-                    limits.latest = moment;
+                    fields.addAll(Arrays.asList(line.split("\t", -1)));
+                }
+
+                if (fields.size() < 2) {
+                    throw tcl.expected("moment and label", line);
+                }
+
+                var momentArg = fields.get(0).trim();
+                var moment = toMoment(momentArg);
+                var label = fields.get(1).trim();
+                var set = new TreeSet<String>();
+
+                for (int j = 2; j < fields.size(); j++) {
+                    var field = fields.get(j);
+                    var end = 0;
+
+                    // Add each whitespace-separated ID.
+                    while (end < field.length()) {
+                        var start = end;
+                        while (start < field.length() &&
+                            Character.isWhitespace(field.charAt(start))
+                        ) {
+                            start++;
+                        }
+                        end = start;
+                        while (end < field.length() &&
+                            !Character.isWhitespace(field.charAt(end))
+                        ) {
+                            end++;
+                        }
+                        if (start < end) {
+                            var limits = toLimits(field.substring(start, end));
+                            set.add(checkLimits(moment, momentArg,
+                                pendingLimits(pending, limits)));
+                        }
+                    }
                 }
+
+                batch.add(new Incident.Normal(moment, label, set));
+            } catch (TclException ex) {
+                throw tcl.error(fileArg + ", line " + (i + 1) + ": " +
+                    tcl.interp().getResult(), ex);
             }
+        }
+
+        commitLimits(pending);
+        bank.getIncidents().addAll(batch);
+    }
+
+    // Gets a pending copy of the entity's limits, for checking a batch of
+    // incidents.  The entity's limits are widened only when the whole
+    // batch is valid, by commitLimits().
+    private Limits pendingLimits(Map<Limits, Limits> pending, Limits limits) {
+        return pending.computeIfAbsent(limits, Limits::new);
+    }
+
+    // Widens the entities' limits to include a valid batch of incidents.
+    private void commitLimits(Map<Limits, Limits> pending) {
+        for (var entry : pending.entrySet()) {
+            entry.getKey().earliest = entry.getValue().earliest;
+            entry.getKey().latest = entry.getValue().latest;
+        }
+    }
+
+    // Checks a normal incident's moment against an entity's limits,
+    // widening the limits to include it.  Returns the entity's ID.
+    private String checkLimits(int moment, Object momentArg, Limits limits)
+        throws TclException
+    {
+        var id = limits.entity.id();
+        if (debug) {
+            System.out.println("Before event at " + moment + ": " + limits);
+        }
 
-            if (debug) {
-                System.out.println("After event at " + moment + ": " + limits);
+        if (moment < limits.earliest) {
+            if (limits.gotStart) {
+                throw tcl.expected(
+                    "Moment no earlier than \"" + id + "\"'s starting event", momentArg);
+            } else {
+                limits.earliest = moment;
             }
+        }
 
-            set.add(limits.entity.id());
+        if (moment > limits.latest) {
+            if (limits.gotEnd) {
+                throw tcl.expected(
+                    "Moment no later than \"" + id + "\"'s ending event", momentArg);
+            } else {
+                limits.latest = moment;
+            }
         }
 
-        var incident = new Incident.Normal(moment, label, set);
-        bank.getIncidents().add(incident);
+        if (debug) {
+            System.out.println("After event at " + moment + ": " + limits);
+        }
+
+        return id;
     }
 
     // birthday moment label ?entity...?
@@ -450,9 +649,13 @@ public class HistoryExtension implements TclExtension {
 
     // Converts an entity ID into a Limits object.
     private Limits toLimits(TclObject arg) throws TclException {
-        var limits = entityLimits.get(arg.toString());
+        return toLimits(arg.toString());
+    }
+
+    private Limits toLimits(String id) throws TclException {
+        var limits = entityLimits.get(id);
         if (limits == null) {
-            throw tcl.expected("known entity ID", arg);
+            throw tcl.expected("known entity ID", id);
         }
         return limits;
     }
@@ -465,11 +668,58 @@ public class HistoryExtension implements TclExtension {
             return tcl.toInteger(arg);
         }
 
-        try {
-            return calendar.parse(arg.toString());
-        } catch (CalendarException ex) {
-            throw tcl.expected("calendar date", arg);
+        return toMoment(arg.toString());
+    }
+
+    // Converts a date string to a moment integer, as above.  Dates parsed
+    // with the calendar are cached.
+    private int toMoment(String text) throws TclException {
+        if (calendar == null) {
+            return tcl.toInteger(TclString.newInstance(text));
+        }
+
+        var moment = momentCache.get(text);
+        if (moment == null) {
+            try {
+                moment = calendar.parse(text);
+            } catch (CalendarException ex) {
+                throw tcl.expected("calendar date", text);
+            }
+            momentCache.put(text, moment);
         }
+        return moment;
+    }
+
+    // Splits a line of comma-separated values into fields.  A field may
+    // be double-quoted, in which case it may contain commas, and a
+    // doubled quote stands for a single quote.
+    private static void splitCsv(String line, List<String> fields) {
+        var field = new StringBuilder();
+        var quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            var ch = line.charAt(i);
+
+            if (quoted) {
+                if (ch != '"') {
+                    field.append(ch);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+
+        fields.add(field.toString());
     }
 
     //-------------------------------------------------------------------------
@@ -487,6 +737,15 @@ public class HistoryExtension implements TclExtension {
             this.entity = entity;
         }
 
+        // Creates a copy of the other limits.
+        Limits(Limits other) {
+            this.entity = other.entity;
+            this.earliest = other.earliest;
+            this.latest = other.latest;
+            this.gotStart = other.gotStart;
+            this.gotEnd = other.gotEnd;
+        }
+
         public String toString() {
             return "Limits(id=" + entity.id() +
                 ",[" + (gotStart ? "*" : "") + earliest + ","
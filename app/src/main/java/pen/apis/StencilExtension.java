@@ -7,6 +7,7 @@ import pen.stencil.*;
 import pen.tcl.Argq;
 import pen.tcl.TclEngine;
 import pen.tcl.TclExtension;
+import pen.tcl.TclOptions;
 import tcl.lang.TclException;
 import tcl.lang.TclObject;
 
@@ -15,11 +16,11 @@ import static pen.stencil.Stencil.*;
 /**
  * A TclEngine extension for drawing using a {@link Stencil}.
  *
- * <p><b>NOTE:</b> at present there's no way to reset the stencil,
- * style map, or font map; DrawTool just creates a new TclEngine for
- * each drawing (which is nice and simple).  But if we use this
- * extension for doing anything other than single drawings, we're
- * going to want a "stencil reset" command.</p>
+ * <p>The extension's style and font maps are reset by {@link #reset()};
+ * the stencil itself is the client's to clear.  An engine with this
+ * extension installed can be reused for many drawings by resetting it
+ * and, if need be, pointing it at another stencil with
+ * {@link #setStencil(Stencil)}.</p>
  */
 public class StencilExtension implements TclExtension {
     /**
@@ -34,7 +35,7 @@ public class StencilExtension implements TclExtension {
     private TclEngine tcl;
 
     // The Stencil used to produce drawings.
-    private final Stencil stencil;
+    private Stencil stencil;
 
     // The styleMap
     private StyleMap styleMap;
@@ -42,6 +43,88 @@ public class StencilExtension implements TclExtension {
     // The fontMap
     private PenFontMap fontMap;
 
+    //-------------------------------------------------------------------------
+    // Option Specs
+
+    // stencil configure options
+    private static final TclOptions<Stencil> STENCIL_OPTIONS =
+        new TclOptions<Stencil>()
+            .option("-background", TclEngine::toColor, Stencil::background)
+            .option("-margin",     TclEngine::toDouble, Stencil::margin)
+            .option("-minheight",  TclEngine::toDouble, Stencil::minHeight)
+            .option("-minwidth",   TclEngine::toDouble, Stencil::minWidth);
+
+    // stencil save options
+    private static final TclOptions<Stencil> SAVE_OPTIONS =
+        new TclOptions<Stencil>()
+            // TODO: Add Stencil::translate(Point2D)
+            .option("-translate", TclEngine::toPoint,
+                (s, p) -> s.translate(p.getX(), p.getY()))
+            .option("-rotate",    TclEngine::toDouble, Stencil::rotate)
+            .option("-scale",     TclEngine::toPoint,
+                (s, p) -> s.scale(p.getX(), p.getY()));
+
+    // Options shared by styles and all shapes
+    private static final TclOptions<StyleBase<?>> STYLE_OPTIONS =
+        new TclOptions<StyleBase<?>>()
+            .option("-background", TclEngine::toColor, StyleBase::background)
+            .option("-font",       (t, arg) ->
+                t.getExtension(StencilExtension.class).toFont(arg),
+                StyleBase::font)
+            .option("-foreground", TclEngine::toColor, StyleBase::foreground)
+            .option("-linewidth",  TclEngine::toDouble, StyleBase::lineWidth)
+            .option("-textcolor",  TclEngine::toColor, StyleBase::textColor);
+
+    // Options shared by bounded shapes
+    private static final TclOptions<BoundedShape<?>> BOUNDED_OPTIONS =
+        new TclOptions<BoundedShape<?>>()
+            .option("-at",   TclEngine::toPoint, BoundedShape::at)
+            .option("-size", TclEngine::toDim, BoundedShape::size)
+            .option("-tack", (t, arg) -> t.toEnum(Tack.class, arg),
+                BoundedShape::tack);
+
+    // stencil text options
+    private static final TclOptions<TextShape> TEXT_OPTIONS =
+        new TclOptions<TextShape>()
+            .include(STYLE_OPTIONS)
+            .option("-at",   TclEngine::toPoint, TextShape::at)
+            .option("-tack", (t, arg) -> t.toEnum(Tack.class, arg),
+                TextShape::tack);
+
+    // stencil line options
+    private static final TclOptions<LineShape> LINE_OPTIONS =
+        new TclOptions<LineShape>()
+            .include(STYLE_OPTIONS)
+            .option("-from",   TclEngine::toPoint, LineShape::to)
+            .option("-to",     TclEngine::toPoint, LineShape::to)
+            .option("-tox",    TclEngine::toDouble, LineShape::toX)
+            .option("-toy",    TclEngine::toDouble, LineShape::toY)
+            .option("-start",  (t, arg) -> t.toEnum(Symbol.class, arg),
+                LineShape::start)
+            .option("-end",    (t, arg) -> t.toEnum(Symbol.class, arg),
+                LineShape::end)
+            .option("-points", TclEngine::toPointList, LineShape::points);
+
+    // stencil oval options
+    private static final TclOptions<OvalShape> OVAL_OPTIONS =
+        new TclOptions<OvalShape>()
+            .include(STYLE_OPTIONS)
+            .include(BOUNDED_OPTIONS)
+            .option("-diameter", TclEngine::toDouble, OvalShape::diameter)
+            .option("-radius",   TclEngine::toDouble, OvalShape::radius);
+
+    // stencil rectangle options
+    private static final TclOptions<RectangleShape> RECTANGLE_OPTIONS =
+        new TclOptions<RectangleShape>()
+            .include(STYLE_OPTIONS)
+            .include(BOUNDED_OPTIONS);
+
+    // stencil symbol options
+    private static final TclOptions<SymbolShape> SYMBOL_OPTIONS =
+        new TclOptions<SymbolShape>()
+            .include(STYLE_OPTIONS)
+            .option("-at", TclEngine::toPoint, SymbolShape::at);
+
     //-------------------------------------------------------------------------
     // Constructor
 
@@ -93,10 +176,18 @@ public class StencilExtension implements TclExtension {
         symbol.add("names", this::cmd_symbolNames);
     }
 
+    /**
+     * Sets the stencil used to produce drawings.
+     * @param stencil The stencil
+     */
+    public void setStencil(Stencil stencil) {
+        this.stencil = stencil;
+    }
+
     @SuppressWarnings("unused")
     public void reset() {
         styleMap = new StyleMap();
-        styleMap.make(NORMAL);
+        styleMap.put(NORMAL, Style.DEFAULT);
         fontMap = new PenFontMap();
     }
 
@@ -161,22 +252,7 @@ public class StencilExtension implements TclExtension {
     private void cmd_stencilConfigure(TclEngine tcl, Argq argq)
         throws TclException {
         tcl.checkMinArgs(argq, 1, "?option value?...");
-
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-
-            switch (opt) {
-                case "-background" -> stencil.background(tcl.toColor(opt,argq));
-                case "-margin"     -> stencil.margin(tcl.toDouble(opt, argq));
-                case "-minheight"  -> stencil.minHeight(tcl.toDouble(opt, argq));
-                case "-minwidth"   -> stencil.minWidth(tcl.toDouble(opt, argq));
-                default            -> throw tcl.unknownOption(opt);
-            }
-        }
+        STENCIL_OPTIONS.parse(tcl, stencil, argq);
     }
 
     // stencil label text ?option value?...
@@ -191,22 +267,7 @@ public class StencilExtension implements TclExtension {
         var obj = text().style(styleMap.get(NORMAL));
         obj.text(argq.next().toString());
 
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-            if (parseStyleOption(obj, opt, argq)) continue;
-
-            switch (opt) {
-                case "-at" -> obj.at(tcl.toPoint(opt, argq));
-                case "-tack" -> obj.tack(tcl.toEnum(Tack.class, opt, argq));
-                default -> throw tcl.unknownOption(opt);
-            }
-        }
-
-        stencil.draw(obj);
+        stencil.draw(TEXT_OPTIONS.parse(tcl, obj, argq));
     }
 
     // stencil line ?option value?...
@@ -217,28 +278,7 @@ public class StencilExtension implements TclExtension {
         throws TclException
     {
         var obj = line().style(styleMap.get(NORMAL));
-
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-            if (parseStyleOption(obj, opt, argq)) continue;
-
-            switch (opt) {
-                case "-from", "-to"
-                               -> obj.to(tcl.toPoint(opt, argq));
-                case "-tox"    -> obj.toX(tcl.toDouble(opt, argq));
-                case "-toy"    -> obj.toY(tcl.toDouble(opt, argq));
-                case "-start"  -> obj.start(tcl.toEnum(Symbol.class, opt, argq));
-                case "-end"    -> obj.end(tcl.toEnum(Symbol.class, opt, argq));
-                case "-points" -> obj.points(tcl.toPointList(opt, argq));
-                default -> throw tcl.unknownOption(opt);
-            }
-        }
-
-        stencil.draw(obj);
+        stencil.draw(LINE_OPTIONS.parse(tcl, obj, argq));
     }
 
     // stencil oval ?option value?...
@@ -249,25 +289,7 @@ public class StencilExtension implements TclExtension {
         throws TclException
     {
         var obj = oval().style(styleMap.get(NORMAL));
-
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-
-            if (parseStyleOption(obj, opt, argq)) continue;
-            if (parseBoundedShapeOption(obj, opt, argq)) continue;
-
-            switch (opt) {
-                case "-diameter" -> obj.diameter(tcl.toDouble(opt, argq));
-                case "-radius" -> obj.radius(tcl.toDouble(opt, argq));
-                default -> throw tcl.unknownOption(opt);
-            }
-        }
-
-        stencil.draw(obj);
+        stencil.draw(OVAL_OPTIONS.parse(tcl, obj, argq));
     }
 
     // stencil rectangle ?option value?...
@@ -278,21 +300,7 @@ public class StencilExtension implements TclExtension {
         throws TclException
     {
         var obj = rectangle().style(styleMap.get(NORMAL));
-
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-
-            if (parseStyleOption(obj, opt, argq)) continue;
-            if (parseBoundedShapeOption(obj, opt, argq)) continue;
-
-            throw tcl.unknownOption(opt);
-        }
-
-        stencil.draw(obj);
+        stencil.draw(RECTANGLE_OPTIONS.parse(tcl, obj, argq));
     }
 
     // stencil restore
@@ -316,33 +324,8 @@ public class StencilExtension implements TclExtension {
         // FIRST, save the settings
         stencil.savePen();
 
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
         try {
-            while (argq.hasNext()) {
-                var opt = argq.next().toString();
-
-                switch (opt) {
-                    case "-translate": {
-                        var point = tcl.toPoint(opt, argq);
-                        // TODO: Add Stencil::translate(Point2D)
-                        stencil.translate(point.getX(), point.getY());
-                        break;
-                    }
-                    case "-rotate":
-                        stencil.rotate(tcl.toDouble(opt, argq));
-                        break;
-                    case "-scale": {
-                        var point = tcl.toPoint(opt, argq);
-                        stencil.scale(point.getX(), point.getY());
-                        break;
-                    }
-                    default:
-                        throw tcl.unknownOption(opt);
-                }
-            }
+            SAVE_OPTIONS.parse(tcl, stencil, argq);
         } catch (TclException ex) {
             // On error, pop the saved settings.
             stencil.restorePen();
@@ -361,22 +344,7 @@ public class StencilExtension implements TclExtension {
         var obj = symbol().style(styleMap.get(NORMAL));
         obj.symbol(tcl.toEnum(Symbol.class, argq.next()));
 
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-            if (parseStyleOption(obj, opt, argq)) continue;
-
-            if (opt.equals("-at")) {
-                obj.at(tcl.toPoint(opt, argq));
-            } else {
-                throw tcl.unknownOption(opt);
-            }
-        }
-
-        stencil.draw(obj);
+        stencil.draw(SYMBOL_OPTIONS.parse(tcl, obj, argq));
     }
 
     // stencil style create name ?option value?...
@@ -389,18 +357,9 @@ public class StencilExtension implements TclExtension {
     {
         tcl.checkMinArgs(argq, 1, "name ?option value...?");
         var name = argq.next().toString();
-        var style = styleMap.make(name).style(styleMap.get(NORMAL));
-
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-            if (!parseStyleOption(style, opt, argq)) {
-                throw tcl.unknownOption(opt);
-            }
-        }
+        var style = new Style.Builder(styleMap.get(NORMAL));
+        STYLE_OPTIONS.parse(tcl, style, argq);
+        styleMap.put(name, style.build());
     }
 
     // stencil style configure name ?option value?...
@@ -415,33 +374,9 @@ public class StencilExtension implements TclExtension {
         if (!styleMap.hasStyle(name)) {
             throw tcl.expected("style", name);
         }
-        var style = styleMap.get(name);
-
-        // If we were provided the options and values as a list, convert it to
-        // an Argq.  Note: we lose the command prefix.
-        argq = argq.argsLeft() != 1 ? argq : tcl.toArgq(argq.next());
-
-        while (argq.hasNext()) {
-            var opt = argq.next().toString();
-            if (!parseStyleOption(style, opt, argq)) {
-                throw tcl.unknownOption(opt);
-            }
-        }
-    }
-
-    private boolean parseStyleOption(StyleBase<?> style, String opt, Argq argq)
-        throws TclException
-    {
-        switch (opt) {
-            case "-background" -> style.background(tcl.toColor(opt, argq));
-            case "-font"       -> style.font(toFont(opt, argq));
-            case "-foreground" -> style.foreground(tcl.toColor(opt, argq));
-            case "-linewidth"  -> style.lineWidth(tcl.toDouble(opt, argq));
-            case "-textcolor"  -> style.textColor(tcl.toColor(opt, argq));
-            default -> { return false; }
-        }
-
-        return true;
+        var style = new Style.Builder(styleMap.get(name));
+        STYLE_OPTIONS.parse(tcl, style, argq);
+        styleMap.put(name, style.build());
     }
 
     // stencil style cget name ?option?
@@ -497,19 +432,6 @@ public class StencilExtension implements TclExtension {
         tcl.setResult(styleMap.getNames());
     }
 
-    private boolean parseBoundedShapeOption(BoundedShape<?> shape, String opt, Argq argq)
-        throws TclException
-    {
-        switch (opt) {
-            case "-at"   -> shape.at(tcl.toPoint(opt, argq));
-            case "-size" -> shape.size(tcl.toDim(opt, argq));
-            case "-tack" -> shape.tack(tcl.toEnum(Tack.class, opt, argq));
-            default -> { return false; }
-        }
-
-        return true;
-    }
-
     //-------------------------------------------------------------------------
     // API: font *
 
@@ -281,7 +281,7 @@ public class BasicCalendar extends AbstractCalendar {
          */
         public Builder month(Month month, int length) {
             Objects.requireNonNull(month, "month is  null!");
-            months.add(BoundedMonth.of(month, y -> length));
+            months.add(BoundedMonth.of(month, new YearDelta.Constant(length)));
             return this;
         }
 
@@ -7,11 +7,12 @@ public class Gregorian {
     private Gregorian() {} // Not instantiable.
 
     public static final Week WEEK = new Week(StandardWeek.DAYS, 1);
+    public static final YearDelta FEBRUARY_DAYS = Gregorian::februaryDays;
     public static final BasicCalendar CALENDAR = new BasicCalendar.Builder()
         .era(new Era("AD", "Anno Domini"))
         .priorEra(new Era("BC", "Before Christ"))
         .month(StandardMonth.JANUARY, 31)
-        .month(StandardMonth.FEBRUARY, Gregorian::februaryDays)
+        .month(StandardMonth.FEBRUARY, FEBRUARY_DAYS)
         .month(StandardMonth.MARCH, 31)
         .month(StandardMonth.APRIL, 30)
         .month(StandardMonth.MAY, 31)
@@ -8,4 +8,14 @@ import java.util.function.Function;
  * a year, the number of days in a month, etc., based on the year.
  */
 public interface YearDelta extends Function<Integer,Integer> {
+    /**
+     * A YearDelta whose value is the same for every year.
+     * @param value The value
+     */
+    record Constant(int value) implements YearDelta {
+        @Override
+        public Integer apply(Integer year) {
+            return value;
+        }
+    }
 }
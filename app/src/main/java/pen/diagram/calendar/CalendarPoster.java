@@ -0,0 +1,315 @@
+package pen.diagram.calendar;
+
+import javafx.geometry.Dimension2D;
+import pen.calendars.Calendar;
+import pen.stencil.Drawing;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * A diagram that draws a calendar's years as a sequence of pages, each
+ * page a grid of {@link YearSpread YearSpreads}.  The poster can span
+ * hundreds of years; each page is a separate {@link Drawing}, so that
+ * pages can be drawn independently, e.g., in parallel by a
+ * {@link pen.stencil.DrawingBatch}.
+ *
+ * <p>The months' grids of dates are computed for all years at once, in
+ * parallel, when first needed.  Each parallel task steps a single epoch
+ * day cursor through a run of years.  Identical grids, and identical
+ * years, are shared, so that a calendar with a handful of distinct year
+ * layouts needs only that many sets of grids and measures only that many
+ * year spreads, however many years it draws.</p>
+ */
+@SuppressWarnings("unused")
+public class CalendarPoster {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The number of years whose grids are computed by one parallel task.
+    private static final int CHUNK_SIZE = 16;
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The calendar we are drawing years for.
+    private Calendar calendar;
+
+    // The first and last years to draw.  Year 0 is skipped.
+    private int firstYear = 1;
+    private int lastYear = 1;
+
+    // Number of years across and down each page
+    private int across = 3;
+    private int down = 2;
+
+    // Padding between years
+    private double yearPad = 40;
+
+    // Number of months across each year
+    private int columns = 3;
+
+    // The grids of each year's months, in year order, or null if they must
+    // be recomputed.  Equal lists are the same object.
+    private List<List<MonthGrid>> grids = null;
+
+    // The size of the largest year spread, or null if it must be
+    // recomputed.
+    private Dimension2D cellSize = null;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    public CalendarPoster() {
+        // Nothing to do yet.
+    }
+
+    //-------------------------------------------------------------------------
+    // Getters
+
+    public Calendar getCalendar() {
+        return calendar;
+    }
+
+    public int getFirstYear() {
+        return firstYear;
+    }
+
+    public int getLastYear() {
+        return lastYear;
+    }
+
+    public int getAcross() {
+        return across;
+    }
+
+    public int getDown() {
+        return down;
+    }
+
+    public double getYearPad() {
+        return yearPad;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the years drawn by the poster, in order.  Year 0 is skipped.
+     * @return The years
+     */
+    public List<Integer> getYears() {
+        return IntStream.rangeClosed(firstYear, lastYear)
+            .filter(y -> y != 0)
+            .boxed()
+            .toList();
+    }
+
+    /**
+     * Gets the number of pages needed to draw the years.
+     * @return The number
+     */
+    public int getPageCount() {
+        var perPage = across*down;
+        return (getYears().size() + perPage - 1)/perPage;
+    }
+
+    /**
+     * Gets the years drawn on the given page.
+     * @param page The page index, 0 to getPageCount() - 1
+     * @return The years
+     */
+    public List<Integer> getYears(int page) {
+        var years = getYears();
+        var perPage = across*down;
+        var start = page*perPage;
+        return years.subList(start, Math.min(start + perPage, years.size()));
+    }
+
+    /**
+     * Gets the title for the given year, e.g., "1021 AF".
+     * @param year The year
+     * @return The title
+     */
+    public String getTitle(int year) {
+        var era = year > 0 ? calendar.era() : calendar.priorEra();
+        return Math.abs(year) + " " + era.shortForm();
+    }
+
+    //-------------------------------------------------------------------------
+    // DSL
+
+    public CalendarPoster calendar(Calendar calendar) {
+        if (!calendar.hasMonths()) {
+            throw Calendar.noMonthlyCycle();
+        }
+        if (!calendar.hasWeeks()) {
+            throw Calendar.noWeeklyCycle();
+        }
+        this.calendar = calendar;
+        invalidate();
+        return this;
+    }
+
+    /**
+     * Sets the range of years to draw.
+     * @param firstYear The first year
+     * @param lastYear The last year, no earlier than the first
+     * @return The poster
+     * @throws IllegalArgumentException if the range is empty
+     */
+    public CalendarPoster years(int firstYear, int lastYear) {
+        if (firstYear > lastYear || (firstYear == 0 && lastYear == 0)) {
+            throw new IllegalArgumentException(
+                "Empty year range: " + firstYear + " to " + lastYear);
+        }
+        this.firstYear = firstYear;
+        this.lastYear = lastYear;
+        invalidate();
+        return this;
+    }
+
+    public CalendarPoster across(int across) {
+        this.across = Math.max(1, across);
+        return this;
+    }
+
+    public CalendarPoster down(int down) {
+        this.down = Math.max(1, down);
+        return this;
+    }
+
+    public CalendarPoster yearPad(double value) {
+        this.yearPad = value;
+        return this;
+    }
+
+    public CalendarPoster columns(int columns) {
+        this.columns = columns;
+        cellSize = null;
+        return this;
+    }
+
+    //-------------------------------------------------------------------------
+    // Pages
+
+    /**
+     * Gets a drawing of the given page.  The drawing may be drawn on any
+     * thread, and several pages may be drawn at once.
+     * @param page The page index, 0 to getPageCount() - 1
+     * @return The drawing
+     */
+    public Drawing getPage(int page) {
+        var years = getYears(page);
+        var yearGrids = new ArrayList<List<MonthGrid>>();
+        for (var year : years) {
+            yearGrids.add(getGrids(year));
+        }
+
+        return stencil -> {
+            stencil.clear();
+            var cell = cellSize();
+
+            // Years with the same grids share a spread; it's drawn
+            // immediately, so it can be retitled and moved between years.
+            var spreads = new IdentityHashMap<List<MonthGrid>, YearSpread>();
+
+            for (int i = 0; i < years.size(); i++) {
+                var year = years.get(i);
+                var x = (i % across)*(cell.getWidth() + yearPad);
+                var y = (i / across)*(cell.getHeight() + yearPad);
+                var spread = spreads.computeIfAbsent(yearGrids.get(i),
+                    g -> newSpread(year, g));
+
+                stencil.draw(spread.title(getTitle(year)).at(x, y));
+            }
+        };
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Gets the grids of the year's months, computing all years' grids if
+    // need be.
+    synchronized List<MonthGrid> getGrids(int year) {
+        if (grids == null) {
+            grids = computeGrids();
+        }
+        // Year 0 is skipped, so when the range includes or starts at it,
+        // positive years are one place earlier.
+        var index = year - firstYear - (firstYear <= 0 && year > 0 ? 1 : 0);
+        return grids.get(index);
+    }
+
+    // Computes the grids for all years in parallel, a run of years per
+    // task, and shares equal grids and equal years.
+    private List<List<MonthGrid>> computeGrids() {
+        var years = getYears();
+        var monthGrids = new ConcurrentHashMap<MonthGrid, MonthGrid>();
+        var yearGrids =
+            new ConcurrentHashMap<List<MonthGrid>, List<MonthGrid>>();
+        var chunks = (years.size() + CHUNK_SIZE - 1)/CHUNK_SIZE;
+
+        return IntStream.range(0, chunks).parallel()
+            .mapToObj(c -> {
+                var start = c*CHUNK_SIZE;
+                var end = Math.min(start + CHUNK_SIZE, years.size());
+                var result = new ArrayList<List<MonthGrid>>();
+                var day = calendar.date2day(
+                    calendar.date(years.get(start), 1, 1));
+
+                for (var year : years.subList(start, end)) {
+                    var list = MonthGrid.forYear(calendar, year, day).stream()
+                        .map(g -> monthGrids.computeIfAbsent(g, k -> k))
+                        .toList();
+                    result.add(yearGrids.computeIfAbsent(list, k -> k));
+                    day += calendar.daysInYear(year);
+                }
+
+                return result;
+            })
+            .flatMap(List::stream)
+            .toList();
+    }
+
+    // Gets the size of the largest year spread, measuring one spread for
+    // each distinct year if need be.
+    private synchronized Dimension2D cellSize() {
+        if (cellSize == null) {
+            var width = 0.0;
+            var height = 0.0;
+            var measured = new IdentityHashMap<List<MonthGrid>, Boolean>();
+
+            for (var year : getYears()) {
+                var list = getGrids(year);
+                if (measured.put(list, true) == null) {
+                    var size = newSpread(year, list).getRealSize();
+                    width = Math.max(width, size.getWidth());
+                    height = Math.max(height, size.getHeight());
+                }
+            }
+
+            cellSize = new Dimension2D(width, height);
+        }
+        return cellSize;
+    }
+
+    // Creates a year spread for the year with the given grids.
+    private YearSpread newSpread(int year, List<MonthGrid> grids) {
+        return new YearSpread()
+            .calendar(calendar)
+            .year(year)
+            .grids(grids)
+            .columns(columns);
+    }
+
+    // Discards the computed grids and sizes.
+    private void invalidate() {
+        grids = null;
+        cellSize = null;
+    }
+}
@@ -0,0 +1,87 @@
+package pen.diagram.calendar;
+
+import pen.calendars.Calendar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The shape of a month's grid of dates: which column the first of the
+ * month falls in, and how many weeks it spans.  Months that begin on the
+ * same day of the week and have the same length have equal grids, so a
+ * grid can be shared by any number of months.
+ * @param startDate The day of the month in the first column of the first
+ * week, which is 1 or less
+ * @param daysInMonth The number of days in the month
+ * @param numWeeks The number of weeks to draw
+ */
+record MonthGrid(int startDate, int daysInMonth, int numWeeks) {
+    /**
+     * Gets the grid for a month.
+     * @param dayOfWeek The day of the week of the first of the month,
+     * 1 to daysInWeek
+     * @param daysInMonth The number of days in the month
+     * @param daysInWeek The number of days in the week
+     * @return The grid
+     */
+    static MonthGrid of(int dayOfWeek, int daysInMonth, int daysInWeek) {
+        var startDate = 2 - dayOfWeek;
+        var numWeeks = (daysInMonth - startDate + daysInWeek)/daysInWeek;
+        return new MonthGrid(startDate, daysInMonth, numWeeks);
+    }
+
+    /**
+     * Gets the grid for a month, given the epoch day of its first day.
+     * @param calendar The calendar
+     * @param year The year
+     * @param monthOfYear The month of the year
+     * @param firstDay The epoch day of the first of the month
+     * @return The grid
+     */
+    static MonthGrid of(
+        Calendar calendar,
+        int year,
+        int monthOfYear,
+        int firstDay
+    ) {
+        return of(calendar.day2dayOfWeek(firstDay),
+            calendar.daysInMonth(year, monthOfYear),
+            calendar.daysInWeek());
+    }
+
+    /**
+     * Gets the grids for the months of a year.
+     * @param calendar The calendar
+     * @param year The year
+     * @return The grids, in month order
+     */
+    static List<MonthGrid> forYear(Calendar calendar, int year) {
+        return forYear(calendar, year,
+            calendar.date2day(calendar.date(year, 1, 1)));
+    }
+
+    /**
+     * Gets the grids for the months of a year, given the epoch day of its
+     * first day.  The months' first days are found by stepping a single
+     * epoch day cursor through the year.
+     * @param calendar The calendar
+     * @param year The year
+     * @param firstDay The epoch day of the first day of the year
+     * @return The grids, in month order
+     */
+    static List<MonthGrid> forYear(
+        Calendar calendar,
+        int year,
+        int firstDay
+    ) {
+        var grids = new ArrayList<MonthGrid>();
+        var day = firstDay;
+
+        for (int i = 1; i <= calendar.monthsInYear(); i++) {
+            grids.add(of(calendar, year, i, day));
+            day += calendar.daysInMonth(year, i);
+        }
+
+        return grids;
+    }
+}
@@ -4,17 +4,34 @@ import javafx.geometry.Bounds;
 import javafx.geometry.Dimension2D;
 import javafx.scene.text.FontWeight;
 import pen.calendars.Calendar;
+import pen.calendars.Weekday;
 import pen.stencil.*;
 
+import java.util.List;
+
 import static pen.stencil.Stencil.text;
 
 /**
  * A shape for drawing one month for a particular calendar, including the
  * title (the month name), the day symbols, and the days of the month in
  * columns below the day symbols
+ *
+ * <p>The spread's layout is computed once, when first needed, and reused
+ * until a setter that affects it is called.</p>
  */
 @SuppressWarnings("unused")
 public class MonthSpread extends ContentShape<MonthSpread> {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The default fonts, shared so that their text metrics are cached
+    // across spreads.
+    static final PenFont TITLE_FONT = new PenFont.Builder("title")
+        .family("sans-serif").weight(FontWeight.BOLD).size(14).build();
+    static final PenFont DAY_FONT = new PenFont.Builder("day")
+        .family("sans-serif").weight(FontWeight.BOLD).size(12).build();
+    static final PenFont DATE_FONT = PenFont.SANS12;
+
     //-------------------------------------------------------------------------
     // Instance Variables
 
@@ -34,12 +51,16 @@ public class MonthSpread extends ContentShape<MonthSpread> {
     // Padding between dates in a monthly layout
     private double datePad = 5;
 
-    // TODO: Add getters and setters
-    private PenFont titleFont = new PenFont.Builder("title")
-        .family("sans-serif").weight(FontWeight.BOLD).size(14).build();
-    private PenFont dayFont = new PenFont.Builder("day")
-        .family("sans-serif").weight(FontWeight.BOLD).size(12).build();
-    private PenFont dateFont = PenFont.SANS12;
+    // The fonts for the title, the day symbols, and the dates
+    private PenFont titleFont = TITLE_FONT;
+    private PenFont dayFont = DAY_FONT;
+    private PenFont dateFont = DATE_FONT;
+
+    // The month's grid of dates, if known, or null.
+    private MonthGrid grid = null;
+
+    // The computed layout, or null if it must be recomputed.
+    private Layout layout = null;
 
     //-------------------------------------------------------------------------
     // Constructor
@@ -75,6 +96,18 @@ public class MonthSpread extends ContentShape<MonthSpread> {
         return datePad;
     }
 
+    public PenFont getTitleFont() {
+        return titleFont;
+    }
+
+    public PenFont getDayFont() {
+        return dayFont;
+    }
+
+    public PenFont getDateFont() {
+        return dateFont;
+    }
+
     //-------------------------------------------------------------------------
     // DSL
 
@@ -86,18 +119,24 @@ public class MonthSpread extends ContentShape<MonthSpread> {
             throw Calendar.noWeeklyCycle();
         }
         this.calendar = calendar;
+        grid = null;
+        invalidate();
         return this;
     }
 
     public MonthSpread year(int year) {
         // TODO: validate year
         this.year = year;
+        grid = null;
+        invalidate();
         return this;
     }
 
     public MonthSpread monthOfYear(int monthOfYear) {
         // TODO: validate month
         this.monthOfYear = monthOfYear;
+        grid = null;
+        invalidate();
         return this;
     }
 
@@ -108,48 +147,88 @@ public class MonthSpread extends ContentShape<MonthSpread> {
 
     public MonthSpread titlePad(double value) {
         this.titlePad = value;
+        invalidate();
         return this;
     }
 
     public MonthSpread datePad(double value) {
         this.datePad = value;
+        invalidate();
+        return this;
+    }
+
+    public MonthSpread titleFont(PenFont font) {
+        this.titleFont = font;
+        invalidate();
+        return this;
+    }
+
+    public MonthSpread dayFont(PenFont font) {
+        this.dayFont = font;
+        invalidate();
+        return this;
+    }
+
+    public MonthSpread dateFont(PenFont font) {
+        this.dateFont = font;
+        invalidate();
+        return this;
+    }
+
+    // Sets the month's grid of dates, as computed by a client that is
+    // laying out many months, e.g., YearSpread.
+    MonthSpread grid(MonthGrid grid) {
+        this.grid = grid;
+        invalidate();
         return this;
     }
 
     //-------------------------------------------------------------------------
     // Helpers
 
-    private int weeksToDraw() {
-        var date = calendar.date(year, monthOfYear, 1);
-        var daysInMonth = date.daysInMonth();
-        var daysInWeek = calendar.daysInWeek();
-        var startDayOfWeek = date.dayOfWeek();
+    private void invalidate() {
+        layout = null;
+    }
+
+    // Gets the layout, computing it if need be.
+    private Layout layout() {
+        if (layout == null) {
+            if (grid == null) {
+                grid = MonthGrid.of(calendar, year, monthOfYear,
+                    calendar.date2day(calendar.date(year, monthOfYear, 1)));
+            }
+
+            var daysInWeek = calendar.daysInWeek();
+            var weekdays = calendar.week().weekdays().stream()
+                .map(Weekday::tinyForm)
+                .toList();
 
-        int startDate = 1 - (startDayOfWeek - 1);
-        int numberOfWeeks = 0;
-        do {
-            ++numberOfWeeks;
-            startDate += daysInWeek;
-        } while (startDate <= daysInMonth);
+            var dateWidth = dateFont.getTextWidth("99");
+            var titleHeight = titleFont.getHeight();
+            var dayHeight = dayFont.getHeight();
+            var dateHeight = dateFont.getHeight();
 
-        return numberOfWeeks;
+            var w = daysInWeek*(datePad + dateWidth) - datePad;
+            var h = titleHeight + titlePad + dayHeight
+                + grid.numWeeks()*(dateHeight + datePad);
+
+            layout = new Layout(weekdays, grid, dateWidth, titleHeight,
+                dayHeight, dateHeight, new Dimension2D(w, h));
+        }
+        return layout;
     }
 
     //-------------------------------------------------------------------------
     // ContentShape methods
 
     public Dimension2D getRealSize() {
-        var dateWidth = Pen.getTextWidth(dateFont, "99");
-        var w = calendar.daysInWeek()*(datePad + dateWidth) - datePad;
-        var h = titleFont.getHeight() + titlePad
-            + dayFont.getHeight()
-            + weeksToDraw()*(dateFont.getHeight() + datePad);
-        return new Dimension2D(w, h);
+        return layout().size();
     }
 
     @Override
     public Bounds draw(Stencil sten) {
         // FIRST, draw the title
+        var layout = layout();
         var bounds = getRealBounds();
         sten.draw(text()
             .at(bounds.getCenterX(), bounds.getMinY())
@@ -159,39 +238,34 @@ public class MonthSpread extends ContentShape<MonthSpread> {
         );
 
         // NEXT, draw the days.
-        var daysInWeek = calendar.daysInWeek();
-        var dateWidth = Pen.getTextWidth(dateFont, "99");
+        var daysInWeek = layout.weekdays().size();
+        var dateWidth = layout.dateWidth();
         var x = bounds.getMinX();
-        var y = bounds.getMinY() + titleFont.getHeight() + titlePad;
+        var y = bounds.getMinY() + layout.titleHeight() + titlePad;
 
         for (var i = 0; i < daysInWeek; i++) {
             var dx = x + dateWidth + i*(dateWidth + datePad);
             sten.draw(text()
                 .at(dx, y)
-                .text(calendar.week().weekdays().get(i).tinyForm())
+                .text(layout.weekdays().get(i))
                 .tack(Tack.NORTHEAST)
                 .font(dayFont)
             );
         }
 
         // NEXT, draw the dates
-        var numWeeks = weeksToDraw();
-        var dayHeight = dayFont.getHeight();
-        var dateHeight = dateFont.getHeight();
-        var date = calendar.date(year, monthOfYear, 1);
-        var daysInMonth = date.daysInMonth();
-        var startDayOfWeek = date.dayOfWeek();
-        int startDate = 1 - (startDayOfWeek - 1);
+        var dateHeight = layout.dateHeight();
+        var grid = layout.grid();
 
-        y += dayHeight + datePad;
+        y += layout.dayHeight() + datePad;
 
-        for (int w = 0; w < numWeeks; w++) {
+        for (int w = 0; w < grid.numWeeks(); w++) {
             var dy = y + w*(dateHeight + datePad);
             for (int i = 0; i < daysInWeek; i++) {
                 var dx = x + dateWidth + i*(dateWidth + datePad);
 
-                var dayOfMonth = startDate + w*daysInWeek + i;
-                if (dayOfMonth < 1 || dayOfMonth > daysInMonth) {
+                var dayOfMonth = grid.startDate() + w*daysInWeek + i;
+                if (dayOfMonth < 1 || dayOfMonth > grid.daysInMonth()) {
                     continue;
                 }
                 sten.draw(text()
@@ -205,4 +279,19 @@ public class MonthSpread extends ContentShape<MonthSpread> {
 
         return getBounds();
     }
+
+    //-------------------------------------------------------------------------
+    // Helper Classes
+
+    // The spread's layout: the weekday labels, the grid of dates, the
+    // font metrics, and the real size.
+    private record Layout(
+        List<String> weekdays,
+        MonthGrid grid,
+        double dateWidth,
+        double titleHeight,
+        double dayHeight,
+        double dateHeight,
+        Dimension2D size
+    ) {}
 }
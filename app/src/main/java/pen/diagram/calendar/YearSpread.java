@@ -14,9 +14,21 @@ import static pen.stencil.Stencil.text;
 /**
  * A shape for drawing one year for a particular calendar, including the
  * title (e.g., the year and era) and a rectangular array of month spreads
+ *
+ * <p>The spread's layout, including its month spreads, is computed once,
+ * when first needed, and reused until a setter that affects it is
+ * called.</p>
  */
 @SuppressWarnings("unused")
 public class YearSpread extends ContentShape<YearSpread> {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The default title font, shared so that its text metrics are cached
+    // across spreads.
+    private static final PenFont TITLE_FONT = new PenFont.Builder("title")
+        .family("sans-serif").weight(FontWeight.BOLD).size(18).build();
+
     //-------------------------------------------------------------------------
     // Instance Variables
 
@@ -44,14 +56,18 @@ public class YearSpread extends ContentShape<YearSpread> {
     // Number of months across
     private int columns = 3;
 
-    // TODO: Add getters and setters
-    private PenFont titleFont = new PenFont.Builder("title")
-        .family("sans-serif").weight(FontWeight.BOLD).size(18).build();
-    private PenFont monthFont = new PenFont.Builder("month")
-        .family("sans-serif").weight(FontWeight.BOLD).size(14).build();
-    private PenFont dayFont = new PenFont.Builder("day")
-        .family("sans-serif").weight(FontWeight.BOLD).size(12).build();
-    private PenFont dateFont = PenFont.SANS12;
+    // The fonts for the year's title, and for the month spreads' titles,
+    // day symbols, and dates
+    private PenFont titleFont = TITLE_FONT;
+    private PenFont monthFont = MonthSpread.TITLE_FONT;
+    private PenFont dayFont = MonthSpread.DAY_FONT;
+    private PenFont dateFont = MonthSpread.DATE_FONT;
+
+    // The grids of the year's months, if known, or null.
+    private List<MonthGrid> grids = null;
+
+    // The computed layout, or null if it must be recomputed.
+    private Layout layout = null;
 
     //-------------------------------------------------------------------------
     // Constructor
@@ -91,6 +107,22 @@ public class YearSpread extends ContentShape<YearSpread> {
         return columns;
     }
 
+    public PenFont getTitleFont() {
+        return titleFont;
+    }
+
+    public PenFont getMonthFont() {
+        return monthFont;
+    }
+
+    public PenFont getDayFont() {
+        return dayFont;
+    }
+
+    public PenFont getDateFont() {
+        return dateFont;
+    }
+
     //-------------------------------------------------------------------------
     // DSL
 
@@ -102,12 +134,16 @@ public class YearSpread extends ContentShape<YearSpread> {
             throw Calendar.noWeeklyCycle();
         }
         this.calendar = calendar;
+        grids = null;
+        invalidate();
         return this;
     }
 
     public YearSpread year(int year) {
         // TODO: validate year
         this.year = year;
+        grids = null;
+        invalidate();
         return this;
     }
 
@@ -118,88 +154,125 @@ public class YearSpread extends ContentShape<YearSpread> {
 
     public YearSpread titlePad(double value) {
         this.titlePad = value;
+        invalidate();
         return this;
     }
 
     public YearSpread monthTitlePad(double value) {
         this.monthTitlePad = value;
+        invalidate();
         return this;
     }
 
     public YearSpread monthPad(double value) {
         this.monthPad = value;
+        invalidate();
         return this;
     }
 
     public YearSpread datePad(double value) {
         this.datePad = value;
+        invalidate();
         return this;
     }
 
     public YearSpread columns(int columns) {
         this.columns = columns;
+        invalidate();
         return this;
     }
 
-    //-------------------------------------------------------------------------
-    // Helpers
+    public YearSpread titleFont(PenFont font) {
+        this.titleFont = font;
+        invalidate();
+        return this;
+    }
 
-    private List<MonthSpread> getMonths() {
-        var list = new ArrayList<MonthSpread>();
-        for (int i = 1; i <= calendar.monthsInYear(); i++) {
-            list.add(getMonth(i));
-        }
-        return list;
+    public YearSpread monthFont(PenFont font) {
+        this.monthFont = font;
+        invalidate();
+        return this;
     }
 
-    private MonthSpread getMonth(int monthOfYear) {
-        return new MonthSpread()
-            .calendar(calendar)
-            .year(year)
-            .monthOfYear(monthOfYear)
-            .title(calendar.month(monthOfYear).fullForm())
-            .titlePad(monthTitlePad)
-            .datePad(datePad)
-            // TODO: Set fonts!
-            ;
+    public YearSpread dayFont(PenFont font) {
+        this.dayFont = font;
+        invalidate();
+        return this;
     }
 
-    private int getRows() {
-        var monthCount = calendar.monthsInYear();
-        return (monthCount % columns == 0)
-            ? monthCount/columns
-            : 1 + monthCount/columns;
+    public YearSpread dateFont(PenFont font) {
+        this.dateFont = font;
+        invalidate();
+        return this;
     }
 
-    private double getMonthWidth(List<MonthSpread> months) {
-        assert !months.isEmpty();
-        return months.getFirst().getRealSize().getWidth();
+    // Sets the grids of the year's months, as computed by a client that
+    // is laying out many years, e.g., CalendarPoster.
+    YearSpread grids(List<MonthGrid> grids) {
+        this.grids = grids;
+        invalidate();
+        return this;
     }
 
-    private double getMonthHeight(List<MonthSpread> months) {
-        return months.stream()
-            .mapToDouble(m -> m.getRealSize().getHeight())
-            .max().orElse(0);
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private void invalidate() {
+        layout = null;
+    }
+
+    // Gets the layout, computing it if need be.
+    private Layout layout() {
+        if (layout == null) {
+            if (grids == null) {
+                grids = MonthGrid.forYear(calendar, year);
+            }
+
+            var months = new ArrayList<MonthSpread>();
+
+            for (int i = 1; i <= calendar.monthsInYear(); i++) {
+                months.add(new MonthSpread()
+                    .calendar(calendar)
+                    .year(year)
+                    .monthOfYear(i)
+                    .grid(grids.get(i - 1))
+                    .title(calendar.month(i).fullForm())
+                    .titlePad(monthTitlePad)
+                    .datePad(datePad)
+                    .titleFont(monthFont)
+                    .dayFont(dayFont)
+                    .dateFont(dateFont)
+                );
+            }
+
+            var rows = (months.size() + columns - 1)/columns;
+            var monthWidth = months.getFirst().getRealSize().getWidth();
+            var monthHeight = months.stream()
+                .mapToDouble(m -> m.getRealSize().getHeight())
+                .max().orElse(0);
+            var titleHeight = titleFont.getHeight();
+
+            var w = columns*monthWidth + (columns - 1)*monthPad;
+            var h = titleHeight + titlePad
+                + rows*monthHeight + (rows - 1)*monthPad;
+
+            layout = new Layout(List.copyOf(months), rows, monthWidth,
+                monthHeight, titleHeight, new Dimension2D(w, h));
+        }
+        return layout;
     }
 
     //-------------------------------------------------------------------------
     // ContentShape methods
 
     public Dimension2D getRealSize() {
-        var months = getMonths();
-        var rows = getRows();
-        var monthWidth = getMonthWidth(months);
-        var monthHeight = getMonthHeight(months);
-
-        var w = columns*monthWidth + (columns - 1)*monthPad;
-        var h = titleFont.getHeight() + titlePad
-            + rows*monthHeight + (rows - 1)*monthPad;
-        return new Dimension2D(w, h);
+        return layout().size();
     }
 
     @Override
     public Bounds draw(Stencil sten) {
         // FIRST, draw the title
+        var layout = layout();
         var bounds = getRealBounds();
         sten.draw(text()
             .at(bounds.getCenterX(), bounds.getMinY())
@@ -210,13 +283,12 @@ public class YearSpread extends ContentShape<YearSpread> {
 
         // NEXT, draw the months
         var x0 = bounds.getMinX();
-        var y0 = bounds.getMinY() + titleFont.getHeight() + titlePad;
-        var months = getMonths();
-        var rows = getRows();
-        var monthWidth = getMonthWidth(months);
-        var monthHeight = getMonthHeight(months);
+        var y0 = bounds.getMinY() + layout.titleHeight() + titlePad;
+        var months = layout.months();
+        var monthWidth = layout.monthWidth();
+        var monthHeight = layout.monthHeight();
 
-        for (var j = 0; j < rows; j++) {
+        for (var j = 0; j < layout.rows(); j++) {
             var y = y0 + j*(monthHeight + monthPad);
 
             for (var i = 0; i < columns; i++) {
@@ -231,4 +303,19 @@ public class YearSpread extends ContentShape<YearSpread> {
 
         return getBounds();
     }
+
+    //-------------------------------------------------------------------------
+    // Helper Classes
+
+    // The spread's layout: the month spreads, the number of rows of
+    // months, the size of each month, the title's height, and the real
+    // size.
+    private record Layout(
+        List<MonthSpread> months,
+        int rows,
+        double monthWidth,
+        double monthHeight,
+        double titleHeight,
+        Dimension2D size
+    ) {}
 }
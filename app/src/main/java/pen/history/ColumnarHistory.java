@@ -0,0 +1,487 @@
+package pen.history;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A read-only History backed by a memory-mapped columnar file, for very
+ * large, machine-generated histories.  Incidents are stored sorted by
+ * moment, column by column: moments, kinds, labels (as string table
+ * indices), and lists of entity ordinals.  A posting list of incident
+ * indices is stored for each entity.
+ *
+ * <p>Incidents are decoded lazily on access, so a time-range query (see
+ * {@link #getIncidents(TimeFrame)}) touches only the pages containing
+ * the incidents in range, and an entity's period only the pages
+ * containing its first and last incidents.  Entity types and entities
+ * are loaded eagerly.</p>
+ *
+ * <p>Anniversaries are derived data, and cannot be stored.  Files are
+ * limited to 2 GB.</p>
+ */
+public class ColumnarHistory extends AbstractHistory implements History {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    // The magic number: "PENC"
+    private static final int MAGIC = 0x50454E43;
+
+    // The format version; increment on any change to the format.
+    private static final int VERSION = 1;
+
+    // The number of sections, and so of section offsets in the header.
+    private static final int SECTIONS = 9;
+
+    // Section indices
+    private static final int STRING_OFFSETS = 0;
+    private static final int STRING_BYTES = 1;
+    private static final int MOMENTS = 2;
+    private static final int KINDS = 3;
+    private static final int LABELS = 4;
+    private static final int REF_OFFSETS = 5;
+    private static final int REFS = 6;
+    private static final int POSTING_OFFSETS = 7;
+    private static final int POSTINGS = 8;
+
+    // Incident kinds
+    private static final byte START = 0;
+    private static final byte END = 1;
+    private static final byte NORMAL = 2;
+    private static final byte BIRTHDAY = 3;
+    private static final byte MEMORIAL = 4;
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The mapped file
+    private final ByteBuffer buffer;
+
+    // The number of incidents
+    private final int size;
+
+    // The byte offsets of the sections
+    private final int[] sections = new int[SECTIONS];
+
+    // The entity IDs, by ordinal
+    private final String[] entityIds;
+
+    // The entity ordinals, by ID
+    private final Map<String,Integer> entityOrdinals = new HashMap<>();
+
+    // The lazily decoded incident list
+    private final List<Incident> incidents;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    // Creates the history given the mapped file.
+    private ColumnarHistory(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a columnar history file");
+        }
+
+        var numTypes = buffer.getInt(8);
+        var numEntities = buffer.getInt(12);
+        this.size = buffer.getInt(16);
+
+        for (int i = 0; i < SECTIONS; i++) {
+            sections[i] = buffer.getInt(20 + 4*i);
+        }
+
+        // NEXT, load the types and entities, which follow the header.
+        var pos = 20 + 4*SECTIONS;
+        var types = new LinkedHashMap<String,EntityType>();
+
+        for (int i = 0; i < numTypes; i++, pos += 12) {
+            var type = new EntityType(string(buffer.getInt(pos)),
+                string(buffer.getInt(pos + 4)), buffer.getInt(pos + 8) != 0);
+            types.put(type.id(), type);
+        }
+
+        var entities = new LinkedHashMap<String,Entity>();
+        entityIds = new String[numEntities];
+
+        for (int i = 0; i < numEntities; i++, pos += 16) {
+            var entity = new Entity(string(buffer.getInt(pos)),
+                string(buffer.getInt(pos + 4)),
+                string(buffer.getInt(pos + 8)),
+                buffer.getInt(pos + 12) != 0);
+            entities.put(entity.id(), entity);
+            entityIds[i] = entity.id();
+            entityOrdinals.put(entity.id(), i);
+        }
+
+        setTypeMap(types);
+        setEntityMap(entities);
+        incidents = new IncidentList(0, size);
+    }
+
+    /**
+     * Opens a columnar history file, mapping it into memory.
+     * @param path The file's path
+     * @return The history
+     * @throws IOException if the file cannot be read or is not a columnar
+     * history file.
+     */
+    public static ColumnarHistory open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping remains valid after the channel is closed.
+            var buffer = channel.map(
+                FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ColumnarHistory(buffer);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IOException("Not a columnar history file: " + path, ex);
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // History API
+
+    @Override
+    public Map<String, EntityType> getTypeMap() {
+        return Collections.unmodifiableMap(typeMap());
+    }
+
+    @Override
+    public Map<String, Entity> getEntityMap() {
+        return Collections.unmodifiableMap(entityMap());
+    }
+
+    /**
+     * The incidents in the history, sorted by moment.  The list is
+     * unmodifiable, and decodes each incident on access.
+     * @return The incidents.
+     */
+    @Override
+    public List<Incident> getIncidents() {
+        return incidents;
+    }
+
+    @Override
+    public List<Incident> getIncidents(TimeFrame frame) {
+        var from = lowerBound(frame.start());
+        var to = frame.end() == Integer.MAX_VALUE
+            ? size : lowerBound(frame.end() + 1);
+        return new IncidentList(from, Math.max(from, to));
+    }
+
+    @Override
+    public List<Incident> getIncidents(String entityId) {
+        var ordinal = entityOrdinals.get(entityId);
+
+        if (ordinal == null) {
+            return List.of();
+        }
+
+        var first = intAt(POSTING_OFFSETS, ordinal);
+        var last = intAt(POSTING_OFFSETS, ordinal + 1);
+
+        return new AbstractList<>() {
+            @Override
+            public Incident get(int index) {
+                Objects.checkIndex(index, last - first);
+                return incident(intAt(POSTINGS, first + index));
+            }
+
+            @Override
+            public int size() {
+                return last - first;
+            }
+        };
+    }
+
+    @Override
+    public TimeFrame getTimeFrame() {
+        return size > 0
+            ? new TimeFrame(intAt(MOMENTS, 0), intAt(MOMENTS, size - 1))
+            : new TimeFrame(0, 0);
+    }
+
+    @Override
+    public TimeFrame getTimeFrame(Predicate<Incident> filter) {
+        var filtered = incidents.stream().filter(filter).toList();
+
+        return filtered.isEmpty()
+            ? new TimeFrame(0, 0)
+            : new TimeFrame(filtered.getFirst().moment(),
+                filtered.getLast().moment());
+    }
+
+    //-------------------------------------------------------------------------
+    // Decoding
+
+    // Decodes the incident at the given index.
+    private Incident incident(int index) {
+        var moment = intAt(MOMENTS, index);
+        var kind = buffer.get(sections[KINDS] + index);
+        var label = string(intAt(LABELS, index));
+
+        var first = intAt(REF_OFFSETS, index);
+        var last = intAt(REF_OFFSETS, index + 1);
+        var ids = new LinkedHashSet<String>();
+        for (int i = first; i < last; i++) {
+            ids.add(entityIds[intAt(REFS, i)]);
+        }
+
+        return switch (kind) {
+            case START -> new Incident.Start(moment, label, ids.getFirst());
+            case END -> new Incident.End(moment, label, ids.getFirst());
+            case NORMAL -> new Incident.Normal(moment, label, ids);
+            case BIRTHDAY -> new Incident.Birthday(moment, label, ids);
+            case MEMORIAL -> new Incident.Memorial(moment, label, ids);
+            default -> throw new IllegalStateException(
+                "Unknown incident kind: " + kind);
+        };
+    }
+
+    // Decodes the string at the given index, or null for index -1.
+    private String string(int index) {
+        if (index < 0) {
+            return null;
+        }
+
+        var start = intAt(STRING_OFFSETS, index);
+        var bytes = new byte[intAt(STRING_OFFSETS, index + 1) - start];
+        buffer.get(sections[STRING_BYTES] + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Gets the int at the index in the given int section.
+    private int intAt(int section, int index) {
+        return buffer.getInt(sections[section] + 4*index);
+    }
+
+    // Gets the index of the first incident whose moment is at least the
+    // given moment.
+    private int lowerBound(int moment) {
+        int lo = 0;
+        int hi = size;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (intAt(MOMENTS, mid) < moment) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    // A lazily decoded range of incidents.
+    private class IncidentList extends AbstractList<Incident>
+        implements RandomAccess
+    {
+        private final int from;
+        private final int to;
+
+        IncidentList(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Incident get(int index) {
+            Objects.checkIndex(index, to - from);
+            return incident(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Writing
+
+    /**
+     * Writes the history to a columnar history file.
+     * @param history The history
+     * @param path The file's path
+     * @throws IOException on write error
+     * @throws IllegalArgumentException if the history contains
+     * anniversaries or references unknown entities.
+     */
+    public static void write(History history, Path path) throws IOException {
+        var strings = new LinkedHashMap<String,Integer>();
+        var types = history.getTypeMap().values();
+        var entities = history.getEntityMap().values();
+        var ordinals = new HashMap<String,Integer>();
+
+        for (var entity : entities) {
+            ordinals.put(entity.id(), ordinals.size());
+        }
+
+        var sorted = history.getIncidents().stream()
+            .sorted(Comparator.comparing(Incident::moment))
+            .toList();
+        var n = sorted.size();
+
+        // FIRST, build the columns.
+        var moments = new int[n];
+        var kinds = new byte[n];
+        var labels = new int[n];
+        var refOffsets = new int[n + 1];
+        var refs = new ArrayList<Integer>();
+        var postings = new ArrayList<List<Integer>>();
+
+        for (int i = 0; i < ordinals.size(); i++) {
+            postings.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < n; i++) {
+            var incident = sorted.get(i);
+            moments[i] = incident.moment();
+            kinds[i] = kindOf(incident);
+            labels[i] = intern(strings, incident.label());
+
+            refOffsets[i] = refs.size();
+            for (var id : incident.entityIds()) {
+                var ordinal = ordinals.get(id);
+                if (ordinal == null) {
+                    throw new IllegalArgumentException(
+                        "Unknown entity: \"" + id + "\"");
+                }
+                refs.add(ordinal);
+                postings.get(ordinal).add(i);
+            }
+        }
+        refOffsets[n] = refs.size();
+
+        // NEXT, the type and entity tables refer to the string table, so
+        // intern their strings before writing it.
+        var typeTable = new ArrayList<Integer>();
+        for (var type : types) {
+            typeTable.add(intern(strings, type.id()));
+            typeTable.add(intern(strings, type.name()));
+            typeTable.add(type.prime() ? 1 : 0);
+        }
+
+        var entityTable = new ArrayList<Integer>();
+        for (var entity : entities) {
+            entityTable.add(intern(strings, entity.id()));
+            entityTable.add(intern(strings, entity.name()));
+            entityTable.add(intern(strings, entity.type()));
+            entityTable.add(entity.prime() ? 1 : 0);
+        }
+
+        var stringBytes = new ByteArrayOutputStream();
+        var stringOffsets = new int[strings.size() + 1];
+        var k = 0;
+        for (var string : strings.keySet()) {
+            stringOffsets[k++] = stringBytes.size();
+            stringBytes.writeBytes(string.getBytes(StandardCharsets.UTF_8));
+        }
+        stringOffsets[k] = stringBytes.size();
+
+        var postingOffsets = new int[postings.size() + 1];
+        var postingCount = 0;
+        for (int i = 0; i < postings.size(); i++) {
+            postingOffsets[i] = postingCount;
+            postingCount += postings.get(i).size();
+        }
+        postingOffsets[postings.size()] = postingCount;
+
+        // NEXT, compute the section offsets.
+        var sections = new int[SECTIONS];
+        var pos = 20 + 4*SECTIONS + 4*typeTable.size() + 4*entityTable.size();
+        sections[STRING_OFFSETS] = pos;
+        pos += 4*stringOffsets.length;
+        sections[STRING_BYTES] = pos;
+        pos += stringBytes.size();
+        pos = align(pos);
+        sections[MOMENTS] = pos;
+        pos += 4*n;
+        sections[KINDS] = pos;
+        pos += n;
+        pos = align(pos);
+        sections[LABELS] = pos;
+        pos += 4*n;
+        sections[REF_OFFSETS] = pos;
+        pos += 4*(n + 1);
+        sections[REFS] = pos;
+        pos += 4*refs.size();
+        sections[POSTING_OFFSETS] = pos;
+        pos += 4*postingOffsets.length;
+        sections[POSTINGS] = pos;
+
+        // NEXT, write the file.
+        try (var out = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(path))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(types.size());
+            out.writeInt(entities.size());
+            out.writeInt(n);
+            writeInts(out, sections);
+
+            for (var value : typeTable) out.writeInt(value);
+            for (var value : entityTable) out.writeInt(value);
+
+            writeInts(out, stringOffsets);
+            stringBytes.writeTo(out);
+            pad(out);
+            writeInts(out, moments);
+            out.write(kinds);
+            pad(out);
+            writeInts(out, labels);
+            writeInts(out, refOffsets);
+            for (var ref : refs) out.writeInt(ref);
+            writeInts(out, postingOffsets);
+            for (var list : postings) {
+                for (var index : list) out.writeInt(index);
+            }
+        }
+    }
+
+    private static byte kindOf(Incident incident) {
+        return switch (incident) {
+            case Incident.Start ignored -> START;
+            case Incident.End ignored -> END;
+            case Incident.Normal ignored -> NORMAL;
+            case Incident.Birthday ignored -> BIRTHDAY;
+            case Incident.Memorial ignored -> MEMORIAL;
+            case Incident.Anniversary ignored ->
+                throw new IllegalArgumentException(
+                    "Anniversaries cannot be stored");
+        };
+    }
+
+    private static int intern(Map<String,Integer> strings, String value) {
+        return value != null
+            ? strings.computeIfAbsent(value, k -> strings.size())
+            : -1;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values)
+        throws IOException
+    {
+        for (var value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    // Rounds the position up to a multiple of 4, so that int columns are
+    // aligned.
+    private static int align(int pos) {
+        return (pos + 3) & ~3;
+    }
+
+    private static void pad(DataOutputStream out) throws IOException {
+        while (out.size() % 4 != 0) {
+            out.writeByte(0);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package pen.history;
 
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +39,21 @@ public interface History {
      */
     List<Incident> getIncidents();
 
+    /**
+     * The incidents in the history whose moments fall within the time
+     * frame, inclusive, sorted by moment.  Implementations that store
+     * their incidents in moment order can do this without visiting the
+     * incidents outside the frame.
+     * @param frame The time frame
+     * @return The incidents
+     */
+    default List<Incident> getIncidents(TimeFrame frame) {
+        return getIncidents().stream()
+            .filter(i -> i.moment() >= frame.start() && i.moment() <= frame.end())
+            .sorted(Comparator.comparing(Incident::moment))
+            .toList();
+    }
+
     /**
      * Gets the TimeFrame that spans all incidents in the history.
      * @return The time frame
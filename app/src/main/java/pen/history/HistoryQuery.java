@@ -41,6 +41,12 @@ public class HistoryQuery {
          */
         record IncidentFilter(Predicate<Incident> filter) implements Term {}
 
+        /**
+         * Filters out incidents outside the given time frame.
+         * @param frame The time frame, inclusive
+         */
+        record Within(TimeFrame frame) implements Term {}
+
         /**
          * Expands recurring incidents as anniversaries throughout the current
          * range.
@@ -117,7 +123,7 @@ public class HistoryQuery {
      * @return The query
      */
     public HistoryQuery noEarlierThan(int moment) {
-        terms.add(new Term.IncidentFilter(in -> in.moment() >= moment));
+        terms.add(new Term.Within(new TimeFrame(moment, Integer.MAX_VALUE)));
         return this;
     }
 
@@ -127,7 +133,7 @@ public class HistoryQuery {
      * @return The query
      */
     public HistoryQuery noLaterThan(int moment) {
-        terms.add(new Term.IncidentFilter(in -> in.moment() <= moment));
+        terms.add(new Term.Within(new TimeFrame(Integer.MIN_VALUE, moment)));
         return this;
     }
 
@@ -362,13 +368,31 @@ public class HistoryQuery {
         Query(History source) {
             this.source = source;
             this.entities = new HashSet<>(source.getEntityMap().keySet());
-            this.incidents = source.getIncidents().stream()
-                .sorted(Comparator.comparing(Incident::moment))
-                .toList();
+            this.incidents = source.getIncidents(initialFrame());
             this.periods = source.getPeriods();
             this.groupingTerm = new Term.GroupByPrimes(List.of(), List.of());
         }
 
+        // Gets the time frame of the incidents to retrieve from the source.
+        // Time frame terms commute with the other filtering terms, but not
+        // with the expansion of anniversaries, which depends on the
+        // incidents that remain when it is executed.
+        private TimeFrame initialFrame() {
+            var start = Integer.MIN_VALUE;
+            var end = Integer.MAX_VALUE;
+
+            for (var term : terms) {
+                if (term instanceof Term.ExpandRecurring) {
+                    break;
+                } else if (term instanceof Term.Within t) {
+                    start = Math.max(start, t.frame().start());
+                    end = Math.min(end, t.frame().end());
+                }
+            }
+
+            return new TimeFrame(start, end);
+        }
+
         //---------------------------------------------------------------------
         // Execution
 
@@ -377,6 +401,7 @@ public class HistoryQuery {
             for (var term : terms) {
                 switch (term) {
                     case Term.IncidentFilter t -> doFilterIncidents(t);
+                    case Term.Within t -> doFilterWithin(t);
                     case Term.ExpandRecurring t -> doExpandRecurring(t);
                     case Term.Includes t -> doIncludeEntities(t);
                     case Term.IncludesTypes t -> doIncludeTypes(t);
@@ -427,6 +452,13 @@ public class HistoryQuery {
             incidents = incidents.stream().filter(t.filter).toList();
         }
 
+        void doFilterWithin(Term.Within t) {
+            incidents = incidents.stream()
+                .filter(in -> in.moment() >= t.frame().start()
+                    && in.moment() <= t.frame().end())
+                .toList();
+        }
+
         void doExpandRecurring(Term.ExpandRecurring t) {
             var cal = t.calendar();
             if (!cal.hasMonths()) {
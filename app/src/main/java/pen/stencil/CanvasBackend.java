@@ -0,0 +1,120 @@
+package pen.stencil;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * A PenBackend that draws on a JavaFX GraphicsContext.
+ */
+final class CanvasBackend implements PenBackend {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    private final GraphicsContext gc;
+
+    // The size of the area cleared by clearCanvas(), or NaN to use the
+    // canvas's current size.
+    private final double width;
+    private final double height;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    // Draws on the context; clearCanvas() clears the whole canvas.
+    CanvasBackend(GraphicsContext gc) {
+        this(gc, Double.NaN, Double.NaN);
+    }
+
+    // Draws on the context; clearCanvas() clears the given area.
+    CanvasBackend(GraphicsContext gc, double width, double height) {
+        this.gc = gc;
+        this.width = width;
+        this.height = height;
+    }
+
+    //-------------------------------------------------------------------------
+    // PenBackend API
+
+    @Override public void save() { gc.save(); }
+    @Override public void restore() { gc.restore(); }
+    @Override public void rotate(double degrees) { gc.rotate(degrees); }
+
+    @Override public void scale(double xFactor, double yFactor) {
+        gc.scale(xFactor, yFactor);
+    }
+
+    @Override public void translate(double x, double y) {
+        gc.translate(x, y);
+    }
+
+    @Override public void setFill(Paint paint) { gc.setFill(paint); }
+    @Override public void setFont(Font font) { gc.setFont(font); }
+    @Override public void setLineWidth(double pixels) { gc.setLineWidth(pixels); }
+
+    @Override public void setTextAlign(TextAlignment align) {
+        gc.setTextAlign(align);
+    }
+
+    @Override public void setTextBaseline(VPos baseline) {
+        gc.setTextBaseline(baseline);
+    }
+
+    @Override public void setStroke(Paint paint) { gc.setStroke(paint); }
+
+    @Override
+    public void clearCanvas(Paint paint) {
+        var w = Double.isNaN(width) ? gc.getCanvas().getWidth() : width;
+        var h = Double.isNaN(height) ? gc.getCanvas().getHeight() : height;
+
+        gc.clearRect(0, 0, w, h);
+        if (paint != null) {
+            gc.save();
+            gc.setFill(paint);
+            gc.fillRect(0, 0, w, h);
+            gc.restore();
+        }
+    }
+
+    @Override public void fillText(String text, double x, double y) {
+        gc.fillText(text, x, y);
+    }
+
+    @Override public void strokeText(String text, double x, double y) {
+        gc.strokeText(text, x, y);
+    }
+
+    @Override public void strokeLine(double x1, double y1, double x2, double y2) {
+        gc.strokeLine(x1, y1, x2, y2);
+    }
+
+    @Override public void strokePolyline(double[] xs, double[] ys, int n) {
+        gc.strokePolyline(xs, ys, n);
+    }
+
+    @Override public void fillPolygon(double[] xs, double[] ys, int n) {
+        gc.fillPolygon(xs, ys, n);
+    }
+
+    @Override public void strokePolygon(double[] xs, double[] ys, int n) {
+        gc.strokePolygon(xs, ys, n);
+    }
+
+    @Override public void fillRect(double x, double y, double w, double h) {
+        gc.fillRect(x, y, w, h);
+    }
+
+    @Override public void strokeRect(double x, double y, double w, double h) {
+        gc.strokeRect(x, y, w, h);
+    }
+
+    @Override public void fillOval(double x, double y, double w, double h) {
+        gc.fillOval(x, y, w, h);
+    }
+
+    @Override public void strokeOval(double x, double y, double w, double h) {
+        gc.strokeOval(x, y, w, h);
+    }
+}
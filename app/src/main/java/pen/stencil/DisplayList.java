@@ -0,0 +1,673 @@
+package pen.stencil;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A recording of the drawing done with a {@link Pen}, for replay to any
+ * number of GraphicsContexts.  A Pen created for a DisplayList records its
+ * operations rather than drawing them, so that a drawing script can be
+ * run once and its output redrawn cheaply, e.g., whenever a window is
+ * resized.  A Stencil created for a DisplayList also records the bounds
+ * of what it draws, so the bounds are known before the list is replayed.
+ * A list can be replayed to a GraphicsContext or to any other
+ * {@link PenBackend}.
+ *
+ * <p>Operations are stored as opcodes and numeric arguments in primitive
+ * arrays; only paints, fonts, text, and enum settings are stored as
+ * objects.</p>
+ *
+ * <p>The list also notes where each shape drawn by the Stencil ends, and
+ * its bounds, so that a new recording of a drawing can be compared with
+ * the previous one with {@link #getDamage(DisplayList)}, and only the
+ * regions that changed need be redrawn.</p>
+ */
+@SuppressWarnings("unused")
+public class DisplayList implements PenBackend {
+    //-------------------------------------------------------------------------
+    // Opcodes
+
+    private static final byte SAVE = 0;
+    private static final byte RESTORE = 1;
+    private static final byte ROTATE = 2;
+    private static final byte SCALE = 3;
+    private static final byte TRANSLATE = 4;
+    private static final byte SET_FILL = 5;
+    private static final byte SET_FONT = 6;
+    private static final byte SET_LINE_WIDTH = 7;
+    private static final byte SET_TEXT_ALIGN = 8;
+    private static final byte SET_TEXT_BASELINE = 9;
+    private static final byte SET_STROKE = 10;
+    private static final byte FILL_TEXT = 11;
+    private static final byte STROKE_TEXT = 12;
+    private static final byte STROKE_LINE = 13;
+    private static final byte STROKE_POLYLINE = 14;
+    private static final byte FILL_POLYGON = 15;
+    private static final byte STROKE_POLYGON = 16;
+    private static final byte FILL_RECT = 17;
+    private static final byte STROKE_RECT = 18;
+    private static final byte FILL_OVAL = 19;
+    private static final byte STROKE_OVAL = 20;
+    private static final byte CLEAR = 21;
+
+    // The most damaged regions getDamage() returns separately
+    private static final int MAX_REGIONS = 16;
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The opcodes
+    private byte[] ops = new byte[64];
+    private int opCount = 0;
+
+    // The numeric arguments, in order
+    private double[] args = new double[256];
+    private int argCount = 0;
+
+    // The object arguments, in order
+    private Object[] refs = new Object[32];
+    private int refCount = 0;
+
+    // The bounds of what's been drawn, as recorded by a Stencil
+    private Bounds bounds = null;
+
+    // The shapes recorded by a Stencil.  Shape i's operations, numeric
+    // arguments, and object arguments end at shapeEnds[3*i], [3*i + 1],
+    // and [3*i + 2], and begin where the previous shape's end.
+    private int[] shapeEnds = new int[48];
+    private Bounds[] shapeBounds = new Bounds[16];
+    private int shapeCount = 0;
+
+    // The widest line width set, which strokes may extend beyond the
+    // shapes' bounds by half of.
+    private double maxLineWidth = 1.0;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates an empty display list.
+     */
+    public DisplayList() {
+        // Nothing to do
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Empties the list and resets its bounds.  The list should be cleared
+     * only when the recording Pen's save stack is empty.
+     * @return The list
+     */
+    public DisplayList clear() {
+        opCount = 0;
+        argCount = 0;
+        Arrays.fill(refs, 0, refCount, null);
+        refCount = 0;
+        bounds = null;
+        Arrays.fill(shapeBounds, 0, shapeCount, null);
+        shapeCount = 0;
+        maxLineWidth = 1.0;
+        return this;
+    }
+
+    /**
+     * Gets the number of recorded operations.
+     * @return The number
+     */
+    public int size() {
+        return opCount;
+    }
+
+    /**
+     * Gets the bounds of everything drawn into the list by a Stencil
+     * since the list was cleared, in canvas coordinates.
+     * @return The bounds, if anything has been drawn
+     */
+    public Optional<Bounds> getBounds() {
+        return Optional.ofNullable(bounds);
+    }
+
+    /**
+     * Draws the recorded operations on the GraphicsContext.  The context's
+     * state is saved beforehand and restored afterward, and the operations
+     * begin with the Pen's default font, as they were recorded.
+     * @param gc The context
+     */
+    public void replay(GraphicsContext gc) {
+        replay(new CanvasBackend(gc));
+    }
+
+    /**
+     * Draws the recorded operations on the GraphicsContext as though it
+     * were a canvas of the given width and height, translated so that the
+     * point (x,y) is at the context's origin.  This is used to draw one
+     * tile of an image too large to draw all at once.
+     * @param gc The context
+     * @param x The X coordinate of the tile's origin
+     * @param y The Y coordinate of the tile's origin
+     * @param width The width of the full canvas
+     * @param height The height of the full canvas
+     */
+    public void replay(
+        GraphicsContext gc,
+        double x,
+        double y,
+        double width,
+        double height
+    ) {
+        gc.save();
+        gc.translate(-x, -y);
+        replay(new CanvasBackend(gc, width, height));
+        gc.restore();
+    }
+
+    /**
+     * Redraws the given regions of the GraphicsContext, e.g., as returned
+     * by {@link #getDamage(DisplayList)}.  All drawing is clipped to the
+     * regions, and shapes that lie outside them aren't drawn at all.
+     * @param gc The context
+     * @param regions The regions, in canvas coordinates
+     */
+    public void replay(GraphicsContext gc, List<Bounds> regions) {
+        if (regions.isEmpty()) {
+            return;
+        }
+
+        gc.save();
+        gc.beginPath();
+        for (var region : regions) {
+            gc.rect(region.getMinX(), region.getMinY(),
+                region.getWidth(), region.getHeight());
+        }
+        gc.clip();
+        gc.beginPath();
+        replay(new CanvasBackend(gc), regions);
+        gc.restore();
+    }
+
+    /**
+     * Replays the recorded operations to the backend.  The backend's state
+     * is saved beforehand and restored afterward, and the operations begin
+     * with the Pen's default font, as they were recorded.
+     * @param out The backend
+     */
+    public void replay(PenBackend out) {
+        replay(out, null);
+    }
+
+    // Replays the recorded operations to the backend, skipping the
+    // drawing operations of shapes outside the regions, if given.
+    private void replay(PenBackend out, List<Bounds> regions) {
+        var a = 0;
+        var r = 0;
+        var depth = 0;
+        double[] xs = new double[0];
+        double[] ys = new double[0];
+
+        var shape = 0;
+        var visible = regions == null || isVisible(0, regions);
+
+        out.save();
+        out.setFont(Pen.DEFAULT_FONT.getRealFont());
+
+        for (int i = 0; i < opCount; i++) {
+            while (shape < shapeCount && i >= shapeEnds[3*shape]) {
+                shape++;
+                visible = regions == null || isVisible(shape, regions);
+            }
+
+            if (!visible && isShapeOp(ops[i])) {
+                // Skip the operation's arguments.
+                switch (ops[i]) {
+                    case FILL_TEXT, STROKE_TEXT -> {
+                        r++;
+                        a += 2;
+                    }
+                    case STROKE_POLYLINE, FILL_POLYGON, STROKE_POLYGON ->
+                        a += 1 + 2*(int)args[a];
+                    default -> a += 4;
+                }
+                continue;
+            }
+
+            switch (ops[i]) {
+                case SAVE -> {
+                    out.save();
+                    depth++;
+                }
+                case RESTORE -> {
+                    out.restore();
+                    depth--;
+                }
+                case ROTATE -> out.rotate(args[a++]);
+                case SCALE -> out.scale(args[a++], args[a++]);
+                case TRANSLATE -> out.translate(args[a++], args[a++]);
+                case SET_FILL -> out.setFill((Paint)refs[r++]);
+                case SET_FONT -> out.setFont((Font)refs[r++]);
+                case SET_LINE_WIDTH -> out.setLineWidth(args[a++]);
+                case SET_TEXT_ALIGN -> out.setTextAlign((TextAlignment)refs[r++]);
+                case SET_TEXT_BASELINE -> out.setTextBaseline((VPos)refs[r++]);
+                case SET_STROKE -> out.setStroke((Paint)refs[r++]);
+                case FILL_TEXT ->
+                    out.fillText((String)refs[r++], args[a++], args[a++]);
+                case STROKE_TEXT ->
+                    out.strokeText((String)refs[r++], args[a++], args[a++]);
+                case STROKE_LINE ->
+                    out.strokeLine(args[a++], args[a++], args[a++], args[a++]);
+                case STROKE_POLYLINE, FILL_POLYGON, STROKE_POLYGON -> {
+                    var n = (int)args[a++];
+                    if (xs.length < n) {
+                        xs = new double[n];
+                        ys = new double[n];
+                    }
+                    System.arraycopy(args, a, xs, 0, n);
+                    System.arraycopy(args, a + n, ys, 0, n);
+                    a += 2*n;
+
+                    switch (ops[i]) {
+                        case STROKE_POLYLINE -> out.strokePolyline(xs, ys, n);
+                        case FILL_POLYGON -> out.fillPolygon(xs, ys, n);
+                        default -> out.strokePolygon(xs, ys, n);
+                    }
+                }
+                case FILL_RECT ->
+                    out.fillRect(args[a++], args[a++], args[a++], args[a++]);
+                case STROKE_RECT ->
+                    out.strokeRect(args[a++], args[a++], args[a++], args[a++]);
+                case FILL_OVAL ->
+                    out.fillOval(args[a++], args[a++], args[a++], args[a++]);
+                case STROKE_OVAL ->
+                    out.strokeOval(args[a++], args[a++], args[a++], args[a++]);
+                case CLEAR -> out.clearCanvas((Paint)refs[r++]);
+                default -> throw new IllegalStateException(
+                    "Unknown opcode: " + ops[i]);
+            }
+        }
+
+        while (depth-- > 0) {
+            out.restore();
+        }
+        out.restore();
+    }
+
+    //-------------------------------------------------------------------------
+    // PenBackend API: recording
+
+    @Override
+    public void save() {
+        op(SAVE);
+    }
+
+    @Override
+    public void restore() {
+        op(RESTORE);
+    }
+
+    @Override
+    public void rotate(double degrees) {
+        op(ROTATE, degrees);
+    }
+
+    @Override
+    public void scale(double xFactor, double yFactor) {
+        op(SCALE, xFactor, yFactor);
+    }
+
+    @Override
+    public void translate(double x, double y) {
+        op(TRANSLATE, x, y);
+    }
+
+    @Override
+    public void setFill(Paint paint) {
+        op(SET_FILL, paint);
+    }
+
+    @Override
+    public void setFont(Font font) {
+        op(SET_FONT, font);
+    }
+
+    @Override
+    public void setLineWidth(double pixels) {
+        op(SET_LINE_WIDTH, pixels);
+        maxLineWidth = Math.max(maxLineWidth, pixels);
+    }
+
+    @Override
+    public void setTextAlign(TextAlignment align) {
+        op(SET_TEXT_ALIGN, align);
+    }
+
+    @Override
+    public void setTextBaseline(VPos baseline) {
+        op(SET_TEXT_BASELINE, baseline);
+    }
+
+    @Override
+    public void setStroke(Paint paint) {
+        op(SET_STROKE, paint);
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        op(FILL_TEXT, text);
+        arg(x);
+        arg(y);
+    }
+
+    @Override
+    public void strokeText(String text, double x, double y) {
+        op(STROKE_TEXT, text);
+        arg(x);
+        arg(y);
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        op(STROKE_LINE, x1, y1, x2, y2);
+    }
+
+    @Override
+    public void strokePolyline(double[] xPoints, double[] yPoints, int nPoints) {
+        points(STROKE_POLYLINE, xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void fillPolygon(double[] xPoints, double[] yPoints, int nPoints) {
+        points(FILL_POLYGON, xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void strokePolygon(double[] xPoints, double[] yPoints, int nPoints) {
+        points(STROKE_POLYGON, xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        op(FILL_RECT, x, y, w, h);
+    }
+
+    @Override
+    public void strokeRect(double x, double y, double w, double h) {
+        op(STROKE_RECT, x, y, w, h);
+    }
+
+    @Override
+    public void fillOval(double x, double y, double w, double h) {
+        op(FILL_OVAL, x, y, w, h);
+    }
+
+    @Override
+    public void strokeOval(double x, double y, double w, double h) {
+        op(STROKE_OVAL, x, y, w, h);
+    }
+
+    @Override
+    public void clearCanvas(Paint paint) {
+        op(CLEAR, paint);
+    }
+
+    //-------------------------------------------------------------------------
+    // Bounds, for use by Stencil
+
+    // Adds the bounds of the shape just drawn, already transformed to
+    // canvas coordinates.
+    void addBounds(Bounds added) {
+        bounds = bounds == null ? added : Pen.boundsOf(bounds, added);
+
+        if (shapeCount == shapeBounds.length) {
+            shapeBounds = Arrays.copyOf(shapeBounds, 2*shapeCount);
+            shapeEnds = Arrays.copyOf(shapeEnds, 6*shapeCount);
+        }
+        shapeEnds[3*shapeCount] = opCount;
+        shapeEnds[3*shapeCount + 1] = argCount;
+        shapeEnds[3*shapeCount + 2] = refCount;
+        shapeBounds[shapeCount++] = added;
+    }
+
+    //-------------------------------------------------------------------------
+    // Damage
+
+    /**
+     * Compares this list with a previous recording of the drawing, and
+     * gets the regions of the canvas that must be redrawn to update it,
+     * i.e., the bounds of the shapes that were added, removed, or changed,
+     * in either list.  The shapes that are the same at the beginning and
+     * end of both lists are unchanged; any in between are damaged.
+     * Returns an empty Optional if the whole canvas must be redrawn, e.g.,
+     * if the background has changed.
+     * @param previous The previous recording
+     * @return The regions, in canvas coordinates
+     */
+    public Optional<List<Bounds>> getDamage(DisplayList previous) {
+        var n = shapeCount;
+        var m = previous.shapeCount;
+
+        // FIRST, anything drawn after the last shape is unbounded.
+        if (!sameRange(n, previous, m)) {
+            return Optional.empty();
+        }
+
+        // NEXT, find the unchanged shapes at the beginning and end.
+        var head = 0;
+        while (head < n && head < m && sameShape(head, previous, head)) {
+            head++;
+        }
+
+        var tail = 0;
+        while (tail < n - head && tail < m - head &&
+            sameShape(n - 1 - tail, previous, m - 1 - tail)
+        ) {
+            tail++;
+        }
+
+        // NEXT, the rest are damaged.
+        var pad = Math.max(maxLineWidth, previous.maxLineWidth)/2 + 1;
+        var damage = new ArrayList<Bounds>();
+
+        if (!previous.addDamage(damage, head, m - tail, pad) ||
+            !addDamage(damage, head, n - tail, pad)
+        ) {
+            return Optional.empty();
+        }
+
+        return Optional.of(merge(damage));
+    }
+
+    // Adds the padded bounds of shapes start to end - 1 to the damage,
+    // returning false if any of them clears the canvas.
+    private boolean addDamage(
+        List<Bounds> damage,
+        int start,
+        int end,
+        double pad
+    ) {
+        for (int i = start; i < end; i++) {
+            for (int op = opStart(i); op < shapeEnds[3*i]; op++) {
+                if (ops[op] == CLEAR) {
+                    return false;
+                }
+            }
+
+            // Snap to whole pixels, so that no antialiased edge is missed.
+            var b = shapeBounds[i];
+            var minX = Math.floor(b.getMinX() - pad);
+            var minY = Math.floor(b.getMinY() - pad);
+            damage.add(new BoundingBox(minX, minY,
+                Math.ceil(b.getMaxX() + pad) - minX,
+                Math.ceil(b.getMaxY() + pad) - minY));
+        }
+        return true;
+    }
+
+    // Merges overlapping regions, and limits their number.
+    private static List<Bounds> merge(List<Bounds> regions) {
+        var merged = new ArrayList<>(regions);
+
+        for (var changed = true; changed; ) {
+            changed = false;
+
+            for (int i = 0; i < merged.size() && !changed; i++) {
+                for (int j = i + 1; j < merged.size(); j++) {
+                    if (merged.get(i).intersects(merged.get(j))) {
+                        merged.set(i, Pen.boundsOf(merged.get(i), merged.get(j)));
+                        merged.remove(j);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (merged.size() > MAX_REGIONS) {
+            var all = merged.getFirst();
+            for (var region : merged) {
+                all = Pen.boundsOf(all, region);
+            }
+            return List.of(all);
+        }
+
+        return merged;
+    }
+
+    // Whether shape i of this list was recorded just as shape j of the
+    // other was, with the same bounds.
+    private boolean sameShape(int i, DisplayList other, int j) {
+        return shapeBounds[i].equals(other.shapeBounds[j]) &&
+            sameRange(i, other, j);
+    }
+
+    // Whether the operations recorded between the end of shape i - 1 and
+    // the end of shape i are the same as those of shape j of the other
+    // list.  Shape shapeCount "ends" at the end of the list.
+    private boolean sameRange(int i, DisplayList other, int j) {
+        return Arrays.equals(
+                ops, opStart(i), opEnd(i),
+                other.ops, other.opStart(j), other.opEnd(j)) &&
+            Arrays.equals(
+                args, argStart(i), end(i, 1, argCount),
+                other.args, other.argStart(j), other.end(j, 1, other.argCount)) &&
+            Arrays.equals(
+                refs, refStart(i), end(i, 2, refCount),
+                other.refs, other.refStart(j), other.end(j, 2, other.refCount));
+    }
+
+    private int opStart(int i) {
+        return i == 0 ? 0 : shapeEnds[3*(i - 1)];
+    }
+
+    private int argStart(int i) {
+        return i == 0 ? 0 : shapeEnds[3*(i - 1) + 1];
+    }
+
+    private int refStart(int i) {
+        return i == 0 ? 0 : shapeEnds[3*(i - 1) + 2];
+    }
+
+    private int opEnd(int i) {
+        return end(i, 0, opCount);
+    }
+
+    private int end(int i, int which, int count) {
+        return i < shapeCount ? shapeEnds[3*i + which] : count;
+    }
+
+    // Whether shape i, padded for its strokes, intersects any of the
+    // regions.  Anything after the last shape is always visible.
+    private boolean isVisible(int i, List<Bounds> regions) {
+        if (i >= shapeCount) {
+            return true;
+        }
+
+        var pad = maxLineWidth/2 + 1;
+        var b = shapeBounds[i];
+        for (var region : regions) {
+            if (region.intersects(b.getMinX() - pad, b.getMinY() - pad,
+                b.getWidth() + 2*pad, b.getHeight() + 2*pad)
+            ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Whether the opcode draws a shape, rather than setting state or
+    // clearing the canvas.
+    private static boolean isShapeOp(byte op) {
+        return op >= FILL_TEXT && op <= STROKE_OVAL;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private void op(byte op) {
+        if (opCount == ops.length) {
+            ops = Arrays.copyOf(ops, 2*ops.length);
+        }
+        ops[opCount++] = op;
+    }
+
+    private void op(byte op, Object ref) {
+        op(op);
+        if (refCount == refs.length) {
+            refs = Arrays.copyOf(refs, 2*refs.length);
+        }
+        refs[refCount++] = ref;
+    }
+
+    private void op(byte op, double value) {
+        op(op);
+        arg(value);
+    }
+
+    private void op(byte op, double a, double b) {
+        op(op);
+        arg(a);
+        arg(b);
+    }
+
+    private void op(byte op, double a, double b, double c, double d) {
+        op(op);
+        arg(a);
+        arg(b);
+        arg(c);
+        arg(d);
+    }
+
+    private void arg(double value) {
+        if (argCount == args.length) {
+            args = Arrays.copyOf(args, 2*args.length);
+        }
+        args[argCount++] = value;
+    }
+
+    private void points(
+        byte op,
+        double[] xPoints,
+        double[] yPoints,
+        int nPoints
+    ) {
+        op(op);
+        arg(nPoints);
+        if (argCount + 2*nPoints > args.length) {
+            args = Arrays.copyOf(args,
+                Math.max(2*args.length, argCount + 2*nPoints));
+        }
+        System.arraycopy(xPoints, 0, args, argCount, nPoints);
+        System.arraycopy(yPoints, 0, args, argCount + nPoints, nPoints);
+        argCount += 2*nPoints;
+    }
+}
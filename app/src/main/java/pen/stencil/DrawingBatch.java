@@ -0,0 +1,249 @@
+package pen.stencil;
+
+import javafx.geometry.Dimension2D;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a batch of drawings to PNG or SVG files, in parallel.  The
+ * drawings are recorded on worker threads; SVG files are written on the
+ * workers as well, while PNG files are rendered one at a time on the
+ * calling thread, which must be the JavaFX application thread, and
+ * encoded on other threads.
+ *
+ * <p>Only a bounded number of drawings are in progress at any time, so
+ * that a batch of any length can be written in bounded memory.  The
+ * outcome of each drawing is reported in batch order as it completes.</p>
+ */
+public final class DrawingBatch {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The output format
+    private final Format format;
+
+    // The number of worker threads
+    private final int workers;
+
+    // The number of drawings in progress at once
+    private final int window;
+
+    // The drawings to write
+    private final List<Page> pages = new ArrayList<>();
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates an empty batch.
+     * @param format The output format
+     * @param workers The number of worker threads
+     */
+    public DrawingBatch(Format format, int workers) {
+        this.format = format;
+        this.workers = Math.max(1, workers);
+        this.window = 2*this.workers;
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Gets the batch's output format.
+     * @return The format
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Adds a drawing to the batch.  The drawing is acquired from the
+     * supplier on a worker thread just before it is recorded, so that
+     * the supplier can load the drawing's inputs lazily.
+     * @param output The output file
+     * @param drawing The drawing's supplier
+     */
+    public void add(File output, Callable<Drawing> drawing) {
+        pages.add(new Page(output, drawing));
+    }
+
+    /**
+     * Gets the number of drawings in the batch.
+     * @return The number
+     */
+    public int size() {
+        return pages.size();
+    }
+
+    /**
+     * Writes the drawings, reporting the outcome of each to the listener
+     * in batch order on the calling thread.  PNG output must be written
+     * on the JavaFX application thread.
+     * @param listener The listener
+     * @return The number of drawings that failed
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public int write(Listener listener) throws InterruptedException {
+        var pool = Executors.newFixedThreadPool(workers);
+
+        try {
+            return format == Format.SVG
+                ? writeSvg(pool, listener)
+                : writePng(pool, listener);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Records and writes each drawing on a worker thread.
+    private int writeSvg(ExecutorService pool, Listener listener)
+        throws InterruptedException
+    {
+        var lists = ThreadLocal.withInitial(DisplayList::new);
+        var pending = new ArrayDeque<Future<?>>();
+        var next = 0;
+        var failures = 0;
+
+        for (int i = 0; i < pages.size(); i++) {
+            for (; next < pages.size() && next < i + window; next++) {
+                var page = pages.get(next);
+                pending.add(pool.submit(() -> {
+                    SvgWriter.save(page.drawing().call(), page.output(),
+                        lists.get());
+                    return null;
+                }));
+            }
+
+            try {
+                pending.poll().get();
+                listener.written(i, null);
+            } catch (ExecutionException ex) {
+                listener.written(i, ex.getCause());
+                failures++;
+            }
+        }
+
+        return failures;
+    }
+
+    // Records the drawings on worker threads, rendering each on this
+    // thread as it's ready and encoding it on other threads.
+    private int writePng(ExecutorService pool, Listener listener)
+        throws InterruptedException
+    {
+        var recordings = new ArrayDeque<Future<Recording>>();
+        var saves = new ArrayDeque<CompletableFuture<Void>>();
+        var encoders = Executors.newFixedThreadPool(workers);
+        var buffer = new StencilBuffer();
+        var next = 0;
+        var reported = 0;
+        var failures = 0;
+
+        try {
+            for (int i = 0; i < pages.size(); i++) {
+                for (; next < pages.size() && next < i + window; next++) {
+                    var page = pages.get(next);
+                    recordings.add(pool.submit(() -> {
+                        var list = new DisplayList();
+                        var size = StencilBuffer.record(
+                            page.drawing().call(), list);
+                        return new Recording(list, size);
+                    }));
+                }
+
+                try {
+                    var recording = recordings.poll().get();
+                    buffer.draw(recording.list(), recording.size());
+                    saves.add(buffer.save(pages.get(i).output(), encoders));
+                } catch (ExecutionException ex) {
+                    saves.add(CompletableFuture.failedFuture(ex.getCause()));
+                } catch (IOException | RuntimeException ex) {
+                    saves.add(CompletableFuture.failedFuture(ex));
+                }
+
+                // Don't let the encoded images pile up.
+                while (saves.size() > window) {
+                    failures += report(reported++, saves.poll(), listener);
+                }
+            }
+
+            while (!saves.isEmpty()) {
+                failures += report(reported++, saves.poll(), listener);
+            }
+        } finally {
+            encoders.shutdown();
+        }
+
+        return failures;
+    }
+
+    // Waits for a save and reports it, returning 1 if it failed.
+    private int report(
+        int index,
+        CompletableFuture<Void> save,
+        Listener listener
+    ) {
+        try {
+            save.join();
+            listener.written(index, null);
+            return 0;
+        } catch (CompletionException ex) {
+            listener.written(index, ex.getCause());
+            return 1;
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Helper Classes
+
+    /**
+     * The output formats.
+     */
+    public enum Format {
+        PNG,
+        SVG;
+
+        /**
+         * Gets the format's file type, e.g., "png".
+         * @return The file type
+         */
+        public String fileType() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Receives the outcome of each drawing in the batch.
+     */
+    public interface Listener {
+        /**
+         * Called when a drawing has been written or has failed.  The
+         * error is the exception thrown by the drawing's supplier, by the
+         * drawing, or while writing the file, e.g., an IOException or
+         * UncheckedIOException.
+         * @param index The drawing's index in the batch
+         * @param error The error, or null on success
+         */
+        void written(int index, Throwable error);
+    }
+
+    // A drawing to write
+    private record Page(File output, Callable<Drawing> drawing) {}
+
+    // A recorded drawing
+    private record Recording(DisplayList list, Dimension2D size) {}
+}
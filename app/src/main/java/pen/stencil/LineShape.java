@@ -3,7 +3,6 @@ package pen.stencil;
 import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -15,7 +14,7 @@ public class LineShape
     // Instance Variables
 
     // The points on the line
-    private final List<Point2D> points = new ArrayList<>();
+    private final Points points = new Points();
 
     // The symbols at the start and end of the line.
     private Symbol startSymbol = Symbol.NONE;
@@ -32,20 +31,20 @@ public class LineShape
     // DSL
 
     public LineShape to(Point2D point) {
-        points.add(point);
-        return this;
+        return to(point.getX(), point.getY());
     }
 
     public LineShape to(double x, double y) {
-        return to(new Point2D(x,y));
+        points.add(x, y);
+        return this;
     }
 
     public LineShape toX(double x) {
-        return to(new Point2D(x,last().getY()));
+        return to(x, lastY());
     }
 
     public LineShape toY(double y) {
-        return to(new Point2D(last().getX(),y));
+        return to(lastX(), y);
     }
 
     public LineShape points(List<Point2D> points) {
@@ -71,26 +70,29 @@ public class LineShape
             .restore();
 
         if (points.size() > 1 && startSymbol != Symbol.NONE) {
-            drawSymbol(stencil, startSymbol, points.get(1), points.get(0));
+            drawSymbol(stencil, startSymbol, 1, 0);
         }
 
         if (points.size() > 1 && endSymbol != Symbol.NONE) {
             var n = points.size() - 1;
-            drawSymbol(stencil, endSymbol, points.get(n-1), points.get(n));
+            drawSymbol(stencil, endSymbol, n-1, n);
         }
 
-        return Pen.boundsOf(points);
+        return points.getBounds();
     }
 
+    // Draws the symbol at point "to", pointing away from point "from".
     private void drawSymbol(
         Stencil sten,
         Symbol symbol,
-        Point2D from,
-        Point2D to
+        int from,
+        int to
     ) {
-        var angle = Pen.angleOf(from, to);
+        var x = points.getX(to);
+        var y = points.getY(to);
+        var angle = Pen.angleOf(points.getX(from), points.getY(from), x, y);
         sten.savePen()
-            .translate(to.getX(), to.getY())
+            .translate(x, y)
             .rotate(angle)
             .draw(Stencil.symbol()
                 .style(this)
@@ -99,9 +101,11 @@ public class LineShape
             .restorePen();
     }
 
-    private Point2D last() {
-        return points.isEmpty()
-            ? Point2D.ZERO
-            : points.getLast();
+    private double lastX() {
+        return points.isEmpty() ? 0.0 : points.getX(points.size() - 1);
+    }
+
+    private double lastY() {
+        return points.isEmpty() ? 0.0 : points.getY(points.size() - 1);
     }
 }
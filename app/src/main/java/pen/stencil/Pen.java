@@ -4,14 +4,20 @@ import javafx.geometry.*;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Paint;
 import javafx.scene.text.Font;
-import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
 import javafx.scene.transform.Affine;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.Optional;
 
 /**
- * A wrapper for the JavaFX GraphicsContext
+ * A wrapper for the JavaFX GraphicsContext.  A Pen may instead record its
+ * drawing into a {@link DisplayList}, for later replay, or send it to any
+ * other {@link PenBackend}, e.g., an {@link SvgWriter}; or it may draw
+ * nothing at all, tracking only its transform so that a {@link Stencil}
+ * can measure a drawing.
  */
 @SuppressWarnings("unused")
 public class Pen {
@@ -20,12 +26,22 @@ public class Pen {
      */
     public static final PenFont DEFAULT_FONT = PenFont.SANS12;
 
+    // A backend that draws nothing.
+    private static final PenBackend NO_BACKEND = new NullBackend();
+
     //-------------------------------------------------------------------------
     //  Instance Variables
 
-    // The wrapped GraphicsContext
+    // The backend that does the drawing
+    private final PenBackend backend;
+
+    // The wrapped GraphicsContext, or null if the backend is not a canvas
     private final GraphicsContext gc;
 
+    // The current transform and the saved transforms
+    private Affine transform;
+    private final Deque<Affine> savedTransforms = new ArrayDeque<>();
+
     // Height of the save/restore stack
     private int stackHeight = 0;
 
@@ -39,38 +55,79 @@ public class Pen {
      * @param gc The graphics context.
      */
     public Pen(GraphicsContext gc) {
+        this.backend = new CanvasBackend(gc);
         this.gc = gc;
+        this.transform = gc.getTransform();
         gc.setFont(DEFAULT_FONT.getRealFont());
     }
 
+    /**
+     * Creates a new Pen that records its drawing into the given display
+     * list.  The list's replay begins with the same initial state as a
+     * Pen created for a GraphicsContext.
+     * @param list The display list
+     */
+    public Pen(DisplayList list) {
+        this((PenBackend)list);
+    }
+
+    /**
+     * Creates a new Pen that draws using the given backend.  The backend
+     * is given the default font.
+     * @param backend The backend
+     */
+    public Pen(PenBackend backend) {
+        this.backend = backend;
+        this.gc = null;
+        this.transform = new Affine();
+
+        // A DisplayList gets the default font on replay.
+        if (!(backend instanceof DisplayList)) {
+            backend.setFont(DEFAULT_FONT.getRealFont());
+        }
+    }
+
+    // Creates a Pen that draws nothing.  See Stencil.measuring().
+    Pen() {
+        this(NO_BACKEND);
+    }
+
     //-------------------------------------------------------------------------
     // Public API: General
 
     /**
      * Gets the underlying GraphicsContext as an escape hatch.
-     * @return The context
+     * @return The context, or null if the pen isn't drawing on a canvas
      */
     public GraphicsContext gc() {
         return gc;
     }
 
+    /**
+     * Gets the pen's backend.
+     * @return The backend
+     */
+    public PenBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Gets the display list the pen is recording into, if any.
+     * @return The list
+     */
+    public Optional<DisplayList> getDisplayList() {
+        return backend instanceof DisplayList list
+            ? Optional.of(list)
+            : Optional.empty();
+    }
+
     public Pen clear() {
-        gc.clearRect(0, 0,
-            gc.getCanvas().getWidth(),
-            gc.getCanvas().getHeight());
+        backend.clearCanvas(null);
         return this;
     }
 
     public Pen clear(Paint color) {
-        gc.clearRect(0, 0,
-            gc.getCanvas().getWidth(),
-            gc.getCanvas().getHeight());
-        gc.save();
-        gc.setFill(color);
-        gc.fillRect(0, 0,
-            gc.getCanvas().getWidth(),
-            gc.getCanvas().getHeight());
-        gc.restore();
+        backend.clearCanvas(color);
         return this;
     }
 
@@ -83,7 +140,8 @@ public class Pen {
      */
     public Pen save() {
         stackHeight++;
-        gc.save();
+        savedTransforms.push(transform.clone());
+        backend.save();
         return this;
     }
 
@@ -94,7 +152,8 @@ public class Pen {
     public Pen restore() {
         if (stackHeight > 0) {
             stackHeight--;
-            gc.restore();
+            transform = savedTransforms.pop();
+            backend.restore();
         }
         return this;
     }
@@ -142,7 +201,8 @@ public class Pen {
      * @return The pen
      */
     public Pen rotate(double degrees) {
-        gc.rotate(degrees);
+        transform.appendRotation(degrees);
+        backend.rotate(degrees);
         return this;
     }
 
@@ -153,7 +213,8 @@ public class Pen {
      * @return The pen
      */
     public Pen scale(double xFactor, double yFactor) {
-        gc.scale(xFactor, yFactor);
+        transform.appendScale(xFactor, yFactor);
+        backend.scale(xFactor, yFactor);
         return this;
     }
 
@@ -164,7 +225,8 @@ public class Pen {
      * @return The pen
      */
     public Pen translate(double x, double y) {
-        gc.translate(x, y);
+        transform.appendTranslation(x, y);
+        backend.translate(x, y);
         return this;
     }
 
@@ -173,7 +235,7 @@ public class Pen {
      * @return The transform
      */
     public Affine getTransform() {
-        return gc.getTransform();
+        return transform.clone();
     }
 
 
@@ -181,37 +243,36 @@ public class Pen {
     // DSL: Style
 
     public Pen setFill(Paint color) {
-        gc.setFill(color);
+        backend.setFill(color);
         return this;
     }
 
     public Pen setFont(Font font) {
-        gc.setFont(font);
+        backend.setFont(font);
         return this;
     }
 
     public Pen setFont(PenFont font) {
-        gc.setFont(font.getRealFont());
-        return this;
+        return setFont(font.getRealFont());
     }
 
     public Pen setLineWidth(double pixels) {
-        gc.setLineWidth(pixels);
+        backend.setLineWidth(pixels);
         return this;
     }
 
     public Pen setTextAlign(TextAlignment align) {
-        gc.setTextAlign(align);
+        backend.setTextAlign(align);
         return this;
     }
 
     public Pen setTextBaseline(VPos baseline) {
-        gc.setTextBaseline(baseline);
+        backend.setTextBaseline(baseline);
         return this;
     }
 
     public Pen setStroke(Paint color) {
-        gc.setStroke(color);
+        backend.setStroke(color);
         return this;
     }
 
@@ -224,12 +285,12 @@ public class Pen {
     //
 
     public Pen fillText(String text, double x, double y) {
-        gc.fillText(text, x, y);
+        backend.fillText(text, x, y);
         return this;
     }
 
     public Pen strokeText(String text, double x, double y) {
-        gc.strokeText(text, x, y);
+        backend.strokeText(text, x, y);
         return this;
     }
 
@@ -238,24 +299,21 @@ public class Pen {
     //
 
     public Pen strokeLine(double x1, double y1, double x2, double y2) {
-        gc.strokeLine(x1, y1, x2, y2);
+        backend.strokeLine(x1, y1, x2, y2);
         return this;
     }
 
     public Pen strokePolyline(double[] xPoints, double[] yPoints, int nPoints) {
-        gc.strokePolyline(xPoints, yPoints, nPoints);
+        backend.strokePolyline(xPoints, yPoints, nPoints);
         return this;
     }
 
-    public Pen strokePolyline(List<Point2D> points) {
-        double[] xPoints = new double[points.size()];
-        double[] yPoints = new double[points.size()];
+    public Pen strokePolyline(Points points) {
+        return strokePolyline(points.xArray(), points.yArray(), points.size());
+    }
 
-        for (int i = 0; i < points.size(); i++) {
-            xPoints[i] = points.get(i).getX();
-            yPoints[i] = points.get(i).getY();
-        }
-        return strokePolyline(xPoints, yPoints, points.size());
+    public Pen strokePolyline(List<Point2D> points) {
+        return strokePolyline(Points.of(points));
     }
 
     //
@@ -263,35 +321,29 @@ public class Pen {
     //
 
     public Pen fillPolygon(double[] xPoints, double[] yPoints, int nPoints) {
-        gc.fillPolygon(xPoints, yPoints, nPoints);
+        backend.fillPolygon(xPoints, yPoints, nPoints);
         return this;
     }
 
-    public Pen fillPolygon(List<Point2D> points) {
-        double[] xPoints = new double[points.size()];
-        double[] yPoints = new double[points.size()];
+    public Pen fillPolygon(Points points) {
+        return fillPolygon(points.xArray(), points.yArray(), points.size());
+    }
 
-        for (int i = 0; i < points.size(); i++) {
-            xPoints[i] = points.get(i).getX();
-            yPoints[i] = points.get(i).getY();
-        }
-        return fillPolygon(xPoints, yPoints, points.size());
+    public Pen fillPolygon(List<Point2D> points) {
+        return fillPolygon(Points.of(points));
     }
 
     public Pen strokePolygon(double[] xPoints, double[] yPoints, int nPoints) {
-        gc.strokePolygon(xPoints, yPoints, nPoints);
+        backend.strokePolygon(xPoints, yPoints, nPoints);
         return this;
     }
 
-    public Pen strokePolygon(List<Point2D> points) {
-        double[] xPoints = new double[points.size()];
-        double[] yPoints = new double[points.size()];
+    public Pen strokePolygon(Points points) {
+        return strokePolygon(points.xArray(), points.yArray(), points.size());
+    }
 
-        for (int i = 0; i < points.size(); i++) {
-            xPoints[i] = points.get(i).getX();
-            yPoints[i] = points.get(i).getY();
-        }
-        return strokePolygon(xPoints, yPoints, points.size());
+    public Pen strokePolygon(List<Point2D> points) {
+        return strokePolygon(Points.of(points));
     }
 
     //
@@ -299,25 +351,23 @@ public class Pen {
     //
 
     public Pen fillRect(double x, double y, double w, double h) {
-        gc.fillRect(x, y, w, h);
+        backend.fillRect(x, y, w, h);
         return this;
     }
 
     public Pen fillRect(Bounds bounds) {
-        gc.fillRect(bounds.getMinX(), bounds.getMinY(),
+        return fillRect(bounds.getMinX(), bounds.getMinY(),
             bounds.getWidth(), bounds.getHeight());
-        return this;
     }
 
     public Pen strokeRect(double x, double y, double w, double h) {
-        gc.strokeRect(x, y, w, h);
+        backend.strokeRect(x, y, w, h);
         return this;
     }
 
     public Pen strokeRect(Bounds bounds) {
-        gc.strokeRect(bounds.getMinX(), bounds.getMinY(),
+        return strokeRect(bounds.getMinX(), bounds.getMinY(),
             bounds.getWidth(), bounds.getHeight());
-        return this;
     }
 
     //
@@ -325,52 +375,38 @@ public class Pen {
     //
 
     public Pen fillOval(double x, double y, double w, double h) {
-        gc.fillOval(x, y, w, h);
+        backend.fillOval(x, y, w, h);
         return this;
     }
 
     public Pen fillOval(Bounds bounds) {
-        gc.fillOval(bounds.getMinX(), bounds.getMinY(),
+        return fillOval(bounds.getMinX(), bounds.getMinY(),
             bounds.getWidth(), bounds.getHeight());
-        return this;
     }
 
     public Pen strokeOval(double x, double y, double w, double h) {
-        gc.strokeOval(x, y, w, h);
+        backend.strokeOval(x, y, w, h);
         return this;
     }
 
     public Pen strokeOval(Bounds bounds) {
-        gc.strokeOval(bounds.getMinX(), bounds.getMinY(),
+        return strokeOval(bounds.getMinX(), bounds.getMinY(),
             bounds.getWidth(), bounds.getHeight());
-        return this;
     }
 
     //-------------------------------------------------------------------------
     // Static Helpers
 
     public static Dimension2D getTextSize(PenFont font, String text) {
-        var node = new Text();
-        node.setText(text);
-        node.setFont(font.getRealFont());
-        var bounds = node.getLayoutBounds();
-        return new Dimension2D(bounds.getWidth(), bounds.getHeight());
+        return font.getTextSize(text);
     }
 
     public static double getTextWidth(PenFont font, String text) {
-        var node = new Text();
-        node.setText(text);
-        node.setFont(font.getRealFont());
-        var bounds = node.getLayoutBounds();
-        return bounds.getWidth();
+        return font.getTextWidth(text);
     }
 
     public static double getTextHeight(PenFont font, String text) {
-        var node = new Text();
-        node.setText(text);
-        node.setFont(font.getRealFont());
-        var bounds = node.getLayoutBounds();
-        return bounds.getHeight();
+        return font.getTextHeight(text);
     }
 
     /**
@@ -380,11 +416,20 @@ public class Pen {
      * @return The angle in degrees
      */
     public static double angleOf(Point2D start, Point2D end) {
-        var axis = new Point2D(1, 0);
-        var vector = end.subtract(start);
-        var angle = vector.angle(axis);
+        return angleOf(start.getX(), start.getY(), end.getX(), end.getY());
+    }
 
-        return (start.getY() < end.getY()) ? angle : -angle;
+    /**
+     * Computes the angle in degrees of the line from (x0,y0) to (x1,y1)
+     * with the X axis
+     * @param x0 The starting point's X coordinate
+     * @param y0 The starting point's Y coordinate
+     * @param x1 The ending point's X coordinate
+     * @param y1 The ending point's Y coordinate
+     * @return The angle in degrees
+     */
+    public static double angleOf(double x0, double y0, double x1, double y1) {
+        return Math.toDegrees(Math.atan2(y1 - y0, x1 - x0));
     }
 
     /**
@@ -462,6 +507,10 @@ public class Pen {
      * @return The bounds, or null if there are no points
      */
     public static Bounds boundsOf(List<Point2D> points) {
+        if (points instanceof Points p) {
+            return p.getBounds();
+        }
+
         if (points.isEmpty()) {
             return null;
         }
@@ -488,4 +537,34 @@ public class Pen {
         var h = bounds.getHeight() + 2*margin;
         return new BoundingBox(x, y, w, h);
     }
+
+    //-------------------------------------------------------------------------
+    // Helper Classes
+
+    // A backend that ignores all drawing.
+    private static class NullBackend implements PenBackend {
+        @Override public void save() {}
+        @Override public void restore() {}
+        @Override public void rotate(double degrees) {}
+        @Override public void scale(double xFactor, double yFactor) {}
+        @Override public void translate(double x, double y) {}
+        @Override public void setFill(Paint paint) {}
+        @Override public void setFont(Font font) {}
+        @Override public void setLineWidth(double pixels) {}
+        @Override public void setTextAlign(TextAlignment align) {}
+        @Override public void setTextBaseline(VPos baseline) {}
+        @Override public void setStroke(Paint paint) {}
+        @Override public void clearCanvas(Paint paint) {}
+        @Override public void fillText(String text, double x, double y) {}
+        @Override public void strokeText(String text, double x, double y) {}
+        @Override public void strokeLine(
+            double x1, double y1, double x2, double y2) {}
+        @Override public void strokePolyline(double[] xs, double[] ys, int n) {}
+        @Override public void fillPolygon(double[] xs, double[] ys, int n) {}
+        @Override public void strokePolygon(double[] xs, double[] ys, int n) {}
+        @Override public void fillRect(double x, double y, double w, double h) {}
+        @Override public void strokeRect(double x, double y, double w, double h) {}
+        @Override public void fillOval(double x, double y, double w, double h) {}
+        @Override public void strokeOval(double x, double y, double w, double h) {}
+    }
 }
@@ -0,0 +1,116 @@
+package pen.stencil;
+
+import javafx.geometry.VPos;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * The primitive drawing operations a {@link Pen} delegates to, modeled on
+ * the JavaFX GraphicsContext.  A backend may draw on a canvas, record the
+ * operations in a {@link DisplayList}, or write them out in some vector
+ * format, e.g., as SVG via {@link SvgWriter}.
+ *
+ * <p>Coordinates are in the current user space: the backend is responsible
+ * for applying the transforms it is given, and for saving and restoring
+ * its transform and style settings along with the Pen.</p>
+ */
+public interface PenBackend {
+    //-------------------------------------------------------------------------
+    // State
+
+    /** Saves the transform and style settings. */
+    void save();
+
+    /** Restores the most recently saved transform and style settings. */
+    void restore();
+
+    /**
+     * Rotates future drawing counter-clockwise.
+     * @param degrees The angle in degrees
+     */
+    void rotate(double degrees);
+
+    /**
+     * Scales future drawing.
+     * @param xFactor The X scaling
+     * @param yFactor The Y scaling
+     */
+    void scale(double xFactor, double yFactor);
+
+    /**
+     * Translates future drawing.
+     * @param x The X delta
+     * @param y The Y delta
+     */
+    void translate(double x, double y);
+
+    //-------------------------------------------------------------------------
+    // Style
+
+    /**
+     * Sets the fill paint.
+     * @param paint The paint
+     */
+    void setFill(Paint paint);
+
+    /**
+     * Sets the font.
+     * @param font The font
+     */
+    void setFont(Font font);
+
+    /**
+     * Sets the stroke line width.
+     * @param pixels The width
+     */
+    void setLineWidth(double pixels);
+
+    /**
+     * Sets the horizontal text alignment.
+     * @param align The alignment
+     */
+    void setTextAlign(TextAlignment align);
+
+    /**
+     * Sets the vertical text alignment.
+     * @param baseline The alignment
+     */
+    void setTextBaseline(VPos baseline);
+
+    /**
+     * Sets the stroke paint.
+     * @param paint The paint
+     */
+    void setStroke(Paint paint);
+
+    //-------------------------------------------------------------------------
+    // Drawing
+
+    /**
+     * Clears the entire drawing area, filling it with the paint if it is
+     * not null.
+     * @param paint The paint, or null
+     */
+    void clearCanvas(Paint paint);
+
+    void fillText(String text, double x, double y);
+
+    void strokeText(String text, double x, double y);
+
+    void strokeLine(double x1, double y1, double x2, double y2);
+
+    void strokePolyline(double[] xPoints, double[] yPoints, int nPoints);
+
+    void fillPolygon(double[] xPoints, double[] yPoints, int nPoints);
+
+    void strokePolygon(double[] xPoints, double[] yPoints, int nPoints);
+
+    void fillRect(double x, double y, double w, double h);
+
+    void strokeRect(double x, double y, double w, double h);
+
+    void fillOval(double x, double y, double w, double h);
+
+    void strokeOval(double x, double y, double w, double h);
+}
@@ -5,6 +5,8 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontPosture;
 import javafx.scene.text.FontWeight;
 
+import java.util.function.Function;
+
 /**
  * A font, as retrieved by family, weight, posture, and size.  PenFont is for
  * use with {@link Pen} and {@link Stencil}, and wraps instances of the
@@ -78,6 +80,9 @@ public final class PenFont {
     // The Font provided by JavaFX
     private final Font font;
 
+    // The font's cached text metrics, created on first use.
+    private volatile TextMetrics metrics = null;
+
     //-------------------------------------------------------------------------
     // Constructor
 
@@ -143,12 +148,38 @@ public final class PenFont {
         return font;
     }
 
+    /**
+     * Gets the font's text metrics, which cache the sizes of measured
+     * text.
+     * @return The metrics
+     */
+    public TextMetrics getMetrics() {
+        var result = metrics;
+
+        if (result == null) {
+            synchronized (this) {
+                if (metrics == null) {
+                    metrics = new TextMetrics(this);
+                }
+                result = metrics;
+            }
+        }
+
+        return result;
+    }
+
+    // Replaces the font's text metrics with metrics that measure text
+    // using the given function, e.g., for tests that can't lay out text.
+    synchronized void measureWith(Function<String, Dimension2D> measurer) {
+        metrics = new TextMetrics(this, measurer);
+    }
+
     /**
      * Gets the height of the font in pixels, for geometry computations.
      * @return The height
      */
     public double getHeight() {
-        return Pen.getTextHeight(this, "ABC");
+        return getMetrics().getLineHeight();
     }
 
     /**
@@ -157,7 +188,7 @@ public final class PenFont {
      * @return The height in pixels
      */
     public double getTextHeight(String text) {
-        return Pen.getTextHeight(this, text);
+        return getMetrics().getSize(text).getHeight();
     }
 
     /**
@@ -166,7 +197,7 @@ public final class PenFont {
      * @return The size
      */
     public Dimension2D getTextSize(String text) {
-        return Pen.getTextSize(this, text);
+        return getMetrics().getSize(text);
     }
 
     /**
@@ -175,7 +206,7 @@ public final class PenFont {
      * @return The width in pixels
      */
     public double getTextWidth(String text) {
-        return Pen.getTextWidth(this, text);
+        return getMetrics().getSize(text).getWidth();
     }
 
     @Override
@@ -0,0 +1,218 @@
+package pen.stencil;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of points, stored as parallel arrays of X and Y
+ * coordinates so that a polyline or polygon of any length can be built and
+ * drawn without allocating an object per point.  The arrays are handed
+ * directly to the {@link Pen}'s polyline and polygon methods.
+ *
+ * <p>A Points is a {@code List<Point2D>} for convenience; but
+ * {@link #get(int)} creates a new Point2D on each call, so code that
+ * cares about allocation should use {@link #getX(int)} and
+ * {@link #getY(int)}.  Points can be appended and cleared, but not
+ * otherwise modified.</p>
+ */
+public final class Points extends AbstractList<Point2D> implements RandomAccess {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The coordinates
+    private double[] xs;
+    private double[] ys;
+
+    // The number of points
+    private int size = 0;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates an empty list of points.
+     */
+    public Points() {
+        this(8);
+    }
+
+    /**
+     * Creates an empty list of points with room for the given number of
+     * points.
+     * @param capacity The initial capacity
+     */
+    public Points(int capacity) {
+        this.xs = new double[Math.max(capacity, 2)];
+        this.ys = new double[xs.length];
+    }
+
+    /**
+     * Returns the points as a Points, copying them only if they aren't
+     * a Points already.
+     * @param points The points
+     * @return The Points
+     */
+    public static Points of(List<Point2D> points) {
+        if (points instanceof Points p) {
+            return p;
+        }
+
+        var result = new Points(points.size());
+        result.addAll(points);
+        return result;
+    }
+
+    //-------------------------------------------------------------------------
+    // Appending
+
+    /**
+     * Adds a point to the end of the list.
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     */
+    public void add(double x, double y) {
+        if (size == xs.length) {
+            grow(size + 1);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    @Override
+    public boolean add(Point2D point) {
+        add(point.getX(), point.getY());
+        return true;
+    }
+
+    /**
+     * Adds the other list's points to the end of this list.
+     * @param other The other list
+     */
+    public void addAll(Points other) {
+        var n = other.size;
+        if (size + n > xs.length) {
+            grow(size + n);
+        }
+        System.arraycopy(other.xs, 0, xs, size, n);
+        System.arraycopy(other.ys, 0, ys, size, n);
+        size += n;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Point2D> points) {
+        if (points instanceof Points other) {
+            addAll(other);
+        } else {
+            if (size + points.size() > xs.length) {
+                grow(size + points.size());
+            }
+            for (var p : points) {
+                add(p.getX(), p.getY());
+            }
+        }
+        return !points.isEmpty();
+    }
+
+    /**
+     * Removes all points, retaining the storage for reuse.
+     */
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    //-------------------------------------------------------------------------
+    // Queries
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the point at the index as a new Point2D.
+     * @param index The index
+     * @return The point
+     */
+    @Override
+    public Point2D get(int index) {
+        Objects.checkIndex(index, size);
+        return new Point2D(xs[index], ys[index]);
+    }
+
+    /**
+     * Gets the X coordinate of the point at the index.
+     * @param index The index
+     * @return The coordinate
+     */
+    public double getX(int index) {
+        Objects.checkIndex(index, size);
+        return xs[index];
+    }
+
+    /**
+     * Gets the Y coordinate of the point at the index.
+     * @param index The index
+     * @return The coordinate
+     */
+    public double getY(int index) {
+        Objects.checkIndex(index, size);
+        return ys[index];
+    }
+
+    /**
+     * Computes a bounding box just large enough to contain all the points.
+     * @return The bounds, or null if there are no points
+     */
+    public Bounds getBounds() {
+        if (size == 0) {
+            return null;
+        }
+
+        var x0 = xs[0];
+        var x1 = xs[0];
+        var y0 = ys[0];
+        var y1 = ys[0];
+
+        for (int i = 1; i < size; i++) {
+            x0 = Math.min(x0, xs[i]);
+            x1 = Math.max(x1, xs[i]);
+            y0 = Math.min(y0, ys[i]);
+            y1 = Math.max(y1, ys[i]);
+        }
+
+        return new BoundingBox(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    //-------------------------------------------------------------------------
+    // Package API, for the Pen
+
+    // The X coordinates; only the first size() are valid.
+    double[] xArray() {
+        return xs;
+    }
+
+    // The Y coordinates; only the first size() are valid.
+    double[] yArray() {
+        return ys;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Grows the arrays to hold at least the given number of points.
+    private void grow(int minCapacity) {
+        var capacity = Math.max(minCapacity, 2*xs.length);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+    }
+}
@@ -0,0 +1,256 @@
+package pen.stencil;
+
+import javafx.geometry.Bounds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntSupplier;
+
+/**
+ * A spatial index of the shapes drawn on a {@link Stencil}, for finding
+ * the shapes under a point, e.g., under the mouse.  Give the index to the
+ * stencil with {@link Stencil#shapeIndex(ShapeIndex)}, and the stencil
+ * will add each shape it draws along with its bounds in drawing
+ * coordinates.
+ *
+ * <p>The index is a packed R-tree, built by Sort-Tile-Recursive bulk
+ * loading when it is first queried after shapes are added, so that a
+ * query takes O(log n) time and the tree is rebuilt only when the drawing
+ * changes.  Clear the index along with the drawing.</p>
+ */
+public final class ShapeIndex {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The maximum number of children of a tree node
+    private static final int NODE_SIZE = 16;
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // Gets the script line for a new entry
+    private final IntSupplier lineSource;
+
+    // The shapes, in drawing order
+    private final List<Entry> entries = new ArrayList<>();
+
+    // The tree, or null if it needs to be built.  The nodes of each level
+    // are stored in order, beginning with the entries at level 0; node i's
+    // bounding box is boxes[4*i..4*i+3], and its children begin at
+    // index[i].  For an entry, index[i] is the entry's index.
+    private double[] boxes;
+    private int[] index;
+
+    // The index just past the last node of each level
+    private int[] levelEnds;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates an empty index whose entries have no script line.
+     */
+    public ShapeIndex() {
+        this(() -> 0);
+    }
+
+    /**
+     * Creates an empty index that notes the script line at which each shape
+     * is drawn, as given by the supplier, e.g.,
+     * {@code TclEngine::getScriptLine}.
+     * @param lineSource The supplier
+     */
+    public ShapeIndex(IntSupplier lineSource) {
+        this.lineSource = lineSource;
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Adds a shape drawn with the given bounds, in drawing coordinates.
+     * @param shape The shape
+     * @param bounds Its bounds
+     */
+    public void add(Drawable shape, Bounds bounds) {
+        entries.add(new Entry(shape, bounds, lineSource.getAsInt()));
+        boxes = null;
+    }
+
+    /**
+     * Removes all shapes from the index.
+     */
+    public void clear() {
+        entries.clear();
+        boxes = null;
+    }
+
+    /**
+     * Gets the number of shapes in the index.
+     * @return The number
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the shapes whose bounds contain the point, topmost, i.e., most
+     * recently drawn, first.
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @return The entries
+     */
+    public List<Entry> find(double x, double y) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+        if (boxes == null) {
+            build();
+        }
+
+        // Search from the root, which is the only node of the top level.
+        var hits = new ArrayList<Integer>();
+        var stack = new int[2*NODE_SIZE*levelEnds.length];
+        var top = 0;
+        stack[top++] = index.length - 1;
+        stack[top++] = levelEnds.length - 1;
+
+        while (top > 0) {
+            var level = stack[--top];
+            var start = stack[--top];
+            var end = Math.min(start + NODE_SIZE, levelEnds[level]);
+
+            for (int i = start; i < end; i++) {
+                if (!contains(i, x, y)) {
+                    continue;
+                }
+                if (level == 0) {
+                    hits.add(index[i]);
+                } else {
+                    stack[top++] = index[i];
+                    stack[top++] = level - 1;
+                }
+            }
+        }
+
+        hits.sort(Comparator.reverseOrder());
+        return hits.stream().map(entries::get).toList();
+    }
+
+    /**
+     * Gets the topmost shape whose bounds contain the point, if any.
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @return The entry
+     */
+    public Optional<Entry> findTop(double x, double y) {
+        var hits = find(x, y);
+        return hits.isEmpty() ? Optional.empty() : Optional.of(hits.getFirst());
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Builds the tree from the entries.
+    private void build() {
+        var n = entries.size();
+
+        // FIRST, size the tree.
+        var levels = new ArrayList<Integer>();
+        var numNodes = n;
+        levels.add(n);
+        for (var count = n; count > 1; ) {
+            count = (count + NODE_SIZE - 1)/NODE_SIZE;
+            numNodes += count;
+            levels.add(numNodes);
+        }
+        levelEnds = levels.stream().mapToInt(Integer::intValue).toArray();
+        boxes = new double[4*numNodes];
+        index = new int[numNodes];
+
+        // NEXT, the entries, in tile order.
+        var order = tileOrder();
+        for (int i = 0; i < n; i++) {
+            var b = entries.get(order[i]).bounds();
+            setBox(i, b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY());
+            index[i] = order[i];
+        }
+
+        // NEXT, each level above it, grouping the nodes of the level below.
+        var pos = n;
+        for (int level = 1; level < levelEnds.length; level++) {
+            var start = level == 1 ? 0 : levelEnds[level - 2];
+            var end = levelEnds[level - 1];
+
+            for (int i = start; i < end; i += NODE_SIZE) {
+                var minX = Double.POSITIVE_INFINITY;
+                var minY = Double.POSITIVE_INFINITY;
+                var maxX = Double.NEGATIVE_INFINITY;
+                var maxY = Double.NEGATIVE_INFINITY;
+
+                for (int j = i; j < Math.min(i + NODE_SIZE, end); j++) {
+                    minX = Math.min(minX, boxes[4*j]);
+                    minY = Math.min(minY, boxes[4*j + 1]);
+                    maxX = Math.max(maxX, boxes[4*j + 2]);
+                    maxY = Math.max(maxY, boxes[4*j + 3]);
+                }
+
+                setBox(pos, minX, minY, maxX, maxY);
+                index[pos++] = i;
+            }
+        }
+    }
+
+    // Orders the entries for Sort-Tile-Recursive packing: sorted by X into
+    // vertical slices of whole nodes, and by Y within each slice.
+    private int[] tileOrder() {
+        var n = entries.size();
+        var order = new Integer[n];
+        var cx = new double[n];
+        var cy = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            var b = entries.get(i).bounds();
+            order[i] = i;
+            cx[i] = b.getMinX() + b.getWidth()/2;
+            cy[i] = b.getMinY() + b.getHeight()/2;
+        }
+
+        Arrays.sort(order, Comparator.comparingDouble(i -> cx[i]));
+
+        var leaves = (n + NODE_SIZE - 1)/NODE_SIZE;
+        var sliceSize = NODE_SIZE*(int)Math.ceil(Math.sqrt(leaves));
+        for (int i = 0; i < n; i += sliceSize) {
+            Arrays.sort(order, i, Math.min(i + sliceSize, n),
+                Comparator.comparingDouble(j -> cy[j]));
+        }
+
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    private void setBox(int i, double minX, double minY, double maxX, double maxY) {
+        boxes[4*i] = minX;
+        boxes[4*i + 1] = minY;
+        boxes[4*i + 2] = maxX;
+        boxes[4*i + 3] = maxY;
+    }
+
+    private boolean contains(int i, double x, double y) {
+        return x >= boxes[4*i] && y >= boxes[4*i + 1] &&
+            x <= boxes[4*i + 2] && y <= boxes[4*i + 3];
+    }
+
+    //-------------------------------------------------------------------------
+    // Helper Classes
+
+    /**
+     * A shape in the index.
+     * @param shape The shape
+     * @param bounds Its bounds in drawing coordinates
+     * @param line The script line at which it was drawn, or 0 if unknown
+     */
+    public record Entry(Drawable shape, Bounds bounds, int line) {}
+}
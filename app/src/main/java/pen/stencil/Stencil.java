@@ -34,6 +34,9 @@ public class Stencil {
     // The coordinate bounds of what we've drawn.
     private Bounds drawingBounds = null;
 
+    // The index of the shapes drawn, if any.
+    private ShapeIndex shapeIndex = null;
+
     //-------------------------------------------------------------------------
     // Constructor
 
@@ -41,6 +44,29 @@ public class Stencil {
         this.pen = new Pen(context);
     }
 
+    /**
+     * Creates a stencil that records its drawing, and the bounds of its
+     * drawing, into the given display list.
+     * @param list The display list
+     */
+    public Stencil(DisplayList list) {
+        this.pen = new Pen(list);
+    }
+
+    private Stencil(Pen pen) {
+        this.pen = pen;
+    }
+
+    /**
+     * Creates a stencil that draws nothing, but computes the bounds of
+     * what it would draw, and hence the image size.  Shapes compute their
+     * geometry and text metrics as usual, but no GraphicsContext is used.
+     * @return The stencil
+     */
+    public static Stencil measuring() {
+        return new Stencil(new Pen());
+    }
+
     //-------------------------------------------------------------------------
     // Getters
 
@@ -89,6 +115,14 @@ public class Stencil {
         return new Dimension2D(w, h);
     }
 
+    /**
+     * Gets the index of drawn shapes, if any.
+     * @return The index
+     */
+    public Optional<ShapeIndex> getShapeIndex() {
+        return Optional.ofNullable(shapeIndex);
+    }
+
     //-------------------------------------------------------------------------
     // DSL
 
@@ -138,20 +172,26 @@ public class Stencil {
     }
 
     public Stencil addBounds(Bounds bounds) {
-        // FIRST, apply current transformation
-        bounds = pen.getTransform().transform(bounds);
+        extendBounds(pen.getTransform().transform(bounds));
+        return this;
+    }
 
-        // NEXT, combine with the drawing bounds
+    // Extends the drawing bounds by the bounds in drawing coordinates.
+    private void extendBounds(Bounds bounds) {
+        // FIRST, combine with the drawing bounds
         if (drawingBounds == null) {
             drawingBounds = bounds;
         } else {
             drawingBounds = Pen.boundsOf(drawingBounds, bounds);
         }
-        return this;
+
+        // NEXT, if recording, the display list has bounds of its own.
+        pen.getDisplayList().ifPresent(list -> list.addBounds(bounds));
     }
 
     /**
-     * Draws a shape on the stencil, extending the drawing bounds accordingly.
+     * Draws a shape on the stencil, extending the drawing bounds accordingly
+     * and adding it to the shape index, if any.
      * @param shape The shape
      * @return The stencil
      */
@@ -161,7 +201,12 @@ public class Stencil {
             var bounds = shape.draw(this);
 
             if (bounds !=  null) {
-                addBounds(bounds);
+                bounds = pen.getTransform().transform(bounds);
+                extendBounds(bounds);
+
+                if (shapeIndex != null) {
+                    shapeIndex.add(shape, bounds);
+                }
             }
         } finally {
             pen.restore();
@@ -186,6 +231,18 @@ public class Stencil {
         return this;
     }
 
+    /**
+     * Sets the index to which each shape drawn by {@link #draw(Drawable)}
+     * is added along with its bounds, or null for none.  The index is the
+     * client's to clear.
+     * @param index The index, or null
+     * @return The stencil
+     */
+    public Stencil shapeIndex(ShapeIndex index) {
+        this.shapeIndex = index;
+        return this;
+    }
+
     public Stencil margin(double value) {
         this.margin = value;
         return this;
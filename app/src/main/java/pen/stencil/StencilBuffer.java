@@ -1,26 +1,74 @@
 package pen.stencil;
 
 import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.Dimension2D;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.StackPane;
+import pen.util.PngWriter;
 
 import javax.imageio.ImageIO;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * A tool for drawing to an off-screen Stencil and saving the result as a PNG.
+ * The drawing is recorded into a {@link DisplayList} once, to learn its
+ * size, and the recording is then replayed onto a canvas of that size.
+ *
+ * <p>{@link #save(File)} instead replays the recording into one small
+ * tile at a time, streaming each band of tiles into the PNG file as it is
+ * completed, so that drawings of any size can be saved in bounded memory
+ * and without exceeding JavaFX's texture size limits.
+ * {@link #save(File, Executor)} does the same, but encodes the bands on
+ * another thread while the next band is rendered.</p>
+ *
+ * <p>Drawings may also be recorded on other threads, using
+ * {@link #record(Drawing, DisplayList)}, and then given to the buffer for
+ * rendering.  The buffer itself must be used on the JavaFX thread.</p>
  */
 @SuppressWarnings("unused")
 public class StencilBuffer {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The maximum width and height of a tile, in pixels
+    private static final int TILE_SIZE = 2048;
+
+    // The maximum size of a band of tiles, in pixels
+    private static final int BAND_PIXELS = 16*1024*1024;
+
+    // The number of band buffers per image, i.e., the number of bands that
+    // can be rendered or waiting to be encoded at one time.
+    private static final int BAND_BUFFERS = 2;
+
     //-------------------------------------------------------------------------
     // Instance Variables
 
     private final StackPane root = new StackPane();
     private final Canvas canvas = new Canvas();
-    private final Stencil stencil;
+    private final DisplayList displayList = new DisplayList();
+    private final Stencil stencil = new Stencil(displayList);
+
+    // The recording to render: the displayList, or one recorded elsewhere.
+    private DisplayList recording = displayList;
+
+    // The size of the image, as of the most recent draw().
+    private Dimension2D size = new Dimension2D(0, 0);
+
+    // Whether the canvas has been redrawn since the most recent draw().
+    private boolean painted = true;
 
     // This field needs to be preserved so that it isn't garbage collected;
     // the image conversion won't work right without it.
@@ -31,7 +79,6 @@ public class StencilBuffer {
     // Constructor
 
     public StencilBuffer() {
-        this.stencil = new Stencil(canvas.getGraphicsContext2D());
         root.getChildren().add(canvas);
         this.scene = new Scene(root);
     }
@@ -41,31 +88,77 @@ public class StencilBuffer {
 
 
     public double getWidth() {
-        return canvas.getWidth();
+        return size.getWidth();
     }
 
     public double getHeight() {
-        return canvas.getHeight();
+        return size.getHeight();
+    }
+
+    /**
+     * Gets the display list recorded or given by the most recent draw().
+     * @return The list
+     */
+    public DisplayList getDisplayList() {
+        return recording;
     }
 
     //-------------------------------------------------------------------------
     // Drawing
 
     /**
-     * Draws the drawing, setting the canvas size accordingly
+     * Draws the drawing, determining the size of the image.  The drawing
+     * is recorded, and is rendered when the image is retrieved or saved.
      * @param drawing The drawing
      */
     public void draw(Drawing drawing) {
-        // FIRST, draw the image to determine the drawing bounds
+        stencil.resetPen();
+        displayList.clear();
         stencil.clear();
         stencil.draw(drawing);
+        size = stencil.getImageSize();
+        recording = displayList;
+        painted = false;
+    }
 
-        // NEXT, resize the canvas to fit, draw it again, and save it.
-        var size = stencil.getImageSize();
-        canvas.setWidth(size.getWidth());
-        canvas.setHeight(size.getHeight());
+    /**
+     * Takes a drawing recorded by {@link #record(Drawing, DisplayList)},
+     * e.g., on another thread, as the drawing to render.
+     * @param list The recorded drawing
+     * @param size The image size returned by record()
+     */
+    public void draw(DisplayList list, Dimension2D size) {
+        this.recording = list;
+        this.size = size;
+        painted = false;
+    }
+
+    /**
+     * Records the drawing into the display list, as draw() would, and
+     * returns the size of the image.  This method doesn't use a
+     * StencilBuffer, and may be called on any thread.
+     * @param drawing The drawing
+     * @param list The display list, which is cleared first
+     * @return The image size
+     */
+    public static Dimension2D record(Drawing drawing, DisplayList list) {
+        var stencil = new Stencil(list.clear());
         stencil.clear();
         stencil.draw(drawing);
+        return stencil.getImageSize();
+    }
+
+    /**
+     * Computes the size of the image the drawing would produce, as
+     * draw() would size the canvas, without rendering it.
+     * @param drawing The drawing
+     * @return The size
+     */
+    public static Dimension2D measure(Drawing drawing) {
+        var stencil = Stencil.measuring();
+        stencil.clear();
+        stencil.draw(drawing);
+        return stencil.getImageSize();
     }
 
     /**
@@ -73,17 +166,124 @@ public class StencilBuffer {
      * @return The image
      */
     public Image getImage() {
+        if (!painted) {
+            canvas.setWidth(size.getWidth());
+            canvas.setHeight(size.getHeight());
+            recording.replay(canvas.getGraphicsContext2D());
+            painted = true;
+        }
         root.layout();
         return canvas.snapshot(null, null);
     }
 
     /**
-     * Saves the drawing to disk as a PNG image file
+     * Saves the drawing to disk as a PNG image file, rendering it a tile
+     * at a time.
      * @param file The file
      * @throws IOException On write error
      */
     public void save(File file) throws IOException {
-        saveImage(file, getImage());
+        try {
+            save(file, Runnable::run).join();
+        } catch (CompletionException ex) {
+            throw asIOException(ex);
+        }
+    }
+
+    /**
+     * Saves the drawing to disk as a PNG image file, rendering it a tile
+     * at a time on this thread and encoding the rendered bands on the
+     * executor.  Rendering blocks only while the band buffers are all
+     * waiting to be encoded.
+     * @param file The file
+     * @param encoder The executor on which to encode the image
+     * @return A future that completes when the file has been written, or
+     * fails with an IOException or UncheckedIOException.
+     * @throws IOException if the file cannot be created
+     */
+    public CompletableFuture<Void> save(File file, Executor encoder)
+        throws IOException
+    {
+        var width = Math.max(1, (int)Math.ceil(size.getWidth()));
+        var height = Math.max(1, (int)Math.ceil(size.getHeight()));
+
+        // The band height is limited so that a band's pixels fit in the
+        // band buffer however wide the image is.
+        var bandHeight = Math.clamp(BAND_PIXELS/width, 1, TILE_SIZE);
+        var tileWidth = Math.min(width, TILE_SIZE);
+        var tile = new WritableImage(tileWidth, Math.min(height, bandHeight));
+        var format = PixelFormat.getIntArgbInstance();
+        var gc = canvas.getGraphicsContext2D();
+        painted = false;
+
+        // The free band buffers; a band is returned when it's been encoded.
+        BlockingQueue<int[]> free = new ArrayBlockingQueue<>(BAND_BUFFERS);
+        for (int i = 0; i < BAND_BUFFERS; i++) {
+            free.add(new int[width*Math.min(height, bandHeight)]);
+        }
+
+        var png = new PngWriter(new BufferedOutputStream(
+            Files.newOutputStream(file.toPath())), width, height);
+        var encoding = CompletableFuture.<Void>completedFuture(null);
+
+        try {
+            for (int y = 0; y < height; y += bandHeight) {
+                var h = Math.min(bandHeight, height - y);
+                var band = take(free);
+
+                for (int x = 0; x < width; x += tileWidth) {
+                    var w = Math.min(tileWidth, width - x);
+
+                    canvas.setWidth(w);
+                    canvas.setHeight(h);
+                    gc.clearRect(0, 0, w, h);
+                    recording.replay(gc, x, y,
+                        size.getWidth(), size.getHeight());
+                    root.layout();
+                    canvas.snapshot(null, tile);
+                    tile.getPixelReader()
+                        .getPixels(0, 0, w, h, format, band, x, width);
+                }
+
+                // Bands are encoded in order; a band's buffer is freed
+                // even if an earlier band failed.
+                encoding = encoding.thenRunAsync(() -> {
+                    try {
+                        png.writeRows(band, 0, width, h);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }, encoder);
+                encoding.whenComplete((v, ex) -> free.add(band));
+
+                if (encoding.isCompletedExceptionally()) {
+                    break;
+                }
+            }
+        } catch (RuntimeException ex) {
+            encoding = encoding.handle((v, e) -> { throw ex; });
+        }
+
+        // Finish the file, whether or not the encoding succeeded.
+        var result = new CompletableFuture<Void>();
+        encoding.whenCompleteAsync((v, ex) -> {
+            try {
+                png.close();
+            } catch (IOException closeEx) {
+                if (ex == null) {
+                    ex = closeEx;
+                }
+            }
+
+            if (ex == null) {
+                result.complete(null);
+            } else {
+                result.completeExceptionally(
+                    ex instanceof CompletionException ? ex.getCause() : ex);
+            }
+        }, encoder);
+
+        return result;
     }
 
     /**
@@ -95,4 +295,28 @@ public class StencilBuffer {
     public static void saveImage(File file, Image image) throws IOException {
         ImageIO.write(SwingFXUtils.fromFXImage(image, null), "PNG", file);
     }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Takes a free band buffer, waiting if need be.
+    private static int[] take(BlockingQueue<int[]> free) {
+        try {
+            return free.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while saving", ex);
+        }
+    }
+
+    // Gets the IOException underlying a failed save.
+    private static IOException asIOException(CompletionException ex) {
+        return switch (ex.getCause()) {
+            case IOException io -> io;
+            case UncheckedIOException io -> io.getCause();
+            case RuntimeException rt -> throw rt;
+            case Error err -> throw err;
+            case null, default -> new IOException(ex.getCause());
+        };
+    }
 }
@@ -1,17 +1,172 @@
 package pen.stencil;
 
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+
 /**
- * A concrete Style for use in StyleMaps.
+ * An immutable set of style parameters, as used by Stencil shapes and
+ * stored in StyleMaps.  Styles are flyweights: a shape refers to its
+ * style rather than copying it, and setting a parameter on a shape
+ * replaces its style with a modified copy.  The style's paints and its
+ * JavaFX font are resolved when the style is created, and are shared by
+ * every shape that uses it.
  */
-public class Style extends StyleBase<Style> {
+@SuppressWarnings("unused")
+public final class Style {
+    /** The default style. */
+    public static final Style DEFAULT = new Style(
+        Color.WHITE, PenFont.SANS12, Color.BLACK, 1, Color.BLACK);
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    private final Paint background;
+    private final PenFont font;
+    private final Paint foreground;
+    private final double lineWidth;
+    private final Paint textColor;
+
+    // The font's JavaFX font
+    private final Font realFont;
+
     //-------------------------------------------------------------------------
     // Constructor
 
-    public Style() {
-        // nothing to do
+    private Style(
+        Paint background,
+        PenFont font,
+        Paint foreground,
+        double lineWidth,
+        Paint textColor
+    ) {
+        this.background = background;
+        this.font = font;
+        this.foreground = foreground;
+        this.lineWidth = lineWidth;
+        this.textColor = textColor;
+        this.realFont = font.getRealFont();
+    }
+
+    //-------------------------------------------------------------------------
+    // Getters
+
+    public Paint getBackground() {
+        return background;
+    }
+
+    public PenFont getFont() {
+        return font;
     }
 
-    public Style(StyleBase<?> other) {
-        copyStyleFrom(other);
+    /**
+     * Gets the JavaFX font for the style's PenFont.
+     * @return The font
+     */
+    public Font getRealFont() {
+        return realFont;
+    }
+
+    public Paint getForeground() {
+        return foreground;
+    }
+
+    public double getLineWidth() {
+        return lineWidth;
+    }
+
+    public Paint getTextColor() {
+        return textColor;
+    }
+
+    //-------------------------------------------------------------------------
+    // Modified copies
+    //
+    // Each returns this style if the parameter is unchanged.
+
+    public Style withBackground(Paint color) {
+        return color.equals(background) ? this
+            : new Style(color, font, foreground, lineWidth, textColor);
+    }
+
+    public Style withFont(PenFont font) {
+        return font.equals(this.font) ? this
+            : new Style(background, font, foreground, lineWidth, textColor);
+    }
+
+    public Style withForeground(Paint color) {
+        return color.equals(foreground) ? this
+            : new Style(background, font, color, lineWidth, textColor);
+    }
+
+    public Style withLineWidth(double pixels) {
+        return pixels == lineWidth ? this
+            : new Style(background, font, foreground, pixels, textColor);
+    }
+
+    public Style withTextColor(Paint color) {
+        return color.equals(textColor) ? this
+            : new Style(background, font, foreground, lineWidth, color);
+    }
+
+    //-------------------------------------------------------------------------
+    // Object API
+
+    @Override
+    public String toString() {
+        return "Style[" + background + "," + font.getName() + "," +
+            foreground + "," + lineWidth + "," + textColor + "]";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Style that = (Style) o;
+
+        if (Double.compare(that.lineWidth, lineWidth) != 0) return false;
+        if (!background.equals(that.background)) return false;
+        if (!font.equals(that.font)) return false;
+        if (!foreground.equals(that.foreground)) return false;
+        return textColor.equals(that.textColor);
+    }
+
+    @Override
+    public int hashCode() {
+        int result;
+        long temp;
+        result = background.hashCode();
+        result = 31 * result + font.hashCode();
+        result = 31 * result + foreground.hashCode();
+        temp = Double.doubleToLongBits(lineWidth);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + textColor.hashCode();
+        return result;
+    }
+
+    //-------------------------------------------------------------------------
+    // Builder
+
+    /**
+     * A mutable style, for configuring a new Style with the StyleBase DSL,
+     * e.g., from Tcl options.
+     */
+    public static class Builder extends StyleBase<Builder> {
+        /**
+         * Creates a builder for a style based on the given style.
+         * @param style The style
+         */
+        public Builder(Style style) {
+            style(style);
+        }
+
+        /**
+         * Gets the configured style.
+         * @return The style
+         */
+        public Style build() {
+            return getStyle();
+        }
     }
 }
@@ -1,12 +1,12 @@
 package pen.stencil;
 
-import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 
 /**
- * A collection of style parameters used by Stencil shapes.  It
- * provides the API for retrieving style parameters and the DSL for setting
- * them. Most Stencil shapes subclass style.
+ * The base class for Stencil shapes, providing the API for retrieving
+ * style parameters and the DSL for setting them.  The parameters are held
+ * in an immutable {@link Style}, so that a shape can share its style with
+ * a StyleMap entry or another shape rather than copying it.
  *
  * <p><b>Note:</b> Subclasses should be generic in themselves, i.e., Self should
  * be the subclass itself; this allows the DSL to work properly</p>
@@ -18,11 +18,7 @@ public class StyleBase<Self extends StyleBase<Self>> {
     //-------------------------------------------------------------------------
     // Instance Variables
 
-    private Paint background = Color.WHITE;
-    private PenFont font = PenFont.SANS12;
-    private Paint foreground = Color.BLACK;
-    private double lineWidth = 1;
-    private Paint textColor = Color.BLACK;
+    private Style style = Style.DEFAULT;
 
     //-------------------------------------------------------------------------
     // Constructor
@@ -33,39 +29,42 @@ public class StyleBase<Self extends StyleBase<Self>> {
     // Management
 
     /**
-     * Copies all style parameter values from the other style object into this
-     * one.
+     * Uses the other style object's style parameters.
      * @param other Another style object.
      */
     public final void copyStyleFrom(StyleBase<?> other) {
-        this.background = other.background;
-        this.font = other.font;
-        this.foreground = other.foreground;
-        this.lineWidth = other.lineWidth;
-        this.textColor = other.textColor;
+        this.style = other.style;
     }
 
     //-------------------------------------------------------------------------
     // Getters
 
+    /**
+     * Gets the style parameters as an immutable Style.
+     * @return The style
+     */
+    public Style getStyle() {
+        return style;
+    }
+
     public Paint getBackground() {
-        return background;
+        return style.getBackground();
     }
 
     public PenFont getFont() {
-        return font;
+        return style.getFont();
     }
 
     public Paint getForeground() {
-        return foreground;
+        return style.getForeground();
     }
 
     public double getLineWidth() {
-        return lineWidth;
+        return style.getLineWidth();
     }
 
     public Paint getTextColor() {
-        return textColor;
+        return style.getTextColor();
     }
 
     //-------------------------------------------------------------------------
@@ -76,28 +75,33 @@ public class StyleBase<Self extends StyleBase<Self>> {
         return (Self)this;
     }
 
+    public Self style(Style style) {
+        this.style = style;
+        return (Self)this;
+    }
+
     public Self background(Paint color) {
-        this.background = color;
+        this.style = style.withBackground(color);
         return (Self)this;
     }
 
     public Self font(PenFont font) {
-        this.font = font;
+        this.style = style.withFont(font);
         return (Self)this;
     }
 
     public Self foreground(Paint color) {
-        this.foreground = color;
+        this.style = style.withForeground(color);
         return (Self)this;
     }
 
     public Self lineWidth(double pixels) {
-        this.lineWidth = pixels;
+        this.style = style.withLineWidth(pixels);
         return (Self)this;
     }
 
     public Self textColor(Paint color) {
-        this.textColor = color;
+        this.style = style.withTextColor(color);
         return (Self)this;
     }
 }
@@ -1,12 +1,14 @@
 package pen.stencil;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
- * A collection of named styles.
+ * A collection of named styles.  Styles are immutable, so a shape can
+ * use a style from the map directly; and equal styles are interned, so
+ * that styles configured alike share a single instance.
  */
 @SuppressWarnings("unused")
 public class StyleMap {
@@ -14,7 +16,10 @@ public class StyleMap {
     // Instance Variables
 
     // The map of named styles
-    private final Map<String,Style> map = new TreeMap<>();
+    private final Map<String,Style> map = new HashMap<>();
+
+    // The distinct styles in the map, for interning
+    private final Map<Style,Style> interned = new HashMap<>();
 
     //-------------------------------------------------------------------------
     // Constructor
@@ -50,28 +55,23 @@ public class StyleMap {
     }
 
     /**
-     * Gets the style with the given name, creating it if need be.
+     * Puts the style into the map with the given name, replacing any
+     * existing style.  If an equal style is already in the map, that
+     * style is used instead.
      * @param name The name
-     * @return The style
+     * @param style The style
      */
-    public Style make(String name) {
-        var style = map.get(name);
-
-        if (style == null) {
-            style = new Style();
-            map.put(name, style);
-        }
-
-        return style;
+    public void put(String name, Style style) {
+        map.put(name, interned.computeIfAbsent(style, s -> s));
     }
 
     /**
-     * Puts a copy of the style object into the map with the given name.
+     * Puts the style object's style into the map with the given name.
      * @param name The name
-     * @param style the style to copy
+     * @param style the style object
      */
     public void put(String name, StyleBase<?> style) {
-        map.put(name, new Style(style));
+        put(name, style.getStyle());
     }
 
     /**
@@ -79,6 +79,8 @@ public class StyleMap {
      * @return The names
      */
     public List<String> getNames() {
-        return new ArrayList<>(map.keySet());
+        var names = new ArrayList<>(map.keySet());
+        names.sort(null);
+        return names;
     }
 }
@@ -0,0 +1,479 @@
+package pen.stencil;
+
+import javafx.geometry.VPos;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Affine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+
+/**
+ * A {@link PenBackend} that writes the drawing to a stream as an SVG
+ * document as it is drawn.  No rasterization is done, and nothing but the
+ * current drawing state is retained, so any drawing can be written
+ * quickly and without the JavaFX toolkit.
+ *
+ * <p>Each shape is written as a single element carrying its style and, if
+ * it isn't the identity, its transform.  Text is written as text, in the
+ * font's family, size, weight and posture; its layout is left to the
+ * viewer, just as a canvas leaves it to JavaFX.</p>
+ *
+ * <p>The SVG header is written on creation, and the footer on
+ * {@link #close()}, which also closes the stream.  I/O errors while
+ * drawing are thrown as UncheckedIOExceptions.</p>
+ */
+public class SvgWriter implements PenBackend, AutoCloseable {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    private final Writer out;
+
+    // The size of the drawing
+    private final double width;
+    private final double height;
+
+    // The current state, and the saved states
+    private State state = new State();
+    private final Deque<State> savedStates = new ArrayDeque<>();
+
+    // A buffer for formatting elements
+    private final StringBuilder buff = new StringBuilder();
+
+    // The paint of the background just written by clearCanvas(), if
+    // nothing has been written since; repeated clears are skipped.
+    private Paint background = null;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a writer for a drawing of the given size, and writes the SVG
+     * header to the stream.
+     * @param out The stream
+     * @param width The drawing's width in pixels
+     * @param height The drawing's height in pixels
+     * @throws IOException on write error
+     */
+    public SvgWriter(Writer out, double width, double height)
+        throws IOException
+    {
+        this.out = out;
+        this.width = width;
+        this.height = height;
+
+        buff.append("<svg xmlns=\"http://www.w3.org/2000/svg\"");
+        attr("width", width);
+        attr("height", height);
+        attr("viewBox", "0 0 " + num(width) + " " + num(height));
+        // The JavaFX canvas defaults
+        attr("stroke-linecap", "square");
+        attr("stroke-miterlimit", "10");
+        buff.append(">\n");
+        out.write(buff.toString());
+        buff.setLength(0);
+    }
+
+    /**
+     * Draws the drawing and writes it to the file as SVG.  The drawing is
+     * recorded once to determine its size, and then written out.
+     * @param drawing The drawing
+     * @param file The file
+     * @throws IOException on write error
+     */
+    public static void save(Drawing drawing, File file) throws IOException {
+        save(drawing, file, new DisplayList());
+    }
+
+    /**
+     * Draws the drawing and writes it to the file as SVG, recording it
+     * into the given display list, which is cleared first.
+     * @param drawing The drawing
+     * @param file The file
+     * @param list The display list
+     * @throws IOException on write error
+     */
+    public static void save(Drawing drawing, File file, DisplayList list)
+        throws IOException
+    {
+        var size = StencilBuffer.record(drawing, list);
+        var out = Files.newBufferedWriter(file.toPath());
+
+        try (var svg = new SvgWriter(out, size.getWidth(), size.getHeight())) {
+            list.replay(svg);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Writes the SVG footer and closes the stream.
+     * @throws IOException on write error
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write("</svg>\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // PenBackend API: State
+
+    @Override
+    public void save() {
+        savedStates.push(state);
+        state = state.copy();
+    }
+
+    @Override
+    public void restore() {
+        if (!savedStates.isEmpty()) {
+            state = savedStates.pop();
+        }
+    }
+
+    @Override
+    public void rotate(double degrees) {
+        state.transform.appendRotation(degrees);
+    }
+
+    @Override
+    public void scale(double xFactor, double yFactor) {
+        state.transform.appendScale(xFactor, yFactor);
+    }
+
+    @Override
+    public void translate(double x, double y) {
+        state.transform.appendTranslation(x, y);
+    }
+
+    //-------------------------------------------------------------------------
+    // PenBackend API: Style
+
+    @Override public void setFill(Paint paint) { state.fill = paint; }
+    @Override public void setFont(Font font) { state.font = font; }
+    @Override public void setLineWidth(double pixels) { state.lineWidth = pixels; }
+    @Override public void setStroke(Paint paint) { state.stroke = paint; }
+
+    @Override public void setTextAlign(TextAlignment align) {
+        state.textAlign = align;
+    }
+
+    @Override public void setTextBaseline(VPos baseline) {
+        state.textBaseline = baseline;
+    }
+
+    //-------------------------------------------------------------------------
+    // PenBackend API: Drawing
+
+    @Override
+    public void clearCanvas(Paint paint) {
+        // Nothing drawn can be erased, but the background can be filled.
+        if (paint != null && !paint.equals(background)) {
+            start("rect");
+            attr("width", width);
+            attr("height", height);
+            fill(paint);
+            transform();
+            end();
+            background = state.transform.isIdentity() ? paint : null;
+        }
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        text(x, y);
+        fill(state.fill);
+        finishText(text);
+    }
+
+    @Override
+    public void strokeText(String text, double x, double y) {
+        text(x, y);
+        attr("fill", "none");
+        stroke();
+        finishText(text);
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        start("line");
+        attr("x1", x1);
+        attr("y1", y1);
+        attr("x2", x2);
+        attr("y2", y2);
+        stroke();
+        transform();
+        end();
+    }
+
+    @Override
+    public void strokePolyline(double[] xs, double[] ys, int n) {
+        start("polyline");
+        points(xs, ys, n);
+        attr("fill", "none");
+        stroke();
+        transform();
+        end();
+    }
+
+    @Override
+    public void fillPolygon(double[] xs, double[] ys, int n) {
+        start("polygon");
+        points(xs, ys, n);
+        fill(state.fill);
+        transform();
+        end();
+    }
+
+    @Override
+    public void strokePolygon(double[] xs, double[] ys, int n) {
+        start("polygon");
+        points(xs, ys, n);
+        attr("fill", "none");
+        stroke();
+        transform();
+        end();
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        rect(x, y, w, h);
+        fill(state.fill);
+        transform();
+        end();
+    }
+
+    @Override
+    public void strokeRect(double x, double y, double w, double h) {
+        rect(x, y, w, h);
+        attr("fill", "none");
+        stroke();
+        transform();
+        end();
+    }
+
+    @Override
+    public void fillOval(double x, double y, double w, double h) {
+        ellipse(x, y, w, h);
+        fill(state.fill);
+        transform();
+        end();
+    }
+
+    @Override
+    public void strokeOval(double x, double y, double w, double h) {
+        ellipse(x, y, w, h);
+        attr("fill", "none");
+        stroke();
+        transform();
+        end();
+    }
+
+    //-------------------------------------------------------------------------
+    // Element Helpers
+
+    private void start(String tag) {
+        buff.append('<').append(tag);
+    }
+
+    // Ends an empty element and writes it.
+    private void end() {
+        buff.append("/>\n");
+        flush();
+    }
+
+    private void rect(double x, double y, double w, double h) {
+        start("rect");
+        attr("x", x);
+        attr("y", y);
+        attr("width", w);
+        attr("height", h);
+    }
+
+    private void ellipse(double x, double y, double w, double h) {
+        start("ellipse");
+        attr("cx", x + w/2);
+        attr("cy", y + h/2);
+        attr("rx", w/2);
+        attr("ry", h/2);
+    }
+
+    private void points(double[] xs, double[] ys, int n) {
+        buff.append(" points=\"");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                buff.append(' ');
+            }
+            buff.append(num(xs[i])).append(',').append(num(ys[i]));
+        }
+        buff.append('"');
+    }
+
+    private void text(double x, double y) {
+        start("text");
+        attr("x", x);
+        attr("y", y);
+
+        var font = state.font;
+        attr("font-family", font.getFamily());
+        attr("font-size", font.getSize());
+
+        // Font.getStyle() is, e.g., "Regular", "Bold", or "Bold Italic".
+        var style = font.getStyle().toLowerCase(Locale.ROOT);
+        if (style.contains("bold")) {
+            attr("font-weight", "bold");
+        }
+        if (style.contains("italic") || style.contains("oblique")) {
+            attr("font-style", "italic");
+        }
+
+        switch (state.textAlign) {
+            case CENTER -> attr("text-anchor", "middle");
+            case RIGHT -> attr("text-anchor", "end");
+            default -> {}
+        }
+
+        switch (state.textBaseline) {
+            case TOP -> attr("dominant-baseline", "text-before-edge");
+            case CENTER -> attr("dominant-baseline", "central");
+            case BOTTOM -> attr("dominant-baseline", "text-after-edge");
+            default -> {}
+        }
+    }
+
+    private void finishText(String text) {
+        transform();
+        buff.append('>');
+        escape(text);
+        buff.append("</text>\n");
+        flush();
+    }
+
+    private void fill(Paint paint) {
+        paint("fill", paint);
+    }
+
+    private void stroke() {
+        paint("stroke", state.stroke);
+        if (state.lineWidth != 1.0) {
+            attr("stroke-width", state.lineWidth);
+        }
+    }
+
+    private void paint(String name, Paint paint) {
+        if (paint instanceof Color color) {
+            if (color.getOpacity() == 0.0) {
+                attr(name, "none");
+                return;
+            }
+            attr(name, String.format("#%02x%02x%02x",
+                Math.round(color.getRed()*255),
+                Math.round(color.getGreen()*255),
+                Math.round(color.getBlue()*255)));
+            if (color.getOpacity() < 1.0) {
+                attr(name + "-opacity", color.getOpacity());
+            }
+        } else {
+            // Gradients and patterns aren't supported.
+            attr(name, "black");
+        }
+    }
+
+    private void transform() {
+        var t = state.transform;
+        if (!t.isIdentity()) {
+            attr("transform", "matrix(" +
+                num(t.getMxx()) + " " + num(t.getMyx()) + " " +
+                num(t.getMxy()) + " " + num(t.getMyy()) + " " +
+                num(t.getTx()) + " " + num(t.getTy()) + ")");
+        }
+    }
+
+    private void attr(String name, double value) {
+        attr(name, num(value));
+    }
+
+    private void attr(String name, String value) {
+        buff.append(' ').append(name).append("=\"");
+        escape(value);
+        buff.append('"');
+    }
+
+    private void escape(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            var ch = text.charAt(i);
+            switch (ch) {
+                case '<' -> buff.append("&lt;");
+                case '>' -> buff.append("&gt;");
+                case '&' -> buff.append("&amp;");
+                case '"' -> buff.append("&quot;");
+                default -> buff.append(ch);
+            }
+        }
+    }
+
+    // Writes the buffered element.
+    private void flush() {
+        background = null;
+        try {
+            out.write(buff.toString());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            buff.setLength(0);
+        }
+    }
+
+    // Formats a number compactly, to at most three decimal places.
+    static String num(double value) {
+        var rounded = Math.round(value*1000.0)/1000.0;
+        if (rounded == Math.rint(rounded) && Math.abs(rounded) < 1e15) {
+            return Long.toString((long)rounded);
+        }
+        var text = Double.toString(rounded);
+        return text.contains("E")
+            ? String.format(Locale.ROOT, "%.3f", rounded)
+            : text;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helper Classes
+
+    // The drawing state, with the JavaFX canvas defaults.
+    private static class State {
+        Affine transform = new Affine();
+        Paint fill = Color.BLACK;
+        Paint stroke = Color.BLACK;
+        double lineWidth = 1.0;
+        Font font = Pen.DEFAULT_FONT.getRealFont();
+        TextAlignment textAlign = TextAlignment.LEFT;
+        VPos textBaseline = VPos.BASELINE;
+
+        State copy() {
+            var copy = new State();
+            copy.transform = transform.clone();
+            copy.fill = fill;
+            copy.stroke = stroke;
+            copy.lineWidth = lineWidth;
+            copy.font = font;
+            copy.textAlign = textAlign;
+            copy.textBaseline = textBaseline;
+            return copy;
+        }
+    }
+}
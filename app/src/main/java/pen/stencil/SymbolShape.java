@@ -3,8 +3,6 @@ package pen.stencil;
 import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 
-import java.util.List;
-
 /**
  * Draws a given symbol. Symbols that imply a direction (i.e., arrowheads)
  * are drawn pointing to the right, i.e., at an angle of 0 degrees.
@@ -24,6 +22,9 @@ public class SymbolShape
     private double x;
     private double y;
 
+    // The vertices of the symbol's outline, reused from draw to draw.
+    private final Points outline = new Points(3);
+
     //---------------------------------------------------------------------
     // Constructor
 
@@ -68,11 +69,7 @@ public class SymbolShape
 
         sten.pen()
             .setFill(getForeground())
-            .fillPolygon(List.of(
-                new Point2D(box.getMinX(), box.getMinY()),
-                new Point2D(box.getMaxX(), box.getCenterY()),
-                new Point2D(box.getMinX(), box.getMaxY())
-            ));
+            .fillPolygon(arrowhead(box));
         return box;
     }
 
@@ -83,11 +80,7 @@ public class SymbolShape
 
         sten.pen()
             .setStroke(getForeground())
-            .strokePolyline(List.of(
-                new Point2D(box.getMinX(), box.getMinY()),
-                new Point2D(box.getMaxX(), box.getCenterY()),
-                new Point2D(box.getMinX(), box.getMaxY())
-            ));
+            .strokePolyline(arrowhead(box));
         return box;
     }
 
@@ -148,4 +141,13 @@ public class SymbolShape
 
         return box;
     }
+
+    // Gets the outline of an arrowhead filling the box and pointing right.
+    private Points arrowhead(Bounds box) {
+        outline.clear();
+        outline.add(box.getMinX(), box.getMinY());
+        outline.add(box.getMaxX(), box.getCenterY());
+        outline.add(box.getMinX(), box.getMaxY());
+        return outline;
+    }
 }
@@ -0,0 +1,215 @@
+package pen.stencil;
+
+import javafx.geometry.Dimension2D;
+import javafx.scene.text.Text;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Cached text metrics for a {@link PenFont}.  JavaFX measures text by
+ * laying out a {@code Text} node, which is costly; layout code measures
+ * the same strings in the same fonts over and over.  Each PenFont has a
+ * TextMetrics, which keeps the sizes of recently measured strings in a
+ * bounded cache, evicting the least recently used, and computes the font's
+ * line height once.
+ *
+ * <p>A TextMetrics may be used from any thread.  Text is measured outside
+ * of any lock, so threads sharing a font don't wait on each other's
+ * measurements; two threads that miss on the same string at once may both
+ * measure it.</p>
+ */
+public final class TextMetrics {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The maximum number of strings whose sizes are cached.
+    private static final int MAX_ENTRIES = 1024;
+
+    // The number of strings kept when the cache is trimmed.
+    private static final int TRIMMED_ENTRIES = 3*MAX_ENTRIES/4;
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The font
+    private final PenFont font;
+
+    // Measures text by laying it out
+    private final Function<String, Dimension2D> measurer;
+
+    // The cached sizes, by text
+    private final Map<String, Entry> sizes = new ConcurrentHashMap<>();
+
+    // The use clock, which orders the cached entries by last use
+    private final AtomicLong clock = new AtomicLong();
+
+    // Held while trimming the cache
+    private final Lock trimLock = new ReentrantLock();
+
+    // The font's line height, i.e., the height of "ABC"
+    private final double lineHeight;
+
+    // Cache statistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    TextMetrics(PenFont font) {
+        this(font, layoutMeasurer(font));
+    }
+
+    // Creates metrics that measure text using the given function.
+    TextMetrics(PenFont font, Function<String, Dimension2D> measurer) {
+        this.font = font;
+        this.measurer = measurer;
+        this.lineHeight = measurer.apply("ABC").getHeight();
+    }
+
+    //-------------------------------------------------------------------------
+    // Metrics
+
+    /**
+     * Gets the font's line height: the height of a line of text, for
+     * geometry computations.
+     * @return The height in pixels
+     */
+    public double getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * Gets the size of the text string's bounding box as drawn.
+     * @param text The text
+     * @return The size
+     */
+    public Dimension2D getSize(String text) {
+        var entry = sizes.get(text);
+
+        if (entry != null) {
+            hits.increment();
+            entry.lastUse = clock.incrementAndGet();
+            return entry.size;
+        }
+
+        misses.increment();
+        var size = measurer.apply(text);
+        var added = new Entry(size, clock.incrementAndGet());
+
+        if (sizes.putIfAbsent(text, added) == null &&
+            sizes.size() > MAX_ENTRIES
+        ) {
+            trim();
+        }
+
+        return size;
+    }
+
+    //-------------------------------------------------------------------------
+    // Statistics
+
+    /**
+     * Gets the number of size requests answered from the cache.
+     * @return The count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of size requests that required measuring the text.
+     * @return The count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the fraction of size requests answered from the cache.
+     * @return The hit rate, from 0.0 to 1.0, or 0.0 if there have been no
+     * requests
+     */
+    public double getHitRate() {
+        var hitCount = hits.sum();
+        var total = hitCount + misses.sum();
+        return total > 0 ? (double)hitCount/total : 0.0;
+    }
+
+    /**
+     * Empties the cache and resets the statistics.
+     */
+    public void clear() {
+        sizes.clear();
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "TextMetrics[" + font.getName() + ",entries=" + sizes.size() +
+            ",hits=" + hits.sum() + ",misses=" + misses.sum() + "]";
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Evicts the least recently used entries, leaving TRIMMED_ENTRIES.
+    // Trimming several entries at once keeps its cost low per miss; a
+    // thread that finds another thread trimming leaves it to that thread.
+    private void trim() {
+        if (!trimLock.tryLock()) {
+            return;
+        }
+
+        try {
+            var excess = sizes.size() - TRIMMED_ENTRIES;
+            if (excess <= 0) {
+                return;
+            }
+
+            var oldest = sizes.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().lastUse))
+                .sorted(Map.Entry.comparingByValue())
+                .limit(excess)
+                .toList();
+
+            for (var e : oldest) {
+                sizes.remove(e.getKey());
+            }
+        } finally {
+            trimLock.unlock();
+        }
+    }
+
+    // Returns a function that measures text in the font by laying it out
+    // in a Text node.  Each call uses its own node, so that threads can
+    // measure concurrently.
+    private static Function<String, Dimension2D> layoutMeasurer(PenFont font) {
+        var realFont = font.getRealFont();
+
+        return text -> {
+            var node = new Text(text);
+            node.setFont(realFont);
+            var bounds = node.getLayoutBounds();
+            return new Dimension2D(bounds.getWidth(), bounds.getHeight());
+        };
+    }
+
+    // A cached size, with the clock time of its last use.
+    private static final class Entry {
+        final Dimension2D size;
+        volatile long lastUse;
+
+        Entry(Dimension2D size, long lastUse) {
+            this.size = size;
+            this.lastUse = lastUse;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package pen.tcl;
+
+import javafx.geometry.Dimension2D;
+import javafx.geometry.Point2D;
+import javafx.scene.paint.Color;
+import pen.stencil.Points;
+import tcl.lang.InternalRep;
+import tcl.lang.TclObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pen-specific internal representations for TclObjects.  Once an argument
+ * has been parsed as a point, point list, dimension, identifier, color, or
+ * script, the parsed value is cached on the TclObject as its internal rep,
+ * so that literal arguments in loops and procs, which are the same
+ * TclObject on every evaluation, are parsed only once.  As with Tcl's own types,
+ * converting the object to another type discards the cached value.
+ *
+ * <p>All values cached here are immutable, and the object's string rep
+ * is always valid when a rep is set, so the reps can be shared by
+ * duplicates of the object.</p>
+ */
+final class InternalReps {
+    private InternalReps() {} // Not instantiable
+
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The maximum number of entries in the color cache.
+    private static final int MAX_COLORS = 1024;
+
+    // Colors parsed by Color.valueOf, by color string.
+    private static final Map<String, Color> colorCache =
+        new ConcurrentHashMap<>();
+
+    // Exact powers of ten, for the decimal fast path.
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // The largest mantissa whose conversion to double is exact.
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    //-------------------------------------------------------------------------
+    // Cached Values
+
+    /**
+     * Gets the object's cached value, if it has a rep of the given type.
+     * @param arg The object
+     * @param cls The rep's value type
+     * @return The value, or null
+     * @param <T> The value type
+     */
+    static <T> T cached(TclObject arg, Class<T> cls) {
+        return arg.getInternalRep() instanceof Rep rep
+            && cls.isInstance(rep.value())
+            ? cls.cast(rep.value()) : null;
+    }
+
+    /**
+     * Caches the parsed value on the object, replacing its current
+     * internal rep.  The object's string rep must be valid.
+     * @param arg The object
+     * @param value The parsed value
+     * @return The value
+     * @param <T> The value type
+     */
+    static <T> T cache(TclObject arg, T value) {
+        arg.setInternalRep(new Rep(value));
+        return value;
+    }
+
+    //-------------------------------------------------------------------------
+    // Parsers
+
+    /**
+     * Parses a string "num,num" into a pair of doubles.  As with
+     * {@code String.split(",")}, trailing commas are ignored.
+     * @param value The string
+     * @param xy An array to receive the two numbers
+     * @return true on success, and false otherwise.
+     */
+    static boolean parsePair(String value, double[] xy) {
+        var comma = value.indexOf(',');
+        if (comma <= 0) {
+            return false;
+        }
+
+        var end = value.indexOf(',', comma + 1);
+        if (end == -1) {
+            end = value.length();
+        } else {
+            for (int i = end; i < value.length(); i++) {
+                if (value.charAt(i) != ',') {
+                    return false;
+                }
+            }
+        }
+
+        if (end == comma + 1) {
+            return false;
+        }
+
+        try {
+            xy[0] = parseDouble(value, 0, comma);
+            xy[1] = parseDouble(value, comma + 1, end);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Whether the string is an identifier: a letter followed by letters,
+     * digits, and hyphens.
+     * @param value The string
+     * @return true or false
+     */
+    static boolean isIdentifier(String value) {
+        if (value.isEmpty() || !isLetter(value.charAt(0))) {
+            return false;
+        }
+
+        for (int i = 1; i < value.length(); i++) {
+            var ch = value.charAt(i);
+            if (!isLetter(ch) && !(ch >= '0' && ch <= '9') && ch != '-') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the color for the string, as returned by {@code Color.valueOf}.
+     * @param value The string
+     * @return The color
+     * @throws IllegalArgumentException if the string isn't a color.
+     */
+    static Color toColor(String value) {
+        var color = colorCache.get(value);
+
+        if (color == null) {
+            color = Color.valueOf(value);
+            if (colorCache.size() < MAX_COLORS) {
+                colorCache.put(value, color);
+            }
+        }
+
+        return color;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private static boolean isLetter(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    // Parses the substring as a double, as Double.parseDouble would.
+    // Plain decimals that convert exactly are parsed in place; anything
+    // else goes to Double.parseDouble.
+    private static double parseDouble(String value, int start, int end) {
+        var i = start;
+        var negative = false;
+
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        var digits = 0;
+        var fraction = -1;
+
+        for (; i < end; i++) {
+            var ch = value.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                mantissa = 10*mantissa + (ch - '0');
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return Double.parseDouble(value.substring(start, end));
+                }
+                digits++;
+                if (fraction >= 0 && ++fraction >= POWERS_OF_TEN.length) {
+                    return Double.parseDouble(value.substring(start, end));
+                }
+            } else if (ch == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                return Double.parseDouble(value.substring(start, end));
+            }
+        }
+
+        if (digits == 0) {
+            return Double.parseDouble(value.substring(start, end));
+        }
+
+        // Both operands are exact, so the quotient is correctly rounded.
+        var result = fraction > 0
+            ? mantissa / POWERS_OF_TEN[fraction]
+            : (double)mantissa;
+        return negative ? -result : result;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helper Types
+
+    // An internal rep holding an immutable parsed value: a Point2D,
+    // Dimension2D, Color, Identifier, PointList, or TclScript.
+    private record Rep(Object value) implements InternalRep {
+        @Override public void dispose() {
+            // Nothing to do
+        }
+
+        @Override public InternalRep duplicate() {
+            return this;
+        }
+
+        @Override public String toString() {
+            return switch (value) {
+                case Point2D p -> p.getX() + "," + p.getY();
+                case Dimension2D d -> d.getWidth() + "," + d.getHeight();
+                default -> value.toString();
+            };
+        }
+    }
+
+    /**
+     * A validated identifier.
+     * @param name The identifier
+     */
+    record Identifier(String name) {
+        @Override public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * A parsed list of points.
+     * @param points The points, which must not be modified
+     */
+    record PointList(Points points) {
+        @Override public String toString() {
+            var buff = new StringBuilder();
+            for (int i = 0; i < points.size(); i++) {
+                if (!buff.isEmpty()) {
+                    buff.append(' ');
+                }
+                buff.append(points.getX(i)).append(',')
+                    .append(points.getY(i));
+            }
+            return buff.toString();
+        }
+    }
+}
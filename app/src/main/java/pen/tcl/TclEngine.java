@@ -3,26 +3,63 @@ package pen.tcl;
 import javafx.geometry.Dimension2D;
 import javafx.geometry.Point2D;
 import javafx.scene.paint.Color;
+import pen.stencil.Points;
 import tcl.lang.*;
+import tcl.lang.cmd.SourceCmd;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * A wrapper for the JTcl Interp, focusing on the needs of embedding.
  */
 @SuppressWarnings("unused")
 public class TclEngine {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The number of parsed scripts to retain.
+    private static final int MAX_SCRIPTS = 16;
+
+    // The length of the longest script worth parsing for reuse.
+    private static final int MAX_SCRIPT_LENGTH = 64*1024;
+
     //-------------------------------------------------------------------------
     // Instance Variables
 
     private final Interp interp = new Interp();
     private final List<TclExtension> extensions = new ArrayList<>();
 
+    // The files read by the "source" command, if tracked.
+    private List<Path> sourcedFiles = null;
+
+    // Called with each tracked file just before it is read, or null.
+    private Consumer<Path> sourceListener = null;
+
+    // The command profiler, if profiling is enabled.
+    private TclProfiler profiler = null;
+
+    // The line of the top-level command being evaluated by eval(), or 0.
+    private int scriptLine = 0;
+
+    // Parsed multi-line scripts evaluated more than once, by content hash.
+    // A null value marks a script seen only once.
+    private final Map<Integer, TclScript> scripts =
+        new LinkedHashMap<>(MAX_SCRIPTS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<Integer, TclScript> eldest
+            ) {
+                return size() > MAX_SCRIPTS;
+            }
+        };
+
     //-------------------------------------------------------------------------
     // Constructor
 
@@ -69,6 +106,94 @@ public class TclEngine {
         }
     }
 
+    /**
+     * Begins recording the files read by the Tcl "source" command, so that
+     * the caller can tell which files an evaluated script depends on.
+     */
+    public void trackSourcedFiles() {
+        if (sourcedFiles != null) {
+            return;
+        }
+
+        sourcedFiles = new ArrayList<>();
+
+        // Delegate to a SourceCmd of our own; the interp's "source" command
+        // may be an autoload stub that would replace this one.
+        var source = new SourceCmd();
+
+        interp.createCommand("source", (interp, objv) -> {
+            if (objv.length > 1) {
+                var file = objv[objv.length - 1].toString();
+                addSourcedFile(interp.getWorkingDir().toPath().resolve(file));
+            }
+            source.cmdProc(interp, objv);
+        });
+    }
+
+    /**
+     * Gets the files read by the Tcl "source" command since
+     * trackSourcedFiles() was called, in order of first use.
+     * @return The list of paths, which is empty if untracked.
+     */
+    public List<Path> getSourcedFiles() {
+        return sourcedFiles != null
+            ? sourcedFiles.stream().distinct().toList()
+            : List.of();
+    }
+
+    /**
+     * Records a file about to be read by a command other than "source",
+     * e.g., a data table, so that it is included in getSourcedFiles().
+     * Does nothing if sourced files are not tracked.
+     * @param path The file's path
+     */
+    public void addSourcedFile(Path path) {
+        if (sourcedFiles != null) {
+            var file = path.toAbsolutePath().normalize();
+            sourcedFiles.add(file);
+            if (sourceListener != null) {
+                sourceListener.accept(file);
+            }
+        }
+    }
+
+    /**
+     * Sets a listener to be called with the absolute path of each tracked
+     * file just before it is read, e.g., to record the file's state as
+     * read; or null for none.
+     * @param listener The listener
+     */
+    public void setSourceListener(Consumer<Path> listener) {
+        this.sourceListener = listener;
+    }
+
+    /**
+     * Forgets the files sourced so far, if tracked, e.g., before
+     * evaluating a script whose own dependencies are wanted.
+     */
+    public void clearSourcedFiles() {
+        if (sourcedFiles != null) {
+            sourcedFiles.clear();
+        }
+    }
+
+    /**
+     * Sets the profiler used to profile the commands defined by the
+     * engine's extensions, or null to disable profiling.
+     * @param profiler The profiler, or null
+     */
+    public void setProfiler(TclProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Gets the engine's profiler, if profiling is enabled.
+     * @return The profiler, or null
+     */
+    public TclProfiler getProfiler() {
+        return profiler;
+    }
+
     //-------------------------------------------------------------------------
     // Interpreter API
 
@@ -81,14 +206,30 @@ public class TclEngine {
     }
 
     /**
-     * Evaluates the script as a Tcl script, returning the result.
+     * Disposes of the engine's interpreter, which JTcl allows only on the
+     * thread that created the engine.  The engine can't be used
+     * afterwards.
+     */
+    public void dispose() {
+        interp.dispose();
+    }
+
+    /**
+     * Evaluates the script as a Tcl script, returning the result.  A
+     * multi-line script evaluated more than once at the top level is
+     * parsed once and reused, keyed by its content.
      * @param script The script.
      * @return The result
      * @throws TclEngineException on error.
      */
     public TclObject eval(String script) throws TclEngineException {
         try {
-            interp.eval(script);
+            var parsed = isTopLevel() ? lookupScript(script) : null;
+            if (parsed != null) {
+                evalParsed(parsed);
+            } else {
+                interp.eval(script);
+            }
             return interp.getResult();
         } catch (TclException ex) {
             throw new TclEngineException(this, ex);
@@ -96,20 +237,96 @@ public class TclEngine {
     }
 
     /**
-     * Evaluates the object as a Tcl script, returning the result.
+     * Evaluates the object as a Tcl script, returning the result.  When
+     * evaluated at the top level, the parsed script is cached on the
+     * object, so a client that evaluates the same script repeatedly should
+     * keep the object, preserving it with {@link TclObject#preserve()}.
      * @param script The script.
      * @return The result
      * @throws TclEngineException on error.
      */
     public TclObject eval(TclObject script) throws TclEngineException {
         try {
-            interp.eval(script, TCL.EVAL_GLOBAL);
+            var parsed = isTopLevel() ? toScript(script) : null;
+            if (parsed != null) {
+                evalParsed(parsed);
+            } else {
+                interp.eval(script, TCL.EVAL_GLOBAL);
+            }
             return interp.getResult();
         } catch (TclException ex) {
             throw new TclEngineException(this, ex);
         }
     }
 
+    // Evaluates the parsed script, tracking the line being evaluated.
+    private void evalParsed(TclScript parsed) throws TclException {
+        try {
+            parsed.eval(interp, line -> scriptLine = line);
+        } finally {
+            scriptLine = 0;
+        }
+    }
+
+    /**
+     * Gets the line number of the top-level command currently being
+     * evaluated by {@link #eval(String)} or {@link #eval(TclObject)}, e.g.,
+     * so that a command can note where in the script it was called.  Lines
+     * are known only for scripts parsed for reuse; returns 0 if the line
+     * is unknown or no script is being evaluated.
+     * @return The line number, or 0
+     */
+    public int getScriptLine() {
+        return scriptLine;
+    }
+
+    // Whether the engine is evaluating at the top level, i.e., not from
+    // within a command.
+    private boolean isTopLevel() {
+        return interp.nestLevel == 0;
+    }
+
+    // Gets the parsed script for a script string seen before, or null.
+    private TclScript lookupScript(String script) {
+        if (script.length() > MAX_SCRIPT_LENGTH || script.indexOf('\n') == -1) {
+            return null;
+        }
+
+        var key = script.hashCode();
+        if (!scripts.containsKey(key)) {
+            scripts.put(key, null);
+            return null;
+        }
+
+        var parsed = scripts.get(key);
+        if (parsed == null || !parsed.source().equals(script)) {
+            parsed = TclScript.compile(script);
+            scripts.put(key, parsed);
+        }
+        return parsed;
+    }
+
+    // Gets the parsed script cached on the object, parsing it if need be,
+    // or null if it shouldn't be parsed.
+    private TclScript toScript(TclObject script) {
+        var parsed = InternalReps.cached(script, TclScript.class);
+        if (parsed != null) {
+            return parsed;
+        }
+
+        // JTcl evaluates pure lists without parsing them.
+        if (script.hasNoStringRep() && script.isListType()) {
+            return null;
+        }
+
+        var text = script.toString();
+        if (text.length() > MAX_SCRIPT_LENGTH) {
+            return null;
+        }
+
+        return InternalReps.cache(script, TclScript.compile(text));
+    }
+
     /**
      * Evaluates the file's content as a Tcl script.
      * @param file The file
@@ -153,7 +370,7 @@ public class TclEngine {
      * @param proc The function
      */
     public void add(String name, TclEngineProc proc) {
-        var cmd = new TclEngineCommand(this, 1, proc);
+        var cmd = new TclEngineCommand(this, name, 1, proc);
         interp.createCommand(name, cmd);
     }
 
@@ -162,7 +379,7 @@ public class TclEngine {
      * @param name The name
      */
     public TclEnsemble ensemble(String name) {
-        var ensemble = new TclEnsemble(this, 1);
+        var ensemble = new TclEnsemble(this, name, 1);
         interp.createCommand(name, ensemble);
         return ensemble;
     }
@@ -180,6 +397,23 @@ public class TclEngine {
         extensions.forEach(TclExtension::reset);
     }
 
+    /**
+     * Gets the installed extension of the given class.
+     * @param cls The extension class
+     * @param <T> The extension type
+     * @return The extension
+     * @throws IllegalArgumentException if no such extension is installed.
+     */
+    public <T extends TclExtension> T getExtension(Class<T> cls) {
+        for (var extension : extensions) {
+            if (cls.isInstance(extension)) {
+                return cls.cast(extension);
+            }
+        }
+        throw new IllegalArgumentException(
+            "No such extension: " + cls.getSimpleName());
+    }
+
     //-------------------------------------------------------------------------
     // Helpers: Argument Processing
 
@@ -236,8 +470,13 @@ public class TclEngine {
     }
 
     public Color toColor(TclObject arg) throws TclException {
+        var color = InternalReps.cached(arg, Color.class);
+        if (color != null) {
+            return color;
+        }
+
         try {
-            return Color.valueOf(arg.toString());
+            return InternalReps.cache(arg, InternalReps.toColor(arg.toString()));
         } catch (Exception ex) {
             throw expected("color", arg);
         }
@@ -280,9 +519,15 @@ public class TclEngine {
      * @throws TclException if not an identifier.
      */
     public String toIdentifier(TclObject arg) throws TclException {
+        var id = InternalReps.cached(arg, InternalReps.Identifier.class);
+        if (id != null) {
+            return id.name();
+        }
+
         var value = arg.toString();
-        if (value.matches("[a-zA-Z][-a-zA-Z0-9]*")) {
-            return value;
+        if (InternalReps.isIdentifier(value)) {
+            return InternalReps.cache(arg, new InternalReps.Identifier(value))
+                .name();
         } else {
             throw expected("identifier", value);
         }
@@ -349,25 +594,15 @@ public class TclEngine {
      * @throws TclException on parse error
      */
     public Point2D toPoint(TclObject arg) throws TclException {
-        var tokens = arg.toString().split(",");
-        double x;
-        double y;
+        var point = InternalReps.cached(arg, Point2D.class);
+        if (point != null) {
+            return point;
+        }
 
         // TODO: Fix up error messages to be more helpful and Tcl-like
-        if (tokens.length == 2) {
-            try {
-                x = Double.parseDouble(tokens[0]);
-            } catch (Exception ex) {
-                throw expected("x,y point", arg);
-            }
-
-            try {
-                y = Double.parseDouble(tokens[1]);
-            } catch (Exception ex) {
-                throw expected("x,y point", arg);
-            }
-
-            return new Point2D(x, y);
+        var xy = new double[2];
+        if (InternalReps.parsePair(arg.toString(), xy)) {
+            return InternalReps.cache(arg, new Point2D(xy[0], xy[1]));
         } else {
             throw expected("x,y point", arg);
         }
@@ -377,18 +612,43 @@ public class TclEngine {
         return toPoint(toOptArg(opt, argq));
     }
 
-    public List<Point2D> toPointList(TclObject arg) throws TclException {
+    /**
+     * Converts an argument containing a list of "num,num" strings into a
+     * list of points.  The points are decoded directly into a
+     * {@link Points} buffer, which is cached with the argument; the caller
+     * must not modify it.
+     * @param arg The argument
+     * @return The list
+     * @throws TclException on parse error
+     */
+    public Points toPointList(TclObject arg) throws TclException {
+        var cached = InternalReps.cached(arg, InternalReps.PointList.class);
+        if (cached != null) {
+            return cached.points();
+        }
+
         var q = toArgq(arg);
-        var list = new ArrayList<Point2D>();
+        var points = new Points(q.size());
+        var xy = new double[2];
 
         while (q.hasNext()) {
-            list.add(toPoint(q.next()));
+            var item = q.next();
+            var point = InternalReps.cached(item, Point2D.class);
+
+            if (point != null) {
+                points.add(point.getX(), point.getY());
+            } else if (InternalReps.parsePair(item.toString(), xy)) {
+                points.add(xy[0], xy[1]);
+            } else {
+                throw expected("x,y point", item);
+            }
         }
 
-        return list;
+        return InternalReps.cache(arg, new InternalReps.PointList(points))
+            .points();
     }
 
-    public List<Point2D> toPointList(String opt, Argq argq)
+    public Points toPointList(String opt, Argq argq)
         throws TclException
     {
         return toPointList(toOptArg(opt, argq));
@@ -401,25 +661,15 @@ public class TclEngine {
      * @throws TclException on parse error
      */
     public Dimension2D toDim(TclObject arg) throws TclException {
-        var tokens = arg.toString().split(",");
-        double x;
-        double y;
+        var dim = InternalReps.cached(arg, Dimension2D.class);
+        if (dim != null) {
+            return dim;
+        }
 
         // TODO: Fix up error messages to be more helpful and Tcl-like
-        if (tokens.length == 2) {
-            try {
-                x = Double.parseDouble(tokens[0]);
-            } catch (Exception ex) {
-                throw expected("width,height", arg);
-            }
-
-            try {
-                y = Double.parseDouble(tokens[1]);
-            } catch (Exception ex) {
-                throw expected("width,height", arg);
-            }
-
-            return new Dimension2D(x, y);
+        var wh = new double[2];
+        if (InternalReps.parsePair(arg.toString(), wh)) {
+            return InternalReps.cache(arg, new Dimension2D(wh[0], wh[1]));
         } else {
             throw expected("width,height", arg);
         }
@@ -15,6 +15,9 @@ public class TclEngineCommand implements Command {
     // The engine to which the command belongs
     private final TclEngine engine;
 
+    // The fully-qualified command name, e.g., "stencil rectangle".
+    private final String name;
+
     // The number of command prefix tokens
     private final int prefixTokens;
 
@@ -28,11 +31,18 @@ public class TclEngineCommand implements Command {
      * Constructs the command.  Intentionally package private; a
      * TclEngineCommand is always created by a TclEngine or TclEnsemble.
      * @param engine The engine (needed?)
+     * @param name The fully-qualified command name
      * @param prefixTokens The number of command prefix tokens
      * @param proc The function to call
      */
-    TclEngineCommand(TclEngine engine, int prefixTokens, TclEngineProc proc) {
+    TclEngineCommand(
+        TclEngine engine,
+        String name,
+        int prefixTokens,
+        TclEngineProc proc
+    ) {
         this.engine = engine;
+        this.name = name;
         this.prefixTokens = prefixTokens;
         this.proc = proc;
     }
@@ -42,6 +52,16 @@ public class TclEngineCommand implements Command {
 
     @Override
     public void cmdProc(Interp interp, TclObject[] args) throws TclException {
+        var profiler = engine.getProfiler();
+
+        if (profiler == null) {
+            call(args);
+        } else {
+            profiler.profile(name, () -> call(args));
+        }
+    }
+
+    private void call(TclObject[] args) throws TclException {
         try {
             proc.run(engine, new Argq(args, prefixTokens));
         } catch (TclException ex) {
@@ -0,0 +1,351 @@
+package pen.tcl;
+
+import tcl.lang.*;
+
+import java.lang.ref.Cleaner;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A pool of pre-initialized TclEngines, for clients that evaluate many
+ * scripts in the same environment, e.g., when loading many data files.
+ * The pool creates each engine with the pool's initializer, which
+ * typically installs extensions, and records the engine's clean state.
+ *
+ * <p>A client acquires an engine, uses it exclusively, and releases it.
+ * On release the engine is reset to its clean state: its extensions are
+ * reset via {@link TclExtension#reset()}; commands, namespaces, and
+ * global variables created since initialization are deleted; initial
+ * global variables are restored; and the working directory, profiler,
+ * source listener, and sourced file list are reset.  An engine whose initial commands have
+ * been deleted, renamed, or redefined can't be restored, and is
+ * discarded.  A client that has handed out objects that still depend on
+ * the engine, e.g., calendars whose month lengths are computed by Tcl
+ * procs, should discard it instead of releasing it, giving an object that
+ * stays reachable as long as they do.</p>
+ *
+ * <p>Discarded engines are disposed, so that JTcl forgets them.  JTcl
+ * registers each interpreter with the thread that creates it, and
+ * disposes it only on that thread; so that engines can be acquired on
+ * short-lived threads, the pool creates and disposes them on a few
+ * long-lived "home" threads.</p>
+ *
+ * <p>The pool is thread-safe; each engine may be used by one thread at a
+ * time.</p>
+ */
+public class TclEnginePool {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The threads on which engines are created and disposed, one per
+    // processor.
+    private static final Executor[] HOMES =
+        new Executor[Runtime.getRuntime().availableProcessors()];
+
+    static {
+        for (int i = 0; i < HOMES.length; i++) {
+            HOMES[i] = Executors.newSingleThreadExecutor(runnable -> {
+                var thread = new Thread(runnable, "TclEngine home");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // The next home to use.
+    private static final AtomicInteger NEXT_HOME = new AtomicInteger();
+
+    // Disposes engines whose dependents are unreachable.
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // Initializes each new engine.
+    private final Consumer<TclEngine> initializer;
+
+    // The maximum number of idle engines to retain.
+    private final int maxIdle;
+
+    // The idle engines.
+    private final Deque<TclEngine> idle = new ConcurrentLinkedDeque<>();
+
+    // The home and clean state of each undiscarded engine created by the
+    // pool.
+    private final Map<TclEngine, Entry> entries = new ConcurrentHashMap<>();
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a pool that retains up to twice as many idle engines as
+     * there are processors.
+     * @param initializer Initializes each new engine
+     */
+    public TclEnginePool(Consumer<TclEngine> initializer) {
+        this(initializer, 2*Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a pool.
+     * @param initializer Initializes each new engine
+     * @param maxIdle The maximum number of idle engines to retain.
+     */
+    public TclEnginePool(Consumer<TclEngine> initializer, int maxIdle) {
+        this.initializer = initializer;
+        this.maxIdle = maxIdle;
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Acquires an engine for the caller's exclusive use, creating a new
+     * engine if no idle engine is available.
+     * @return The engine
+     */
+    public TclEngine acquire() {
+        var engine = idle.pollFirst();
+        return engine != null ? engine : create();
+    }
+
+    /**
+     * Resets the engine to its clean state and returns it to the pool.  If
+     * it cannot be reset, or the pool is full, it is discarded.
+     * @param engine An engine acquired from this pool
+     */
+    public void release(TclEngine engine) {
+        var entry = entries.get(engine);
+
+        if (entry != null && entry.baseline() != null &&
+            idle.size() < maxIdle && entry.baseline().restore(engine)
+        ) {
+            idle.addFirst(engine);
+        } else {
+            discard(engine);
+        }
+    }
+
+    /**
+     * Discards the engine rather than returning it to the pool, and
+     * disposes of it.
+     * @param engine An engine acquired from this pool
+     */
+    public void discard(TclEngine engine) {
+        var entry = entries.remove(engine);
+        if (entry != null) {
+            entry.home().execute(engine::dispose);
+        }
+    }
+
+    /**
+     * Discards the engine rather than returning it to the pool, leaving it
+     * usable by objects that depend on it.  The engine's extensions are
+     * reset, and the engine is disposed once the dependent object is
+     * unreachable, which it must not be from the engine itself.
+     * @param engine An engine acquired from this pool
+     * @param dependent An object that is reachable as long as any object
+     * that depends on the engine
+     */
+    public void discard(TclEngine engine, Object dependent) {
+        var entry = entries.remove(engine);
+        engine.resetExtensions();
+
+        if (entry != null) {
+            var home = entry.home();
+            CLEANER.register(dependent, () -> home.execute(engine::dispose));
+        }
+    }
+
+    /**
+     * Gets the number of idle engines in the pool.
+     * @return The number
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Creates an engine on its home thread, and initializes it.
+    private TclEngine create() {
+        var home = HOMES[Math.floorMod(NEXT_HOME.getAndIncrement(),
+            HOMES.length)];
+        TclEngine engine;
+
+        try {
+            engine = CompletableFuture.supplyAsync(TclEngine::new, home)
+                .join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw ex;
+        }
+
+        try {
+            initializer.accept(engine);
+        } catch (RuntimeException ex) {
+            home.execute(engine::dispose);
+            throw ex;
+        }
+
+        Baseline baseline = null;
+        try {
+            baseline = new Baseline(engine);
+        } catch (TclException ex) {
+            // Can't record the baseline; the engine is usable but can't
+            // be pooled.
+        }
+
+        entries.put(engine, new Entry(home, baseline));
+        return engine;
+    }
+
+    // An engine's home thread, and its clean state or null if unknown.
+    private record Entry(Executor home, Baseline baseline) {}
+
+    // The clean state of an engine.
+    private static class Baseline {
+        // The global commands, by name
+        private final Map<String, Command> commands = new HashMap<>();
+
+        // The child namespaces of the global namespace
+        private final Set<String> namespaces;
+
+        // The global scalar variables and their values
+        private final Map<String, String> scalars = new HashMap<>();
+
+        // The global array variables
+        private final Set<String> arrays = new HashSet<>();
+
+        // The working directory
+        private final String workingDirectory;
+
+        Baseline(TclEngine engine) throws TclException {
+            var interp = engine.interp();
+
+            for (var name : list(interp, "info commands")) {
+                commands.put(name, interp.getCommand(name));
+            }
+
+            namespaces = new HashSet<>(list(interp, "namespace children ::"));
+
+            for (var name : list(interp, "info globals")) {
+                if (isArray(interp, name)) {
+                    arrays.add(name);
+                } else {
+                    scalars.put(name,
+                        interp.getVar(name, TCL.GLOBAL_ONLY).toString());
+                }
+            }
+
+            workingDirectory = interp.getWorkingDir().toString();
+        }
+
+        // Restores the engine to its clean state, returning false if that
+        // isn't possible.
+        boolean restore(TclEngine engine) {
+            var interp = engine.interp();
+
+            try {
+                // FIRST, check the initial commands.
+                for (var entry : commands.entrySet()) {
+                    var cmd = interp.getCommand(entry.getKey());
+
+                    if (cmd == null) {
+                        return false;
+                    }
+
+                    // JTcl replaces autoload stubs when the command is
+                    // first used.
+                    if (cmd != entry.getValue() &&
+                        !isAutoloadStub(entry.getValue())
+                    ) {
+                        return false;
+                    }
+                }
+
+                // NEXT, delete new commands, namespaces, and variables.
+                for (var name : list(interp, "info commands")) {
+                    if (!commands.containsKey(name)) {
+                        interp.deleteCommand(name);
+                    }
+                }
+
+                for (var ns : list(interp, "namespace children ::")) {
+                    if (!namespaces.contains(ns)) {
+                        eval(interp, "namespace", "delete", ns);
+                    }
+                }
+
+                for (var name : list(interp, "info globals")) {
+                    if (!scalars.containsKey(name) && !arrays.contains(name)) {
+                        interp.unsetVar(name, TCL.GLOBAL_ONLY);
+                    }
+                }
+
+                // NEXT, restore the initial scalars.
+                for (var entry : scalars.entrySet()) {
+                    interp.setVar(entry.getKey(),
+                        TclString.newInstance(entry.getValue()),
+                        TCL.GLOBAL_ONLY);
+                }
+
+                interp.setWorkingDir(workingDirectory);
+                interp.resetResult();
+            } catch (TclException ex) {
+                return false;
+            }
+
+            // NEXT, reset the engine and its extensions.
+            engine.setProfiler(null);
+            engine.setSourceListener(null);
+            engine.clearSourcedFiles();
+            engine.resetExtensions();
+
+            return true;
+        }
+
+        private static List<String> list(Interp interp, String command)
+            throws TclException
+        {
+            interp.eval(command);
+            var result = new ArrayList<String>();
+            for (var item : TclList.getElements(interp, interp.getResult())) {
+                result.add(item.toString());
+            }
+            return result;
+        }
+
+        private static boolean isArray(Interp interp, String name)
+            throws TclException
+        {
+            eval(interp, "array", "exists", "::" + name);
+            return TclBoolean.get(interp, interp.getResult());
+        }
+
+        // Evaluates the command given its words.
+        private static void eval(Interp interp, String... words)
+            throws TclException
+        {
+            var command = TclList.newInstance();
+            for (var word : words) {
+                TclList.append(interp, command, TclString.newInstance(word));
+            }
+            interp.eval(command, TCL.EVAL_GLOBAL);
+        }
+
+        private static boolean isAutoloadStub(Command cmd) {
+            return cmd.getClass().getName().equals("tcl.lang.AutoloadStub");
+        }
+    }
+}
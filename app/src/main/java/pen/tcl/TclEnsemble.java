@@ -14,6 +14,9 @@ public class TclEnsemble implements Command {
     // The engine to which the command belongs
     private final TclEngine engine;
 
+    // The fully-qualified ensemble name, e.g., "stencil".
+    private final String name;
+
     // The number of command prefix tokens
     private final int prefixTokens;
 
@@ -26,10 +29,12 @@ public class TclEnsemble implements Command {
      * Constructs the ensemble.  Intentionally package private; a
      * TclEnsemble is always created by a TclEngine or TclEnsemble.
      * @param engine The engine (needed?)
+     * @param name The fully-qualified ensemble name
      * @param prefixTokens The number of command prefix tokens
      */
-    TclEnsemble(TclEngine engine, int prefixTokens) {
+    TclEnsemble(TclEngine engine, String name, int prefixTokens) {
         this.engine = engine;
+        this.name = name;
         this.prefixTokens = prefixTokens;
     }
 
@@ -38,6 +43,18 @@ public class TclEnsemble implements Command {
 
     @Override
     public void cmdProc(Interp interp, TclObject[] tclObjects) throws TclException {
+        var profiler = engine.getProfiler();
+
+        if (profiler == null) {
+            dispatch(interp, tclObjects);
+        } else {
+            profiler.profile(name, () -> dispatch(interp, tclObjects));
+        }
+    }
+
+    private void dispatch(Interp interp, TclObject[] tclObjects)
+        throws TclException
+    {
         if (tclObjects.length <= prefixTokens) {
             // TODO: better error message
             throw engine.error("Missing subcommand");
@@ -63,7 +80,8 @@ public class TclEnsemble implements Command {
      * @param proc The function
      */
     public void add(String name, TclEngineProc proc) {
-        var cmd = new TclEngineCommand(engine, prefixTokens + 1, proc);
+        var cmd = new TclEngineCommand(
+            engine, this.name + " " + name, prefixTokens + 1, proc);
         subcommands.put(name, cmd);
     }
 
@@ -73,7 +91,8 @@ public class TclEnsemble implements Command {
      * @param name The name
      */
     public TclEnsemble ensemble(String name) {
-        var ensemble = new TclEnsemble(engine, prefixTokens + 1);
+        var ensemble = new TclEnsemble(
+            engine, this.name + " " + name, prefixTokens + 1);
         subcommands.put(name, ensemble);
         return ensemble;
     }
@@ -0,0 +1,180 @@
+package pen.tcl;
+
+import tcl.lang.TclException;
+import tcl.lang.TclList;
+import tcl.lang.TclObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A declarative specification of the "-option value" pairs accepted by a
+ * command.  Each option is declared once, with a converter for its value
+ * and a setter that applies the converted value to a target object, e.g.,
+ * the shape being created or a holder for the command's settings.  Parsing
+ * looks each option up in a precomputed table and applies the options to
+ * the target in the order given, so options that build on earlier ones
+ * (e.g., "-to" after "-from") behave just as they would in a hand-written
+ * loop.
+ *
+ * <p>As in the rest of Pen, a command's options may be given as separate
+ * arguments or as a single list; a list is traversed in place, rather than
+ * being copied into an {@link Argq}.  Errors are those returned by
+ * {@link TclEngine#unknownOption(String)} and
+ * {@link TclEngine#toOptArg(String, Argq)}, plus any thrown by the
+ * converters.</p>
+ *
+ * <p>A spec is immutable once built, and may be shared by any number of
+ * commands and engines.</p>
+ * @param <T> The target type
+ */
+public class TclOptions<T> {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The options, by name.
+    private final Map<String, Option<T, ?>> options = new HashMap<>();
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates an empty option spec.
+     */
+    public TclOptions() {
+        // Nothing to do
+    }
+
+    //-------------------------------------------------------------------------
+    // Declarations
+
+    /**
+     * Declares an option.
+     * @param name The option name, e.g., "-at"
+     * @param converter Converts the option's value
+     * @param setter Applies the converted value to the target
+     * @return The spec
+     * @param <V> The value type
+     */
+    public <V> TclOptions<T> option(
+        String name,
+        Converter<V> converter,
+        Setter<T, V> setter
+    ) {
+        options.put(name, new Option<>(converter, setter));
+        return this;
+    }
+
+    /**
+     * Declares all options of another spec whose target type is a
+     * supertype of this one's, e.g., the style options shared by all
+     * shapes.
+     * @param other The other spec
+     * @return The spec
+     */
+    @SuppressWarnings("unchecked")
+    public TclOptions<T> include(TclOptions<? super T> other) {
+        for (var entry : other.options.entrySet()) {
+            options.put(entry.getKey(), (Option<T, ?>)entry.getValue());
+        }
+        return this;
+    }
+
+    //-------------------------------------------------------------------------
+    // Parsing
+
+    /**
+     * Parses the remaining arguments as options and values and applies
+     * them to the target.  If there is exactly one remaining argument, it
+     * is taken to be a list of options and values.
+     * @param tcl The engine
+     * @param target The target
+     * @param argq The argument queue
+     * @return The target
+     * @throws TclException on unknown option or bad value
+     */
+    public T parse(TclEngine tcl, T target, Argq argq) throws TclException {
+        if (argq.argsLeft() == 1) {
+            parseList(tcl, target, argq.next());
+            return target;
+        }
+
+        while (argq.hasNext()) {
+            var opt = argq.next().toString();
+            lookup(tcl, opt).apply(tcl, target, tcl.toOptArg(opt, argq));
+        }
+
+        return target;
+    }
+
+    // Parses a list of options and values, without copying it.
+    private void parseList(TclEngine tcl, T target, TclObject list)
+        throws TclException
+    {
+        var interp = tcl.interp();
+        var length = TclList.getLength(interp, list);
+
+        for (int i = 0; i < length; i += 2) {
+            var opt = TclList.index(interp, list, i).toString();
+            var option = lookup(tcl, opt);
+
+            if (i + 1 == length) {
+                throw tcl.error("missing value for option " + opt);
+            }
+
+            option.apply(tcl, target, TclList.index(interp, list, i + 1));
+        }
+    }
+
+    private Option<T, ?> lookup(TclEngine tcl, String opt)
+        throws TclException
+    {
+        var option = options.get(opt);
+        if (option == null) {
+            throw tcl.unknownOption(opt);
+        }
+        return option;
+    }
+
+    //-------------------------------------------------------------------------
+    // Converters
+
+    /**
+     * A converter that returns the option's value as a string.
+     * @param tcl The engine
+     * @param arg The value
+     * @return The string
+     */
+    public static String string(TclEngine tcl, TclObject arg) {
+        return arg.toString();
+    }
+
+    //-------------------------------------------------------------------------
+    // Helper Types
+
+    /**
+     * Converts an option's value.
+     * @param <V> The value type
+     */
+    public interface Converter<V> {
+        V convert(TclEngine tcl, TclObject arg) throws TclException;
+    }
+
+    /**
+     * Applies an option's converted value to the target.
+     * @param <T> The target type
+     * @param <V> The value type
+     */
+    public interface Setter<T, V> {
+        void set(T target, V value) throws TclException;
+    }
+
+    // A declared option
+    private record Option<T, V>(Converter<V> converter, Setter<T, V> setter) {
+        void apply(TclEngine tcl, T target, TclObject arg)
+            throws TclException
+        {
+            setter.set(target, converter.convert(tcl, arg));
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package pen.tcl;
+
+import pen.util.TextAlign;
+import pen.util.TextColumn;
+import pen.util.TextTable;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An opt-in profiler for the commands defined by TclEngine extensions.
+ * When a profiler is set on a TclEngine (see
+ * {@link TclEngine#setProfiler(TclProfiler)}), each TclEngineCommand and
+ * TclEnsemble records, per fully-qualified command name (e.g.,
+ * "stencil rectangle"), the number of calls, the cumulative and self time
+ * in nanoseconds, and an estimate of the bytes allocated.
+ *
+ * <p>A profiler may be shared by any number of engines on any number of
+ * threads.  The counters are striped ({@link LongAdder}), so that
+ * concurrent updates don't contend; self time is computed per thread.
+ * Cumulative time is counted once per call, and so is overstated for
+ * recursive commands.  Allocation estimates are cumulative, and are
+ * available only on JVMs that support per-thread allocation
+ * counting.</p>
+ */
+public class TclProfiler {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // The JVM's thread bean, if it can count allocated bytes.
+    private static final com.sun.management.ThreadMXBean THREADS =
+        allocationBean();
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The counters, by command name.
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    // The stack of active commands, per thread.
+    private final ThreadLocal<ArrayDeque<Frame>> stacks =
+        ThreadLocal.withInitial(ArrayDeque::new);
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a profiler with no data.
+     */
+    public TclProfiler() {
+        // Nothing to do
+    }
+
+    //-------------------------------------------------------------------------
+    // Recording
+
+    /**
+     * Runs a command, recording its profile.
+     * @param command The fully-qualified command name
+     * @param body The command's implementation
+     * @throws Exception if the body does
+     */
+    <E extends Exception> void profile(String command, Body<E> body)
+        throws E
+    {
+        var stack = stacks.get();
+        var frame = new Frame(allocatedBytes(), System.nanoTime());
+        stack.push(frame);
+
+        try {
+            body.run();
+        } finally {
+            var elapsed = System.nanoTime() - frame.startNanos;
+            var allocated = allocatedBytes() - frame.startBytes;
+            stack.pop();
+
+            if (!stack.isEmpty()) {
+                stack.peek().childNanos += elapsed;
+            }
+
+            var c = counters.computeIfAbsent(command, k -> new Counters());
+            c.calls.increment();
+            c.totalNanos.add(elapsed);
+            c.selfNanos.add(elapsed - frame.childNanos);
+            c.allocatedBytes.add(allocated);
+        }
+    }
+
+    /**
+     * Clears all recorded data.
+     */
+    public void reset() {
+        counters.clear();
+    }
+
+    //-------------------------------------------------------------------------
+    // Reporting
+
+    /**
+     * Gets the recorded profiles, sorted by self time, largest first.
+     * @return The profiles
+     */
+    public List<CommandProfile> getProfiles() {
+        return counters.entrySet().stream()
+            .map(e -> new CommandProfile(
+                e.getKey(),
+                e.getValue().calls.sum(),
+                e.getValue().totalNanos.sum(),
+                e.getValue().selfNanos.sum(),
+                e.getValue().allocatedBytes.sum()))
+            .sorted(Comparator.comparing(CommandProfile::selfNanos).reversed()
+                .thenComparing(CommandProfile::command))
+            .toList();
+    }
+
+    /**
+     * Whether the allocation estimates are available.
+     * @return true or false
+     */
+    public boolean hasAllocationData() {
+        return THREADS != null;
+    }
+
+    /**
+     * Formats the recorded profiles as a text table.
+     * @param mode The table mode
+     * @return The table
+     */
+    public String toTable(TextTable.Mode mode) {
+        return PROFILES.toTable(getProfiles(), mode);
+    }
+
+    private static final TextTable<CommandProfile> PROFILES =
+        new TextTable<>(List.of(
+            new TextColumn<>("Command", TextAlign.LEFT,
+                CommandProfile::command),
+            new TextColumn<>("Calls", TextAlign.RIGHT,
+                CommandProfile::calls),
+            new TextColumn<>("Total ms", TextAlign.RIGHT,
+                p -> millis(p.totalNanos())),
+            new TextColumn<>("Self ms", TextAlign.RIGHT,
+                p -> millis(p.selfNanos())),
+            new TextColumn<>("Alloc KB", TextAlign.RIGHT,
+                p -> p.allocatedBytes() / 1024)
+        ));
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1_000_000.0);
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            if (ManagementFactory.getThreadMXBean()
+                instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()
+                && bean.isThreadAllocatedMemoryEnabled()
+            ) {
+                return bean;
+            }
+        } catch (RuntimeException | LinkageError ex) {
+            // Not available on this JVM
+        }
+        return null;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helper Types
+
+    /**
+     * The recorded profile of a single command.
+     * @param command The fully-qualified command name
+     * @param calls The number of calls
+     * @param totalNanos The cumulative time, including nested commands
+     * @param selfNanos The time, excluding nested profiled commands
+     * @param allocatedBytes The estimated bytes allocated, including nested
+     *                       commands
+     */
+    public record CommandProfile(
+        String command,
+        long calls,
+        long totalNanos,
+        long selfNanos,
+        long allocatedBytes
+    ) {}
+
+    /**
+     * A profiled command body.
+     * @param <E> The exception type
+     */
+    interface Body<E extends Exception> {
+        void run() throws E;
+    }
+
+    // The counters for one command
+    private static class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAdder selfNanos = new LongAdder();
+        final LongAdder allocatedBytes = new LongAdder();
+    }
+
+    // An active command on a thread's stack
+    private static class Frame {
+        final long startBytes;
+        final long startNanos;
+        long childNanos = 0;
+
+        Frame(long startBytes, long startNanos) {
+            this.startBytes = startBytes;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package pen.tcl;
+
+import tcl.lang.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * A Tcl script parsed once for repeated evaluation at the top level of a
+ * TclEngine.  JTcl parses a script from its string rep on every
+ * evaluation; a TclScript splits the script into its top-level commands
+ * once, and pre-builds the words of each command whose words are all
+ * literals, i.e., contain no substitutions.  Such commands, which are the
+ * bulk of a drawing script, are invoked directly from their cached words.
+ * Because the words are the same TclObjects on every evaluation, the
+ * internal reps cached on them (points, colors, option lists, etc.) are
+ * reused as well.  Other commands are evaluated from their text as usual.
+ *
+ * <p>Errors are logged just as JTcl logs them, so that errorInfo and the
+ * error line are unchanged.  A command that returns, breaks, or continues
+ * at the top level is handled as Interp.eval handles it: "return" ends the
+ * script normally, and "break" and "continue" are errors.  A command
+ * evaluated from its text that might do so, e.g., "if {$x} return", is
+ * evaluated by JTcl at the top level itself, which would end only that
+ * command; so a script containing one is always evaluated as a whole.</p>
+ */
+final class TclScript {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    // Commands whose top-level use requires evaluating the whole script.
+    private static final Pattern CONTROL =
+        Pattern.compile("\\b(return|break|continue)\\b");
+
+    // The Interp.evalFlags bit set by Interp.allowExceptions()
+    private static final int ALLOW_EXCEPTIONS = 4;
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The script's text
+    private final String source;
+
+    // The script's characters, for error logging
+    private final char[] chars;
+
+    // The top-level commands, or null if the script must be evaluated as
+    // a whole.
+    private final List<Step> commands;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    private TclScript(String source, List<Step> commands) {
+        this.source = source;
+        this.chars = source.toCharArray();
+        this.commands = commands;
+    }
+
+    /**
+     * Parses the script.
+     * @param source The script's text
+     * @return The parsed script
+     */
+    static TclScript compile(String source) {
+        var commands = new ArrayList<Step>();
+        var start = 0;
+        var line = 1;
+        var chunkLine = 1;
+
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) != '\n') {
+                continue;
+            }
+
+            var end = i + 1;
+            if (!isEscaped(source, i) &&
+                Interp.commandComplete(source.substring(start, end))
+            ) {
+                if (!addCommand(commands, source, start, i, chunkLine)) {
+                    return new TclScript(source, null);
+                }
+                start = end;
+                chunkLine = line + 1;
+            }
+            line++;
+        }
+
+        if (start < source.length() &&
+            !addCommand(commands, source, start, source.length(), chunkLine)
+        ) {
+            return new TclScript(source, null);
+        }
+
+        return new TclScript(source, commands);
+    }
+
+    //-------------------------------------------------------------------------
+    // Evaluation
+
+    /**
+     * Gets the script's text.
+     * @return The text
+     */
+    String source() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * Evaluates the script at the top level of the interpreter.
+     * @param interp The interpreter
+     * @throws TclException on error
+     */
+    void eval(Interp interp) throws TclException {
+        eval(interp, line -> {});
+    }
+
+    /**
+     * Evaluates the script at the top level of the interpreter, passing
+     * the line number of each top-level command to the consumer before
+     * the command is evaluated.  A script evaluated as a whole reports
+     * line 0, i.e., unknown.
+     * @param interp The interpreter
+     * @param lines The consumer
+     * @throws TclException on error
+     */
+    void eval(Interp interp, IntConsumer lines) throws TclException {
+        if (commands == null) {
+            lines.accept(0);
+            interp.eval(source, 0);
+            return;
+        }
+
+        interp.resetResult();
+
+        // As in Interp.eval, exceptions are allowed only for the
+        // evaluation that follows Interp.allowExceptions().
+        var flags = interp.evalFlags;
+        interp.evalFlags &= ~ALLOW_EXCEPTIONS;
+
+        for (var command : commands) {
+            lines.accept(command.line());
+            try {
+                command.eval(interp, chars);
+            } catch (TclException ex) {
+                if (interp.nestLevel != 0 ||
+                    !isReturn(interp, ex, flags, command)
+                ) {
+                    throw ex;
+                }
+                return;
+            }
+        }
+    }
+
+    // Processes an exception thrown by a top-level command as Interp.eval
+    // does, returning true if the command returned normally, i.e., the
+    // script is done.  Break and continue become errors, logged at the
+    // command's last line, unless exceptions are allowed.
+    private boolean isReturn(
+        Interp interp,
+        TclException ex,
+        int flags,
+        Step command
+    ) throws TclException {
+        var code = ex.getCompletionCode();
+        if (code == TCL.RETURN) {
+            code = interp.updateReturnInfo();
+        }
+
+        if (code != TCL.OK && code != TCL.ERROR &&
+            (flags & ALLOW_EXCEPTIONS) == 0
+        ) {
+            var text = command.text(chars);
+            var lastLine = text.lastIndexOf('\n') + 1;
+            interp.errorLine = command.line()
+                + (int) text.chars().filter(ch -> ch == '\n').count();
+
+            try {
+                interp.processUnexpectedResult(code);
+            } catch (TclException error) {
+                interp.addErrorInfo("\n    while executing\n\"" +
+                    text.substring(lastLine).stripLeading() + "\"");
+                throw error;
+            }
+        }
+
+        if (code != TCL.OK) {
+            ex.setCompletionCode(code);
+        }
+        return code == TCL.OK;
+    }
+
+    //-------------------------------------------------------------------------
+    // Parsing
+
+    // Adds the command found between start and end, returning false if
+    // the script must be evaluated as a whole.
+    private static boolean addCommand(
+        List<Step> commands,
+        String source,
+        int start,
+        int end,
+        int line
+    ) {
+        // Skip leading whitespace.
+        while (start < end && isSpace(source.charAt(start))) {
+            start++;
+        }
+
+        // Trim a trailing carriage return, if any.
+        if (end > start && source.charAt(end - 1) == '\r') {
+            end--;
+        }
+
+        if (start == end) {
+            return true;
+        }
+
+        // Single-line comments can be skipped; others are evaluated as text.
+        var text = source.substring(start, end);
+        var isComment = text.charAt(0) == '#';
+        if (isComment && text.indexOf('\n') == -1) {
+            return true;
+        }
+
+        var words = isComment ? null : literalWords(text);
+
+        if (words == null) {
+            if (CONTROL.matcher(text).find()) {
+                return false;
+            }
+            commands.add(new TextCommand(TclString.newInstance(text), line));
+        } else {
+            // The words are preserved twice so that they are shared:
+            // commands like lreplace and linsert modify unshared arguments
+            // in place, which would change the cached words.
+            var objv = new TclObject[words.size()];
+            for (int i = 0; i < objv.length; i++) {
+                objv[i] = TclString.newInstance(words.get(i));
+                objv[i].preserve();
+                objv[i].preserve();
+            }
+            commands.add(new LiteralCommand(objv, start, end - start, line));
+        }
+
+        return true;
+    }
+
+    // Gets the words of a single command, or null if the command has any
+    // word that isn't a literal, or is anything but a simple command.
+    private static List<String> literalWords(String text) {
+        var words = new ArrayList<String>();
+        var i = 0;
+        var n = text.length();
+
+        while (i < n) {
+            var ch = text.charAt(i);
+
+            if (isSpace(ch)) {
+                i++;
+                continue;
+            }
+
+            int wordEnd;
+
+            if (ch == '{') {
+                // Braced word, but not argument expansion.
+                if (text.startsWith("{*}", i)) {
+                    return null;
+                }
+                wordEnd = closeBrace(text, i);
+                if (wordEnd == -1) {
+                    return null;
+                }
+                words.add(text.substring(i + 1, wordEnd - 1));
+            } else if (ch == '"') {
+                wordEnd = text.indexOf('"', i + 1);
+                if (wordEnd == -1 || !isLiteral(text, i + 1, wordEnd)) {
+                    return null;
+                }
+                words.add(text.substring(i + 1, wordEnd));
+                wordEnd++;
+            } else {
+                wordEnd = i;
+                while (wordEnd < n && !isSpace(text.charAt(wordEnd))) {
+                    wordEnd++;
+                }
+                if (!isLiteral(text, i, wordEnd) ||
+                    text.substring(i, wordEnd).contains(";")
+                ) {
+                    return null;
+                }
+                words.add(text.substring(i, wordEnd));
+            }
+
+            // Words must be separated by whitespace.
+            if (wordEnd < n && !isSpace(text.charAt(wordEnd))) {
+                return null;
+            }
+            i = wordEnd;
+        }
+
+        return words.isEmpty() ? null : words;
+    }
+
+    // Gets the index just past the brace that closes the brace at start,
+    // or -1 if there is none or the braced text has a backslash-newline.
+    private static int closeBrace(String text, int start) {
+        var depth = 0;
+
+        for (int i = start; i < text.length(); i++) {
+            switch (text.charAt(i)) {
+                case '\\' -> {
+                    if (i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                        return -1;
+                    }
+                    i++;
+                }
+                case '{' -> depth++;
+                case '}' -> {
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+                }
+                default -> {}
+            }
+        }
+
+        return -1;
+    }
+
+    // Whether the text contains no substitutions or newlines.
+    private static boolean isLiteral(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            switch (text.charAt(i)) {
+                case '\\', '$', '[', '\n' -> { return false; }
+                default -> {}
+            }
+        }
+        return true;
+    }
+
+    // Whether the character is Tcl whitespace other than a newline.
+    private static boolean isSpace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\r';
+    }
+
+    // Whether the newline at the index is escaped by a backslash.
+    private static boolean isEscaped(String source, int index) {
+        var count = 0;
+        for (int i = index - 1; i >= 0 && source.charAt(i) == '\\'; i--) {
+            count++;
+        }
+        return count % 2 == 1;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helper Types
+
+    // A step in evaluating the script: a top-level command.
+    private interface Step {
+        void eval(Interp interp, char[] script) throws TclException;
+
+        // The command's text
+        String text(char[] script);
+
+        // The line on which the command begins
+        int line();
+    }
+
+    // A command whose words are all literals.
+    private record LiteralCommand(
+        TclObject[] objv,
+        int start,
+        int length,
+        int line
+    ) implements Step
+    {
+        @Override
+        public String text(char[] script) {
+            return new String(script, start, length);
+        }
+
+        @Override
+        public void eval(Interp interp, char[] script) throws TclException {
+            // Interp.invoke returns the completion code rather than
+            // throwing; and unlike the parser, it doesn't count itself as
+            // a nesting level, which commands like "foreach" rely on to
+            // handle "break" and "continue".
+            int code;
+            interp.nestLevel++;
+            try {
+                code = interp.invoke(objv, Interp.INVOKE_NO_TRACEBACK);
+            } finally {
+                interp.nestLevel--;
+            }
+
+            if (code != TCL.OK) {
+                var ex = new TclException(code);
+                if (code == TCL.ERROR) {
+                    Parser.logCommandInfo(
+                        interp, script, 0, start, length, ex);
+                }
+                throw ex;
+            }
+        }
+    }
+
+    // A command evaluated from its text.
+    private record TextCommand(TclObject text, int line) implements Step {
+        TextCommand {
+            text.preserve();
+        }
+
+        @Override
+        public String text(char[] script) {
+            return text.toString();
+        }
+
+        @Override
+        public void eval(Interp interp, char[] script) throws TclException {
+            try {
+                interp.eval(text, 0);
+            } catch (TclException ex) {
+                if (ex.getCompletionCode() == TCL.ERROR) {
+                    interp.errorLine += line - 1;
+                }
+                throw ex;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package pen.tools;
+
+import com.wjduquette.joe.tools.FXTool;
+import com.wjduquette.joe.tools.ToolException;
+import com.wjduquette.joe.tools.ToolInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Base class for tools that write drawings to files using a
+ * {@link pen.stencil.DrawingBatch}, e.g., "pen draw" and "pen poster".
+ * Such tools take a "--format png|svg" option; SVG output needs no
+ * JavaFX toolkit, so for SVG the tool is run directly rather than
+ * launched as a JavaFX application.
+ */
+public abstract class DrawingBatchTool extends FXTool {
+    //------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates the tool's application object.
+     * @param info The tool's information
+     */
+    protected DrawingBatchTool(ToolInfo info) {
+        super(info);
+    }
+
+    //------------------------------------------------------------------------
+    // Helpers
+
+    /**
+     * Reports a drawing that failed to be drawn or written.  Tool errors
+     * are reported as is.
+     * @param subject What was being drawn, e.g., the input file
+     * @param output The output file
+     * @param ex The error
+     */
+    protected void failed(Object subject, File output, Throwable ex) {
+        if (ex instanceof UncheckedIOException io) {
+            ex = io.getCause();
+        }
+
+        if (ex instanceof ToolException) {
+            eprintln("*** " + ex.getMessage());
+        } else if (ex instanceof IOException) {
+            eprintln("*** Failed to write " + output + ": " +
+                ex.getMessage());
+        } else {
+            eprintln("*** Failed to draw " + subject + ": " + ex);
+        }
+    }
+
+    //------------------------------------------------------------------------
+    // Main
+
+    /**
+     * Implements a tool's main() method.  Launches the tool as a JavaFX
+     * application, unless the output is SVG, in which case the tool is
+     * run directly.
+     * @param tool The tool
+     * @param args The command-line arguments
+     */
+    protected static void runOrLaunch(DrawingBatchTool tool, String[] args) {
+        if (isHeadless(args)) {
+            try {
+                tool.run(null, new ArrayDeque<>(List.of(args)));
+            } catch (ToolException ex) {
+                System.err.println("*** " + ex.getMessage());
+                System.exit(1);
+            }
+        } else {
+            launch(tool.getClass(), args);
+        }
+    }
+
+    // Whether the arguments request SVG output.
+    private static boolean isHeadless(String[] args) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ((args[i].equals("--format") || args[i].equals("-f")) &&
+                args[i + 1].equalsIgnoreCase("svg")
+            ) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -14,12 +14,17 @@ import java.util.*;
 public class AnnalsTool extends FXTool {
     public static final ToolInfo INFO = new ToolInfo(
         "annals",
-        "datafile.cal | datafile.hist",
+        "[--watch] datafile.cal | datafile.hist",
         "Displays fictional calendars and histories.",
         """
             Given a calendar file or a history file, this tool will display the
             defined calendars, populated with any relevant dates.  The user
             may choose which calendar to view, and do date conversions.
+            
+            OPTIONS
+            
+            --watch     Reloads the data in the background whenever the data
+                        file or any file it depends on changes.
             """,
         AnnalsTool::main
     );
@@ -42,6 +47,12 @@ public class AnnalsTool extends FXTool {
     @Override
     public void run(Stage stage, Deque<String> argq) {
         // FIRST, parse the command line arguments.
+        var watch = false;
+        if (!argq.isEmpty() && argq.peek().equals("--watch")) {
+            argq.poll();
+            watch = true;
+        }
+
         if (argq.size() != 1) {
             printUsage(App.NAME);
             exit(1);
@@ -67,6 +78,7 @@ public class AnnalsTool extends FXTool {
         stage.setScene(scene);
         stage.show();
 
+        main.setWatching(watch);
         main.setDataPath(dataPath);
     }
 
@@ -1,5 +1,6 @@
 package pen.tools.annals;
 
+import javafx.application.Platform;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.scene.control.Alert;
@@ -9,18 +10,26 @@ import javafx.scene.control.ToolBar;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 import pen.CalendarFile;
+import pen.DataFile;
 import pen.DataFileException;
 import pen.DataFiles;
+import pen.FileWatcher;
 import pen.HistoryFile;
 import pen.calendars.Calendar;
 import pen.fx.FX;
 import pen.history.History;
 import pen.history.HistoryQuery;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
 @SuppressWarnings("FieldCanBeLocal")
 public class MainView extends VBox {
+    // How long files must be quiet before a change is reloaded
+    private static final Duration WATCH_DELAY = Duration.ofMillis(250);
+
     //-------------------------------------------------------------------------
     // Instance Variables
 
@@ -40,6 +49,12 @@ public class MainView extends VBox {
 
     private final ObjectProperty<Path> dataPath = new SimpleObjectProperty<>();
 
+    // The path of the data most recently loaded, for use by the watcher
+    private volatile Path loadedPath;
+
+    // Watches the data's files for changes, if enabled.
+    private FileWatcher watcher = null;
+
     private CalendarFile calFile;
     private HistoryFile histFile;
     private String selectedCalendar;
@@ -107,34 +122,83 @@ public class MainView extends VBox {
     // Logic
 
     private void onReloadData() {
+        DataFile data = null;
+
+        try {
+            data = loadData(getDataPath());
+        } catch (DataFileException ex) {
+            showError("Data Error",
+                "Could not read " + getDataPath() + "\n\n" + ex.getMessage());
+        }
+
+        install(data, true);
+    }
+
+    // Reloads the data when a watched file changes.  Called on the file
+    // watcher's thread; the new data is installed on the FX thread.
+    private void onDataChanged() {
+        var path = loadedPath;
+
+        try {
+            var data = loadData(path);
+            Platform.runLater(() -> {
+                if (path.equals(loadedPath)) {
+                    install(data, false);
+                }
+            });
+        } catch (DataFileException ex) {
+            Platform.runLater(() -> statusLabel.setText(
+                "Could not reload " + path.getFileName() + ": " +
+                ex.getMessage()));
+        }
+    }
+
+    // Loads the data file.  May be called on any thread.
+    private static DataFile loadData(Path path) throws DataFileException {
+        if (path.toString().endsWith(".cal")) {
+            return DataFiles.loadCalendar(path);
+        } else if (path.toString().endsWith(".hist")) {
+            return DataFiles.loadHistory(path);
+        } else {
+            throw new DataFileException("Unknown file type: " + path, null);
+        }
+    }
+
+    // Installs newly loaded data, or null if none, replacing the previous
+    // data all at once.  On a fresh load, shows the data's initial year;
+    // otherwise, keeps the current day and calendar if possible.
+    private void install(DataFile data, boolean fresh) {
+        var oldCalendar = selectedCalendar;
+
         calFile = null;
         histFile = null;
         selectedCalendar = null;
-        currentDay = 0; // For now
         view = null;
 
-        try {
-            if (getDataPath().toString().endsWith(".cal")) {
-                calFile = DataFiles.loadCalendar(getDataPath());
+        switch (data) {
+            case CalendarFile file -> {
+                calFile = file;
                 selectedCalendar = calFile.getNames().getFirst();
-                computeInitialDate();
-            } else if (getDataPath().toString().endsWith(".hist")) {
-                histFile = DataFiles.loadHistory(getDataPath());
+            }
+            case HistoryFile file -> {
+                histFile = file;
                 calFile = histFile.calendarFile();
                 selectedCalendar = histFile.primaryCalendar();
-                computeInitialDate();
-            } else {
-                showError("No Calendars", "Unknown file type: " + getDataPath());
             }
+            case null -> {}
+        }
 
-            if (calFile == null) {
-                showError("No Calendars",
-                    "No calendars were found in the data file:\n\n" +
-                        getDataPath());
+        if (calFile != null) {
+            if (!fresh && calFile.calendars().containsKey(oldCalendar)) {
+                selectedCalendar = oldCalendar;
+            } else {
+                currentDay = 0;
+                computeInitialDate();
             }
-        } catch (DataFileException ex) {
-            showError("Data Error",
-                "Could not read " + getDataPath() + "\n\n" + ex.getMessage());
+        } else if (data != null) {
+            showError("No Calendars",
+                "No calendars were found in the data file:\n\n" +
+                    getDataPath());
         }
 
         if (calFile != null) {
@@ -143,6 +207,15 @@ public class MainView extends VBox {
         }
         calendarChooser.setValue(selectedCalendar);
 
+        // NEXT, watch the files the data came from, or the data file
+        // itself if it couldn't be loaded.
+        loadedPath = getDataPath();
+        if (watcher != null) {
+            watcher.watch(data != null
+                ? DataFiles.getDependencies(data) : List.of(loadedPath));
+            statusLabel.setText("Watching " + loadedPath.getFileName());
+        }
+
         // NEXT, repaint
         repaint();
     }
@@ -236,6 +309,26 @@ public class MainView extends VBox {
         dataPath.set(path);
     }
 
+    /**
+     * Enables or disables watch mode.  In watch mode, the data is reloaded
+     * in the background whenever the data file or any file it depends on
+     * changes.
+     * @param flag true or false
+     */
+    public void setWatching(boolean flag) {
+        if (flag && watcher == null) {
+            try {
+                watcher = new FileWatcher(WATCH_DELAY, this::onDataChanged);
+            } catch (IOException ex) {
+                showError("Watch Error",
+                    "Cannot watch for file changes: " + ex.getMessage());
+            }
+        } else if (!flag && watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
     //-------------------------------------------------------------------------
     // Queries
 
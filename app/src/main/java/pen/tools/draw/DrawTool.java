@@ -1,44 +1,78 @@
 package pen.tools.draw;
 
-import com.wjduquette.joe.tools.FXTool;
 import com.wjduquette.joe.tools.ToolInfo;
 import javafx.stage.Stage;
 import pen.App;
 import pen.tcl.TclEngineException;
 import pen.apis.StencilExtension;
-import pen.stencil.Stencil;
-import pen.stencil.StencilBuffer;
-import pen.tcl.TclEngine;
+import pen.stencil.Drawing;
+import pen.stencil.DrawingBatch;
+import pen.stencil.DrawingBatch.Format;
+import pen.tcl.TclEnginePool;
+import pen.tcl.TclProfiler;
+import pen.tools.DrawingBatchTool;
+import pen.util.TextTable;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.util.Deque;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
 
 /**
  * Application class for the "pen draw" tool.
  */
-public class DrawTool extends FXTool {
+public class DrawTool extends DrawingBatchTool {
     /**
      * Tool information for this tool, for use by the launcher.
      */
     public static final ToolInfo INFO = new ToolInfo(
         "draw",
-        "drawing.tcl",
-        "Saves a pen drawing as a PNG file.",
+        "[options...] drawing.pen... [folder...]",
+        "Saves pen drawings as PNG or SVG files.",
         """
-        Given a Pen drawing script, outputs the drawing as a
-        PNG file.
+        Given one or more Pen drawing scripts, outputs each drawing as a
+        PNG or SVG file alongside its script.  A drawing is skipped if its
+        output file is newer than its script.
+
+        The scripts are run in parallel; PNG files are rendered one at a
+        time, and encoded in parallel.
+
+        Options:
+
+        -r          If given, the tool will recurse into folders passed on
+                    the command line looking for ".pen" files.
+        --force     Redraws every drawing, even if its output file is up
+                    to date.
+        --profile   Profiles the Tcl commands executed while drawing,
+                    and writes the profile to standard error.
+        --format png|svg, -f png|svg
+                    The output format; defaults to "png".  SVG output
+                    is written directly, without starting JavaFX.
         """,
         DrawTool::main
     );
 
+    //------------------------------------------------------------------------
+    // Static Variables
+
+    // Engines with the stencil extension installed.
+    private static final TclEnginePool ENGINES = new TclEnginePool(
+        engine -> engine.install(new StencilExtension(null)));
+
+    // The number of worker threads
+    private static final int WORKERS = Runtime.getRuntime().availableProcessors();
+
     //------------------------------------------------------------------------
     // Instance Variables
 
-    private File drawingFile;
-    private String script;
-    private final StencilBuffer buffer = new StencilBuffer();
+    private Format format = Format.PNG;
+    private boolean force = false;
+    private TclProfiler profiler;
+
+    // A drawing to draw
+    private record Job(Path input, File output) {}
 
     //------------------------------------------------------------------------
     // Main-line code
@@ -53,69 +87,170 @@ public class DrawTool extends FXTool {
     @Override
     public void run(Stage stage, Deque<String> argq) {
         // FIRST, parse the command line arguments.
-        if (argq.size() != 1) {
+        if (argq.isEmpty()) {
             printUsage(App.NAME);
             exit(1);
         }
 
-        assert !argq.isEmpty();
-        drawingFile = new File(argq.poll());
+        var jobs = new ArrayList<Job>();
+        for (var input : findDrawings(argq)) {
+            var job = new Job(input, asOutputFile(input.toFile()));
+            if (force || !isUpToDate(job)) {
+                jobs.add(job);
+            }
+        }
+
+        if (jobs.isEmpty()) {
+            println("All drawings are up to date.");
+        }
 
+        // NEXT, draw the drawings.
+        var batch = new DrawingBatch(format, WORKERS);
+        for (var job : jobs) {
+            batch.add(job.output(), () -> drawing(job));
+        }
+
+        int failures;
         try {
-            script = Files.readString(drawingFile.toPath());
-        } catch (IOException ex) {
-            script = null;
-            throw error("Could not read file: " + drawingFile, ex);
+            failures = batch.write((i, ex) -> {
+                if (ex == null) {
+                    println("Wrote: " + jobs.get(i).output());
+                } else {
+                    failed(jobs.get(i).input(), jobs.get(i).output(), ex);
+                }
+            });
+        } catch (InterruptedException ex) {
+            throw error("Interrupted", ex);
         }
 
-        buffer.draw(this::drawDrawing);
+        if (profiler != null) {
+            System.err.println("Drawing profile:");
+            System.err.print(profiler.toTable(TextTable.Mode.TERMINAL));
+        }
 
-        try {
-            var outFile = asPNGFile(drawingFile);
-            println("Writing: " + outFile);
-            buffer.save(asPNGFile(drawingFile));
-        } catch (IOException ex) {
-            throw error("Failed to write file: " + ex.getMessage(), ex);
+        if (failures > 0) {
+            throw error("Failed to draw " + failures + " of " +
+                jobs.size() + " drawings");
+        }
+
+        // Because JavaFX; SVG output doesn't start it.
+        if (stage != null) {
+            exit();
+        }
+    }
+
+    // Gets a drawing that runs the job's script, using an engine from
+    // the pool.
+    private Drawing drawing(Job job) throws IOException {
+        var script = Files.readString(job.input());
+
+        return stencil -> {
+            stencil.clear();
+            var engine = ENGINES.acquire();
+            engine.setProfiler(profiler);
+            engine.getExtension(StencilExtension.class).setStencil(stencil);
+
+            try {
+                engine.eval(script);
+            } catch (TclEngineException ex) {
+                throw error("Drawing error at line " + ex.getErrorLine() +
+                    " of " + job.input() + ":\n" + ex.getErrorInfo());
+            } finally {
+                ENGINES.release(engine);
+            }
+        };
+    }
+
+    //-------------------------------------------------------------------------
+    // File I/O
+
+    // Parses the options and finds the drawings to draw.
+    private Set<Path> findDrawings(Deque<String> argq) {
+        var recurse = false;
+        var pathSet = new TreeSet<Path>();
+
+        while (!argq.isEmpty()) {
+            var next = argq.poll();
+
+            switch (next) {
+                case "-r" -> recurse = true;
+                case "--force" -> force = true;
+                case "--profile" -> profiler = new TclProfiler();
+                case "--format", "-f" ->
+                    format = toEnum(Format.class, next, argq);
+                default -> {
+                    if (next.startsWith("-")) {
+                        throw unknownOption(next);
+                    }
+
+                    var path = new File(next).toPath();
+
+                    if (Files.isRegularFile(path)) {
+                        pathSet.add(path);
+                    } else if (recurse && Files.isDirectory(path)) {
+                        try (var stream =
+                            Files.find(path, 10, this::isPenFile)
+                        ) {
+                            stream.forEach(pathSet::add);
+                        } catch (IOException ex) {
+                            throw error("Error finding .pen files", ex);
+                        }
+                    } else {
+                        throw error("Not a drawing file: " + path);
+                    }
+                }
+            }
         }
 
-        exit(); // Because JavaFX.
+        if (pathSet.isEmpty()) {
+            throw error("No drawings found");
+        }
+
+        return pathSet;
+    }
+
+    // Is this a regular file with a .pen file type?
+    private boolean isPenFile(Path path, BasicFileAttributes attrs) {
+        return path.toString().endsWith(".pen") && attrs.isRegularFile();
     }
 
-    private void drawDrawing(Stencil stencil) {
-        stencil.clear();
-        var engine = new TclEngine();
-        engine.install(new StencilExtension(stencil));
+    // Is the job's output newer than its input?
+    private boolean isUpToDate(Job job) {
+        var output = job.output().toPath();
 
         try {
-            engine.eval(script);
-        } catch (TclEngineException ex) {
-            throw error("Drawing error at line " + ex.getErrorLine() +
-                " of " + drawingFile + ":\n" + ex.getErrorInfo());
+            return Files.exists(output) &&
+                Files.getLastModifiedTime(output).compareTo(
+                    Files.getLastModifiedTime(job.input())) > 0;
+        } catch (IOException ex) {
+            return false;
         }
     }
 
     /**
-     * Given a file name, removes the file type and replaces it with ".png"
+     * Given a file name, removes the file type and replaces it with the
+     * output format's file type, e.g., ".png"
      * @param file The input file name
-     * @return The PNG file name
+     * @return The output file name
      */
-    private File asPNGFile(File file) {
+    private File asOutputFile(File file) {
         var text = file.toString();
         var ndx = text.lastIndexOf('.');
         if (ndx != -1) {
             text = text.substring(0, ndx);
         }
-        return new File(text + ".png");
+        return new File(text + "." + format.fileType());
     }
 
     //------------------------------------------------------------------------
     // Main
 
     /**
-     * The tool's JavaFX Application main() method.  Launches the application.
+     * The tool's JavaFX Application main() method.  Launches the application,
+     * unless the output is SVG, which needs no JavaFX toolkit.
      * @param args The command-line arguments.
      */
     public static void main(String[] args) {
-        launch(args);
+        runOrLaunch(new DrawTool(), args);
     }
 }
@@ -0,0 +1,149 @@
+package pen.tools.history;
+
+import com.wjduquette.joe.tools.Tool;
+import com.wjduquette.joe.tools.ToolException;
+import pen.HistoryFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A HistoryBatch executes many queries against a single loaded history
+ * file, as requested by "pen history --batch", writing each query's
+ * report to its own output file.  The queries may be executed in
+ * parallel; their outcomes are reported in batch order.
+ */
+class HistoryBatch {
+    //------------------------------------------------------------------------
+    // Instance Variables
+
+    // The history file being queried
+    private final HistoryFile historyFile;
+
+    // The number of queries to execute at once
+    private final int threads;
+
+    //------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a batch for the history file.
+     * @param historyFile The loaded history file
+     * @param threads The number of queries to execute at once
+     */
+    HistoryBatch(HistoryFile historyFile, int threads) {
+        this.historyFile = historyFile;
+        this.threads = threads;
+    }
+
+    //------------------------------------------------------------------------
+    // Batch Execution
+
+    /**
+     * Executes the queries, reporting the outcome of each to the listener
+     * in spec order on the calling thread.
+     * @param specs The queries
+     * @param listener The listener
+     * @return The number of queries that failed
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    int run(List<Spec> specs, Listener listener) throws InterruptedException {
+        var executor = Executors.newFixedThreadPool(threads);
+        var futures = new ArrayList<Future<Long>>();
+
+        try {
+            for (var spec : specs) {
+                futures.add(executor.submit(() -> {
+                    var start = System.nanoTime();
+                    var text = new HistoryReport(historyFile, spec.options())
+                        .render();
+                    Files.writeString(spec.outputPath(), text);
+                    return System.nanoTime() - start;
+                }));
+            }
+
+            var errorCount = 0;
+
+            for (int i = 0; i < specs.size(); i++) {
+                try {
+                    var nanos = futures.get(i).get();
+                    listener.done(specs.get(i), null, nanos);
+                } catch (ExecutionException ex) {
+                    listener.done(specs.get(i), ex.getCause(), 0);
+                    ++errorCount;
+                }
+            }
+
+            return errorCount;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //------------------------------------------------------------------------
+    // Spec Parsing
+
+    /**
+     * Parses the lines of a batch file.  Each non-blank line not beginning
+     * with "#" is an output file name followed by the query options.
+     * @param tool The tool whose helpers parse the option values
+     * @param lines The lines
+     * @return The specs
+     * @throws ToolException on an invalid spec
+     */
+    static List<Spec> parse(Tool tool, List<String> lines) {
+        var specs = new ArrayList<Spec>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            var line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            try {
+                var tokens = HistoryReport.tokenize(line);
+                var outputPath = Path.of(tokens.poll());
+                var options = HistoryReport.Options.parse(tool, tokens);
+                specs.add(new Spec(i + 1, outputPath, options));
+            } catch (ToolException ex) {
+                throw new ToolException("Error in batch spec at line " +
+                    (i + 1) + ": " + ex.getMessage());
+            }
+        }
+
+        return specs;
+    }
+
+    //------------------------------------------------------------------------
+    // Helper Types
+
+    /**
+     * A single query in a batch file.
+     * @param lineNumber The query's line number in the batch file
+     * @param outputPath The file to which to write the report
+     * @param options The query options
+     */
+    record Spec(
+        int lineNumber,
+        Path outputPath,
+        HistoryReport.Options options
+    ) {}
+
+    /**
+     * Receives the outcome of each query in the batch.
+     */
+    interface Listener {
+        /**
+         * Called when a query's report has been written or has failed.
+         * @param spec The query
+         * @param error The error, or null on success
+         * @param nanos The time taken to query and write, on success
+         */
+        void done(Spec spec, Throwable error, long nanos);
+    }
+}
@@ -0,0 +1,368 @@
+package pen.tools.history;
+
+import com.wjduquette.joe.tools.Tool;
+import com.wjduquette.joe.tools.ToolException;
+import pen.HistoryFile;
+import pen.calendars.Calendar;
+import pen.history.Entity;
+import pen.history.EntityType;
+import pen.history.History;
+import pen.history.HistoryQuery;
+import pen.history.Incident;
+import pen.util.TextAlign;
+import pen.util.TextColumn;
+import pen.util.TextTable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static pen.util.TextTable.Mode.MARKDOWN;
+import static pen.util.TextTable.Mode.TERMINAL;
+
+/**
+ * A HistoryReport executes a single query against a loaded history file
+ * and formats the result as text, as requested by the "pen history" query
+ * options.  Each report owns its own query results, so any number of
+ * reports can be produced concurrently from the same HistoryFile.
+ */
+public class HistoryReport {
+    //------------------------------------------------------------------------
+    // Instance Variables
+
+    // The history file being queried
+    private final HistoryFile historyFile;
+
+    // The query options
+    private final Options options;
+
+    // The result of the query
+    private History view;
+
+    //------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a report for the history file given the query options.
+     * @param historyFile The loaded history file
+     * @param options The query options
+     */
+    public HistoryReport(HistoryFile historyFile, Options options) {
+        this.historyFile = historyFile;
+        this.options = options;
+    }
+
+    //------------------------------------------------------------------------
+    // Report Generation
+
+    /**
+     * Executes the query and returns the formatted output.
+     * @return The output text
+     * @throws ToolException if the options cannot be applied to the history
+     */
+    public String render() {
+        var history = historyFile.history();
+        var calendar = historyFile.getPrimaryCalendar();
+        var buff = new StringBuilder();
+
+        var query = new HistoryQuery();
+
+        if (calendar != null && options.anniversaries) {
+            query.expandAnniversaries(calendar);
+        }
+
+        if (!options.includedEntities.isEmpty()) {
+            query.includes(options.includedEntities);
+        }
+
+        if (!options.includedTypes.isEmpty()) {
+            query.includeTypes(options.includedTypes);
+        }
+
+        if (options.start != null) {
+            query.noEarlierThan(toMoment(calendar, options.start));
+        }
+
+        if (options.end != null) {
+            query.noLaterThan(toMoment(calendar, options.end));
+        }
+
+        view = query.execute(history);
+
+        if (view.getIncidents().isEmpty()) {
+            return "No incidents found.\n";
+        }
+
+        var results = new LinkedHashSet<>(options.results);
+        if (results.isEmpty()) {
+            results.add(Result.TIMELINE);
+        }
+
+        if (results.contains(Result.TYPE)) {
+            appendTable(buff, getSortedTypes(), ENTITY_TYPES);
+        }
+
+        if (results.contains(Result.ENTITY)) {
+            if (options.mode == TERMINAL) {
+                appendTable(buff, getSortedEntities(), ENTITIES);
+            } else {
+                appendTable(buff, getSortedEntities(), ENTITIES_MARKDOWN);
+            }
+        }
+
+        if (results.contains(Result.INCIDENT)) {
+            if (options.mode == TERMINAL) {
+                appendTable(buff, view.getIncidents(), INCIDENTS);
+            } else {
+                appendTable(buff, view.getIncidents(), INCIDENTS_MARKDOWN);
+            }
+        }
+
+        if (results.contains(Result.TIMELINE)) {
+            if (options.mode == MARKDOWN) {
+                appendLine(buff, "```text");
+            }
+
+            appendLine(buff, view.toTimelineChart());
+
+            if (options.mode == MARKDOWN) {
+                appendLine(buff, "```");
+            }
+        }
+
+        if (results.contains(Result.SUMMARY)) {
+            appendLine(buff, "Entities:   " + view.getEntityMap().size());
+            appendLine(buff, "Incidents:  " + view.getIncidents().size());
+
+            var frame = view.getTimeFrame();
+
+            appendLine(buff, "Time Range: " +
+                view.formatMoment(frame.start()) +
+                " to " +
+                view.formatMoment(frame.end()));
+        }
+
+        return buff.toString();
+    }
+
+    private int toMoment(Calendar cal, String momentString) {
+        try {
+            if (cal == null) {
+                return Integer.parseInt(momentString);
+            } else {
+                return cal.parse(momentString);
+            }
+        } catch (Exception ex) {
+            throw new ToolException("Could not make sense of timestamp: \"" +
+                    momentString + "\"");
+        }
+    }
+
+    private List<Entity> getSortedEntities() {
+        var list = new ArrayList<Entity>();
+
+        view.getEntityMap().values().stream()
+            .filter(Entity::prime)
+            .sorted(Comparator.comparing(Entity::id))
+            .forEach(list::add);
+        view.getEntityMap().values().stream()
+            .filter(e -> !e.prime())
+            .sorted(Comparator.comparing(Entity::id))
+            .forEach(list::add);
+
+        return list;
+    }
+
+    private List<EntityType> getSortedTypes() {
+        return view.getTypeMap().values().stream()
+            .sorted(Comparator.comparing(EntityType::id))
+            .toList();
+    }
+
+    private <R> void appendTable(
+        StringBuilder buff,
+        List<R> rows,
+        TextTable<R> format
+    ) {
+        appendLine(buff, format.toTable(rows, options.mode));
+    }
+
+    private void appendLine(StringBuilder buff, String text) {
+        buff.append(text).append("\n");
+    }
+
+    private History view() {
+        return view;
+    }
+
+    public final TextTable<Entity> ENTITIES = new TextTable<>(List.of(
+        new TextColumn<>("ID", TextAlign.LEFT, Entity::id),
+        new TextColumn<>("Type", TextAlign.LEFT, Entity::type),
+        new TextColumn<>("Name", TextAlign.LEFT, Entity::name),
+        new TextColumn<>("Prime", TextAlign.LEFT, e -> String.valueOf(e.prime()))
+    ));
+
+    public final TextTable<Entity> ENTITIES_MARKDOWN = new TextTable<>(List.of(
+        new TextColumn<>("ID", TextAlign.LEFT, Entity::id),
+        new TextColumn<>("Type", TextAlign.LEFT, Entity::type),
+        new TextColumn<>("Name", TextAlign.LEFT, this::entityLink),
+        new TextColumn<>("Prime", TextAlign.LEFT, e -> String.valueOf(e.prime()))
+    ));
+
+    private String entityLink(Entity e) {
+        return "[[" + e.name() + "]]";
+    }
+
+    public final TextTable<EntityType> ENTITY_TYPES = new TextTable<>(List.of(
+        new TextColumn<>("ID", TextAlign.LEFT, EntityType::id),
+        new TextColumn<>("Name", TextAlign.LEFT, EntityType::name),
+        new TextColumn<>("Prime", TextAlign.LEFT, t -> String.valueOf(t.prime()))
+    ));
+
+    public final TextTable<Incident> INCIDENTS = new TextTable<>(List.of(
+        new TextColumn<>("Moment", TextAlign.RIGHT,
+            row -> view().formatMoment(row.moment())),
+        new TextColumn<>("Incident", TextAlign.LEFT, Incident::label),
+        new TextColumn<>("Concerns", TextAlign.LEFT,
+            row -> String.join(", ", row.entityIds()))
+    ));
+
+    public final TextTable<Incident> INCIDENTS_MARKDOWN = new TextTable<>(List.of(
+        new TextColumn<>("Moment", TextAlign.RIGHT,
+            row -> view().formatMoment(row.moment())),
+        new TextColumn<>("Incident", TextAlign.LEFT, Incident::label),
+        new TextColumn<>("Concerns", TextAlign.LEFT, this::entityLinks)
+    ));
+
+    private String entityLinks(Incident incident) {
+        return incident.entityIds().stream()
+            .map(id -> view.getEntityMap().get(id))
+            .map(this::entityLink)
+            .collect(Collectors.joining(", "));
+    }
+
+    //------------------------------------------------------------------------
+    // Spec Parsing
+
+    /**
+     * Splits a query spec line into whitespace-delimited tokens.  A token
+     * may be enclosed in double quotes to include whitespace.
+     * @param line The line
+     * @return The tokens
+     * @throws ToolException if a quote is unterminated
+     */
+    public static Deque<String> tokenize(String line) {
+        var tokens = new ArrayDeque<String>();
+        var buff = new StringBuilder();
+        var inQuotes = false;
+        var inToken = false;
+
+        for (var c : line.toCharArray()) {
+            if (c == '"') {
+                inQuotes = !inQuotes;
+                inToken = true;
+            } else if (Character.isWhitespace(c) && !inQuotes) {
+                if (inToken) {
+                    tokens.add(buff.toString());
+                    buff.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                buff.append(c);
+                inToken = true;
+            }
+        }
+
+        if (inQuotes) {
+            throw new ToolException("Unterminated quote");
+        }
+
+        if (inToken) {
+            tokens.add(buff.toString());
+        }
+
+        return tokens;
+    }
+
+    //------------------------------------------------------------------------
+    // Options Structure
+
+    /**
+     * The query options for a single report.
+     */
+    public static class Options {
+        TextTable.Mode mode = TERMINAL;
+        LinkedHashSet<Result> results = new LinkedHashSet<>();
+        List<String> includedEntities = new ArrayList<>();
+        List<String> includedTypes = new ArrayList<>();
+        String start;
+        String end;
+        boolean anniversaries = false;
+
+        /**
+         * Creates an options object with the default settings.
+         */
+        public Options() {
+            // Nothing to do
+        }
+
+        /**
+         * Parses a complete list of query options.
+         * @param tool The tool whose helpers parse the option values
+         * @param argq The options
+         * @return The parsed options
+         * @throws ToolException on unknown or invalid options
+         */
+        public static Options parse(Tool tool, Deque<String> argq) {
+            var options = new Options();
+
+            while (!argq.isEmpty()) {
+                var opt = argq.poll();
+                if (!options.parseOption(tool, opt, argq)) {
+                    throw new ToolException("Unknown option: \"" + opt + "\"");
+                }
+            }
+
+            return options;
+        }
+
+        /**
+         * Parses a single query option and its value, if any, from the
+         * queue.
+         * @param tool The tool whose helpers parse the option's value
+         * @param opt The option name, already removed from the queue
+         * @param argq The remaining arguments
+         * @return true if the option was a query option, and false otherwise.
+         * @throws ToolException on a missing or invalid option value
+         */
+        public boolean parseOption(Tool tool, String opt, Deque<String> argq) {
+            switch (opt) {
+                case "--entity", "-e" ->
+                    includedEntities.add(tool.toOptArg(opt, argq));
+                case "--type", "-t" ->
+                    includedTypes.add(tool.toOptArg(opt, argq));
+                case "--output", "-o" ->
+                    results.add(tool.toEnum(Result.class, opt, argq));
+                case "--format", "-f" ->
+                    mode = tool.toEnum(TextTable.Mode.class, opt, argq);
+                case "--start" -> start = tool.toOptArg(opt, argq);
+                case "--end" -> end = tool.toOptArg(opt, argq);
+                case "--anniversaries" -> anniversaries = true;
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The kinds of output a report can include.
+     */
+    public enum Result {
+        TIMELINE,
+        ENTITY,
+        INCIDENT,
+        TYPE,
+        SUMMARY
+    }
+}
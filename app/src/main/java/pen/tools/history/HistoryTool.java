@@ -1,28 +1,23 @@
 package pen.tools.history;
 
 import com.wjduquette.joe.tools.FXTool;
+import com.wjduquette.joe.tools.ToolException;
 import com.wjduquette.joe.tools.ToolInfo;
 import javafx.stage.Stage;
 import pen.App;
 import pen.DataFileException;
 import pen.DataFiles;
 import pen.HistoryFile;
-import pen.calendars.Calendar;
-import pen.history.History;
-import pen.history.Entity;
-import pen.history.EntityType;
-import pen.history.HistoryQuery;
-import pen.history.Incident;
-import pen.util.TextAlign;
-import pen.util.TextColumn;
+import pen.tcl.TclProfiler;
 import pen.util.TextTable;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
-
-import static pen.util.TextTable.Mode.MARKDOWN;
-import static pen.util.TextTable.Mode.TERMINAL;
 
 /**
  * Application class for the "pen draw" tool.
@@ -74,10 +69,40 @@ as follows:
 
    If given, anniversaries of memorial and birthday incidents will be added
    to the incident list.
-   
+
+--batch specFile, -b specFile
+
+   Loads the history once and executes many queries against it.  Each
+   line of the spec file (or of standard input, if specFile is "-") names
+   an output file followed by any of the query options listed above, e.g.,
+
+     joe.md --entity joe --output incident --format markdown
+
+   Blank lines and lines beginning with "#" are ignored; option values
+   containing whitespace may be enclosed in double quotes.  Each query's
+   output is written to its output file.
+
+--threads count
+
+   In batch mode, the number of queries to execute in parallel.  Defaults
+   to 1.
+
+--snapshot
+
+   Loads the history and calendar files from binary snapshots saved
+   next to them ("file.hist.snap", "file.cal.snap") when the snapshots
+   are up-to-date, and saves new snapshots otherwise.  This can greatly
+   reduce the load time of large histories.
+
+--profile
+
+   Profiles the Tcl commands executed while loading the history and its
+   calendar file, and writes the profile to standard error.
+
 --debug
 
-   Enable verbose debugging output.
+   Writes the load time and each query's time to standard error, along
+   with the stack trace of any query that fails.
 """,
         HistoryTool::main
     );
@@ -85,11 +110,20 @@ as follows:
     //------------------------------------------------------------------------
     // Instance Variables
 
-    // The options
-    private final Options options = new Options();
+    // The query options
+    private final HistoryReport.Options options = new HistoryReport.Options();
+
+    // The batch file, or "-" for standard input, if any.
+    private String batchFile;
+
+    // The number of threads to use in batch mode
+    private int threads = 1;
+
+    // Whether debugging output is enabled.
+    private boolean debug = false;
 
-    // The loaded history
-    private History view;
+    // The load profiler, if profiling is enabled.
+    private TclProfiler profiler;
 
 
     //------------------------------------------------------------------------
@@ -116,217 +150,140 @@ as follows:
         while (!argq.isEmpty()) {
             var opt = argq.poll();
             switch (opt) {
-                case "--entity", "-e" ->
-                    options.includedEntities.add(toOptArg(opt, argq));
-                case "--output", "-o" ->
-                    options.results.add(toEnum(Result.class, opt, argq));
-                case "--format", "-f" ->
-                    options.mode = toEnum(TextTable.Mode.class, opt, argq);
-                case "--start" -> options.start = argq.poll();
-                case "--end" -> options.end = argq.poll();
-                case "--anniversaries" -> options.anniversaries = true;
-                case "--debug" -> options.debug = true;
-                default -> throw unknownOption(opt);
+                case "--batch", "-b" -> batchFile = toOptArg(opt, argq);
+                case "--threads" -> threads = toThreadCount(toOptArg(opt, argq));
+                case "--snapshot" -> DataFiles.setSnapshotsEnabled(true);
+                case "--profile" -> profiler = new TclProfiler();
+                case "--debug" -> debug = true;
+                default -> {
+                    if (!options.parseOption(this, opt, argq)) {
+                        throw unknownOption(opt);
+                    }
+                }
             }
         }
 
         // NEXT, try to open the file
         HistoryFile historyFile = null;
+        DataFiles.setProfiler(profiler);
 
         try {
+            var start = System.nanoTime();
             historyFile = DataFiles.loadHistory(historyFilePath);
+            debug("Loaded " + historyFilePath + " in " + millis(start));
         } catch (DataFileException ex) {
             println("Failed to read history file: " + ex.getMessage());
             println(ex.getDetails());
             System.exit(1);
         }
 
-        var history = historyFile.history();
-        var calendar = historyFile.getPrimaryCalendar();
-
-        var query = new HistoryQuery();
-
-        if (calendar != null && options.anniversaries) {
-            query.expandAnniversaries(historyFile.getPrimaryCalendar());
-        }
-
-        if (!options.includedEntities.isEmpty()) {
-            query.includes(options.includedEntities);
+        if (profiler != null) {
+            System.err.println("Load profile:");
+            System.err.print(profiler.toTable(TextTable.Mode.TERMINAL));
         }
 
-        if (options.start != null) {
-            query.noEarlierThan(toMoment(calendar, options.start));
+        // NEXT, run the query or queries.
+        if (batchFile != null) {
+            runBatch(historyFile);
+        } else {
+            var start = System.nanoTime();
+            var text = new HistoryReport(historyFile, options).render();
+            debug("Queried in " + millis(start));
+            System.out.print(text);
         }
 
-        if (options.end != null) {
-            query.noLaterThan(toMoment(calendar, options.end));
-        }
-
-        view = query.execute(history);
-
-        if (view.getIncidents().isEmpty()) {
-            println("No incidents found.");
-            exit();
-        }
+        exit(); // Because JavaFX.
+    }
 
-        if (options.results.isEmpty()) {
-            options.results.add(Result.TIMELINE);
-        }
+    //------------------------------------------------------------------------
+    // Batch Mode
 
-        if (options.results.contains(Result.TYPE)) {
-            printTable(getSortedTypes(), ENTITY_TYPES);
-        }
+    // Executes each of the query specs in the batch file against the
+    // loaded history, writing each result to its output file.  The queries
+    // are executed on the requested number of threads; the output is
+    // reported in spec order.
+    private void runBatch(HistoryFile historyFile) {
+        var specs = readBatchSpecs();
+        var batch = new HistoryBatch(historyFile, threads);
+        int errorCount;
 
-        if (options.results.contains(Result.ENTITY)) {
-            if (options.mode == TERMINAL) {
-                printTable(getSortedEntities(), ENTITIES);
-            } else {
-                printTable(getSortedEntities(), ENTITIES_MARKDOWN);
-            }
+        try {
+            errorCount = batch.run(specs, (spec, ex, nanos) -> {
+                if (ex == null) {
+                    println("Writing: " + spec.outputPath());
+                    debug("  " + spec.outputPath() + " (line " +
+                        spec.lineNumber() + "): " + nanos/1_000_000 + " ms");
+                } else {
+                    println("*** Failed to write " + spec.outputPath() +
+                        " (line " + spec.lineNumber() + "): " +
+                        ex.getMessage());
+                    if (debug) {
+                        ex.printStackTrace(System.err);
+                    }
+                }
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw error("Interrupted while executing batch", ex);
         }
 
-        if (options.results.contains(Result.INCIDENT)) {
-            if (options.mode == TERMINAL) {
-                printTable(view.getIncidents(), INCIDENTS);
-            } else {
-                printTable(view.getIncidents(), INCIDENTS_MARKDOWN);
-            }
+        if (errorCount > 0) {
+            println("*** " + errorCount + " of " + specs.size() +
+                " queries failed.");
+            exit(1);
         }
+    }
 
-        if (options.results.contains(Result.TIMELINE)) {
-            if (options.mode == MARKDOWN) {
-                println("```text");
-            }
-
-            println(view.toTimelineChart());
-
-            if (options.mode == MARKDOWN) {
-                println("```");
+    private int toThreadCount(String arg) {
+        try {
+            var count = Integer.parseInt(arg);
+            if (count >= 1) {
+                return count;
             }
+        } catch (NumberFormatException ex) {
+            // Handled below
         }
-
-        if (options.results.contains(Result.SUMMARY)) {
-            println("Entities:   " + view.getEntityMap().size());
-            println("Incidents:  " + view.getIncidents().size());
-
-            var frame = view.getTimeFrame();
-
-            println("Time Range: " +
-                view.formatMoment(frame.start()) +
-                " to " +
-                view.formatMoment(frame.end()));
-        }
-
-        exit(); // Because JavaFX.
+        throw error("Expected a thread count >= 1, got: \"" + arg + "\"");
     }
 
-    private int toMoment(Calendar cal, String momentString) {
+    // Reads the batch specs from the batch file, or from standard input
+    // if the file name is "-".  Each non-blank line not beginning with "#"
+    // is an output file name followed by the query options.
+    private List<HistoryBatch.Spec> readBatchSpecs() {
+        List<String> lines;
+
         try {
-            if (cal == null) {
-                return Integer.parseInt(momentString);
+            if (batchFile.equals("-")) {
+                var reader = new BufferedReader(
+                    new InputStreamReader(System.in));
+                lines = reader.lines().toList();
             } else {
-                return cal.parse(momentString);
+                lines = Files.readAllLines(Path.of(batchFile));
             }
-        } catch (Exception ex) {
-            throw error("Could not make sense of timestamp: \"" +
-                    momentString + "\"");
+        } catch (IOException ex) {
+            throw error("Could not read batch file: " + batchFile, ex);
         }
-    }
 
-    private List<Entity> getSortedEntities() {
-        var list = new ArrayList<Entity>();
-
-        view.getEntityMap().values().stream()
-            .filter(Entity::prime)
-            .sorted(Comparator.comparing(Entity::id))
-            .forEach(list::add);
-        view.getEntityMap().values().stream()
-            .filter(e -> !e.prime())
-            .sorted(Comparator.comparing(Entity::id))
-            .forEach(list::add);
-
-        return list;
-    }
-
-    private List<EntityType> getSortedTypes() {
-        return view.getTypeMap().values().stream()
-            .sorted(Comparator.comparing(EntityType::id))
-            .toList();
-    }
-
-    private <R> void printTable(List<R> rows, TextTable<R> format) {
-        println(format.toTable(rows, options.mode));
-    }
-
-    private History view() {
-        return view;
-    }
-
-    public final TextTable<Entity> ENTITIES = new TextTable<>(List.of(
-        new TextColumn<>("ID", TextAlign.LEFT, Entity::id),
-        new TextColumn<>("Type", TextAlign.LEFT, Entity::type),
-        new TextColumn<>("Name", TextAlign.LEFT, Entity::name),
-        new TextColumn<>("Prime", TextAlign.LEFT, e -> String.valueOf(e.prime()))
-    ));
-
-    public final TextTable<Entity> ENTITIES_MARKDOWN = new TextTable<>(List.of(
-        new TextColumn<>("ID", TextAlign.LEFT, Entity::id),
-        new TextColumn<>("Type", TextAlign.LEFT, Entity::type),
-        new TextColumn<>("Name", TextAlign.LEFT, this::entityLink),
-        new TextColumn<>("Prime", TextAlign.LEFT, e -> String.valueOf(e.prime()))
-    ));
-
-    private String entityLink(Entity e) {
-        return "[[" + e.name() + "]]";
-    }
-
-    public final TextTable<EntityType> ENTITY_TYPES = new TextTable<>(List.of(
-        new TextColumn<>("ID", TextAlign.LEFT, EntityType::id),
-        new TextColumn<>("Name", TextAlign.LEFT, EntityType::name),
-        new TextColumn<>("Prime", TextAlign.LEFT, t -> String.valueOf(t.prime()))
-    ));
-
-    public final TextTable<Incident> INCIDENTS = new TextTable<>(List.of(
-        new TextColumn<>("Moment", TextAlign.RIGHT,
-            row -> view().formatMoment(row.moment())),
-        new TextColumn<>("Incident", TextAlign.LEFT, Incident::label),
-        new TextColumn<>("Concerns", TextAlign.LEFT,
-            row -> String.join(", ", row.entityIds()))
-    ));
-
-    public final TextTable<Incident> INCIDENTS_MARKDOWN = new TextTable<>(List.of(
-        new TextColumn<>("Moment", TextAlign.RIGHT,
-            row -> view().formatMoment(row.moment())),
-        new TextColumn<>("Incident", TextAlign.LEFT, Incident::label),
-        new TextColumn<>("Concerns", TextAlign.LEFT, this::entityLinks)
-    ));
-
-    private String entityLinks(Incident incident) {
-        return incident.entityIds().stream()
-            .map(id -> view.getEntityMap().get(id))
-            .map(this::entityLink)
-            .collect(Collectors.joining(", "));
+        try {
+            return HistoryBatch.parse(this, lines);
+        } catch (ToolException ex) {
+            throw error(ex.getMessage());
+        }
     }
 
     //------------------------------------------------------------------------
-    // Options Structure
-
-    private static class Options {
-        TextTable.Mode mode = TERMINAL;
-        LinkedHashSet<Result> results = new LinkedHashSet<>();
-        List<String> includedEntities = new ArrayList<>();
-        String start;
-        String end;
-        boolean anniversaries = false;
-        boolean debug = false;
+    // Debugging Output
+
+    // Writes the message to standard error if debugging is enabled.
+    private void debug(String message) {
+        if (debug) {
+            System.err.println(message);
+        }
     }
 
-    private enum Result {
-        TIMELINE,
-        ENTITY,
-        INCIDENT,
-        TYPE,
-        SUMMARY
+    // The time elapsed since the start time, as a string.
+    private static String millis(long start) {
+        return (System.nanoTime() - start)/1_000_000 + " ms";
     }
 
     //------------------------------------------------------------------------
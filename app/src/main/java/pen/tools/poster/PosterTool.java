@@ -0,0 +1,213 @@
+package pen.tools.poster;
+
+import com.wjduquette.joe.tools.ToolInfo;
+import javafx.stage.Stage;
+import pen.App;
+import pen.DataFileException;
+import pen.DataFiles;
+import pen.calendars.Calendar;
+import pen.diagram.calendar.CalendarPoster;
+import pen.stencil.DrawingBatch;
+import pen.stencil.DrawingBatch.Format;
+import pen.tools.DrawingBatchTool;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Application class for the "pen poster" tool.
+ */
+public class PosterTool extends DrawingBatchTool {
+    /**
+     * Tool information for this tool, for use by the launcher.
+     */
+    public static final ToolInfo INFO = new ToolInfo(
+        "poster",
+        "[options...] file.cal calendar firstYear lastYear",
+        "Saves a range of years of a calendar as pages of year spreads.",
+        """
+        Given a calendar file, the name of one of its calendars, and a
+        range of years, draws a year spread for each year in the range,
+        several years to a page, and saves the pages as a sequence of
+        numbered PNG or SVG files, e.g., "AF-001.png", "AF-002.png", etc.
+        Years before the epoch are given as negative numbers.
+
+        The pages are drawn in parallel, a few at a time.
+
+        Options:
+
+        --format png|svg, -f png|svg
+                    The output format; defaults to "png".  SVG output
+                    is written directly, without starting JavaFX.
+        --across n  The number of years across each page; defaults to 3.
+        --down n    The number of years down each page; defaults to 2.
+        --out prefix
+                    The output file name prefix, which may include a
+                    folder; defaults to the calendar's name.
+        """,
+        PosterTool::main
+    );
+
+    //------------------------------------------------------------------------
+    // Static Variables
+
+    // The number of worker threads
+    private static final int WORKERS = Runtime.getRuntime().availableProcessors();
+
+    //------------------------------------------------------------------------
+    // Instance Variables
+
+    private Format format = Format.PNG;
+    private String prefix = null;
+
+    //------------------------------------------------------------------------
+    // Main-line code
+
+    /**
+     * Creates the tool's application object.
+     */
+    public PosterTool() {
+        super(INFO);
+    }
+
+    @Override
+    public void run(Stage stage, Deque<String> argq) {
+        // FIRST, parse the command line arguments.
+        if (argq.isEmpty()) {
+            printUsage(App.NAME);
+            exit(1);
+        }
+
+        var poster = new CalendarPoster();
+        var args = new ArrayList<String>();
+
+        while (!argq.isEmpty()) {
+            var next = argq.poll();
+
+            switch (next) {
+                case "--format", "-f" ->
+                    format = toEnum(Format.class, next, argq);
+                case "--across" -> poster.across(toInteger(next, argq));
+                case "--down" -> poster.down(toInteger(next, argq));
+                case "--out" -> prefix = toOptArg(next, argq);
+                default -> {
+                    // Negative years look like options.
+                    if (next.startsWith("-") && !isInteger(next)) {
+                        throw unknownOption(next);
+                    }
+                    args.add(next);
+                }
+            }
+        }
+
+        if (args.size() != 4) {
+            printUsage(App.NAME);
+            exit(1);
+        }
+
+        var name = args.get(1);
+        var firstYear = toYear(args.get(2));
+        var lastYear = toYear(args.get(3));
+
+        try {
+            poster.calendar(loadCalendar(Path.of(args.get(0)), name))
+                .years(firstYear, lastYear);
+        } catch (IllegalArgumentException ex) {
+            throw error(ex.getMessage());
+        }
+
+        if (prefix == null) {
+            prefix = name;
+        }
+
+        // NEXT, draw the pages.
+        var pages = poster.getPageCount();
+        var digits = Math.max(3, String.valueOf(pages).length());
+        var batch = new DrawingBatch(format, WORKERS);
+        var outputs = new ArrayList<File>();
+
+        for (int i = 0; i < pages; i++) {
+            var page = i;
+            var output = new File(String.format("%s-%0" + digits + "d.%s",
+                prefix, i + 1, format.fileType()));
+            outputs.add(output);
+            batch.add(output, () -> poster.getPage(page));
+        }
+
+        int failures;
+        try {
+            failures = batch.write((i, ex) -> {
+                if (ex == null) {
+                    println("Wrote: " + outputs.get(i));
+                } else {
+                    failed(outputs.get(i), outputs.get(i), ex);
+                }
+            });
+        } catch (InterruptedException ex) {
+            throw error("Interrupted", ex);
+        }
+
+        if (failures > 0) {
+            throw error("Failed to draw " + failures + " of " +
+                pages + " pages");
+        }
+
+        // Because JavaFX; SVG output doesn't start it.
+        if (stage != null) {
+            exit();
+        }
+    }
+
+    // Loads the named calendar from the calendar file.
+    private Calendar loadCalendar(Path path, String name) {
+        try {
+            var calFile = DataFiles.loadCalendar(path);
+            var calendar = calFile.calendars().get(name);
+
+            if (calendar == null) {
+                throw error("Unknown calendar \"" + name +
+                    "\", expected one of: " +
+                    String.join(", ", calFile.getNames()));
+            }
+            if (!calendar.hasMonths() || !calendar.hasWeeks()) {
+                throw error("Calendar \"" + name +
+                    "\" has no months or no weeks");
+            }
+
+            return calendar;
+        } catch (DataFileException ex) {
+            throw error("Failed to read calendar file: " + ex.getMessage() +
+                "\n" + ex.getDetails());
+        }
+    }
+
+    // Parses a year number.
+    private int toYear(String arg) {
+        if (!isInteger(arg)) {
+            throw error("Expected a year number, got: \"" + arg + "\"");
+        }
+        return Integer.parseInt(arg);
+    }
+
+    private static boolean isInteger(String arg) {
+        try {
+            Integer.parseInt(arg);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    //------------------------------------------------------------------------
+    // Main
+
+    /**
+     * The tool's JavaFX Application main() method.  Launches the application,
+     * unless the output is SVG, which needs no JavaFX toolkit.
+     * @param args The command-line arguments.
+     */
+    public static void main(String[] args) {
+        runOrLaunch(new PosterTool(), args);
+    }
+}
@@ -0,0 +1,215 @@
+package pen.tools.serve;
+
+import com.wjduquette.joe.tools.Tool;
+import com.wjduquette.joe.tools.ToolException;
+import pen.DataFileException;
+import pen.DataFiles;
+import pen.HistoryFile;
+import pen.tools.history.HistoryReport;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The request handler for the "pen serve" tool.  The server keeps loaded
+ * history files (and their calendar files) resident, reloading each when
+ * it or any file it depends on changes on disk, and answers query requests
+ * using the same reports as "pen history".  The server is transport
+ * neutral and thread-safe; requests may be handled concurrently.
+ *
+ * <p>A request is a single line:</p>
+ *
+ * <pre>
+ * id query file.hist [options...]
+ * id reload file.hist
+ * </pre>
+ *
+ * <p>The query options are those of "pen history", e.g., "--entity" and
+ * "--output".  Tokens containing whitespace may be enclosed in double
+ * quotes.  The response to a successful request is a header line
+ * "id ok lineCount" followed by lineCount lines of output; on failure the
+ * response is a single line "id error message".</p>
+ */
+public class HistoryServer {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The tool whose helpers parse the query options.
+    private final Tool tool;
+
+    // The resident history files, by absolute path.  A file being loaded
+    // is resident as an incomplete future.
+    private final Map<Path, CompletableFuture<HistoryFile>> residents =
+        new ConcurrentHashMap<>();
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a server with no resident data.
+     * @param tool The tool whose helpers parse the query options
+     */
+    public HistoryServer(Tool tool) {
+        this.tool = tool;
+    }
+
+    //-------------------------------------------------------------------------
+    // Request Handling
+
+    /**
+     * Handles a single request line, returning the complete response,
+     * terminated by a newline.
+     * @param request The request line
+     * @return The response
+     */
+    public String handle(String request) {
+        Deque<String> tokens;
+
+        try {
+            tokens = HistoryReport.tokenize(request);
+        } catch (ToolException ex) {
+            return error("-", ex.getMessage());
+        }
+
+        if (tokens.isEmpty()) {
+            return error("-", "empty request");
+        }
+
+        var id = tokens.poll();
+
+        if (tokens.isEmpty()) {
+            return error(id, "missing command");
+        }
+
+        var command = tokens.poll();
+
+        try {
+            return switch (command) {
+                case "query" -> {
+                    var historyFile = getHistory(toPath(tokens), false);
+                    var options = HistoryReport.Options.parse(tool, tokens);
+                    yield ok(id, new HistoryReport(historyFile, options).render());
+                }
+                case "reload" -> {
+                    var historyFile = getHistory(toPath(tokens), true);
+                    yield ok(id, "Loaded: " + historyFile.path() + "\n");
+                }
+                default -> error(id, "unknown command: \"" + command + "\"");
+            };
+        } catch (ToolException ex) {
+            return error(id, ex.getMessage());
+        } catch (DataFileException ex) {
+            return error(id, ex.getMessage() + " " + ex.getDetails());
+        } catch (Exception ex) {
+            return error(id, "unexpected error, " + ex);
+        }
+    }
+
+    /**
+     * Gets the paths of the currently resident history files.
+     * @return The paths
+     */
+    public List<Path> getResidentPaths() {
+        return new ArrayList<>(residents.keySet());
+    }
+
+    //-------------------------------------------------------------------------
+    // Resident Data
+
+    /**
+     * Gets the history file for the given path, loading or reloading it
+     * if it is not resident or if it or any file it depends on has changed
+     * since it was read (see {@link DataFiles#isCurrent}).
+     * @param path The path
+     * @param force Reload even if the file is up-to-date.
+     * @return The loaded history file
+     * @throws DataFileException if the file cannot be loaded.
+     */
+    HistoryFile getHistory(Path path, boolean force)
+        throws DataFileException
+    {
+        var key = path.toAbsolutePath().normalize();
+
+        while (true) {
+            var old = residents.get(key);
+
+            if (old != null && !force) {
+                var historyFile = await(old);
+                if (DataFiles.isCurrent(historyFile)) {
+                    return historyFile;
+                }
+            }
+
+            // Only one request loads a given file at a time; the others wait
+            // for the result.  The file is loaded outside of the map's
+            // locks, so a slow load doesn't block requests for other files.
+            var loading = new CompletableFuture<HistoryFile>();
+            var installed = old == null
+                ? residents.putIfAbsent(key, loading) == null
+                : residents.replace(key, old, loading);
+
+            if (!installed) {
+                // Another request has begun a newer load; wait for it.
+                force = false;
+                continue;
+            }
+
+            try {
+                var historyFile = DataFiles.loadHistory(key);
+                loading.complete(historyFile);
+                return historyFile;
+            } catch (DataFileException | RuntimeException ex) {
+                residents.remove(key, loading);
+                loading.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+    }
+
+    // Waits for a resident file to load, rethrowing any load failure.
+    private HistoryFile await(CompletableFuture<HistoryFile> future)
+        throws DataFileException
+    {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof DataFileException dfe) {
+                throw dfe;
+            } else if (ex.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw ex;
+        }
+    }
+
+    private Path toPath(Deque<String> tokens) {
+        if (tokens.isEmpty()) {
+            throw new ToolException("missing history file");
+        }
+        return Path.of(tokens.poll());
+    }
+
+    //-------------------------------------------------------------------------
+    // Response Formatting
+
+    private String ok(String id, String output) {
+        var lines = output.lines().toList();
+        var buff = new StringBuilder();
+        buff.append(id).append(" ok ").append(lines.size()).append("\n");
+        for (var line : lines) {
+            buff.append(line).append("\n");
+        }
+        return buff.toString();
+    }
+
+    private String error(String id, String message) {
+        // The message must fit on one line.
+        return id + " error " + message.replaceAll("\\s+", " ").trim() + "\n";
+    }
+}
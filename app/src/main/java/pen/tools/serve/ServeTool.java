@@ -0,0 +1,190 @@
+package pen.tools.serve;
+
+import com.wjduquette.joe.tools.Tool;
+import com.wjduquette.joe.tools.ToolException;
+import com.wjduquette.joe.tools.ToolInfo;
+import pen.App;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/**
+ * The implementation for the {@code pen serve} tool.
+ */
+public class ServeTool implements Tool {
+    /**
+     * Tool information for this tool, for use by the launcher.
+     */
+    public static final ToolInfo INFO = new ToolInfo(
+        "serve",
+        "[--port port]",
+        "Answers history queries from resident data.",
+        """
+        Keeps loaded history files and their calendars resident in memory
+        and answers history queries, reloading each file when it changes
+        on disk.  By default, requests are read from standard input and
+        responses are written to standard output.
+
+        Options:
+
+        --port port   Listen for connections on the given local port
+                      instead of using standard input and output.
+
+        Protocol
+
+        Each request is a single line beginning with a client-chosen
+        request ID:
+
+            id query file.hist [options...]
+            id reload file.hist
+
+        The query options are those of "pen history", e.g., "--entity",
+        "--type", "--start", "--end", "--anniversaries", "--output", and
+        "--format".  Requests are handled concurrently, so responses may
+        arrive out of order.  A successful response is a header line
+        "id ok lineCount" followed by that many lines of output; a failed
+        request gets the single line "id error message".
+        """,
+        ServeTool::main
+    );
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    private final HistoryServer server = new HistoryServer(this);
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /** Creates the tool. */
+    public ServeTool() {
+        // Nothing to do
+    }
+
+    //-------------------------------------------------------------------------
+    // Execution
+
+    /**
+     * Gets implementation info about the tool.
+     * @return The info.
+     */
+    public ToolInfo toolInfo() {
+        return INFO;
+    }
+
+    private void run(String[] args) {
+        var argq = new ArrayDeque<>(List.of(args));
+        Integer port = null;
+
+        while (!argq.isEmpty()) {
+            var opt = argq.poll();
+            if (opt.equals("--port") && !argq.isEmpty()) {
+                port = toPort(argq.poll());
+            } else {
+                printUsage(App.NAME);
+                exit(1);
+            }
+        }
+
+        try {
+            if (port == null) {
+                serve(System.in, System.out);
+            } else {
+                listen(port);
+            }
+        } catch (IOException ex) {
+            System.err.println("*** I/O error: " + ex.getMessage());
+            exit(1);
+        }
+    }
+
+    private int toPort(String arg) {
+        try {
+            var port = Integer.parseInt(arg);
+            if (port >= 0 && port <= 65535) {
+                return port;
+            }
+        } catch (NumberFormatException ex) {
+            // Handled below
+        }
+        throw error("Expected a port number from 0 to 65535, got: \"" +
+            arg + "\"");
+    }
+
+    // Accepts connections on the loopback interface, serving each on its
+    // own virtual thread.
+    private void listen(int port) throws IOException {
+        try (var socket = new ServerSocket(port, 50,
+                InetAddress.getLoopbackAddress());
+             var executor = Executors.newVirtualThreadPerTaskExecutor()
+        ) {
+            System.err.println("Listening on " +
+                socket.getInetAddress().getHostAddress() + ":" +
+                socket.getLocalPort());
+
+            while (!socket.isClosed()) {
+                var client = socket.accept();
+                executor.submit(() -> serveClient(client));
+            }
+        }
+    }
+
+    private void serveClient(Socket client) {
+        try (client) {
+            serve(client.getInputStream(), client.getOutputStream());
+        } catch (IOException ex) {
+            System.err.println("*** Client error: " + ex.getMessage());
+        }
+    }
+
+    // Reads request lines from the input, handling each on its own virtual
+    // thread and writing each complete response to the output as it is
+    // ready.  Returns when the input is exhausted and all pending requests
+    // have been answered.
+    private void serve(InputStream in, OutputStream out) throws IOException {
+        var reader = new BufferedReader(
+            new InputStreamReader(in, StandardCharsets.UTF_8));
+        var writer = new PrintWriter(
+            new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                var request = line;
+                executor.submit(() -> {
+                    var response = server.handle(request);
+                    synchronized (writer) {
+                        writer.print(response);
+                        writer.flush();
+                    }
+                });
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Main
+
+    /**
+     * The tool's main routine.
+     * @param args The command-line arguments.
+     */
+    public static void main(String[] args) {
+        try {
+            new ServeTool().run(args);
+        } catch (ToolException ex) {
+            System.err.println("*** " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -2,8 +2,11 @@ package pen.tools.view;
 
 import com.wjduquette.joe.tools.FXTool;
 import com.wjduquette.joe.tools.ToolInfo;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.*;
@@ -14,23 +17,32 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import pen.App;
+import pen.FileWatcher;
 import pen.apis.StencilExtension;
 import pen.fx.FX;
 import pen.tcl.TclEngine;
+import pen.tcl.TclProfiler;
+import pen.util.TextTable;
+import pen.stencil.DisplayList;
+import pen.stencil.ShapeIndex;
 import pen.stencil.Stencil;
+import pen.stencil.StyleBase;
 import tcl.lang.TclException;
+import tcl.lang.TclObject;
+import tcl.lang.TclString;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.util.*;
 
 public class ViewTool extends FXTool {
     public static final ToolInfo INFO = new ToolInfo(
         "view",
-        "[-r] drawing.pen... [folder...]",
+        "[-r] [--profile] [--watch] drawing.pen... [folder...]",
         "Displays pen drawings in a window.",
         """
             Given one or more ".pen" files on the command line, this tool
@@ -39,12 +51,20 @@ public class ViewTool extends FXTool {
             
             OPTIONS
             
-            -r      If given, the tool will recurse into folders passed on the
-                    command line looking for ".pen" files.
+            -r          If given, the tool will recurse into folders passed on
+                        the command line looking for ".pen" files.
+            --profile   Profiles the Tcl commands executed while drawing,
+                        and writes the cumulative profile to standard error
+                        on exit.
+            --watch     Redraws the selected drawing whenever its file, or
+                        any file it sources, changes.
             """,
         ViewTool::main
     );
 
+    // How long files must be quiet before a change is redrawn
+    private static final Duration WATCH_DELAY = Duration.ofMillis(250);
+
     //------------------------------------------------------------------------
     // Instance Variables
 
@@ -60,8 +80,34 @@ public class ViewTool extends FXTool {
         FXCollections.observableArrayList();
 
     private TclEngine tcl = new TclEngine();
+    private TclProfiler profiler;
     private Stencil stencil;
-    private String script;
+
+    // The current drawing, as recorded when its script was last run, and
+    // the drawing it replaced, so that only what changed is redrawn.
+    private DisplayList displayList = new DisplayList();
+    private DisplayList previousList = new DisplayList();
+
+    // The size of the area of the canvas that has been painted.  A canvas
+    // keeps its content when it grows, so only the newly exposed area
+    // needs painting.
+    private double paintedWidth = 0;
+    private double paintedHeight = 0;
+
+    // The shapes in the current drawing, for finding the shape under the
+    // mouse.  Rebuilt only when the drawing is recorded.
+    private ShapeIndex shapeIndex;
+
+    // Watches the selected drawing's files for changes, if enabled.
+    private boolean watch = false;
+    private FileWatcher watcher;
+
+    // The drawing whose files are being watched, for use by the watcher
+    private volatile Path watchedDrawing;
+
+    // The current drawing's script, kept so that its parsed form is reused
+    // when it is run again.
+    private TclObject script;
 
     //------------------------------------------------------------------------
     // Constructor
@@ -126,11 +172,31 @@ public class ViewTool extends FXTool {
             )
         ;
 
-        // NEXT, create the stencil and initialize the TclEngine
-        stencil = new Stencil(canvas.getGraphicsContext2D());
+        // NEXT, create the stencil and initialize the TclEngine.  The
+        // stencil records the drawing, which is replayed on each repaint,
+        // and indexes its shapes by the script lines that drew them.
         tcl = new TclEngine();
+        shapeIndex = new ShapeIndex(tcl::getScriptLine);
+        stencil = new Stencil(displayList).shapeIndex(shapeIndex);
+        tcl.setProfiler(profiler);
+        tcl.trackSourcedFiles();
         tcl.install(new StencilExtension(stencil));
 
+        if (watch) {
+            try {
+                watcher = new FileWatcher(WATCH_DELAY, this::onDrawingChanged);
+            } catch (IOException ex) {
+                throw error("Cannot watch for file changes", ex);
+            }
+        }
+
+        if (profiler != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                System.err.println("Drawing profile:");
+                System.err.print(profiler.toTable(TextTable.Mode.TERMINAL));
+            }));
+        }
+
 
         // NEXT, pop up the window
         Scene scene = new Scene(root, 800, 600);
@@ -150,9 +216,9 @@ public class ViewTool extends FXTool {
         canvas.widthProperty().bind(canvasPane.widthProperty());
         canvas.heightProperty().bind(canvasPane.heightProperty());
 
-        // NEXT, repaint on window size change.
-        canvas.widthProperty().addListener((p,o,n) -> repaint());
-        canvas.heightProperty().addListener((p,o,n) -> repaint());
+        // NEXT, paint what's exposed on window size change.
+        canvas.widthProperty().addListener((p,o,n) -> repaintExposed());
+        canvas.heightProperty().addListener((p,o,n) -> repaintExposed());
 
         onReloadCurrentDrawing();
     }
@@ -163,9 +229,10 @@ public class ViewTool extends FXTool {
     private void onReloadCurrentDrawing() {
         var drawing = listBox.getSelectionModel().getSelectedItem();
         if (drawing != null) {
-            script = readFile(drawing);
+            var text = readFile(drawing);
+            setScript(text);
 
-            if (script == null) {
+            if (text == null) {
                 var alert = new Alert(Alert.AlertType.ERROR);
                 alert.setTitle("Error");
                 alert.setHeaderText("Could not read script");
@@ -174,13 +241,53 @@ public class ViewTool extends FXTool {
                 drawings.remove(drawing);
             }
         }
-        repaint();
+        record();
+        repaintChanges();
+        watchDrawing(drawing);
     }
 
-    private void repaint() {
+    // Rereads the selected drawing when a watched file changes.  Called on
+    // the file watcher's thread; the drawing is redrawn on the FX thread.
+    private void onDrawingChanged() {
+        var drawing = watchedDrawing;
+        var text = readFile(drawing);
+
+        Platform.runLater(() -> {
+            if (drawing.equals(watchedDrawing) && text != null) {
+                setScript(text);
+                record();
+                repaintChanges();
+                watchDrawing(drawing);
+            }
+        });
+    }
+
+    // Watches the drawing and the files it sourced when last drawn.
+    private void watchDrawing(Path drawing) {
+        watchedDrawing = drawing;
+
+        if (watcher != null && drawing != null) {
+            var files = new ArrayList<Path>();
+            files.add(drawing);
+            files.addAll(tcl.getSourcedFiles());
+            watcher.watch(files);
+        }
+    }
+
+    // Runs the script, recording the drawing, and keeping the previous
+    // recording.
+    private void record() {
+        var list = previousList;
+        previousList = displayList;
+        displayList = list.clear();
+        stencil = new Stencil(displayList).shapeIndex(shapeIndex);
+        tcl.getExtension(StencilExtension.class).setStencil(stencil);
+
+        shapeIndex.clear();
         stencil.background(Color.WHITE);
         stencil.clear();
         tcl.resetExtensions();
+        tcl.clearSourcedFiles();
 
         try {
             if (script != null) {
@@ -193,14 +300,89 @@ public class ViewTool extends FXTool {
             alert.setHeaderText("Error in script");
             alert.setContentText(tcl.interp().getResult().toString());
             alert.showAndWait();
-            script = null;
+            setScript(null);
         }
     }
 
-    // Shows the mouse position in the status label.
+    // Redraws the recorded drawing on the canvas.
+    private void repaint() {
+        displayList.replay(canvas.getGraphicsContext2D());
+        paintedWidth = canvas.getWidth();
+        paintedHeight = canvas.getHeight();
+    }
+
+    // Redraws the regions in which the recorded drawing differs from the
+    // previous recording, or the whole drawing if need be.
+    private void repaintChanges() {
+        displayList.getDamage(previousList).ifPresentOrElse(
+            damage -> displayList.replay(canvas.getGraphicsContext2D(), damage),
+            this::repaint);
+    }
+
+    // Draws the strips exposed by enlarging the canvas; the rest is
+    // unchanged.
+    private void repaintExposed() {
+        var w = canvas.getWidth();
+        var h = canvas.getHeight();
+        var exposed = new ArrayList<Bounds>();
+
+        if (w > paintedWidth) {
+            exposed.add(new BoundingBox(paintedWidth, 0, w - paintedWidth, h));
+        }
+        if (h > paintedHeight) {
+            var width = Math.min(w, paintedWidth);
+            exposed.add(new BoundingBox(0, paintedHeight, width, h - paintedHeight));
+        }
+
+        paintedWidth = w;
+        paintedHeight = h;
+        displayList.replay(canvas.getGraphicsContext2D(), exposed);
+    }
+
+    // Sets the script to record, or null for none.
+    private void setScript(String text) {
+        if (script != null) {
+            script.release();
+        }
+
+        script = text != null ? TclString.newInstance(text) : null;
+
+        if (script != null) {
+            script.preserve();
+        }
+    }
+
+    // Shows the mouse position in the status label, along with the
+    // topmost shape under the mouse, if any.
     private void showMousePosition(MouseEvent evt) {
-        statusLabel.setText(String.format("(x=%4.0f, y=%4.0f)",
-            evt.getX(), evt.getY()));
+        var text = String.format("(x=%4.0f, y=%4.0f)", evt.getX(), evt.getY());
+        var entry = shapeIndex.findTop(evt.getX(), evt.getY());
+
+        if (entry.isPresent()) {
+            text += "  " + describe(entry.get());
+        }
+        statusLabel.setText(text);
+    }
+
+    // Describes the shape: its kind, where it was drawn, and its style.
+    private String describe(ShapeIndex.Entry entry) {
+        var shape = entry.shape();
+        var kind = shape.getClass().getSimpleName()
+            .replaceFirst("Shape$", "").toLowerCase();
+        var text = new StringBuilder(kind);
+
+        if (entry.line() > 0) {
+            text.append(" at line ").append(entry.line());
+        }
+
+        if (shape instanceof StyleBase<?> style) {
+            text.append(": -foreground ").append(style.getForeground())
+                .append(" -background ").append(style.getBackground())
+                .append(" -linewidth ").append(style.getLineWidth())
+                .append(" -font ").append(style.getFont().getName());
+        }
+
+        return text.toString();
     }
 
 
@@ -220,6 +402,18 @@ public class ViewTool extends FXTool {
                 continue;
             }
 
+            // Profile flag
+            if (next.equals("--profile")) {
+                profiler = new TclProfiler();
+                continue;
+            }
+
+            // Watch flag
+            if (next.equals("--watch")) {
+                watch = true;
+                continue;
+            }
+
             // Path
             var path = new File(next).toPath();
 
@@ -0,0 +1,231 @@
+package pen.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG image to a stream a band of rows at a time, so that an image
+ * of any size can be written without holding all of its pixels in memory.
+ * Pixels are given as non-premultiplied ARGB ints, as returned by JavaFX's
+ * {@code PixelFormat.getIntArgbInstance()}, and are written as 8-bit RGBA.
+ *
+ * <p>Write exactly {@code height} rows, then close the writer; closing it
+ * also closes the underlying stream.</p>
+ */
+public final class PngWriter implements AutoCloseable {
+    //-------------------------------------------------------------------------
+    // Static Variables
+
+    private static final byte[] SIGNATURE =
+        {(byte)137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+
+    // The maximum size of an IDAT chunk
+    private static final int CHUNK_SIZE = 64*1024;
+
+    // Color type 6: RGB with alpha
+    private static final int RGBA = 6;
+
+    // The "Sub" row filter: each byte less the byte one pixel to its left.
+    private static final int FILTER_SUB = 1;
+
+    // Bytes per pixel
+    private static final int BPP = 4;
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The image size
+    private final int width;
+    private final int height;
+
+    // The underlying stream
+    private final DataOutputStream out;
+
+    // Compresses the filtered rows into IDAT chunks
+    private final Deflater deflater = new Deflater();
+    private final ChunkStream chunks = new ChunkStream();
+    private final DeflaterOutputStream idat;
+
+    // A filtered row, preceded by its filter type
+    private final byte[] row;
+
+    // The number of rows written
+    private int rowCount = 0;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a writer for an image of the given size, writing the PNG
+     * header to the stream.
+     * @param out The stream
+     * @param width The width in pixels
+     * @param height The height in pixels
+     * @throws IOException on write error
+     */
+    public PngWriter(OutputStream out, int width, int height)
+        throws IOException
+    {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(
+                "Invalid image size: " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.out = new DataOutputStream(out);
+        this.row = new byte[1 + BPP*width];
+        this.idat = new DeflaterOutputStream(chunks, deflater, CHUNK_SIZE);
+
+        this.out.write(SIGNATURE);
+
+        var header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;           // Bit depth
+        header[9] = RGBA;        // Color type
+        header[10] = 0;          // Compression: deflate
+        header[11] = 0;          // Filter method: adaptive
+        header[12] = 0;          // Interlace: none
+        writeChunk("IHDR", header, header.length);
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Gets the number of rows written so far.
+     * @return The number
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Writes rows of pixels.  Row i's pixels begin at
+     * {@code offset + i*stride} in the array.
+     * @param argb The pixels
+     * @param offset The index of the first row's first pixel
+     * @param stride The distance between the starts of successive rows
+     * @param rows The number of rows to write
+     * @throws IOException on write error
+     */
+    public void writeRows(int[] argb, int offset, int stride, int rows)
+        throws IOException
+    {
+        if (rowCount + rows > height) {
+            throw new IllegalStateException(
+                "Too many rows: image height is " + height);
+        }
+
+        for (int r = 0; r < rows; r++) {
+            var start = offset + r*stride;
+            row[0] = FILTER_SUB;
+
+            var prev = 0;
+            for (int i = 0, j = 1; i < width; i++, j += BPP) {
+                var pixel = argb[start + i];
+                row[j]     = (byte)((pixel >>> 16) - (prev >>> 16));
+                row[j + 1] = (byte)((pixel >>> 8) - (prev >>> 8));
+                row[j + 2] = (byte)(pixel - prev);
+                row[j + 3] = (byte)((pixel >>> 24) - (prev >>> 24));
+                prev = pixel;
+            }
+
+            idat.write(row);
+        }
+
+        rowCount += rows;
+    }
+
+    /**
+     * Finishes the image and closes the stream.
+     * @throws IOException on write error, or if fewer rows were written
+     * than the image's height.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rowCount != height) {
+                throw new IOException("Incomplete image: wrote " + rowCount +
+                    " of " + height + " rows");
+            }
+            idat.finish();
+            chunks.flush();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private void writeChunk(String type, byte[] data, int length)
+        throws IOException
+    {
+        var typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        var crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int)crc.getValue());
+    }
+
+    private static void putInt(byte[] buff, int offset, int value) {
+        buff[offset] = (byte)(value >>> 24);
+        buff[offset + 1] = (byte)(value >>> 16);
+        buff[offset + 2] = (byte)(value >>> 8);
+        buff[offset + 3] = (byte)value;
+    }
+
+    // Writes the compressed data as a sequence of IDAT chunks.
+    private class ChunkStream extends OutputStream {
+        private final byte[] buff = new byte[CHUNK_SIZE];
+        private int count = 0;
+
+        @Override
+        public void write(int b) throws IOException {
+            buff[count++] = (byte)b;
+            if (count == buff.length) {
+                flush();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                var n = Math.min(len, buff.length - count);
+                System.arraycopy(b, off, buff, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == buff.length) {
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeChunk("IDAT", buff, count);
+                count = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package pen;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static pen.checker.Checker.check;
+
+public class DataFilesTest extends Ted {
+    private static final String CALENDAR = """
+        era define ad -full "Anno Domini"
+        era define bc -full "Before Christ"
+        month define jan -days 31 -full "January" -short "Jan" -unambiguous "Jan" -tiny "J"
+        month define feb -days 28 -full "February" -short "Feb" -unambiguous "Feb" -tiny "F"
+        calendar basic simple -era ad -prior bc -months {jan feb}
+        """;
+
+    private static final String SOURCING_CALENDAR = """
+        era define ad -full "Anno Domini"
+        era define bc -full "Before Christ"
+        source months.tcl
+        calendar basic simple -era ad -prior bc -months {jan feb}
+        """;
+
+    private static final String MONTHS = """
+        month define jan -days 31
+        month define feb -days februaryDays
+        """;
+
+    private static final String HISTORY = """
+        calendar test.cal simple "yyyy-mm-dd"
+        type person "Person" -prime
+        entity joe "Joe" person -prime
+        entity bob "Bob" person
+        birthday AD-0004-02-29 "Joe is born" joe
+        incident AD-0010-01-15 "Bob enters" bob
+        incident AD-0012-02-01 "Joe and Bob talk" bob joe
+        end AD-0020-01-31 "Joe dies" joe
+        """;
+
+    private static final String BULK_HISTORY = """
+        calendar test.cal simple "yyyy-mm-dd"
+        type person "Person" -prime
+        entity joe "Joe" person -prime
+        entity bob "Bob" person
+        birthday AD-0004-02-29 "Joe is born" joe
+        incidents {
+            {AD-0010-01-15 "Bob enters" bob}
+        }
+        incident-table talks.csv
+        end AD-0020-01-31 "Joe dies" joe
+        """;
+
+    private Path dir;
+    private Path calFile;
+
+    @Before
+    public void setup() throws IOException {
+        DataFiles.clearCalendarCache();
+        dir = Files.createTempDirectory("datafiles");
+        calFile = dir.resolve("test.cal");
+        Files.writeString(calFile, CALENDAR);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        DataFiles.setSnapshotsEnabled(false);
+        DataFiles.clearCalendarCache();
+        try (var files = Files.list(dir)) {
+            for (var file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testLoadCalendar_cached() throws Exception {
+        test("testLoadCalendar_cached");
+        var first = DataFiles.loadCalendar(calFile);
+        check(first.getNames()).eq(List.of("simple"));
+
+        // Same file by another path: same object
+        var alias = dir.resolve("..").resolve(dir.getFileName())
+            .resolve("test.cal");
+        check(DataFiles.loadCalendar(alias) == first).eq(true);
+    }
+
+    @Test
+    public void testLoadCalendar_touched() throws Exception {
+        test("testLoadCalendar_touched");
+        var first = DataFiles.loadCalendar(calFile);
+        touch();
+        check(DataFiles.loadCalendar(calFile) == first).eq(true);
+    }
+
+    @Test
+    public void testLoadCalendar_changed() throws Exception {
+        test("testLoadCalendar_changed");
+        var first = DataFiles.loadCalendar(calFile);
+        Files.writeString(calFile, CALENDAR + "date today AD-0002-01-01\n");
+        touch();
+        var second = DataFiles.loadCalendar(calFile);
+        check(second == first).eq(false);
+        check(second.today()).ne(first.today());
+    }
+
+    @Test
+    public void testLoadCalendar_error() throws Exception {
+        test("testLoadCalendar_error");
+        DataFiles.loadCalendar(calFile);
+        Files.writeString(calFile, "nonesuch command\n");
+        touch();
+
+        try {
+            DataFiles.loadCalendar(calFile);
+            check(false).eq(true);
+        } catch (DataFileException ex) {
+            check(ex.getMessage().startsWith("Error in calendar")).eq(true);
+        }
+    }
+
+    @Test
+    public void testCalendars_unmodifiable() throws Exception {
+        test("testCalendars_unmodifiable");
+        var calendars = DataFiles.loadCalendar(calFile).calendars();
+
+        try {
+            calendars.clear();
+            check(false).eq(true);
+        } catch (UnsupportedOperationException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testSnapshot_roundTrip() throws Exception {
+        test("testSnapshot_roundTrip");
+        var histFile = writeSnapshotFiles();
+        DataFiles.setSnapshotsEnabled(true);
+
+        var loaded = DataFiles.loadHistory(histFile);
+        check(Files.exists(dir.resolve("test.cal.snap"))).eq(true);
+        check(Files.exists(dir.resolve("test.hist.snap"))).eq(true);
+
+        DataFiles.clearCalendarCache();
+        check(DataSnapshots.readCalendar(calFile) != null).eq(true);
+        check(DataSnapshots.readCalendar(calFile).stamps().size()).eq(2);
+        var snapped = DataSnapshots.readHistory(histFile).historyFile();
+
+        check(snapped.history().getIncidents())
+            .eq(loaded.history().getIncidents());
+        check(snapped.history().getEntityMap())
+            .eq(loaded.history().getEntityMap());
+        check(snapped.history().getTypeMap())
+            .eq(loaded.history().getTypeMap());
+        check(snapped.primaryCalendar()).eq("simple");
+        check(snapped.history().formatMoment(
+            snapped.history().getIncidents().getFirst().moment()))
+            .eq("0004-02-29");
+
+        var cal = snapped.getPrimaryCalendar();
+        check(cal.daysInMonth(4, 2)).eq(29);
+        check(cal.daysInMonth(5, 2)).eq(28);
+    }
+
+    @Test
+    public void testSnapshot_stale() throws Exception {
+        test("testSnapshot_stale");
+        var histFile = writeSnapshotFiles();
+        DataFiles.setSnapshotsEnabled(true);
+        DataFiles.loadHistory(histFile);
+        DataFiles.clearCalendarCache();
+        touch();
+
+        // Change a file sourced by the calendar file; both snapshots are
+        // stale.
+        Files.writeString(dir.resolve("months.tcl"),
+            MONTHS.replace("31", "32"));
+        var reloaded = DataFiles.loadHistory(histFile);
+        check(reloaded.getPrimaryCalendar().daysInMonth(1, 1)).eq(32);
+    }
+
+    @Test
+    public void testSnapshot_sourcedFileChanged() throws Exception {
+        test("testSnapshot_sourcedFileChanged");
+        writeSnapshotFiles();
+        DataFiles.setSnapshotsEnabled(true);
+        DataFiles.loadCalendar(calFile);
+        DataFiles.clearCalendarCache();
+
+        // Loaded from the snapshot, with the sourced file's stamp.
+        var snapped = DataFiles.loadCalendar(calFile);
+        check(DataFiles.getDependencies(snapped).stream()
+            .map(p -> p.getFileName().toString())
+            .toList())
+            .eq(List.of("test.cal", "months.tcl"));
+
+        // Change the sourced file; the cached calendar file is stale.
+        var months = dir.resolve("months.tcl");
+        var time = Files.getLastModifiedTime(months).toMillis();
+        Files.writeString(months, MONTHS.replace("31", "32"));
+        Files.setLastModifiedTime(months, FileTime.fromMillis(time + 10_000));
+
+        var reloaded = DataFiles.loadCalendar(calFile);
+        check(reloaded == snapped).eq(false);
+        check(reloaded.calendars().get("simple").daysInMonth(1, 1)).eq(32);
+    }
+
+    @Test
+    public void testSnapshot_tclMonthLength() throws Exception {
+        test("testSnapshot_tclMonthLength");
+        Files.writeString(calFile, CALENDAR.replace("-days 28",
+            "-days {apply {{y} {return 28}}}"));
+        DataFiles.setSnapshotsEnabled(true);
+
+        var calendarFile = DataFiles.loadCalendar(calFile);
+        check(calendarFile.getNames()).eq(List.of("simple"));
+        check(Files.exists(dir.resolve("test.cal.snap"))).eq(false);
+
+        // The calendar still uses its engine after the load.
+        check(calendarFile.calendars().get("simple").daysInMonth(3, 2))
+            .eq(28);
+    }
+
+    @Test
+    public void testLoadHistory_bulk() throws Exception {
+        test("testLoadHistory_bulk");
+        var histFile = writeSnapshotFiles();
+        var expected = DataFiles.loadHistory(histFile).history();
+
+        var bulkFile = dir.resolve("bulk.hist");
+        Files.writeString(bulkFile, BULK_HISTORY);
+        Files.writeString(dir.resolve("talks.csv"), """
+            # moment,label,entities
+            AD-0012-02-01,"Joe and Bob talk",bob joe
+            """);
+        var bulk = DataFiles.loadHistory(bulkFile).history();
+        check(bulk.getIncidents()).eq(expected.getIncidents());
+
+        Files.writeString(bulkFile, BULK_HISTORY.replace(".csv", ".tsv"));
+        Files.writeString(dir.resolve("talks.tsv"),
+            "AD-0012-02-01\tJoe and Bob talk\tbob\tjoe\n");
+        bulk = DataFiles.loadHistory(bulkFile).history();
+        check(bulk.getIncidents()).eq(expected.getIncidents());
+    }
+
+    @Test
+    public void testLoadHistory_tableError() throws Exception {
+        test("testLoadHistory_tableError");
+        writeSnapshotFiles();
+        var bulkFile = dir.resolve("bulk.hist");
+        Files.writeString(bulkFile, BULK_HISTORY);
+        Files.writeString(dir.resolve("talks.csv"), """
+            AD-0012-02-01,Talk,bob
+
+            AD-0013-01-01,"Who?",nobody
+            """);
+
+        try {
+            DataFiles.loadHistory(bulkFile);
+            check(false).eq(true);
+        } catch (DataFileException ex) {
+            check(ex.getMessage().contains("talks.csv, line 3: " +
+                "Expected known entity ID, got \"nobody\"")).eq(true);
+        }
+    }
+
+    @Test
+    public void testLoadHistory_failedBatchKeepsLimits() throws Exception {
+        test("testLoadHistory_failedBatchKeepsLimits");
+        var bulkFile = dir.resolve("bulk.hist");
+        Files.writeString(dir.resolve("talks.tsv"),
+            "100\tBob talks\tbob\n110\tWho?\tnobody\n");
+        Files.writeString(bulkFile, """
+            type person "Person" -prime
+            entity bob "Bob" person -prime
+            start 10 "Bob enters" bob
+            catch {incidents {{100 "Bob talks" bob} {110 "Who?" nobody}}}
+            catch {incident-table talks.tsv}
+            end 95 "Bob leaves" bob
+            """);
+
+        // The failed batches neither add incidents nor widen Bob's limits,
+        // so he can still end at 95.
+        var history = DataFiles.loadHistory(bulkFile).history();
+        check(history.getIncidents().size()).eq(2);
+    }
+
+    @Test
+    public void testLoadAll() throws Exception {
+        test("testLoadAll");
+        var histFile = writeSnapshotFiles();
+        var otherFile = dir.resolve("other.hist");
+        Files.writeString(otherFile, HISTORY.replace("Joe", "Jim"));
+
+        var files = DataFiles.loadAll(List.of(histFile, calFile, otherFile));
+        check(files.stream().map(DataFile::path).toList())
+            .eq(List.of(histFile, calFile, otherFile));
+
+        // The calendar is loaded once, and shared.
+        var calendarFile = files.get(1);
+        check(((HistoryFile)files.get(0)).calendarFile() == calendarFile)
+            .eq(true);
+        check(((HistoryFile)files.get(2)).calendarFile() == calendarFile)
+            .eq(true);
+    }
+
+    @Test
+    public void testLoadAll_errors() throws Exception {
+        test("testLoadAll_errors");
+        var histFile = writeSnapshotFiles();
+        var badFile = dir.resolve("bad.hist");
+        Files.writeString(badFile, "nonesuch command\n");
+        var otherFile = dir.resolve("other.txt");
+        Files.writeString(otherFile, "");
+
+        try {
+            DataFiles.loadAll(List.of(badFile, histFile, otherFile));
+            check(false).eq(true);
+        } catch (DataFileException ex) {
+            check(ex.getMessage().startsWith("Could not load 2 of 3 files:\n" +
+                badFile + ": Error in history")).eq(true);
+            check(ex.getMessage().endsWith("\n" + otherFile +
+                ": Unknown file type: " + otherFile)).eq(true);
+            check(ex.getSuppressed().length).eq(1);
+        }
+    }
+
+    @Test
+    public void testGetDependencies() throws Exception {
+        test("testGetDependencies");
+        var histFile = writeSnapshotFiles();
+        var historyFile = DataFiles.loadHistory(histFile);
+
+        check(DataFiles.getDependencies(historyFile).stream()
+            .map(p -> p.getFileName().toString())
+            .distinct()
+            .toList())
+            .eq(List.of("test.hist", "test.cal", "months.tcl"));
+    }
+
+    @Test
+    public void testIsCurrent() throws Exception {
+        test("testIsCurrent");
+        var histFile = writeSnapshotFiles();
+        var historyFile = DataFiles.loadHistory(histFile);
+        check(DataFiles.isCurrent(historyFile)).eq(true);
+        check(DataFiles.isCurrent(historyFile.calendarFile())).eq(true);
+
+        // Touched but unchanged: still current.
+        touch();
+        check(DataFiles.isCurrent(historyFile)).eq(true);
+
+        // A file sourced by the calendar file changed: both are stale.
+        Files.writeString(dir.resolve("months.tcl"),
+            MONTHS.replace("31", "32"));
+        check(DataFiles.isCurrent(historyFile.calendarFile())).eq(false);
+        check(DataFiles.isCurrent(historyFile)).eq(false);
+    }
+
+    @Test
+    public void testIsCurrent_savedDuringLoad() throws Exception {
+        test("testIsCurrent_savedDuringLoad");
+        var histFile = writeSnapshotFiles();
+        var moreFile = dir.resolve("more.tcl");
+        Files.writeString(moreFile, "entity bob \"Bob\" person\n");
+
+        // The history saves the sourced file after reading it, keeping its
+        // size and, to the second, its modification time.
+        Files.writeString(histFile, HISTORY.replace("entity bob \"Bob\" person",
+            """
+            source more.tcl
+            set t [file mtime more.tcl]
+            set f [open more.tcl w]
+            puts $f {entity bob "Rob" person}
+            close $f
+            file mtime more.tcl $t
+            """));
+
+        var historyFile = DataFiles.loadHistory(histFile);
+        check(historyFile.history().getEntityMap().get("bob").name())
+            .eq("Bob");
+        check(DataFiles.isCurrent(historyFile)).eq(false);
+
+        var reloaded = DataFiles.loadHistory(histFile);
+        check(reloaded.history().getEntityMap().get("bob").name())
+            .eq("Rob");
+        check(DataFiles.isCurrent(reloaded)).eq(true);
+        check(DataFiles.isCurrent(historyFile)).eq(false);
+    }
+
+    // Writes a calendar file that sources another file, and a history
+    // file, returning the history file's path.
+    private Path writeSnapshotFiles() throws IOException {
+        Files.writeString(calFile, SOURCING_CALENDAR);
+        Files.writeString(dir.resolve("months.tcl"), MONTHS);
+        var histFile = dir.resolve("test.hist");
+        Files.writeString(histFile, HISTORY);
+        return histFile;
+    }
+
+    // Bumps the file's modification time without changing its content.
+    private void touch() throws IOException {
+        var time = Files.getLastModifiedTime(calFile).toMillis();
+        Files.setLastModifiedTime(calFile, FileTime.fromMillis(time + 10_000));
+    }
+}
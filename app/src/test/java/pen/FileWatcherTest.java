@@ -0,0 +1,86 @@
+package pen;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static pen.checker.Checker.check;
+
+public class FileWatcherTest extends Ted {
+    private Path dir;
+    private Path file;
+    private Path other;
+    private FileWatcher watcher;
+    private final Semaphore changes = new Semaphore(0);
+
+    @Before
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("watcher");
+        file = dir.resolve("test.hist");
+        other = dir.resolve("other.txt");
+        Files.writeString(file, "first");
+        watcher = new FileWatcher(Duration.ofMillis(50), changes::release);
+        watcher.watch(List.of(file));
+    }
+
+    @After
+    public void teardown() throws IOException {
+        watcher.close();
+        try (var files = Files.list(dir)) {
+            for (var path : files.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testChange() throws Exception {
+        test("testChange");
+        Files.writeString(file, "second");
+        check(changes.tryAcquire(10, TimeUnit.SECONDS)).eq(true);
+    }
+
+    @Test
+    public void testDebounce() throws Exception {
+        test("testDebounce");
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(file, "edit " + i);
+        }
+        check(changes.tryAcquire(10, TimeUnit.SECONDS)).eq(true);
+        check(changes.tryAcquire(500, TimeUnit.MILLISECONDS)).eq(false);
+    }
+
+    @Test
+    public void testSameContent() throws Exception {
+        test("testSameContent");
+        Files.writeString(file, "first");
+        var time = Files.getLastModifiedTime(file).toMillis();
+        Files.setLastModifiedTime(file, FileTime.fromMillis(time + 10_000));
+        Files.writeString(other, "unwatched");
+        check(changes.tryAcquire(500, TimeUnit.MILLISECONDS)).eq(false);
+    }
+
+    @Test
+    public void testWatch_replace() throws Exception {
+        test("testWatch_replace");
+        Files.writeString(other, "first");
+        watcher.watch(List.of(other));
+        check(watcher.getFiles()).eq(Set.of(other.toAbsolutePath()));
+
+        Files.writeString(file, "second");
+        check(changes.tryAcquire(500, TimeUnit.MILLISECONDS)).eq(false);
+        Files.writeString(other, "second");
+        check(changes.tryAcquire(10, TimeUnit.SECONDS)).eq(true);
+    }
+}
@@ -0,0 +1,81 @@
+package pen.diagram.calendar;
+
+import org.junit.Test;
+import pen.Ted;
+import pen.calendars.Armorican;
+import pen.calendars.Calendar;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static pen.checker.Checker.check;
+
+public class CalendarPosterTest extends Ted {
+    private static final Calendar AF = Armorican.AF;
+
+    @Test
+    public void testYears_skipsZero() {
+        test("testYears_skipsZero");
+        var poster = new CalendarPoster().calendar(AF).years(-3, 2)
+            .across(2).down(1);
+
+        check(poster.getYears()).eq(List.of(-3, -2, -1, 1, 2));
+        check(poster.getPageCount()).eq(3);
+        check(poster.getYears(1)).eq(List.of(-1, 1));
+        check(poster.getYears(2)).eq(List.of(2));
+        check(poster.getTitle(-1)).eq("1 " + AF.priorEra().shortForm());
+        check(poster.getTitle(2)).eq("2 " + AF.era().shortForm());
+    }
+
+    @Test
+    public void testGetGrids_matchesMonths() {
+        test("testGetGrids_matchesMonths");
+        var poster = new CalendarPoster().calendar(AF).years(-100, 300);
+
+        for (var year : poster.getYears()) {
+            var grids = poster.getGrids(year);
+            check(grids.size()).eq(AF.monthsInYear());
+
+            for (int m = 1; m <= AF.monthsInYear(); m++) {
+                var day = AF.date2day(AF.date(year, m, 1));
+                check(grids.get(m - 1)).eq(MonthGrid.of(AF, year, m, day));
+            }
+        }
+    }
+
+    @Test
+    public void testGetGrids_fromYearZero() {
+        test("testGetGrids_fromYearZero");
+        var poster = new CalendarPoster().calendar(AF).years(0, 5);
+        check(poster.getYears()).eq(List.of(1, 2, 3, 4, 5));
+
+        for (var year : poster.getYears()) {
+            var grids = poster.getGrids(year);
+
+            for (int m = 1; m <= AF.monthsInYear(); m++) {
+                var day = AF.date2day(AF.date(year, m, 1));
+                check(grids.get(m - 1)).eq(MonthGrid.of(AF, year, m, day));
+            }
+        }
+    }
+
+    @Test
+    public void testGetGrids_shared() {
+        test("testGetGrids_shared");
+        var poster = new CalendarPoster().calendar(AF).years(1, 400);
+        var years = new HashMap<List<MonthGrid>, List<MonthGrid>>();
+        var grids = new HashMap<MonthGrid, MonthGrid>();
+
+        // Equal years and equal grids are the same objects.
+        for (var year : poster.getYears()) {
+            var list = poster.getGrids(year);
+            check(years.computeIfAbsent(list, k -> k) == list).eq(true);
+
+            for (var grid : list) {
+                check(grids.computeIfAbsent(grid, k -> k) == grid).eq(true);
+            }
+        }
+
+        check(years.size() < poster.getYears().size()).eq(true);
+    }
+}
@@ -0,0 +1,126 @@
+package pen.diagram.calendar;
+
+import javafx.geometry.Dimension2D;
+import org.junit.Test;
+import pen.Ted;
+import pen.calendars.Armorican;
+import pen.calendars.Calendar;
+import pen.stencil.FakeFonts;
+import pen.stencil.PenFont;
+
+import static pen.checker.Checker.check;
+
+public class MonthSpreadTest extends Ted {
+    private static final Calendar AF = Armorican.AF;
+
+    // Fonts with fixed metrics, so that sizes can be computed by hand.
+    private static final PenFont TITLE = FakeFonts.fixed("title", 10, 20);
+    private static final PenFont DAY = FakeFonts.fixed("day", 8, 15);
+    private static final PenFont DATE = FakeFonts.fixed("date", 7, 12);
+
+    @Test
+    public void testGrid_matchesLoop() {
+        test("testGrid_matchesLoop");
+        var startsOnLastWeekday = 0;
+
+        for (int year = -20; year <= 20; year++) {
+            if (year == 0) continue;
+            var grids = MonthGrid.forYear(AF, year);
+
+            for (int m = 1; m <= AF.monthsInYear(); m++) {
+                var date = AF.date(year, m, 1);
+                var grid = grids.get(m - 1);
+
+                check(grid.startDate()).eq(2 - date.dayOfWeek());
+                check(grid.daysInMonth()).eq(date.daysInMonth());
+                check(grid.numWeeks()).eq(weeksByLoop(year, m));
+
+                if (date.dayOfWeek() == AF.daysInWeek()) {
+                    ++startsOnLastWeekday;
+                }
+            }
+        }
+
+        check(startsOnLastWeekday > 0).eq(true);
+    }
+
+    @Test
+    public void testGetRealSize_matchesOld() {
+        test("testGetRealSize_matchesOld");
+
+        for (int year = 1; year <= 10; year++) {
+            for (int m = 1; m <= AF.monthsInYear(); m++) {
+                var spread = newSpread(year, m);
+                check(spread.getRealSize()).eq(oldSize(year, m, 10, 5));
+            }
+        }
+    }
+
+    @Test
+    public void testGetRealSize_afterSetters() {
+        test("testGetRealSize_afterSetters");
+        var spread = newSpread(1, 1);
+        check(spread.getRealSize()).eq(oldSize(1, 1, 10, 5));
+
+        spread.datePad(8);
+        check(spread.getRealSize()).eq(oldSize(1, 1, 10, 8));
+
+        spread.titlePad(4);
+        check(spread.getRealSize()).eq(oldSize(1, 1, 4, 8));
+
+        spread.monthOfYear(2);
+        check(spread.getRealSize()).eq(oldSize(1, 2, 4, 8));
+
+        spread.dateFont(FakeFonts.fixed("big", 9, 16));
+        var size = spread.getRealSize();
+        check(size.getWidth())
+            .eq(AF.daysInWeek()*(8 + 18.0) - 8);
+        check(size.getHeight())
+            .eq(20 + 4 + 15 + weeksByLoop(1, 2)*(16 + 8.0));
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private MonthSpread newSpread(int year, int monthOfYear) {
+        return new MonthSpread()
+            .calendar(AF)
+            .year(year)
+            .monthOfYear(monthOfYear)
+            .titleFont(TITLE)
+            .dayFont(DAY)
+            .dateFont(DATE);
+    }
+
+    // Counts the weeks to draw by stepping through the month a week at a
+    // time, as MonthSpread once did.
+    static int weeksByLoop(int year, int monthOfYear) {
+        var date = AF.date(year, monthOfYear, 1);
+        var daysInMonth = date.daysInMonth();
+        var startDate = 1 - (date.dayOfWeek() - 1);
+        var numberOfWeeks = 0;
+
+        do {
+            ++numberOfWeeks;
+            startDate += AF.daysInWeek();
+        } while (startDate <= daysInMonth);
+
+        return numberOfWeeks;
+    }
+
+    // Computes a month spread's size as MonthSpread once did, given the
+    // test fonts.
+    private Dimension2D oldSize(
+        int year,
+        int monthOfYear,
+        double titlePad,
+        double datePad
+    ) {
+        var dateWidth = DATE.getTextWidth("99");
+        var w = AF.daysInWeek()*(datePad + dateWidth) - datePad;
+        var h = TITLE.getHeight() + titlePad
+            + DAY.getHeight()
+            + weeksByLoop(year, monthOfYear)*(DATE.getHeight() + datePad);
+        return new Dimension2D(w, h);
+    }
+}
@@ -0,0 +1,70 @@
+package pen.diagram.calendar;
+
+import javafx.geometry.Dimension2D;
+import org.junit.Test;
+import pen.Ted;
+import pen.calendars.Armorican;
+import pen.calendars.Calendar;
+import pen.stencil.FakeFonts;
+
+import static pen.checker.Checker.check;
+
+public class YearSpreadTest extends Ted {
+    private static final Calendar AF = Armorican.AF;
+
+    @Test
+    public void testGetRealSize() {
+        test("testGetRealSize");
+
+        for (int year = 1; year <= 10; year++) {
+            check(newSpread(year).getRealSize()).eq(size(year, 3, 5));
+        }
+    }
+
+    @Test
+    public void testGetRealSize_afterSetters() {
+        test("testGetRealSize_afterSetters");
+        var spread = newSpread(1);
+        check(spread.getRealSize()).eq(size(1, 3, 5));
+
+        spread.columns(4);
+        check(spread.getRealSize()).eq(size(1, 4, 5));
+
+        spread.datePad(8);
+        check(spread.getRealSize()).eq(size(1, 4, 8));
+
+        spread.year(2);
+        check(spread.getRealSize()).eq(size(2, 4, 8));
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private YearSpread newSpread(int year) {
+        return new YearSpread()
+            .calendar(AF)
+            .year(year)
+            .titleFont(FakeFonts.fixed("title", 12, 25))
+            .monthFont(FakeFonts.fixed("month", 10, 20))
+            .dayFont(FakeFonts.fixed("day", 8, 15))
+            .dateFont(FakeFonts.fixed("date", 7, 12));
+    }
+
+    // Computes the year spread's size by hand, given the test fonts and
+    // the default pads.
+    private Dimension2D size(int year, int columns, double datePad) {
+        var monthWidth = AF.daysInWeek()*(datePad + 14) - datePad;
+        var monthHeight = 0.0;
+
+        for (int m = 1; m <= AF.monthsInYear(); m++) {
+            var weeks = MonthSpreadTest.weeksByLoop(year, m);
+            monthHeight = Math.max(monthHeight,
+                20 + 10 + 15 + weeks*(12 + datePad));
+        }
+
+        var rows = (AF.monthsInYear() + columns - 1)/columns;
+        var w = columns*monthWidth + (columns - 1)*20;
+        var h = 25 + 10 + rows*monthHeight + (rows - 1)*20;
+        return new Dimension2D(w, h);
+    }
+}
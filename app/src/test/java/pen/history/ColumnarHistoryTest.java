@@ -0,0 +1,71 @@
+package pen.history;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Set;
+
+import static pen.checker.Checker.check;
+
+/**
+ * Runs the HistoryQueryTest suite against a ColumnarHistory, and tests
+ * the columnar store itself.
+ */
+public class ColumnarHistoryTest extends HistoryQueryTest {
+    @Override
+    protected History source() {
+        try {
+            var path = Files.createTempFile("history", ".col");
+            try {
+                ColumnarHistory.write(history, path);
+                // The mapping remains valid after the file is deleted.
+                return ColumnarHistory.open(path);
+            } finally {
+                Files.delete(path);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        test("testRoundTrip");
+        history.addEntityType(new EntityType("person", "Person", true));
+        history.addEntity(new Entity("joe", "JoeP", "person", true));
+        history.addEntity(new Entity("bob", "BobC", "person", false));
+        history.getIncidents().add(new Incident.End(90, "Joe dies", "joe"));
+        history.getIncidents().add(new Incident.Start(10, "Joe is born", "joe"));
+        history.getIncidents().add(
+            new Incident.Memorial(50, null, Set.of("joe", "bob")));
+
+        var columnar = source();
+        check(columnar.getTypeMap()).eq(history.getTypeMap());
+        check(columnar.getEntityMap()).eq(history.getEntityMap());
+        check(columnar.getIncidents()).eq(history.getIncidents().stream()
+            .sorted((a, b) -> Integer.compare(a.moment(), b.moment()))
+            .toList());
+        check(columnar.getTimeFrame()).eq(TimeFrame.of(10, 90));
+        check(columnar.getPeriods()).eq(history.getPeriods());
+    }
+
+    @Test
+    public void testIncidentsWithin() {
+        test("testIncidentsWithin");
+        history.addEntity(new Entity("joe", "JoeP", "person", true));
+        for (int m = 0; m < 100; m += 10) {
+            history.getIncidents().add(
+                new Incident.Normal(m, "At " + m, Set.of("joe")));
+        }
+
+        var columnar = source();
+        check(columnar.getIncidents(TimeFrame.of(25, 50)))
+            .eq(history.getIncidents(TimeFrame.of(25, 50)));
+        check(columnar.getIncidents(TimeFrame.of(25, 50)).size()).eq(3);
+        check(columnar.getIncidents(TimeFrame.of(91, 95)).isEmpty()).eq(true);
+        check(columnar.getIncidents(
+            TimeFrame.of(Integer.MIN_VALUE, Integer.MAX_VALUE)).size()).eq(10);
+    }
+}
@@ -15,7 +15,7 @@ import static pen.checker.Checker.check;
 import static pen.checker.Checker.fail;
 
 public class HistoryQueryTest extends Ted {
-    private HistoryBank history;
+    protected HistoryBank history;
     private HistoryQuery query;
 
     @Before
@@ -28,7 +28,7 @@ public class HistoryQueryTest extends Ted {
     public void testNullQuery() {
         test("testNullQuery");
         populateHistory();
-        var view = query.execute(history);
+        var view = query.execute(source());
         check(view.getIncidents()).eq(history.getIncidents());
         check(view.getEntityMap()).eq(history.getEntityMap());
     }
@@ -37,11 +37,11 @@ public class HistoryQueryTest extends Ted {
     public void testClear() {
         test("testClear");
         populateHistory();
-        var view = query.noLaterThan(0).execute(history); // No incidents.
+        var view = query.noLaterThan(0).execute(source()); // No incidents.
         check(view.getIncidents().isEmpty()).eq(true);
 
         query.clear();
-        view = query.execute(history); // Everything.
+        view = query.execute(source()); // Everything.
 
         check(view.getIncidents()).eq(history.getIncidents());
         check(view.getEntityMap()).eq(history.getEntityMap());
@@ -50,14 +50,14 @@ public class HistoryQueryTest extends Ted {
     @Test
     public void testAfter() {
         populateHistory();
-        var view = query.noEarlierThan(50).execute(history);
+        var view = query.noEarlierThan(50).execute(source());
         check(view.getTimeFrame()).eq(TimeFrame.of(50, 90));
     }
 
     @Test
     public void testBefore() {
         populateHistory();
-        var view = query.noLaterThan(50).execute(history);
+        var view = query.noLaterThan(50).execute(source());
         check(view.getTimeFrame()).eq(TimeFrame.of(10, 50));
     }
 
@@ -65,7 +65,7 @@ public class HistoryQueryTest extends Ted {
     public void testFilter_incidents() {
         populateHistory();
         var view = query.filter(i -> i.label().equals("Bob leaves"))
-            .execute(history);
+            .execute(source());
         check(view.getTimeFrame()).eq(TimeFrame.of(85, 85));
     }
 
@@ -81,7 +81,7 @@ public class HistoryQueryTest extends Ted {
         history.getIncidents().add(new Incident.Normal(
             cal.date2day(finalDate), "Final date", Set.of("david")));
 
-        var view = query.expandAnniversaries(cal).execute(history);
+        var view = query.expandAnniversaries(cal).execute(source());
         check(view.getIncidents().size()).eq(5);
 
         var result = view.getIncidents().stream()
@@ -115,13 +115,13 @@ public class HistoryQueryTest extends Ted {
             .add(new Incident.Normal(120, "Final event", Set.of("joe")));
 
         // No calendar months implies no anniversaries
-        var view = query.expandAnniversaries(cal).execute(history);
+        var view = query.expandAnniversaries(cal).execute(source());
         check(view.getIncidents().size()).eq(2);
     }
 
     @Test
     public void testExpandRecurring_noIncidents() {
-        var view = query.expandAnniversaries(Gregorian.CALENDAR).execute(history);
+        var view = query.expandAnniversaries(Gregorian.CALENDAR).execute(source());
 
         // No incidents implies no anniversaries
         check(view.getIncidents().isEmpty()).eq(true);
@@ -134,7 +134,7 @@ public class HistoryQueryTest extends Ted {
             .add(new Incident.Start(10, "Joe is born", "joe"));
 
         // No recurring incidents implies no anniversaries
-        var view = query.expandAnniversaries(Gregorian.CALENDAR).execute(history);
+        var view = query.expandAnniversaries(Gregorian.CALENDAR).execute(source());
         check(view.getIncidents().size()).eq(1);
     }
 
@@ -142,7 +142,7 @@ public class HistoryQueryTest extends Ted {
     public void testIncludes() {
         test("testIncludes");
         populateHistory();
-        var view = query.includes("bob").execute(history);
+        var view = query.includes("bob").execute(source());
         check(view.getEntityMap().keySet()).eq(Set.of("bob"));
 
         for (var evt : view.getIncidents()) {
@@ -158,35 +158,35 @@ public class HistoryQueryTest extends Ted {
     @Test
     public void testExcludes() {
         populateHistory();
-        var view = query.excludes("bob").execute(history);
+        var view = query.excludes("bob").execute(source());
         check(view.getEntityMap().keySet()).eq(Set.of("joe"));
     }
 
     @Test
     public void testIncludeTypes() {
         populateHistory();
-        var view = query.includeTypes("person").execute(history);
+        var view = query.includeTypes("person").execute(source());
         check(view.getEntityMap().keySet()).eq(Set.of("bob", "joe"));
     }
 
     @Test
     public void testExcludeTypes() {
         populateHistory();
-        var view = query.excludeTypes("person").execute(history);
+        var view = query.excludeTypes("person").execute(source());
         check(view.getEntityMap().keySet()).eq(Set.of());
     }
 
     @Test
     public void testBoundByEntities_specific() {
         populateHistory();
-        var view = query.boundByEntities("bob").execute(history);
+        var view = query.boundByEntities("bob").execute(source());
         check(view.getTimeFrame()).eq(TimeFrame.of(15, 85));
     }
 
     @Test
     public void testBoundByEntities_allRemaining() {
         populateHistory();
-        var view = query.includes("bob").boundByEntities().execute(history);
+        var view = query.includes("bob").boundByEntities().execute(source());
         check(view.getTimeFrame()).eq(TimeFrame.of(15, 85));
     }
 
@@ -194,7 +194,7 @@ public class HistoryQueryTest extends Ted {
     public void testGroupBySource() {
         test("testGroupBySource()");
         populateHistory2();
-        var view = query.execute(history);
+        var view = query.execute(source());
 
         check(view.getPeriodGroups()).eq(history.getPeriodGroups());
     }
@@ -205,7 +205,7 @@ public class HistoryQueryTest extends Ted {
         populateHistory2();
         var view = query
             .groupByPrimes(List.of("c3", "b3", "a3"), null)
-            .execute(history);
+            .execute(source());
 
         dumpGroups("By Primes", view);
         check(groups2list(view)).eq(List.of(
@@ -225,7 +225,7 @@ public class HistoryQueryTest extends Ted {
         populateHistory2();
         var view = query
             .groupByPrimes(List.of("c3", "b3", "a1", "a2", "a3"), null)
-            .execute(history);
+            .execute(source());
 
         dumpGroups("By Primes", view);
         check(groups2list(view)).eq(List.of(
@@ -245,7 +245,7 @@ public class HistoryQueryTest extends Ted {
         populateHistory2();
         var view = query
             .groupByPrimes(List.of("c3", "b3", "a3"), List.of("b"))
-            .execute(history);
+            .execute(source());
 
         dumpGroups("By Primes", view);
         check(groups2list(view)).eq(List.of(
@@ -260,6 +260,12 @@ public class HistoryQueryTest extends Ted {
         ));
     }
 
+    // The history to query; subclasses may store the populated history
+    // in another form.
+    protected History source() {
+        return history;
+    }
+
     private void populateHistory() {
         history.addEntity(new Entity("joe", "JoeP", "person", true));
         history.addEntity(new Entity("bob", "BobC", "person", false));
@@ -0,0 +1,168 @@
+package pen.stencil;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.paint.Color;
+import org.junit.Test;
+import pen.Ted;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static pen.checker.Checker.check;
+
+public class DisplayListTest extends Ted {
+    // A drawing that uses transforms, styles, and several shapes.
+    private static final Drawing DRAWING = stencil -> {
+        stencil.clear(Color.WHITE);
+        stencil.translate(100, 50);
+        stencil.draw(Stencil.rectangle().at(10, 10).size(30, 20));
+        stencil.savePen();
+        stencil.scale(2, 2);
+        stencil.pen().setStroke(Color.RED).strokePolyline(
+            new double[] {0, 10, 20}, new double[] {0, 10, 0}, 3);
+        stencil.draw(Stencil.oval().at(0, 0).size(5, 5));
+        stencil.restorePen();
+    };
+
+    @Test
+    public void testRecord() {
+        test("testRecord");
+        var list = new DisplayList();
+        var stencil = new Stencil(list);
+        stencil.draw(DRAWING);
+
+        check(list.size() > 0).eq(true);
+        check(stencil.pen().getTransform().isIdentity()).eq(true);
+        check(list.getBounds().orElse(null))
+            .eq(new BoundingBox(100, 50, 40, 30));
+    }
+
+    @Test
+    public void testBounds_sameAsDrawing() {
+        test("testBounds_sameAsDrawing");
+        var list = new DisplayList();
+        var recorder = new Stencil(list);
+        recorder.draw(DRAWING);
+
+        var canvas = new Canvas(300, 300);
+        var stencil = new Stencil(canvas.getGraphicsContext2D());
+        stencil.draw(DRAWING);
+
+        check(list.getBounds()).eq(stencil.getDrawingBounds());
+        check(recorder.getDrawingBounds()).eq(stencil.getDrawingBounds());
+        check(recorder.getImageSize()).eq(stencil.getImageSize());
+    }
+
+    @Test
+    public void testMeasuring() {
+        test("testMeasuring");
+        var stencil = Stencil.measuring();
+        stencil.draw(DRAWING);
+
+        check(stencil.pen().gc() == null).eq(true);
+        check(stencil.pen().getDisplayList().isPresent()).eq(false);
+        check(stencil.getDrawingBounds().orElse(null))
+            .eq(new BoundingBox(100, 50, 40, 30));
+        check(StencilBuffer.measure(DRAWING)).eq(stencil.getImageSize());
+    }
+
+    @Test
+    public void testRecord_static() throws Exception {
+        test("testRecord_static");
+        var list = new DisplayList();
+        list.fillRect(0, 0, 1, 1);
+
+        // Record on another thread, as pen draw does.
+        var size = Executors.newSingleThreadExecutor()
+            .submit(() -> StencilBuffer.record(DRAWING, list)).get();
+
+        check(size).eq(StencilBuffer.measure(DRAWING));
+        check(list.getBounds().orElse(null))
+            .eq(new BoundingBox(100, 50, 40, 30));
+
+        // The list was cleared before recording.
+        var other = new DisplayList();
+        StencilBuffer.record(DRAWING, other);
+        check(list.size()).eq(other.size());
+    }
+
+    @Test
+    public void testReplay_restoresState() {
+        test("testReplay_restoresState");
+        var list = new DisplayList();
+        var pen = new Pen(list);
+        pen.save().translate(10, 10).setFill(Color.BLUE).fillRect(0, 0, 5, 5);
+
+        var gc = new Canvas(100, 100).getGraphicsContext2D();
+        list.replay(gc);
+        list.replay(gc);
+
+        check(gc.getTransform().isIdentity()).eq(true);
+        check(gc.getFill()).eq(Color.BLACK);
+    }
+
+    @Test
+    public void testClear() {
+        test("testClear");
+        var list = new DisplayList();
+        var stencil = new Stencil(list);
+        stencil.draw(DRAWING);
+        list.clear();
+
+        check(list.size()).eq(0);
+        check(list.getBounds().isPresent()).eq(false);
+    }
+
+    @Test
+    public void testDamage_unchanged() {
+        test("testDamage_unchanged");
+        var damage = recordBoxes(10, 50, 90).getDamage(recordBoxes(10, 50, 90));
+
+        check(damage.orElseThrow()).eq(List.of());
+    }
+
+    @Test
+    public void testDamage_changedShape() {
+        test("testDamage_changedShape");
+        var damage = recordBoxes(10, 50, 90).getDamage(recordBoxes(10, 60, 90));
+
+        // The old and new boxes, padded and merged.
+        check(damage.orElseThrow())
+            .eq(List.<Bounds>of(new BoundingBox(48, 8, 24, 14)));
+    }
+
+    @Test
+    public void testDamage_insertedShape() {
+        test("testDamage_insertedShape");
+        var damage = recordBoxes(10, 50, 90).getDamage(recordBoxes(10, 90));
+
+        check(damage.orElseThrow())
+            .eq(List.<Bounds>of(new BoundingBox(48, 8, 14, 14)));
+    }
+
+    @Test
+    public void testDamage_background() {
+        test("testDamage_background");
+        var list = recordBoxes(10, 50);
+        var previous = new DisplayList();
+        var stencil = new Stencil(previous);
+        stencil.clear(Color.BLUE);
+        stencil.draw(Stencil.rectangle().at(10, 10).size(10, 10));
+        stencil.draw(Stencil.rectangle().at(50, 10).size(10, 10));
+
+        check(list.getDamage(previous).isPresent()).eq(false);
+    }
+
+    // Records a drawing of 10x10 boxes at the given X coordinates.
+    private DisplayList recordBoxes(double... xs) {
+        var list = new DisplayList();
+        var stencil = new Stencil(list);
+        stencil.clear(Color.WHITE);
+        for (var x : xs) {
+            stencil.draw(Stencil.rectangle().at(x, 10).size(10, 10));
+        }
+        return list;
+    }
+}
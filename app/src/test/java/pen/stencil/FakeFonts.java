@@ -0,0 +1,26 @@
+package pen.stencil;
+
+import javafx.geometry.Dimension2D;
+
+/**
+ * Fonts whose text metrics don't depend on JavaFX text layout, for tests
+ * of shapes that measure text.
+ */
+public class FakeFonts {
+    private FakeFonts() {} // Not instantiable
+
+    /**
+     * Creates a font in which every character is the given width, and
+     * every string is the given height.
+     * @param name The font's name
+     * @param charWidth The width of each character
+     * @param height The height of any string
+     * @return The font
+     */
+    public static PenFont fixed(String name, double charWidth, double height) {
+        var font = new PenFont.Builder(name).build();
+        font.measureWith(text ->
+            new Dimension2D(charWidth*text.length(), height));
+        return font;
+    }
+}
@@ -0,0 +1,83 @@
+package pen.stencil;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Point2D;
+import org.junit.Test;
+import pen.Ted;
+
+import java.util.List;
+
+import static pen.checker.Checker.check;
+
+public class PointsTest extends Ted {
+    @Test
+    public void testAdd() {
+        test("testAdd");
+        var points = new Points(2);
+
+        for (int i = 0; i < 100; i++) {
+            points.add(i, 2*i);
+        }
+
+        check(points.size()).eq(100);
+        check(points.getX(99)).eq(99.0);
+        check(points.getY(99)).eq(198.0);
+        check(points.get(10)).eq(new Point2D(10, 20));
+    }
+
+    @Test
+    public void testAddAll() {
+        test("testAddAll");
+        var points = new Points();
+        points.add(1, 2);
+
+        var other = new Points();
+        other.add(3, 4);
+        other.add(5, 6);
+        points.addAll(other);
+        points.addAll(List.of(new Point2D(7, 8)));
+
+        check(List.copyOf(points)).eq(List.of(new Point2D(1, 2), new Point2D(3, 4),
+            new Point2D(5, 6), new Point2D(7, 8)));
+    }
+
+    @Test
+    public void testOf() {
+        test("testOf");
+        var points = new Points();
+        check(Points.of(points) == points).eq(true);
+        check(Points.of(List.of(new Point2D(1, 2))).getX(0)).eq(1.0);
+    }
+
+    @Test
+    public void testClear() {
+        test("testClear");
+        var points = new Points();
+        points.add(1, 2);
+        points.clear();
+        check(points.isEmpty()).eq(true);
+        check(points.getBounds()).eq(null);
+    }
+
+    @Test
+    public void testGetBounds() {
+        test("testGetBounds");
+        var points = new Points();
+        points.add(10, 5);
+        points.add(-2, 8);
+        points.add(4, 20);
+
+        check(points.getBounds()).eq(new BoundingBox(-2, 5, 12, 15));
+        check(Pen.boundsOf(points)).eq(points.getBounds());
+        check(Pen.boundsOf(List.copyOf(points))).eq(points.getBounds());
+    }
+
+    @Test
+    public void testAngleOf() {
+        test("testAngleOf");
+        check(Pen.angleOf(0, 0, 10, 0)).eq(0.0);
+        check(Pen.angleOf(0, 0, 0, 10)).eq(90.0);
+        check(Pen.angleOf(0, 0, 0, -10)).eq(-90.0);
+        check(Pen.angleOf(new Point2D(0, 0), new Point2D(10, 10))).eq(45.0);
+    }
+}
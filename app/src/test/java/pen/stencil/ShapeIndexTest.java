@@ -0,0 +1,111 @@
+package pen.stencil;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import org.junit.Test;
+import pen.Ted;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static pen.checker.Checker.check;
+
+public class ShapeIndexTest extends Ted {
+    @Test
+    public void testFind_empty() {
+        test("testFind_empty");
+        var index = new ShapeIndex();
+
+        check(index.size()).eq(0);
+        check(index.find(0, 0)).eq(List.of());
+        check(index.findTop(0, 0).isPresent()).eq(false);
+    }
+
+    @Test
+    public void testFind_topmostFirst() {
+        test("testFind_topmostFirst");
+        var lines = new int[] {0};
+        var index = new ShapeIndex(() -> ++lines[0]);
+        var a = Stencil.rectangle();
+        var b = Stencil.rectangle();
+        var c = Stencil.rectangle();
+
+        index.add(a, new BoundingBox(0, 0, 100, 100));
+        index.add(b, new BoundingBox(50, 50, 100, 100));
+        index.add(c, new BoundingBox(200, 200, 10, 10));
+
+        var hits = index.find(75, 75);
+        check(hits.size()).eq(2);
+        check(hits.get(0).shape() == b).eq(true);
+        check(hits.get(0).line()).eq(2);
+        check(hits.get(1).shape() == a).eq(true);
+        check(hits.get(1).line()).eq(1);
+
+        check(index.findTop(10, 10).orElseThrow().shape() == a).eq(true);
+        check(index.find(175, 175)).eq(List.of());
+    }
+
+    @Test
+    public void testFind_many() {
+        test("testFind_many");
+        var random = new Random(42);
+        var index = new ShapeIndex();
+        var boxes = new ArrayList<Bounds>();
+
+        for (int i = 0; i < 5000; i++) {
+            var box = new BoundingBox(
+                random.nextDouble()*1000, random.nextDouble()*1000,
+                random.nextDouble()*50, random.nextDouble()*50);
+            boxes.add(box);
+            index.add(Stencil.rectangle(), box);
+        }
+
+        // Compare with a linear search, topmost first.
+        for (int i = 0; i < 1000; i++) {
+            var x = random.nextDouble()*1050;
+            var y = random.nextDouble()*1050;
+
+            var expected = new ArrayList<Bounds>();
+            for (int j = boxes.size() - 1; j >= 0; j--) {
+                if (boxes.get(j).contains(x, y)) {
+                    expected.add(boxes.get(j));
+                }
+            }
+
+            var got = index.find(x, y).stream()
+                .map(ShapeIndex.Entry::bounds).toList();
+            check(got).eq(expected);
+        }
+    }
+
+    @Test
+    public void testAdd_rebuilds() {
+        test("testAdd_rebuilds");
+        var index = new ShapeIndex();
+        index.add(Stencil.rectangle(), new BoundingBox(0, 0, 10, 10));
+        check(index.find(20, 20).size()).eq(0);
+
+        index.add(Stencil.rectangle(), new BoundingBox(15, 15, 10, 10));
+        check(index.find(20, 20).size()).eq(1);
+
+        index.clear();
+        check(index.size()).eq(0);
+        check(index.find(20, 20).size()).eq(0);
+    }
+
+    @Test
+    public void testStencil_draw() {
+        test("testStencil_draw");
+        var index = new ShapeIndex();
+        var stencil = Stencil.measuring().shapeIndex(index);
+        var rect = Stencil.rectangle().at(10, 10).size(20, 20);
+
+        stencil.translate(100, 0);
+        stencil.draw(rect);
+
+        check(index.size()).eq(1);
+        check(index.findTop(120, 20).orElseThrow().shape() == rect).eq(true);
+        check(index.findTop(20, 20).isPresent()).eq(false);
+    }
+}
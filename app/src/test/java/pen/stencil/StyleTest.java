@@ -0,0 +1,52 @@
+package pen.stencil;
+
+import javafx.scene.paint.Color;
+import org.junit.Test;
+import pen.Ted;
+
+import java.util.List;
+
+import static pen.checker.Checker.check;
+
+public class StyleTest extends Ted {
+    @Test
+    public void testWith() {
+        test("testWith");
+        var style = Style.DEFAULT.withForeground(Color.RED);
+
+        check(style.getForeground()).eq(Color.RED);
+        check(style.getBackground()).eq(Style.DEFAULT.getBackground());
+        check(Style.DEFAULT.getForeground()).eq(Color.BLACK);
+        check(style.withForeground(Color.RED) == style).eq(true);
+        check(style.withLineWidth(2).withLineWidth(1)).eq(style);
+    }
+
+    @Test
+    public void testShape_sharesStyle() {
+        test("testShape_sharesStyle");
+        var style = Style.DEFAULT.withLineWidth(3);
+        var rect = Stencil.rectangle().style(style);
+        var line = Stencil.line().style(rect);
+
+        check(rect.getStyle() == style).eq(true);
+        check(line.getStyle() == style).eq(true);
+
+        // Setting a parameter on a shape doesn't change the shared style.
+        line.foreground(Color.BLUE);
+        check(line.getForeground()).eq(Color.BLUE);
+        check(line.getLineWidth()).eq(3.0);
+        check(rect.getForeground()).eq(Color.BLACK);
+    }
+
+    @Test
+    public void testStyleMap_interns() {
+        test("testStyleMap_interns");
+        var map = new StyleMap();
+        map.put("a", Style.DEFAULT.withBackground(Color.RED));
+        map.put("b", new Style.Builder(Style.DEFAULT)
+            .background(Color.RED).build());
+
+        check(map.get("a") == map.get("b")).eq(true);
+        check(map.getNames()).eq(List.of("a", "b"));
+    }
+}
@@ -0,0 +1,121 @@
+package pen.stencil;
+
+import javafx.geometry.VPos;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+import org.junit.Test;
+import pen.Ted;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.function.Consumer;
+
+import static pen.checker.Checker.check;
+
+public class SvgWriterTest extends Ted {
+    // Writes the drawing done by the action, returning the SVG.
+    private String svg(Consumer<Pen> action)
+        throws IOException
+    {
+        var out = new StringWriter();
+        try (var svg = new SvgWriter(out, 200, 100)) {
+            action.accept(new Pen(svg));
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        test("testEmpty");
+        check(svg(pen -> {})).eq("""
+            <svg xmlns="http://www.w3.org/2000/svg" width="200" height="100" \
+            viewBox="0 0 200 100" stroke-linecap="square" \
+            stroke-miterlimit="10">
+            </svg>
+            """);
+    }
+
+    @Test
+    public void testShapes() throws IOException {
+        test("testShapes");
+        var text = svg(pen -> pen
+            .clear(Color.WHITE)
+            .setStroke(Color.RED)
+            .setLineWidth(2)
+            .strokeLine(0, 0, 10, 10.5)
+            .setFill(Color.rgb(0, 0, 255, 0.5))
+            .fillRect(1, 2, 3, 4)
+            .strokeOval(0, 0, 20, 10)
+            .fillPolygon(new double[] {0, 5, 10}, new double[] {0, 5, 0}, 3)
+        );
+
+        check(text).containsString(
+            "<rect width=\"200\" height=\"100\" fill=\"#ffffff\"/>");
+        check(text).containsString(
+            "<line x1=\"0\" y1=\"0\" x2=\"10\" y2=\"10.5\" " +
+            "stroke=\"#ff0000\" stroke-width=\"2\"/>");
+        check(text).containsString(
+            "<rect x=\"1\" y=\"2\" width=\"3\" height=\"4\" " +
+            "fill=\"#0000ff\" fill-opacity=\"0.5\"/>");
+        check(text).containsString(
+            "<ellipse cx=\"10\" cy=\"5\" rx=\"10\" ry=\"5\" fill=\"none\" " +
+            "stroke=\"#ff0000\" stroke-width=\"2\"/>");
+        check(text).containsString(
+            "<polygon points=\"0,0 5,5 10,0\" fill=\"#0000ff\" " +
+            "fill-opacity=\"0.5\"/>");
+    }
+
+    @Test
+    public void testTransforms() throws IOException {
+        test("testTransforms");
+        var text = svg(pen -> pen
+            .save()
+            .translate(100, 50)
+            .scale(2, 2)
+            .strokeRect(0, 0, 5, 5)
+            .restore()
+            .strokeRect(0, 0, 5, 5)
+        );
+
+        check(text).containsString(
+            "<rect x=\"0\" y=\"0\" width=\"5\" height=\"5\" fill=\"none\" " +
+            "stroke=\"#000000\" transform=\"matrix(2 0 0 2 100 50)\"/>");
+        check(text).containsString(
+            "<rect x=\"0\" y=\"0\" width=\"5\" height=\"5\" fill=\"none\" " +
+            "stroke=\"#000000\"/>");
+    }
+
+    @Test
+    public void testText() throws IOException {
+        test("testText");
+        var text = svg(pen -> pen
+            .setFont(PenFont.SANS12)
+            .setTextAlign(TextAlignment.CENTER)
+            .setTextBaseline(VPos.TOP)
+            .fillText("A<B & \"C\"", 10, 20)
+        );
+
+        check(text).containsString("text-anchor=\"middle\" " +
+            "dominant-baseline=\"text-before-edge\" fill=\"#000000\">" +
+            "A&lt;B &amp; &quot;C&quot;</text>");
+    }
+
+    @Test
+    public void testSave() throws IOException {
+        test("testSave");
+        var file = Files.createTempFile("pen", ".svg");
+
+        try {
+            SvgWriter.save(stencil -> stencil
+                .draw(Stencil.rectangle().at(10, 10).size(30, 20)),
+                file.toFile());
+            var text = Files.readString(file);
+            check(text).containsString("<svg ");
+            check(text).containsString("<rect x=\"10\" y=\"10\"");
+            check(text.endsWith("</svg>\n")).eq(true);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package pen.stencil;
+
+import javafx.geometry.Dimension2D;
+import org.junit.Test;
+import pen.Ted;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static pen.checker.Checker.check;
+
+public class TextMetricsTest extends Ted {
+    // The strings measured by the fake measurer
+    private final List<String> measured = new ArrayList<>();
+
+    // Creates metrics with a fake measurer, in which each character is
+    // 7 pixels wide.
+    private TextMetrics newMetrics() {
+        return new TextMetrics(PenFont.SANS12, text -> {
+            measured.add(text);
+            return new Dimension2D(7.0*text.length(), 15);
+        });
+    }
+
+    @Test
+    public void testGetLineHeight() {
+        test("testGetLineHeight");
+        var metrics = newMetrics();
+        check(metrics.getLineHeight()).eq(15.0);
+        check(metrics.getLineHeight()).eq(15.0);
+        check(measured).eq(List.of("ABC"));
+    }
+
+    @Test
+    public void testGetSize_cached() {
+        test("testGetSize_cached");
+        var metrics = newMetrics();
+        measured.clear();
+
+        var first = metrics.getSize("Hello, world!");
+        var second = metrics.getSize("Hello, world!");
+
+        check(second).eq(first);
+        check(first).eq(new Dimension2D(91, 15));
+        check(measured).eq(List.of("Hello, world!"));
+        check(metrics.getHits()).eq(1L);
+        check(metrics.getMisses()).eq(1L);
+        check(metrics.getHitRate()).eq(0.5);
+    }
+
+    @Test
+    public void testGetSize_bounded() {
+        test("testGetSize_bounded");
+        var metrics = newMetrics();
+
+        for (int i = 0; i < 2000; i++) {
+            metrics.getSize("text" + i);
+        }
+
+        // The newest entries are cached, and the oldest have been evicted.
+        metrics.getSize("text1999");
+        check(metrics.getHits()).eq(1L);
+        metrics.getSize("text0");
+        check(metrics.getHits()).eq(1L);
+        check(metrics.getMisses()).eq(2001L);
+    }
+
+    @Test
+    public void testGetSize_leastRecentlyUsed() {
+        test("testGetSize_leastRecentlyUsed");
+        var metrics = newMetrics();
+
+        // Keep "text0" in use while the cache fills.
+        for (int i = 0; i < 2000; i++) {
+            metrics.getSize("text0");
+            metrics.getSize("text" + (i + 1));
+        }
+
+        var misses = metrics.getMisses();
+        metrics.getSize("text0");
+        check(metrics.getMisses()).eq(misses);
+    }
+
+    @Test
+    public void testGetSize_concurrent() throws Exception {
+        test("testGetSize_concurrent");
+        var slowStarted = new CountDownLatch(1);
+        var slowDone = new CountDownLatch(1);
+        var metrics = new TextMetrics(PenFont.SANS12, text -> {
+            if (text.equals("slow")) {
+                slowStarted.countDown();
+                await(slowDone);
+            }
+            return new Dimension2D(7.0*text.length(), 15);
+        });
+
+        // A slow measurement doesn't hold up other threads.
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            var slow = executor.submit(() -> metrics.getSize("slow"));
+            await(slowStarted);
+
+            try {
+                var fast = new ArrayList<Future<Dimension2D>>();
+                for (int i = 0; i < 100; i++) {
+                    var text = "fast" + (i % 10);
+                    fast.add(executor.submit(() -> metrics.getSize(text)));
+                }
+                for (var future : fast) {
+                    check(future.get(10, TimeUnit.SECONDS).getWidth())
+                        .eq(35.0);
+                }
+            } finally {
+                slowDone.countDown();
+            }
+            check(slow.get().getWidth()).eq(28.0);
+        }
+
+        check(metrics.getHits() + metrics.getMisses()).eq(101L);
+        check(metrics.getMisses() >= 11).eq(true);
+    }
+
+    @Test
+    public void testClear() {
+        test("testClear");
+        var metrics = newMetrics();
+        metrics.getSize("abc");
+        metrics.getSize("abc");
+        metrics.clear();
+
+        check(metrics.getHits()).eq(0L);
+        check(metrics.getMisses()).eq(0L);
+        check(metrics.getHitRate()).eq(0.0);
+        metrics.getSize("abc");
+        check(metrics.getMisses()).eq(1L);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package pen.tcl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class TclEnginePoolTest {
+    private final TclEnginePool pool = new TclEnginePool(engine -> {
+        engine.add("greet", (e, argq) -> e.setResult("hello"));
+        try {
+            engine.eval("set greeting hello");
+        } catch (TclEngineException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    @Test
+    public void testReleaseRestores() throws Exception {
+        var engine = pool.acquire();
+        engine.eval("proc myproc {} { return 1 }");
+        engine.eval("set myvar 1; set greeting goodbye");
+        engine.eval("namespace eval ::myns { variable x 1 }");
+        pool.release(engine);
+
+        assertEquals(1, pool.getIdleCount());
+        assertSame(engine, pool.acquire());
+        assertEquals("", engine.eval("info commands myproc").toString());
+        assertEquals("0", engine.eval("info exists myvar").toString());
+        assertEquals("0", engine.eval("namespace exists ::myns").toString());
+        assertEquals("hello", engine.eval("set greeting").toString());
+        assertEquals("hello", engine.eval("greet").toString());
+    }
+
+    @Test
+    public void testRedefinedCommandDiscards() throws Exception {
+        var engine = pool.acquire();
+        engine.eval("proc greet {} { return goodbye }");
+        pool.release(engine);
+
+        assertEquals(0, pool.getIdleCount());
+        assertNotSame(engine, pool.acquire());
+    }
+
+    @Test
+    public void testDiscard() {
+        var engine = pool.acquire();
+        pool.discard(engine);
+        pool.release(engine);
+
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testDiscardDisposes() throws Exception {
+        // Engines acquired on short-lived threads can still be disposed.
+        var engines = new ArrayList<TclEngine>();
+        var thread = Thread.ofVirtual().start(() -> {
+            var engine = pool.acquire();
+            engines.add(engine);
+            pool.discard(engine);
+        });
+        thread.join();
+
+        assertTrue(eventually(() -> isDisposed(engines.getFirst())));
+    }
+
+    @Test
+    public void testReleaseFullDisposes() throws Exception {
+        var fullPool = new TclEnginePool(engine -> {}, 0);
+        var engine = fullPool.acquire();
+        fullPool.release(engine);
+
+        assertEquals(0, fullPool.getIdleCount());
+        assertTrue(eventually(() -> isDisposed(engine)));
+    }
+
+    @Test
+    public void testDiscardDependent() throws Exception {
+        var engine = pool.acquire();
+        var dependent = new Object[] { new Object() };
+        pool.discard(engine, dependent[0]);
+
+        assertFalse(isDisposed(engine));
+        assertEquals("hello", engine.eval("greet").toString());
+
+        dependent[0] = null;
+        assertTrue(eventually(() -> {
+            System.gc();
+            return isDisposed(engine);
+        }));
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        var tasks = new ArrayList<Callable<String>>();
+        for (int i = 0; i < 20; i++) {
+            var n = i;
+            tasks.add(() -> {
+                var engine = pool.acquire();
+                try {
+                    engine.eval("proc double {x} { expr {2*$x} }");
+                    return engine.eval("double " + n).toString();
+                } finally {
+                    pool.release(engine);
+                }
+            });
+        }
+
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            var futures = executor.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(String.valueOf(2*i), futures.get(i).get());
+            }
+        }
+    }
+
+    // Whether the engine's interpreter has been disposed.
+    private static boolean isDisposed(TclEngine engine) {
+        return engine.interp().getNotifier() == null;
+    }
+
+    // Waits up to ten seconds for the condition to become true.
+    private static boolean eventually(BooleanSupplier condition)
+        throws InterruptedException
+    {
+        for (int i = 0; i < 100; i++) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
@@ -2,9 +2,20 @@ package pen.tcl;
 
 import org.junit.Before;
 import org.junit.Test;
+import javafx.geometry.Dimension2D;
+import javafx.geometry.Point2D;
+import javafx.scene.paint.Color;
 import tcl.lang.TCL;
+import tcl.lang.TclException;
+import tcl.lang.TclString;
 
-import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
 
 public class TclEngineTest {
     TclEngine engine;
@@ -37,6 +48,169 @@ howdy
         }
     }
 
+    @Test
+    public void testProfiler() throws Exception {
+        var profiler = new TclProfiler();
+        engine.setProfiler(profiler);
+        engine.add("inner", (e, argq) -> e.setResult(1));
+        engine.add("outer", (e, argq) -> e.eval("inner; inner"));
+        engine.ensemble("shape").add("box", (e, argq) -> e.eval("inner"));
+
+        engine.eval("outer; outer; shape box");
+
+        var profiles = new HashMap<String, TclProfiler.CommandProfile>();
+        profiler.getProfiles().forEach(p -> profiles.put(p.command(), p));
+
+        assertEquals(Set.of("inner", "outer", "shape", "shape box"),
+            profiles.keySet());
+        assertEquals(5, profiles.get("inner").calls());
+        assertEquals(2, profiles.get("outer").calls());
+        assertEquals(1, profiles.get("shape box").calls());
+
+        var outer = profiles.get("outer");
+        assertTrue(outer.selfNanos() <= outer.totalNanos());
+        assertTrue(profiles.get("shape").totalNanos() >=
+            profiles.get("shape box").totalNanos());
+
+        profiler.reset();
+        assertTrue(profiler.getProfiles().isEmpty());
+    }
+
+    @Test
+    public void testScriptLine() throws Exception {
+        var lines = new ArrayList<Integer>();
+        engine.add("mark", (e, argq) -> lines.add(e.getScriptLine()));
+
+        var script = TclString.newInstance("""
+mark
+# A comment
+set x [expr {1 + 1}]
+mark
+foreach i {1 2} {
+    mark
+}
+""");
+        engine.eval(script);
+
+        assertEquals(List.of(1, 4, 5, 5), lines);
+        assertEquals(0, engine.getScriptLine());
+    }
+
+    @Test
+    public void testPointRep() throws Exception {
+        var arg = TclString.newInstance("1.5,-2");
+        var point = engine.toPoint(arg);
+        assertEquals(new Point2D(1.5, -2), point);
+        assertSame(point, engine.toPoint(arg));
+        assertEquals("1.5,-2", arg.toString());
+
+        // Trailing commas are ignored, as they always have been.
+        assertEquals(new Point2D(3, 4),
+            engine.toPoint(TclString.newInstance("3,4,,")));
+
+        for (var bad : List.of("", "1", "1,", ",1", "1,,2", "1,2,3", "a,1")) {
+            try {
+                engine.toPoint(TclString.newInstance(bad));
+                fail("Expected error: " + bad);
+            } catch (TclException ex) {
+                assertEquals("Expected x,y point, got \"" + bad + "\"",
+                    ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testPointRep_numbers() throws Exception {
+        var random = new Random(42);
+        var values = new ArrayList<>(List.of("0", "-0", "+7", ".5", "5.",
+            "0.1", "1e3", "0x1p3", "123456789012345678", "1.00000000000000000001",
+            "0.000000000000000000000000123", "3.14159265358979323846"));
+        for (int i = 0; i < 1000; i++) {
+            values.add(String.format("%.6f", random.nextGaussian() * 1000));
+        }
+
+        for (var value : values) {
+            var expected = Double.parseDouble(value);
+            var point = engine.toPoint(TclString.newInstance(value + ",1"));
+            assertEquals(value, Double.doubleToLongBits(expected),
+                Double.doubleToLongBits(point.getX()));
+        }
+    }
+
+    @Test
+    public void testPointListRep() throws Exception {
+        var arg = TclString.newInstance("0,0 10,0 10,10");
+        var points = engine.toPointList(arg);
+        assertEquals(List.of(new Point2D(0, 0), new Point2D(10, 0),
+            new Point2D(10, 10)), points);
+        assertSame(points, engine.toPointList(arg));
+        assertEquals(3, engine.toArgq(arg).size());
+    }
+
+    @Test
+    public void testDimIdentifierColorReps() throws Exception {
+        var dim = TclString.newInstance("20,30");
+        assertEquals(new Dimension2D(20, 30), engine.toDim(dim));
+        assertSame(engine.toDim(dim), engine.toDim(dim));
+
+        var id = TclString.newInstance("my-style2");
+        assertEquals("my-style2", engine.toIdentifier(id));
+        assertEquals("my-style2", engine.toIdentifier(id));
+
+        for (var bad : List.of("", "2a", "a_b", "a b")) {
+            try {
+                engine.toIdentifier(TclString.newInstance(bad));
+                fail("Expected error: " + bad);
+            } catch (TclException ex) {
+                // Expected
+            }
+        }
+
+        var color = TclString.newInstance("steelblue");
+        assertEquals(Color.STEELBLUE, engine.toColor(color));
+        assertSame(engine.toColor(color), engine.toColor(color));
+    }
+
+    @Test
+    public void testTopLevelReturn_cached() throws Exception {
+        // The script is parsed for reuse on its second evaluation.
+        for (var script : List.of(
+            "set x 1\nif {1} {return done}\nset x 2\n",
+            "set x 1\nreturn done\nset x 2\n"
+        )) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals("done", engine.eval(script).toString());
+                assertEquals("1", engine.eval("set x").toString());
+            }
+        }
+    }
+
+    @Test
+    public void testTopLevelBreak_cached() {
+        var script = "set x 1\n\nif {1} {\n    break\n}\nset x 2\n";
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                engine.eval("set y 1\nerror other\n");
+            } catch (TclEngineException ex) {
+                // Expected
+            }
+
+            try {
+                engine.eval(script);
+                fail("Expected error");
+            } catch (TclEngineException ex) {
+                assertEquals("invoked \"break\" outside of a loop",
+                    ex.getMessage());
+                assertEquals(5, ex.getErrorLine());
+                assertEquals("""
+                    invoked "break" outside of a loop
+                        while executing
+                    "}\"""", ex.getErrorInfo());
+            }
+        }
+    }
+
     private String errorInfo() {
         try {
             return engine.interp().getVar("errorInfo", TCL.GLOBAL_ONLY).toString();
@@ -0,0 +1,64 @@
+package pen.tcl;
+
+import javafx.geometry.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TclOptionsTest {
+    private static final TclOptions<List<Object>> BASE =
+        new TclOptions<List<Object>>()
+            .option("-name", TclOptions::string, List::add);
+
+    private static final TclOptions<List<Object>> OPTIONS =
+        new TclOptions<List<Object>>()
+            .include(BASE)
+            .option("-at", TclEngine::toPoint, List::add)
+            .option("-count", TclEngine::toInteger, List::add);
+
+    TclEngine engine;
+    List<Object> values;
+
+    @Before
+    public void setup() {
+        engine = new TclEngine();
+        values = new ArrayList<>();
+        engine.add("cmd", (tcl, argq) -> OPTIONS.parse(tcl, values, argq));
+    }
+
+    @Test
+    public void testArgs() throws Exception {
+        engine.eval("cmd -at 1,2 -name fred -count 3 -name joe");
+        assertEquals(List.of(new Point2D(1, 2), "fred", 3, "joe"), values);
+    }
+
+    @Test
+    public void testList() throws Exception {
+        engine.eval("cmd {-at 1,2 -name {fred flintstone}}");
+        assertEquals(List.of(new Point2D(1, 2), "fred flintstone"), values);
+    }
+
+    @Test
+    public void testErrors() {
+        checkError("cmd -bogus 1", "unknown option: \"-bogus\"");
+        checkError("cmd {-bogus 1}", "unknown option: \"-bogus\"");
+        checkError("cmd bogus 1", "Expected option, got \"bogus\"");
+        checkError("cmd -name fred -at", "missing value for option -at");
+        checkError("cmd {-name fred -at}", "missing value for option -at");
+        checkError("cmd -bogus", "unknown option: \"-bogus\"");
+        checkError("cmd -count x -name y", "expected integer but got \"x\"");
+    }
+
+    private void checkError(String script, String message) {
+        try {
+            engine.eval(script);
+            fail("Expected error: " + script);
+        } catch (TclEngineException ex) {
+            assertEquals(message, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package pen.tcl;
+
+import org.junit.Test;
+import tcl.lang.Interp;
+import tcl.lang.TCL;
+import tcl.lang.TclException;
+import tcl.lang.TclString;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TclScriptTest {
+    private static final List<String> SCRIPTS = List.of(
+        "set x 1\nset y 2\n",
+        "set x {a b}\n  lappend x c\nset x",
+        "# Comment {\nset a 1; set b 2\nexpr {$a + $b}\n",
+        "proc double {x} {\n    expr {2*$x}\n}\n\ndouble 21\n",
+        "set s \"hello world\"\nstring length $s\r\n",
+        "set l [list a \\\n  b]\nllength $l\n",
+        "foreach i {1 2 3} {\n    if {$i == 2} break\n}\nset i\n",
+        "set x 1\nreturn done\nset x 2\n",
+        "set x {*}{a}\n",
+        "set x 1\nerror \"simulated error\"\nset x 2\n",
+        "set x 1\n\nset y [expr {1/0}]\n",
+        "proc howdy {} {\n    error \"simulated error\"\n}\nhowdy\n",
+        "set x {unbalanced\n",
+        "set x {a}b\n",
+        "nosuchcommand a b\n"
+    );
+
+    @Test
+    public void testSameAsInterp() throws Exception {
+        for (var script : SCRIPTS) {
+            var expected = run(new Interp(), script, false);
+            var parsed = TclScript.compile(script);
+            var interp = new Interp();
+
+            // Evaluate twice, to verify that cached words can be reused.
+            assertEquals(script, expected, run(interp, parsed, true));
+            assertEquals(script, expected, run(interp, parsed, true));
+        }
+    }
+
+    @Test
+    public void testEngineCachesScripts() throws Exception {
+        var engine = new TclEngine();
+        var script = TclString.newInstance("set x 1\nincr x\n");
+        script.preserve();
+
+        assertEquals("2", engine.eval(script).toString());
+        assertEquals("2", engine.eval(script).toString());
+        assertEquals("set x 1\nincr x\n", script.toString());
+
+        var text = "set y 5\nincr y\n";
+        assertEquals("6", engine.eval(text).toString());
+        assertEquals("6", engine.eval(text).toString());
+        assertEquals("6", engine.eval(text).toString());
+    }
+
+    @Test
+    public void testCachedWordsUnchanged() throws Exception {
+        // List commands may modify unshared arguments in place; the
+        // cached words must not be.
+        var cases = List.of(
+            List.of("lreplace {a b c} 0 0", "b c"),
+            List.of("linsert {a b} 1 x", "a x b"),
+            List.of("lsort {c b a}", "a b c")
+        );
+
+        for (var c : cases) {
+            var parsed = TclScript.compile(c.get(0));
+            var interp = new Interp();
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals(c.get(0), "ok: " + c.get(1),
+                    run(interp, parsed, true));
+            }
+        }
+
+        var engine = new TclEngine();
+        for (int i = 0; i < 4; i++) {
+            assertEquals("b c", engine.eval("lreplace {a b c} 0 0").toString());
+        }
+    }
+
+    // Evaluates the script, returning a summary of the outcome.
+    private String run(Interp interp, Object script, boolean parsed)
+        throws TclException
+    {
+        try {
+            if (parsed) {
+                ((TclScript)script).eval(interp);
+            } else {
+                interp.eval((String)script, 0);
+            }
+            return "ok: " + interp.getResult();
+        } catch (TclException ex) {
+            return "error " + ex.getCompletionCode() +
+                " line " + interp.getErrorLine() + ": " +
+                interp.getVar("errorInfo", TCL.GLOBAL_ONLY);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package pen.tools.history;
+
+import com.wjduquette.joe.tools.ToolException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pen.DataFiles;
+import pen.Ted;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static pen.checker.Checker.check;
+import static pen.checker.Checker.checkThrow;
+
+public class HistoryBatchTest extends Ted {
+    private static final String HISTORY = """
+        type person "Person" -prime
+        entity joe "JoeP" person -prime
+        entity bob "BobC" person
+        start 10 "Joe is born" joe
+        incident 15 "Bob enters" bob
+        incident 50 "Joe and Bob talk" joe bob
+        end 90 "Joe dies" joe
+        """;
+
+    private final HistoryTool tool = new HistoryTool();
+    private Path dir;
+    private Path histFile;
+
+    @Before
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("batch");
+        histFile = dir.resolve("test.hist");
+        Files.writeString(histFile, HISTORY);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (var file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testParse() {
+        test("testParse");
+        var specs = HistoryBatch.parse(tool, List.of(
+            "# A comment",
+            "",
+            "bob.txt --entity bob --output summary",
+            "  \"all of it.md\" --format markdown"
+        ));
+
+        check(specs.size()).eq(2);
+        check(specs.get(0).lineNumber()).eq(3);
+        check(specs.get(0).outputPath()).eq(Path.of("bob.txt"));
+        check(specs.get(1).lineNumber()).eq(4);
+        check(specs.get(1).outputPath()).eq(Path.of("all of it.md"));
+    }
+
+    @Test
+    public void testParse_error() {
+        test("testParse_error");
+        checkThrow(() -> HistoryBatch.parse(tool, List.of("", "out.txt --bogus")))
+            .containsString("Error in batch spec at line 2");
+    }
+
+    @Test
+    public void testParse_unterminatedQuote() {
+        test("testParse_unterminatedQuote");
+        checkThrow(() -> HistoryBatch.parse(tool, List.of(
+            "ok.txt --entity bob",
+            "out.txt --entity \"foo"
+        ))).containsString("Error in batch spec at line 2: Unterminated quote");
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        test("testRun");
+        var historyFile = DataFiles.loadHistory(histFile);
+        var bob = dir.resolve("bob.txt");
+        var joe = dir.resolve("joe.txt");
+        var bad = dir.resolve("nonesuch").resolve("bad.txt");
+        var specs = HistoryBatch.parse(tool, List.of(
+            bob + " --entity bob --output summary",
+            bad + " --output summary",
+            joe + " --entity joe --output summary"
+        ));
+
+        List<String> outcomes = new ArrayList<>();
+        var failures = new HistoryBatch(historyFile, 3).run(specs,
+            (spec, ex, nanos) -> outcomes.add(spec.lineNumber() +
+                (ex == null ? " ok" : " " + ex.getClass().getSimpleName())));
+
+        check(failures).eq(1);
+        check(outcomes).eq(List.of("1 ok", "2 NoSuchFileException", "3 ok"));
+        check(Files.readString(bob).lines().toList().get(1))
+            .eq("Incidents:  2");
+        check(Files.readString(joe).lines().toList().get(1))
+            .eq("Incidents:  3");
+    }
+}
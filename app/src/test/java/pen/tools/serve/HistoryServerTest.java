@@ -0,0 +1,128 @@
+package pen.tools.serve;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pen.Ted;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static pen.checker.Checker.check;
+
+public class HistoryServerTest extends Ted {
+    private static final String HISTORY = """
+        type person "Person" -prime
+        entity joe "JoeP" person -prime
+        entity bob "BobC" person
+        start 10 "Joe is born" joe
+        incident 15 "Bob enters" bob
+        incident 50 "Joe and Bob talk" joe bob
+        end 90 "Joe dies" joe
+        """;
+
+    private Path dir;
+    private Path histFile;
+    private HistoryServer server;
+
+    @Before
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("serve");
+        histFile = dir.resolve("test.hist");
+        Files.writeString(histFile, HISTORY);
+        server = new HistoryServer(new ServeTool());
+    }
+
+    @After
+    public void teardown() throws IOException {
+        Files.deleteIfExists(histFile);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testQuery() {
+        test("testQuery");
+        var response = server.handle("1 query " + histFile +
+            " --output summary --entity bob").lines().toList();
+        check(response.getFirst()).eq("1 ok 3");
+        check(response.get(1)).eq("Entities:   1");
+        check(response.get(2)).eq("Incidents:  2");
+        check(response.get(3)).eq("Time Range: 15 to 50");
+    }
+
+    @Test
+    public void testErrors() {
+        test("testErrors");
+        check(server.handle("7")).eq("7 error missing command\n");
+        check(server.handle("7 frob")).eq("7 error unknown command: \"frob\"\n");
+        check(server.handle("7 query " + histFile + " --bogus"))
+            .eq("7 error Unknown option: \"--bogus\"\n");
+        check(server.handle("7 query " + histFile + " --entity \"bob"))
+            .eq("- error Unterminated quote\n");
+        check(server.handle("7 query " + dir.resolve("nonesuch.hist"))
+            .startsWith("7 error Error reading history")).eq(true);
+    }
+
+    @Test
+    public void testResidentReload() throws IOException {
+        test("testResidentReload");
+        check(summaryIncidents()).eq("Incidents:  4");
+        check(server.getResidentPaths().size()).eq(1);
+
+        // Unchanged file: same resident data.
+        check(summaryIncidents()).eq("Incidents:  4");
+
+        // Changed file: reloaded.
+        Files.writeString(histFile, HISTORY + "incident 60 \"Bob naps\" bob\n");
+        Files.setLastModifiedTime(histFile,
+            FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        check(summaryIncidents()).eq("Incidents:  5");
+        check(server.getResidentPaths().size()).eq(1);
+    }
+
+    @Test
+    public void testResidentReload_sourcedFile() throws IOException {
+        test("testResidentReload_sourcedFile");
+        var moreFile = dir.resolve("more.tcl");
+        Files.writeString(moreFile, "incident 60 \"Bob naps\" bob\n");
+        Files.writeString(histFile, HISTORY + "source more.tcl\n");
+
+        try {
+            check(summaryIncidents()).eq("Incidents:  5");
+
+            // Changed sourced file: reloaded.
+            Files.writeString(moreFile, "incident 60 \"Bob naps\" bob\n" +
+                "incident 70 \"Bob naps again\" bob\n");
+            Files.setLastModifiedTime(moreFile,
+                FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+            check(summaryIncidents()).eq("Incidents:  6");
+        } finally {
+            Files.deleteIfExists(moreFile);
+        }
+    }
+
+    @Test
+    public void testConcurrentQueries() throws Exception {
+        test("testConcurrentQueries");
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            var futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(executor.submit(this::summaryIncidents));
+            }
+            for (var future : futures) {
+                check(future.get()).eq("Incidents:  4");
+            }
+        }
+        check(server.getResidentPaths().size()).eq(1);
+    }
+
+    private String summaryIncidents() {
+        return server.handle("q query " + histFile + " -o summary")
+            .lines().toList().get(2);
+    }
+}
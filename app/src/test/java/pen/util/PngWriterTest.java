@@ -0,0 +1,86 @@
+package pen.util;
+
+import org.junit.Test;
+import pen.Ted;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static pen.checker.Checker.check;
+import static pen.checker.Checker.fail;
+
+public class PngWriterTest extends Ted {
+    // Makes a width x height image of pseudo-random ARGB pixels
+    private int[] pixels(int width, int height) {
+        var result = new int[width*height];
+        var seed = 12345;
+        for (int i = 0; i < result.length; i++) {
+            seed = seed*1103515245 + 12345;
+            result[i] = seed;
+        }
+        return result;
+    }
+
+    @Test
+    public void testWriteRows() throws IOException {
+        test("testWriteRows");
+        var width = 300;
+        var height = 200;
+        var argb = pixels(width, height);
+        var bytes = new ByteArrayOutputStream();
+
+        // Write the image in uneven bands.
+        try (var png = new PngWriter(bytes, width, height)) {
+            png.writeRows(argb, 0, width, 7);
+            png.writeRows(argb, 7*width, width, 150);
+            png.writeRows(argb, 157*width, width, 43);
+            check(png.getRowCount()).eq(height);
+        }
+
+        var image = ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+        check(image.getWidth()).eq(width);
+        check(image.getHeight()).eq(height);
+
+        var mismatches = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (image.getRGB(x, y) != argb[y*width + x]) {
+                    mismatches++;
+                }
+            }
+        }
+        check(mismatches).eq(0);
+    }
+
+    @Test
+    public void testWriteRows_stride() throws IOException {
+        test("testWriteRows_stride");
+        var argb = pixels(10, 4);
+        var bytes = new ByteArrayOutputStream();
+
+        // Write the right half of a 10x4 image.
+        try (var png = new PngWriter(bytes, 5, 4)) {
+            png.writeRows(argb, 5, 10, 4);
+        }
+
+        var image = ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+        check(image.getRGB(0, 0)).eq(argb[5]);
+        check(image.getRGB(4, 3)).eq(argb[39]);
+    }
+
+    @Test
+    public void testClose_incomplete() throws IOException {
+        test("testClose_incomplete");
+        var png = new PngWriter(new ByteArrayOutputStream(), 5, 4);
+        png.writeRows(pixels(5, 1), 0, 5, 1);
+
+        try {
+            png.close();
+            fail("Expected IOException");
+        } catch (IOException ex) {
+            check(ex.getMessage()).eq("Incomplete image: wrote 1 of 4 rows");
+        }
+    }
+}